@@ -162,6 +162,8 @@ public class yaffscfg2k_C implements yaffs2.port.yaffscfg2k_C
 		ramDev.subField1.readChunkWithTagsFromNAND = yaffs2.port.emulation.yaffs_ramdisk_C.instance;
 		ramDev.subField1.eraseBlockInNAND = yaffs2.port.emulation.yaffs_ramdisk_C.instance;
 		ramDev.subField1.initialiseNAND = yaffs2.port.emulation.yaffs_ramdisk_C.instance;
+		ramDev.subField1.markNANDBlockBad = yaffs2.port.emulation.yaffs_ramdisk_C.instance;
+		ramDev.subField1.queryNANDBlock = yaffs2.port.emulation.yaffs_ramdisk_C.instance;
 
 		// /boot
 ////		memset(bootDev);
@@ -225,27 +227,28 @@ public class yaffscfg2k_C implements yaffs2.port.yaffscfg2k_C
 //		flashDev.markNANDBlockBad = yflash_MarkNANDBlockBad;
 //		flashDev.queryNANDBlock = yflash_QueryNANDBlock;
 
-//		// /ram2k
-//		// Set this puppy up to use
-//		// the file emulation space as
-//		// 2kpage/64chunk per block/128MB device
-////		memset(ram2kDev);
-
-//		ram2kDev.nDataBytesPerChunk = nandemul2k_GetBytesPerChunk();
-//		ram2kDev.nChunksPerBlock = nandemul2k_GetChunksPerBlock();
-//		ram2kDev.nReservedBlocks = 5;
-//		ram2kDev.startBlock = 0; // First block after /boot
-//		//ram2kDev.endBlock = 127; // Last block in 16MB
-//		ram2kDev.endBlock = nandemul2k_GetNumberOfBlocks() - 1; // Last block in 512MB
-//		ram2kDev.isYaffs2 = true;
-//		ram2kDev.nShortOpCaches = 10; // Use caches
-//		ram2kDev.genericDevice = /*(void *)*/ 3;	// Used to identify the device in fstat.
-//		ram2kDev.writeChunkWithTagsToNAND = nandemul2k_WriteChunkWithTagsToNAND;
-//		ram2kDev.readChunkWithTagsFromNAND = nandemul2k_ReadChunkWithTagsFromNAND;
-//		ram2kDev.eraseBlockInNAND = nandemul2k_EraseBlockInNAND;
-//		ram2kDev.initialiseNAND = nandemul2k_InitialiseNAND;
-//		ram2kDev.markNANDBlockBad = nandemul2k_MarkNANDBlockBad;
-//		ram2kDev.queryNANDBlock = nandemul2k_QueryNANDBlock;
+		// /ram2k
+		// Set this puppy up to use
+		// the RAM emulation space as
+		// 2kpage/64chunk per block/128MB device
+//		memset(ram2kDev);
+
+		ram2kDev.subField1.nDataBytesPerChunk = yaffs2.port.emulation.yaffs_nandemul2k_C.nandemul2k_GetBytesPerChunk();
+		ram2kDev.subField1.nChunksPerBlock = yaffs2.port.emulation.yaffs_nandemul2k_C.nandemul2k_GetChunksPerBlock();
+		ram2kDev.subField1.nReservedBlocks = 5;
+		ram2kDev.subField1.startBlock = 0; // First block after /boot
+		//ram2kDev.endBlock = 127; // Last block in 16MB
+		ram2kDev.subField1.endBlock = yaffs2.port.emulation.yaffs_nandemul2k_C.nandemul2k_GetNumberOfBlocks() - 1; // Last block in 128MB
+		ram2kDev.subField1.isYaffs2 = true;
+		ram2kDev.subField1.wideTnodesDisabled = true; // PORT yaffs_Tnode only supports 16 bit level0 entries
+		ram2kDev.subField1.nShortOpCaches = 10; // Use caches
+		ram2kDev.subField1.genericDevice = /*(void *)*/ 3;	// Used to identify the device in fstat.
+		ram2kDev.subField1.writeChunkWithTagsToNAND = yaffs2.port.emulation.yaffs_nandemul2k_C.instance;
+		ram2kDev.subField1.readChunkWithTagsFromNAND = yaffs2.port.emulation.yaffs_nandemul2k_C.instance;
+		ram2kDev.subField1.eraseBlockInNAND = yaffs2.port.emulation.yaffs_nandemul2k_C.instance;
+		ram2kDev.subField1.initialiseNAND = yaffs2.port.emulation.yaffs_nandemul2k_C.instance;
+		ram2kDev.subField1.markNANDBlockBad = yaffs2.port.emulation.yaffs_nandemul2k_C.instance;
+		ram2kDev.subField1.queryNANDBlock = yaffs2.port.emulation.yaffs_nandemul2k_C.instance;
 
 		yaffs2.port.yaffsfs_C.yaffs_initialise(yaffsfs_config());
 
@@ -399,6 +399,170 @@ public class Dtest_C extends yaffs2.port.Dtest_C_Additional {
 	}
 
 	
+	/**
+	 * Sequential read and write throughput on the /ram device
+	 * (yramdisk_Device), with record sized and chunk sized accesses.
+	 * Run once with and once without the short op cache.
+	 */
+	public static void ram_throughput_test(int fsize, int recsize, int nCaches)
+	{
+		byte[] fn = Utils.StringToByteArray("/ram/seq");
+		byte[] buffer = new byte[4096]; final int bufferIndex = 0;
+		int h;
+		int i;
+		int n;
+		int total;
+		long t;
+		int traceMask = yaffs2.utils.Globals.yaffs_traceMask;
+		
+		yaffs2.utils.Globals.yaffs_traceMask = 0;
+		yaffs2.utils.Globals.configuration.yaffs_StartUp();
+		yaffs2.platform.emulation.yaffscfg2k_C.ramDev.subField1.nShortOpCaches = nCaches;
+		yaffsfs_C.yaffs_mount(Utils.StringToByteArray("/ram"), 0);
+		
+		for (i = 0; i < buffer.length; i++)
+			buffer[i] = (byte)i;
+
+		t = System.currentTimeMillis();
+		h = yaffsfs_C.yaffs_open(fn, 0, yaffsfs_H.O_CREAT | yaffsfs_H.O_RDWR | yaffsfs_H.O_TRUNC, yaffsfs_H.S_IREAD | yaffsfs_H.S_IWRITE);
+		for (total = 0; total < fsize && (n = yaffsfs_C.yaffs_write(h, buffer, bufferIndex, recsize)) > 0; total += n)
+			;
+		yaffsfs_C.yaffs_close(h);
+		Unix.printf("caches %d: wrote %d bytes in %d byte records: %d ms\n", PrimitiveWrapperFactory.get(nCaches),
+				PrimitiveWrapperFactory.get(total), PrimitiveWrapperFactory.get(recsize),
+				PrimitiveWrapperFactory.get((int)(System.currentTimeMillis() - t)));
+
+		t = System.currentTimeMillis();
+		h = yaffsfs_C.yaffs_open(fn, 0, yaffsfs_H.O_RDONLY, 0);
+		for (total = 0; (n = yaffsfs_C.yaffs_read(h, buffer, bufferIndex, recsize)) > 0; total += n)
+			;
+		yaffsfs_C.yaffs_close(h);
+		Unix.printf("caches %d: read %d bytes in %d byte records: %d ms\n", PrimitiveWrapperFactory.get(nCaches),
+				PrimitiveWrapperFactory.get(total), PrimitiveWrapperFactory.get(recsize),
+				PrimitiveWrapperFactory.get((int)(System.currentTimeMillis() - t)));
+
+		t = System.currentTimeMillis();
+		h = yaffsfs_C.yaffs_open(fn, 0, yaffsfs_H.O_RDONLY, 0);
+		for (total = 0; (n = yaffsfs_C.yaffs_read(h, buffer, bufferIndex, buffer.length)) > 0; total += n)
+			;
+		yaffsfs_C.yaffs_close(h);
+		Unix.printf("caches %d: read %d bytes in %d byte blocks: %d ms\n", PrimitiveWrapperFactory.get(nCaches),
+				PrimitiveWrapperFactory.get(total), PrimitiveWrapperFactory.get(buffer.length),
+				PrimitiveWrapperFactory.get((int)(System.currentTimeMillis() - t)));
+
+		yaffsfs_C.yaffs_unlink(fn, 0);
+		yaffsfs_C.yaffs_unmount(Utils.StringToByteArray("/ram"), 0);
+		yaffs2.utils.Globals.yaffs_traceMask = traceMask;
+	}
+
+	static final int MOUNT_FULL_SCAN = 0;
+	static final int MOUNT_SUMMARY_SCAN = 1;
+	static final int MOUNT_CHECKPOINT = 2;
+	static final String[] mount_kind = { "full scan", "summary scan", "checkpoint" };
+
+	/**
+	 * Mounts /ram2k after a power loss (no checkpoint) or a clean unmount
+	 * and returns the best of nRuns mount times in ms.
+	 */
+	static int mount_timed(int kind, int nRuns)
+	{
+		byte[] mp = Utils.StringToByteArray("/ram2k");
+		yaffs2.port.yaffs_Device dev = yaffs2.platform.emulation.yaffscfg2k_C.ram2kDev;
+		int best = Integer.MAX_VALUE;
+		int run;
+		int t;
+
+		for (run = 0; run < nRuns; run++) {
+			if (kind == MOUNT_CHECKPOINT) {
+				yaffsfs_C.yaffs_unmount(mp, 0);
+			} else {
+				/* Power loss: drop the RAM state, no cache flush, no checkpoint */
+				dev.subField2.isMounted = false;
+			}
+			dev.subField1.blockSummaryDisabled = (kind == MOUNT_FULL_SCAN);
+			yaffs_nandemul2k_C.nandemul2k_ResetCounters();
+
+			t = (int)System.currentTimeMillis();
+			yaffsfs_C.yaffs_mount(mp, 0);
+			t = (int)System.currentTimeMillis() - t;
+			if (t < best)
+				best = t;
+		}
+		Unix.printf("%s: %d ms, %d data reads, %d spare reads\n", PrimitiveWrapperFactory.get(mount_kind[kind]),
+				PrimitiveWrapperFactory.get(best), PrimitiveWrapperFactory.get(yaffs_nandemul2k_C.nDataReads),
+				PrimitiveWrapperFactory.get(yaffs_nandemul2k_C.nSpareReads));
+		return best;
+	}
+
+	static boolean mount_verify(int nFiles, int fsize)
+	{
+		byte[] buffer = new byte[4096]; final int bufferIndex = 0;
+		int h;
+		int i;
+		int n;
+		int total;
+		boolean ok = true;
+
+		for (i = 0; i < nFiles && ok; i++) {
+			h = yaffsfs_C.yaffs_open(Utils.StringToByteArray("/ram2k/d" + (i % 10) + "/f" + i), 0, yaffsfs_H.O_RDONLY, 0);
+			for (total = 0; h >= 0 && (n = yaffsfs_C.yaffs_read(h, buffer, bufferIndex, buffer.length)) > 0; total += n)
+				if (buffer[0] != (byte)(i + total / buffer.length))
+					ok = false;
+			if (h < 0 || total != fsize)
+				ok = false;
+			yaffsfs_C.yaffs_close(h);
+		}
+		if (!ok)
+			Unix.printf("mount verify failed at file %d\n", PrimitiveWrapperFactory.get(i - 1));
+		return ok;
+	}
+
+	/**
+	 * Mount time of a 128MB yaffs2 device (2k pages, 64 pages per block)
+	 * holding nFiles files of fsize bytes: full tag scan and block summary
+	 * scan after a power loss, and checkpoint restore after a clean unmount.
+	 */
+	public static void mount_time_test(int nFiles, int fsize)
+	{
+		byte[] buffer = new byte[4096]; final int bufferIndex = 0;
+		int h;
+		int i;
+		int n;
+		int total;
+		int traceMask = yaffs2.utils.Globals.yaffs_traceMask;
+
+		yaffs2.utils.Globals.yaffs_traceMask = 0;
+		yaffs2.utils.Globals.configuration.yaffs_StartUp();
+		yaffsfs_C.yaffs_mount(Utils.StringToByteArray("/ram2k"), 0);
+
+		for (i = 0; i < 10; i++)
+			yaffsfs_C.yaffs_mkdir(Utils.StringToByteArray("/ram2k/d" + i), 0, 0666);
+
+		for (i = 0; i < nFiles; i++) {
+			h = yaffsfs_C.yaffs_open(Utils.StringToByteArray("/ram2k/d" + (i % 10) + "/f" + i), 0,
+					yaffsfs_H.O_CREAT | yaffsfs_H.O_RDWR | yaffsfs_H.O_TRUNC, yaffsfs_H.S_IREAD | yaffsfs_H.S_IWRITE);
+			for (total = 0; total < fsize; total += n) {
+				Unix.memset(buffer, bufferIndex, (byte)(i + total / buffer.length), buffer.length);
+				if ((n = yaffsfs_C.yaffs_write(h, buffer, bufferIndex, Math.min(buffer.length, fsize - total))) <= 0)
+					break;
+			}
+			yaffsfs_C.yaffs_close(h);
+		}
+		Unix.printf("%d files of %d bytes, %d blocks erased\n", PrimitiveWrapperFactory.get(nFiles),
+				PrimitiveWrapperFactory.get(fsize),
+				PrimitiveWrapperFactory.get(yaffs2.platform.emulation.yaffscfg2k_C.ram2kDev.subField3.nErasedBlocks));
+
+		mount_timed(MOUNT_FULL_SCAN, 5);
+		mount_verify(nFiles, fsize);
+		mount_timed(MOUNT_SUMMARY_SCAN, 5);
+		mount_verify(nFiles, fsize);
+		mount_timed(MOUNT_CHECKPOINT, 5);
+		mount_verify(nFiles, fsize);
+
+		yaffsfs_C.yaffs_unmount(Utils.StringToByteArray("/ram2k"), 0);
+		yaffs2.utils.Globals.yaffs_traceMask = traceMask;
+	}
+
 	/**
 	 * @param args
 	 */
@@ -414,6 +578,9 @@ public class Dtest_C extends yaffs2.port.Dtest_C_Additional {
 // PASSED:
 		
 		//cache_read_test();
+		//ram_throughput_test(1000000,100,0);
+		//ram_throughput_test(1000000,100,20);
+		//mount_time_test(200,200000);
 		//scan_pattern_test(Utils.StringToByteArray("/"),0,10000,10);
 		//yaffs_backward_scan_test(Utils.StringToByteArray("/"),0);
 		//scan_pattern_test(Utils.StringToByteArray("/"),0,10000,100);
@@ -0,0 +1,223 @@
+package yaffs2.port.emulation;
+
+import yaffs2.port.Guts_H;
+import yaffs2.port.yaffs_Device;
+import yaffs2.port.yaffs_ExtendedTags;
+import yaffs2.port.yaffs_PackedTags2;
+import yaffs2.port.yaffs_packedtags2_C;
+import yaffs2.port.ydirectenv;
+import yaffs2.port.yportenv;
+import yaffs2.port.yaffs_Device.eraseBlockInNANDInterface;
+import yaffs2.port.yaffs_Device.initialiseNANDInterface;
+import yaffs2.port.yaffs_Device.markNANDBlockBadInterface;
+import yaffs2.port.yaffs_Device.queryNANDBlockInterface;
+import yaffs2.port.yaffs_Device.readChunkWithTagsFromNANDInterface;
+import yaffs2.port.yaffs_Device.writeChunkWithTagsToNANDInterface;
+import yaffs2.utils.*;
+import yaffs2.utils.factory.PrimitiveWrapperFactory;
+
+public class yaffs_nandemul2k_C implements readChunkWithTagsFromNANDInterface,
+	markNANDBlockBadInterface, eraseBlockInNANDInterface, initialiseNANDInterface,
+	queryNANDBlockInterface, writeChunkWithTagsToNANDInterface
+{
+	// PORT
+	public static final yaffs_nandemul2k_C instance = new yaffs_nandemul2k_C();
+
+	/*
+	 * YAFFS: Yet Another Flash File System. A NAND-flash specific file system.
+	 *
+	 * Copyright (C) 2002-2007 Aleph One Ltd.
+	 *   for Toby Churchill Ltd and Brightstar Engineering
+	 *
+	 * Created by Charles Manning <charles@aleph1.co.uk>
+	 *
+	 * This program is free software; you can redistribute it and/or modify
+	 * it under the terms of the GNU General Public License version 2 as
+	 * published by the Free Software Foundation.
+	 */
+
+	/*
+	 * This provides a YAFFS nand emulation in RAM with 2kB pages,
+	 * laid out like yaffs_fileem2k (data followed by the packed tags in
+	 * the spare area). Blocks are only allocated once they are written,
+	 * so big devices are cheap as long as they are mostly empty.
+	 * The page access counters are used by the mount time benchmark.
+	 */
+
+	public static final int PAGE_DATA_SIZE = yaffs_fileem2k_H.PAGE_DATA_SIZE;
+	public static final int PAGE_SIZE = yaffs_fileem2k_H.PAGE_SIZE;
+	public static final int PAGES_PER_BLOCK = yaffs_fileem2k_H.PAGES_PER_BLOCK;
+	public static final int SIZE_IN_MB = 128;
+	public static final int SIZE_IN_BLOCKS = SIZE_IN_MB * yaffs_fileem2k_H.BLOCKS_PER_MB;
+
+	/* Page accesses since the last reset, data reads include their spare */
+	public static int nDataReads;
+	public static int nSpareReads;
+	public static int nPageWrites;
+	public static int nBlockErasures;
+
+	static byte[][] block;
+	static boolean[] blockBad;
+
+	static void CheckInit()
+	{
+		if (block == null) {
+			block = new byte[SIZE_IN_BLOCKS][];
+			blockBad = new boolean[SIZE_IN_BLOCKS];
+		}
+	}
+
+	public static int nandemul2k_GetBytesPerChunk()
+	{
+		return PAGE_DATA_SIZE;
+	}
+
+	public static int nandemul2k_GetChunksPerBlock()
+	{
+		return PAGES_PER_BLOCK;
+	}
+
+	public static int nandemul2k_GetNumberOfBlocks()
+	{
+		return SIZE_IN_BLOCKS;
+	}
+
+	public static void nandemul2k_ResetCounters()
+	{
+		nDataReads = 0;
+		nSpareReads = 0;
+		nPageWrites = 0;
+		nBlockErasures = 0;
+	}
+
+	public boolean writeChunkWithTagsToNAND(yaffs_Device dev, int chunkInNAND,
+			/*const __u8 **/ byte[] data, int dataIndex, yaffs_ExtendedTags tags)
+	{
+		int blk = chunkInNAND / PAGES_PER_BLOCK;
+		int pos = (chunkInNAND % PAGES_PER_BLOCK) * PAGE_SIZE;
+		int i;
+
+		CheckInit();
+
+		if (blk < 0 || blk >= SIZE_IN_BLOCKS)
+			return Guts_H.YAFFS_FAIL;
+
+		if (block[blk] == null) {
+			block[blk] = new byte[PAGES_PER_BLOCK * PAGE_SIZE];
+			Unix.memset(block[blk], 0, (byte)0xff, block[blk].length);
+		}
+
+		nPageWrites++;
+
+		/* Programming can only clear bits */
+		if (data != null) {
+			for (i = 0; i < dev.subField1.nDataBytesPerChunk; i++)
+				block[blk][pos + i] &= data[dataIndex + i];
+		}
+
+		if (tags != null) {
+			yaffs_PackedTags2 pt = new yaffs_PackedTags2();
+			yaffs_packedtags2_C.yaffs_PackTags2(pt, tags);
+
+			for (i = 0; i < yaffs_PackedTags2.SERIALIZED_LENGTH; i++)
+				block[blk][pos + PAGE_DATA_SIZE + i] &= pt.serialized[pt.offset + i];
+		}
+
+		return Guts_H.YAFFS_OK;
+	}
+
+	public boolean readChunkWithTagsFromNAND(yaffs_Device dev, int chunkInNAND,
+			/*__u8 **/ byte[] data, int dataIndex, yaffs_ExtendedTags tags)
+	{
+		int blk = chunkInNAND / PAGES_PER_BLOCK;
+		int pos = (chunkInNAND % PAGES_PER_BLOCK) * PAGE_SIZE;
+
+		CheckInit();
+
+		if (blk < 0 || blk >= SIZE_IN_BLOCKS)
+			return Guts_H.YAFFS_FAIL;
+
+		if (data != null)
+			nDataReads++;
+		else
+			nSpareReads++;
+
+		if (data != null) {
+			if (block[blk] == null)
+				Unix.memset(data, dataIndex, (byte)0xff, dev.subField1.nDataBytesPerChunk);
+			else
+				System.arraycopy(block[blk], pos, data, dataIndex, dev.subField1.nDataBytesPerChunk);
+		}
+
+		if (tags != null) {
+			yaffs_PackedTags2 pt = new yaffs_PackedTags2();
+
+			if (block[blk] == null)
+				Unix.memset(pt.serialized, pt.offset, (byte)0xff, yaffs_PackedTags2.SERIALIZED_LENGTH);
+			else
+				System.arraycopy(block[blk], pos + PAGE_DATA_SIZE, pt.serialized, pt.offset,
+						yaffs_PackedTags2.SERIALIZED_LENGTH);
+			yaffs_packedtags2_C.yaffs_UnpackTags2(tags, pt);
+		}
+
+		return Guts_H.YAFFS_OK;
+	}
+
+	public boolean markNANDBlockBad(yaffs_Device dev, int blockNo)
+	{
+		CheckInit();
+
+		if (blockNo < 0 || blockNo >= SIZE_IN_BLOCKS)
+			return Guts_H.YAFFS_FAIL;
+
+		blockBad[blockNo] = true;
+
+		return Guts_H.YAFFS_OK;
+	}
+
+	public boolean eraseBlockInNAND(yaffs_Device dev, int blockNumber)
+	{
+		CheckInit();
+
+		yportenv.T(yportenv.YAFFS_TRACE_ERASE, ("erase block %d" + ydirectenv.TENDSTR), PrimitiveWrapperFactory.get(blockNumber));
+
+		if (blockNumber < 0 || blockNumber >= SIZE_IN_BLOCKS) {
+			yportenv.T(yportenv.YAFFS_TRACE_ALWAYS, ("Attempt to erase non-existant block %d" + ydirectenv.TENDSTR),
+					PrimitiveWrapperFactory.get(blockNumber));
+			return Guts_H.YAFFS_FAIL;
+		}
+
+		nBlockErasures++;
+		block[blockNumber] = null;
+
+		return Guts_H.YAFFS_OK;
+	}
+
+	public boolean initialiseNAND(yaffs_Device dev)
+	{
+		CheckInit();
+
+		return Guts_H.YAFFS_OK;
+	}
+
+	public boolean queryNANDBlock(yaffs_Device dev, int blockNo, /*yaffs_BlockState*/ IntegerPointer state, IntegerPointer sequenceNumber)
+	{
+		yaffs_ExtendedTags tags = new yaffs_ExtendedTags();
+
+		CheckInit();
+
+		sequenceNumber.dereferenced = 0;
+
+		readChunkWithTagsFromNAND(dev, blockNo * dev.subField1.nChunksPerBlock, null, 0, tags);
+		if (blockBad[blockNo]) {
+			state.dereferenced = Guts_H.YAFFS_BLOCK_STATE_DEAD;
+		} else if (!tags.chunkUsed) {
+			state.dereferenced = Guts_H.YAFFS_BLOCK_STATE_EMPTY;
+		} else {
+			state.dereferenced = Guts_H.YAFFS_BLOCK_STATE_NEEDS_SCANNING;
+			sequenceNumber.dereferenced = tags.sequenceNumber;
+		}
+
+		return Guts_H.YAFFS_OK;
+	}
+}
@@ -9,6 +9,8 @@ import yaffs2.port.ydirectenv;
 import yaffs2.port.yportenv;
 import yaffs2.port.yaffs_Device.eraseBlockInNANDInterface;
 import yaffs2.port.yaffs_Device.initialiseNANDInterface;
+import yaffs2.port.yaffs_Device.markNANDBlockBadInterface;
+import yaffs2.port.yaffs_Device.queryNANDBlockInterface;
 import yaffs2.port.yaffs_Device.readChunkWithTagsFromNANDInterface;
 import yaffs2.port.yaffs_Device.writeChunkWithTagsToNANDInterface;
 import yaffs2.utils.*;
@@ -19,7 +21,9 @@ public class yaffs_ramdisk_C implements
 	yaffs_Device.writeChunkWithTagsToNANDInterface,
 	yaffs_Device.readChunkWithTagsFromNANDInterface, 
 	yaffs_Device.eraseBlockInNANDInterface, 
-	yaffs_Device.initialiseNANDInterface
+	yaffs_Device.initialiseNANDInterface,
+	yaffs_Device.markNANDBlockBadInterface,
+	yaffs_Device.queryNANDBlockInterface
 {
 	// PORT
 	public static final yaffs_ramdisk_C instance = new yaffs_ramdisk_C();
@@ -61,7 +65,7 @@ public class yaffs_ramdisk_C implements
 	/*#define*/static final int BLOCK_SIZE = (32 * 528); //16896
 	/*#define*/static final int BLOCKS_PER_MEG = ((1024*1024)/(32 * 512)); //64
 
-	static yramdisk_Device ramdisk;
+	static yramdisk_Device ramdisk = new yramdisk_Device();
 
 	static int _STATIC_LOCAL_CheckInit_initialised = 0;
 	
@@ -241,6 +245,31 @@ public class yaffs_ramdisk_C implements
 		return Guts_H.YAFFS_OK;
 	}
 
+	// PORT The "with tags" interface also needs these two functions,
+	// without them yaffs_CheckDevFunctions() refuses to mount the ram disk.
+	// A ram disk has no bad blocks.
+	public boolean markNANDBlockBad(yaffs_Device dev, int blockNo)
+	{
+		return Guts_H.YAFFS_OK;
+	}
 
+	public boolean queryNANDBlock(yaffs_Device dev, int blockNo, /*yaffs_BlockState*/ IntegerPointer state, IntegerPointer sequenceNumber)
+	{
+		yaffs_ExtendedTags tags = new yaffs_ExtendedTags();
+
+		sequenceNumber.dereferenced = 0;
+
+		readChunkWithTagsFromNAND(dev,blockNo * dev.subField1.nChunksPerBlock,null,0,tags);
+		if(tags.chunkUsed)
+		{
+			state.dereferenced = Guts_H.YAFFS_BLOCK_STATE_NEEDS_SCANNING;
+			sequenceNumber.dereferenced = tags.sequenceNumber;
+		}
+		else
+		{
+			state.dereferenced = Guts_H.YAFFS_BLOCK_STATE_EMPTY;
+		}
+		return Guts_H.YAFFS_OK;
+	}
 
 }
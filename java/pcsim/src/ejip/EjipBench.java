@@ -0,0 +1,436 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package ejip;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Throughput benchmarks for the unmodified ejip stack on the host
+ * JVM. The stack, the link layer and the remote host run in one
+ * thread, so one iteration is: the peer generates traffic, the link
+ * layer moves one frame, Net processes one packet.
+ * 
+ * Reports packets per second through the stack and the bytes
+ * allocated per packet (on a HotSpot JVM), which should be 0.
+ * 
+ * Usage: java ejip.EjipBench [ms per benchmark]
+ */
+public class EjipBench {
+
+	static final int STACK_IP = Ejip.makeIp(192, 168, 0, 2);
+	static final int PEER_IP = Ejip.makeIp(192, 168, 0, 1);
+	static final int[] STACK_MAC = { 0x00, 0xe0, 0x98, 0x33, 0xb0, 0xf8 };
+
+	static final int PKT_CNT = 16;
+	static final int PKT_SIZE = 1500;
+	/** Requests in flight for the request/response benchmarks */
+	static final int WINDOW = 4;
+
+	static abstract class Bench {
+
+		Ejip ejip;
+		Net net;
+
+		abstract String getName();
+
+		/** Create a fresh stack and its peer */
+		abstract void init();
+
+		/** One harness iteration */
+		abstract void step();
+
+		/** Packets that went through the stack so far */
+		abstract int packets();
+
+		/** Payload bytes transferred, 0 if not applicable */
+		int bytes() {
+			return 0;
+		}
+	}
+
+	/**
+	 * Benchmarks with a PeerLink and an in-process remote host.
+	 */
+	static abstract class PeerBench extends Bench {
+
+		PeerLink link;
+		HostPeer peer;
+
+		abstract HostPeer createPeer();
+
+		void init() {
+			ejip = new Ejip(PKT_CNT, PKT_SIZE);
+			link = new PeerLink(ejip, STACK_MAC, STACK_IP);
+			net = new Net(ejip);
+			peer = createPeer();
+		}
+
+		void step() {
+			peer.step();
+			link.run();
+			net.run();
+		}
+
+		int packets() {
+			return peer.rxCnt + link.txCnt;
+		}
+	}
+
+	/**
+	 * ARP requests from 64 hosts, more than the ARP table holds.
+	 */
+	static class ArpBench extends PeerBench {
+
+		String getName() {
+			return "ARP request/reply";
+		}
+
+		HostPeer createPeer() {
+			return new HostPeer(ejip, link, PEER_IP) {
+
+				int sent, replies;
+
+				void step() {
+					if (sent-replies<WINDOW) {
+						Packet p = alloc();
+						if (p!=null) {
+							arpRequest(p, PEER_IP + (sent & 0x3f), STACK_IP);
+							++sent;
+						}
+					}
+				}
+
+				void receive(Packet p) {
+					if (p.llh[6]==PeerLink.ETH_ARP && (p.buf[1] & 0xffff)==2) {
+						++replies;
+					}
+				}
+			};
+		}
+	}
+
+	/**
+	 * ICMP echo requests with 56 bytes of data.
+	 */
+	static class IcmpBench extends PeerBench {
+
+		String getName() {
+			return "ICMP echo";
+		}
+
+		HostPeer createPeer() {
+			return new HostPeer(ejip, link, PEER_IP) {
+
+				boolean arpDone;
+				int sent, replies;
+
+				void step() {
+					Packet p;
+					if (!arpDone) {
+						if (sent==0 && (p = alloc())!=null) {
+							arpRequest(p, PEER_IP, STACK_IP);
+							sent = -1;
+						}
+						return;
+					}
+					if (sent-replies<WINDOW && (p = alloc())!=null) {
+						int[] buf = p.buf;
+						p.len = 20+8+56;
+						buf[5] = 0x08000000;	// echo request
+						buf[6] = 0x12340000 + (sent & 0xffff);
+						for (int i=7; i<21; ++i) {
+							buf[i] = i;
+						}
+						buf[5] |= Ip.chkSum(buf, 5, p.len-20);
+						sendIp(p, Net.PROT_ICMP, STACK_IP);
+						++sent;
+					}
+				}
+
+				void receive(Packet p) {
+					if (p.llh[6]==PeerLink.ETH_ARP) {
+						arpDone = true;
+						sent = 0;
+					} else if ((p.buf[2]>>>16 & 0xff)==Net.PROT_ICMP
+							&& (p.buf[5]>>>24)==0) {
+						++replies;
+					}
+				}
+			};
+		}
+	}
+
+	/**
+	 * TCP bulk transfer from a handler on the stack to the peer,
+	 * which acknowledges every second segment.
+	 */
+	static class TcpBench extends PeerBench {
+
+		static final int PORT = 5001;
+		static final int SEG = Tcp.MSS;
+
+		int received;
+
+		String getName() {
+			return "TCP bulk send";
+		}
+
+		void init() {
+			super.init();
+			final Tcp tcp = net.getTcp();
+			tcp.addHandler(PORT, new TcpHandler() {
+
+				public Packet established(Packet p) {
+					return null;
+				}
+
+				public Packet request(Packet p) {
+					return null;
+				}
+
+				public boolean finished() {
+					return false;
+				}
+
+				public void run() {
+					TcpConnection tc = connection;
+					if (tc==null) {
+						return;
+					}
+					while (tcp.sendWindow(tc)>=SEG) {
+						Packet p = ejip.getFreePacket(link);
+						if (p==null) {
+							return;
+						}
+						p.setPayloadOffset(Tcp.DATA);
+						for (int i=0; i<SEG; i+=4) {
+							p.putInt(i);
+						}
+						if (!tcp.send(tc, p)) {
+							ejip.returnPacket(p);
+							return;
+						}
+					}
+				}
+			});
+		}
+
+		HostPeer createPeer() {
+			return new HostPeer(ejip, link, PEER_IP) {
+
+				static final int LOCAL_PORT = 40000;
+
+				int state;
+				int sndNxt = 1000;
+				int rcvNxt;
+				int unacked;
+
+				void step() {
+					Packet p;
+					if (state==0 && (p = alloc())!=null) {
+						arpRequest(p, PEER_IP, STACK_IP);
+						state = 1;
+					} else if (state==2 && (p = alloc())!=null) {
+						sendTcp(p, STACK_IP, LOCAL_PORT, PORT, sndNxt, 0, Tcp.FL_SYN, 0);
+						++sndNxt;
+						state = 3;
+					} else if (unacked!=0 && (p = alloc())!=null) {
+						sendTcp(p, STACK_IP, LOCAL_PORT, PORT, sndNxt, rcvNxt, Tcp.FL_ACK, 0);
+						unacked = 0;
+					}
+				}
+
+				void receive(Packet p) {
+					if (p.llh[6]==PeerLink.ETH_ARP) {
+						if (state==1) state = 2;
+						return;
+					}
+					int[] buf = p.buf;
+					if ((buf[2]>>>16 & 0xff)!=Tcp.PROTOCOL) {
+						return;
+					}
+					int flags = (buf[Tcp.FLAGS]>>>16) & 0xff;
+					int hlen = buf[Tcp.FLAGS]>>>28;
+					int datlen = p.len - 20 - (hlen<<2);
+					if ((flags & Tcp.FL_SYN)!=0) {
+						rcvNxt = buf[Tcp.SEQNR]+1;
+						unacked = 1;
+						state = 4;
+					} else if (datlen>0 && buf[Tcp.SEQNR]==rcvNxt) {
+						rcvNxt += datlen;
+						received += datlen;
+						++unacked;
+					} else if (datlen>0) {
+						unacked = 2;		// duplicate ACK for out of order data
+					}
+					if (unacked>=2) {
+						Packet ap = alloc();
+						if (ap!=null) {
+							sendTcp(ap, STACK_IP, LOCAL_PORT, PORT, sndNxt, rcvNxt, Tcp.FL_ACK, 0);
+							unacked = 0;
+						}
+					}
+				}
+			};
+		}
+
+		int bytes() {
+			return received;
+		}
+	}
+
+	/**
+	 * UDP echo over the unmodified Loopback link: a client handler
+	 * sends 64 byte requests to an echo handler on the same stack.
+	 */
+	static class UdpBench extends Bench {
+
+		static final int PORT = 7;
+
+		Loopback lo;
+		int requests, responses;
+
+		String getName() {
+			return "UDP echo (Loopback)";
+		}
+
+		void init() {
+			ejip = new Ejip(PKT_CNT, PKT_SIZE);
+			lo = new Loopback(ejip, STACK_IP);
+			net = new Net(ejip);
+			final Udp udp = net.getUdp();
+			requests = responses = 0;
+			// echo server
+			udp.addHandler(PORT, new UdpHandler() {
+				public void request(Packet p) {
+					++requests;
+					Udp.reply(p);
+				}
+				public void loop() {
+				}
+			});
+			// client, replies go to the source port PORT+10000
+			udp.addHandler(PORT+10000, new UdpHandler() {
+				public void request(Packet p) {
+					++responses;
+					send(udp, p);
+				}
+				public void loop() {
+				}
+			});
+			for (int i=0; i<WINDOW; ++i) {
+				send(udp, ejip.getFreePacket(lo));
+			}
+		}
+
+		void send(Udp udp, Packet p) {
+			p.setPayloadOffset(Udp.DATA);
+			for (int i=0; i<64; i+=4) {
+				p.putInt(responses+i);
+			}
+			udp.build(p, STACK_IP, PORT);
+		}
+
+		void step() {
+			lo.run();
+			net.run();
+		}
+
+		int packets() {
+			return requests+responses;
+		}
+	}
+
+	static com.sun.management.ThreadMXBean mx;
+
+	static long allocated() {
+		if (mx==null) {
+			return 0;
+		}
+		return mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Run the benchmark for ms milliseconds on a fresh stack.
+	 */
+	static void run(Bench b, int ms, boolean report) {
+
+		b.init();
+		long alloc = allocated();
+		long start = System.nanoTime();
+		long end = start + ms*1000000L;
+		long now;
+		int iter = 0;
+		do {
+			for (int i=0; i<1024; ++i) {
+				b.step();
+			}
+			iter += 1024;
+			now = System.nanoTime();
+		} while (now<end);
+		alloc = allocated()-alloc;
+
+		if (!report) {
+			return;
+		}
+		int pkt = b.packets();
+		double sec = (now-start)/1e9;
+		StringBuffer sb = new StringBuffer();
+		sb.append(b.getName());
+		while (sb.length()<24) sb.append(' ');
+		sb.append((long) (pkt/sec)).append(" pkt/s");
+		if (b.bytes()!=0) {
+			sb.append(", ").append((long) (b.bytes()/sec/1024)).append(" KB/s");
+		}
+		if (mx!=null) {
+			sb.append(", ").append(pkt==0 ? 0 : alloc/pkt).append(" bytes alloc/pkt");
+		}
+		sb.append(" (").append(pkt).append(" packets, ").append(iter).append(" iterations)");
+		System.out.println(sb);
+	}
+
+	public static void main(String[] args) {
+
+		int ms = args.length>0 ? Integer.parseInt(args[0]) : 2000;
+
+		java.lang.management.ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+		if (tmx instanceof com.sun.management.ThreadMXBean) {
+			mx = (com.sun.management.ThreadMXBean) tmx;
+			if (!mx.isThreadAllocatedMemorySupported()) {
+				mx = null;
+			} else {
+				mx.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+
+		Bench[] list = {
+			new ArpBench(),
+			new IcmpBench(),
+			new UdpBench(),
+			new TcpBench(),
+		};
+		// warm up the JIT
+		for (int i=0; i<list.length; ++i) {
+			run(list[i], ms/4, false);
+		}
+		for (int i=0; i<list.length; ++i) {
+			run(list[i], ms, true);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package ejip;
+
+/**
+ * An in-process remote host for the harness. It builds frames in
+ * packets from the stack's pool and delivers them through the
+ * PeerLink. Frames from the stack are only valid during receive().
+ */
+public abstract class HostPeer {
+
+	protected Ejip ejip;
+	protected PeerLink link;
+	/** IP address of the peer */
+	protected int ip;
+	/** MAC address of the peer as three 16-bit words */
+	protected int[] mac = { 0x0002, 0x0304, 0x0506 };
+
+	private int id;
+
+	/**
+	 * Frames delivered to the stack.
+	 */
+	int rxCnt;
+
+	protected HostPeer(Ejip ejip, PeerLink link, int ip) {
+		this.ejip = ejip;
+		this.link = link;
+		this.ip = ip;
+		link.setPeer(this);
+	}
+
+	/**
+	 * A frame from the stack.
+	 */
+	abstract void receive(Packet p);
+
+	/**
+	 * Generate traffic, called once per harness iteration.
+	 */
+	abstract void step();
+
+	protected Packet alloc() {
+		return ejip.getFreePacket(link);
+	}
+
+	protected void deliver(Packet p, int type) {
+		p.llh[3] = mac[0];
+		p.llh[4] = mac[1];
+		p.llh[5] = mac[2];
+		p.llh[6] = type;
+		++rxCnt;
+		link.deliver(p);
+	}
+
+	/**
+	 * Send an ARP request for dstIp with srcIp as sender address.
+	 */
+	protected void arpRequest(Packet p, int srcIp, int dstIp) {
+		int[] buf = p.buf;
+		buf[0] = 0x00010800;	// hw addr. space 1, Protocol add. space IP
+		buf[1] = 0x06040001;	// hw-len, sw-len, opcode request
+		buf[2] = (mac[0]<<16) + mac[1];
+		buf[3] = (mac[2]<<16) + (srcIp>>>16);
+		buf[4] = srcIp<<16;
+		buf[5] = 0;
+		buf[6] = dstIp;
+		p.len = 46;
+		deliver(p, PeerLink.ETH_ARP);
+	}
+
+	/**
+	 * Fill in the IP header from the peer to dst and deliver it.
+	 */
+	protected void sendIp(Packet p, int prot, int dst) {
+		int[] buf = p.buf;
+		buf[0] = 0x45000000 + p.len;
+		buf[1] = (++id)<<16;
+		buf[2] = (0x20<<24) + (prot<<16);
+		buf[3] = ip;
+		buf[4] = dst;
+		buf[2] |= Ip.chkSum(buf, 0, 20);
+		deliver(p, PeerLink.ETH_IP);
+	}
+
+	/**
+	 * Build a TCP segment without options. The data, if any, is
+	 * already in the packet starting at Tcp.DATA.
+	 */
+	protected void sendTcp(Packet p, int dst, int srcPort, int dstPort,
+			int seq, int ack, int flags, int datlen) {
+		int[] buf = p.buf;
+		p.len = (Tcp.DATA<<2) + datlen;
+		buf[Tcp.HEAD] = (srcPort<<16) + dstPort;
+		buf[Tcp.SEQNR] = seq;
+		buf[Tcp.ACKNR] = ack;
+		buf[Tcp.FLAGS] = 0x50000000 + (flags<<16) + 0xffff;
+		buf[Tcp.CHKSUM] = 0;
+		// pseudo header in the IP header words
+		buf[2] = (Tcp.PROTOCOL<<16) + p.len - 20;
+		buf[3] = ip;
+		buf[4] = dst;
+		buf[Tcp.CHKSUM] = Ip.chkSum(buf, 2, p.len-8)<<16;
+		sendIp(p, Tcp.PROTOCOL, dst);
+	}
+}
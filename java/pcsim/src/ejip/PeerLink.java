@@ -0,0 +1,82 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package ejip;
+
+/**
+ * Link layer for the host harness. Frames go to an in-process
+ * peer instead of a wire. It behaves like an Ethernet link:
+ * ARP frames are handled by Arp and outgoing IP packets get the
+ * destination MAC filled in, as in CS8900.
+ */
+public class PeerLink extends LinkLayer {
+
+	static final int ETH_ARP = 0x0806;
+	static final int ETH_IP = 0x0800;
+
+	private Arp arp;
+	private int[] eth;
+	private HostPeer peer;
+
+	/**
+	 * Number of frames sent to the peer.
+	 */
+	int txCnt;
+
+	public PeerLink(Ejip ejip, int[] mac, int ipaddr) {
+
+		super(ejip, ipaddr);
+		eth = mac;
+		arp = new Arp(ejip, this, ip, eth);
+	}
+
+	public void setPeer(HostPeer p) {
+		peer = p;
+	}
+
+	/**
+	 * A frame from the peer: llh[3..5] is the source MAC and
+	 * llh[6] the type field.
+	 */
+	public void deliver(Packet p) {
+
+		if (p.llh[6]==ETH_ARP) {
+			arp.receive(p, eth, ip);
+		} else {
+			rxQueue.enq(p);
+		}
+	}
+
+	/**
+	 * Hand at most one frame of the send queue to the peer.
+	 */
+	public void run() {
+
+		Packet p = txQueue.deq();
+		if (p!=null) {
+			p = arp.fillMAC(p);
+			if (p!=null) {
+				++txCnt;
+				peer.receive(p);
+				if (!p.isTcpOnFly) {
+					ejip.returnPacket(p);
+				}
+			}
+		}
+	}
+}
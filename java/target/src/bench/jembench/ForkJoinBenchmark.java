@@ -0,0 +1,84 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package jembench;
+
+import rtlib.ForkJoinExecutor;
+import rtlib.ForkJoinTask;
+
+/**
+ * A benchmark where the workload is split recursively into
+ * fork/join tasks, which are distributed to the cores by work
+ * stealing.
+ *
+ * Compared to ParallelBenchmark and EnumeratedParallelBenchmark
+ * the work is balanced dynamically, so the cores that finish
+ * early take over work from the slower ones.
+ *
+ */
+public abstract class ForkJoinBenchmark extends Benchmark {
+
+	static ForkJoinExecutor fje;
+
+	public ForkJoinBenchmark() {
+		synchronized (ForkJoinBenchmark.class) {
+			if (fje==null) {
+				fje = new ForkJoinExecutor(Util.getNrOfCores(),
+						ForkJoinExecutor.DEQUE_SIZE);
+			}
+		}
+	}
+
+	public int measure() {
+
+		int start, cnt, time;
+		// run the benchmark loop 1 times minimum
+		cnt = 1;
+		time = 0;
+		// create the worker threads
+		fje.start();
+
+		while (time < MIN_EXECUTE) {
+			cnt <<= 1;
+			if (cnt < 0) {
+				break;
+			}
+		    start = Util.getTimeMillis();
+			for (int i=0; i<cnt; ++i) {
+				ForkJoinTask t = getTask();
+				t.reset();
+				fje.invoke(t);
+			}
+		    time = Util.getTimeMillis() - start;
+		}
+
+		// let the worker threads terminate
+		fje.stop();
+		// save raw values
+		setRawResult(cnt, time);
+
+		// return iterations per second
+		return getResult();
+
+	}
+
+	/**
+	 * The root task of one benchmark iteration. The task is reset
+	 * before each iteration.
+	 */
+	public abstract ForkJoinTask getTask();
+}
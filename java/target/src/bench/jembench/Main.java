@@ -58,6 +58,7 @@ public final class Main {
 	private static final int BENCH_APPLICATION = 4;
 	private static final int BENCH_PARALLEL = 8;
 	private static final int BENCH_STREAM = 0x10;
+	private static final int BENCH_FLOAT = 0x20;
 	private static final String SPACES = "?           ";
 
 	// No Instances!
@@ -124,6 +125,26 @@ public final class Main {
 		System.out.println();
 	}
 
+	/**
+	 * Floating point operations of the software implementation.
+	 * Run with builds of different SoftFloat32/SoftFloat64 versions
+	 * to compare them.
+	 */
+	private static void runFloatBenchmarks() {
+		System.out.println("Float Benchmarks:");
+		execute(new jembench.micro.Fadd());
+		execute(new jembench.micro.FaddMixed());
+		execute(new jembench.micro.Fmul());
+		execute(new jembench.micro.Fscale());
+		execute(new jembench.micro.Fdiv());
+		execute(new jembench.micro.Fsqrt());
+		execute(new jembench.micro.F2i());
+		execute(new jembench.micro.I2f());
+		execute(new jembench.micro.Dadd());
+		execute(new jembench.micro.Ddiv());
+		System.out.println();
+	}
+
 	private static void runKernelBenchmarks() {
 		System.out.println("Kernel Benchmarks:");
 		execute(new jembench.kernel.Sieve());
@@ -144,6 +165,8 @@ public final class Main {
 		execute(new jembench.EnumeratedParallelBenchmark());
 		execute(new jembench.parallel.MatrixMul());
 		execute(new jembench.parallel.NQueens());
+		execute(new jembench.parallel.ForkJoinMatrixMul());
+		execute(new jembench.parallel.ForkJoinNQueens());
 		if (USE_FLOAT)
 			execute(new jembench.parallel.raytrace.Raytrace());
 		System.out.println();
@@ -152,6 +175,9 @@ public final class Main {
 	private static void runStreamBenchmarks() {
 		System.out.println("Stream Benchmarks:");
 		execute(new jembench.stream.AES());
+		execute(new jembench.stream.QueueThroughput(jembench.stream.QueueThroughput.SYNC));
+		execute(new jembench.stream.QueueThroughput(jembench.stream.QueueThroughput.MPSC));
+		execute(new jembench.stream.QueueThroughput(jembench.stream.QueueThroughput.MPMC));
 		System.out.println();
 	}
 
@@ -169,6 +195,7 @@ public final class Main {
 	else if("-application".startsWith(arg))  benches |= BENCH_APPLICATION;
 	else if("-parallel"   .startsWith(arg))  benches |= BENCH_PARALLEL;
 	else if("-stream"     .startsWith(arg))  benches |= BENCH_STREAM;
+	else if("-float"      .startsWith(arg))  benches |= BENCH_FLOAT;
 	else {
 	  System.err.println("jembench.Main [-<bench_group> ...]\n\n"
 			     + "The JemBench Suite.\n"
@@ -178,14 +205,16 @@ public final class Main {
 			     + "\t-kernel\n"
 			     + "\t-application\n"
 			     + "\t-parallel\n"
-			     + "\t-stream\n\n"
+			     + "\t-stream\n"
+			     + "\t-float\n\n"
 			     + "Without the selection of benchmark groups, all benchmarks will be executed.\n"
+			     + "The float group is only included when enabled by USE_FLOAT.\n"
 			     + "All Options may be given as unique prefix.\n");
 	  return;
 	}
       }
     }
-    if(benches == 0)  benches = -1;
+    if(benches == 0)  benches = USE_FLOAT ? -1 : ~BENCH_FLOAT;
 
     // Print Info & Execute Benchmark Groups
     printInfo();
@@ -195,5 +224,6 @@ public final class Main {
     if((benches & BENCH_APPLICATION) != 0)  runApplicationBenchmarks();
     if((benches & BENCH_PARALLEL)    != 0)  runParallelBenchmarks();
     if((benches & BENCH_STREAM)      != 0)  runStreamBenchmarks();
+    if((benches & BENCH_FLOAT)       != 0)  runFloatBenchmarks();
   }
 }
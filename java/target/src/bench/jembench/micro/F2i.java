@@ -0,0 +1,49 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package jembench.micro;
+
+import jembench.SerialBenchmark;
+
+/**
+ * Conversion to int with the fast path of SoftFloat32.intValue().
+ */
+public class F2i extends SerialBenchmark {
+
+	public String toString() {
+		return "f2i";
+	}
+
+	public int perform(int cnt) {
+		float a = 12345.6f;
+		int x = 0;
+		for (int i=0; i<cnt; ++i) {
+			x = (int) a;
+		}
+		return x;
+	}
+
+	public int overhead(int cnt) {
+		int a = 12345;
+		int x = 0;
+		for (int i=0; i<cnt; ++i) {
+			x = a;
+		}
+		return x;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package jembench.micro;
+
+import jembench.SerialBenchmark;
+
+/**
+ * Addition of operands with different signs, the general path of
+ * SoftFloat32.float_add().
+ */
+public class FaddMixed extends SerialBenchmark {
+
+	public String toString() {
+		return "fadd mixed sign";
+	}
+
+	public int perform(int cnt) {
+		float a = 123.25f;
+		float b = -45.5f;
+		float x = 0;
+		for (int i=0; i<cnt; ++i) {
+			x = a+b;
+		}
+		return (int) x;
+	}
+
+	public int overhead(int cnt) {
+		float a = 123.25f;
+		float b = -45.5f;
+		float x = 0;
+		for (int i=0; i<cnt; ++i) {
+			x = a;
+		}
+		return (int) x;
+	}
+}
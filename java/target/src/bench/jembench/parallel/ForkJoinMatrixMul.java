@@ -0,0 +1,80 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package jembench.parallel;
+
+import jembench.ForkJoinBenchmark;
+import rtlib.ForkJoinTask;
+
+/**
+ * The matrix multiplication of MatrixMul on the fork/join executor.
+ * The column range is split in halves down to single columns.
+ * The task tree is allocated once in the constructor.
+ *
+ */
+public class ForkJoinMatrixMul extends ForkJoinBenchmark {
+
+	final static int N = MatrixMul.N;
+
+	private MatrixMul mm;
+	private Range root;
+
+	/**
+	 * Computes the columns lo to hi-1.
+	 */
+	class Range extends ForkJoinTask {
+
+		final int lo, hi;
+		Range left, right;
+
+		Range(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+			if (hi-lo>1) {
+				int mid = (lo+hi)>>>1;
+				left = new Range(lo, mid);
+				right = new Range(mid, hi);
+			}
+		}
+
+		protected void compute() {
+			if (left==null) {
+				mm.executeUnit(lo);
+			} else {
+				left.reset();
+				right.reset();
+				fork(left);
+				right.invoke(this);
+				join(left);
+			}
+		}
+	}
+
+	public ForkJoinMatrixMul() {
+		mm = new MatrixMul();
+		root = new Range(0, N);
+	}
+
+	public String toString() {
+
+		return "matrix multiplication fork/join";
+	}
+
+	public ForkJoinTask getTask() {
+		return root;
+	}
+}
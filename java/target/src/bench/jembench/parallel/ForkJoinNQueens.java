@@ -0,0 +1,124 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package jembench.parallel;
+
+import jembench.ForkJoinBenchmark;
+import rtlib.ForkJoinTask;
+
+/**
+ * The N-Queens benchmark of NQueens on the fork/join executor.
+ * Instead of handing out the pre-placements of the first L columns
+ * under a lock, each pre-placement of a column is a task that forks
+ * the placements of the next column. The tasks are created once in
+ * the constructor.
+ *
+ */
+public class ForkJoinNQueens extends ForkJoinBenchmark {
+
+	private final int N;
+	private final int L;
+	private final Placement root;
+
+	/**
+	 * Counts the completions of a partially filled board.
+	 */
+	class Placement extends ForkJoinTask {
+
+		final int bh, bu, bd;
+		final Placement[] next;
+		long cnt;
+
+		Placement(int bh, int bu, int bd, int col) {
+			this.bh = bh;
+			this.bu = bu;
+			this.bd = bd;
+			if (col<L) {
+				int slots = ~(bh | bu | bd);
+				int n = 0;
+				for (int s=slots; s!=0; s &= s-1) {
+					++n;
+				}
+				next = new Placement[n];
+				n = 0;
+				while (slots != 0) {
+					final int slot;
+					slots ^= (slot = slots & -slots);
+					next[n++] = new Placement(bh | slot, (bu | slot) << 1,
+							(bd | slot) >>> 1, col+1);
+				}
+			} else {
+				next = null;
+			}
+		}
+
+		protected void compute() {
+			if (next==null) {
+				cnt = NQueens.q(bh, bu, bd);
+				return;
+			}
+			int n = next.length;
+			for (int i=0; i<n; ++i) {
+				next[i].reset();
+			}
+			// keep the first one for this core
+			for (int i=1; i<n; ++i) {
+				fork(next[i]);
+			}
+			long sum = 0;
+			if (n>0) {
+				next[0].invoke(this);
+				sum = next[0].cnt;
+			}
+			for (int i=n-1; i>0; --i) {
+				join(next[i]);
+				sum += next[i].cnt;
+			}
+			cnt = sum;
+		}
+	}
+
+	/** Create Benchmark for Standard Size. */
+	public ForkJoinNQueens() {
+		this(9, 3);
+	}
+
+	public ForkJoinNQueens(final int N, final int L) {
+
+		// Check Problem Spec
+		if ((L <= 0) || (L > N) || (N > 32))
+			throw new IllegalArgumentException();
+		this.N = N;
+		this.L = L;
+		root = new Placement(N < 32 ? -1 << N : 0, 0, 0, 0);
+	}
+
+	public String toString() {
+		return "NQueens fork/join(N=" + N + ";L=" + L + ")";
+	}
+
+	public ForkJoinTask getTask() {
+		return root;
+	}
+
+	/**
+	 * @return the solution count of the last run
+	 */
+	public long getSolutions() {
+		return root.cnt;
+	}
+}
@@ -144,7 +144,7 @@ public class NQueens extends ParallelBenchmark implements Runnable {
 	}
 
 	// Recursively count the Completions of a Subboard
-	private static long q(final int bh, final int bu, final int bd) {
+	static long q(final int bh, final int bu, final int bd) {
 		int slots = ~(bh | bu | bd);
 		if (slots == 0)
 			return (bh == -1) ? 1 : 0;
@@ -0,0 +1,167 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package jembench.stream;
+
+import jembench.Runner;
+import jembench.StreamBenchmark;
+import jembench.Util;
+import rtlib.MPMCQueue;
+import rtlib.MPSCQueue;
+
+/**
+ * Throughput of a queue shared by several producer and consumer
+ * cores. One benchmark iteration is the transfer of one element.
+ * Running the benchmark on configurations with a different number
+ * of cores gives the scaling of the queue implementation.
+ *
+ * Three variants:
+ * <ul>
+ * <li>SYNC: the synchronized BufferQueue, n-1 producers, one consumer</li>
+ * <li>MPSC: rtlib.MPSCQueue, n-1 producers, one consumer</li>
+ * <li>MPMC: rtlib.MPMCQueue, n/2 producers, n/2 consumers</li>
+ * </ul>
+ *
+ */
+public class QueueThroughput extends StreamBenchmark {
+
+	public final static int SYNC = 0;
+	public final static int MPSC = 1;
+	public final static int MPMC = 2;
+
+	private final static String[] NAMES = { "SYNC", "MPSC", "MPMC" };
+
+	private final static int CAPACITY = 16;
+
+	private final int kind;
+	private final BufferQueue bq;
+	private final MPMCQueue<byte[]> q;
+	private final byte[] token;
+
+	private final Producer[] producer;
+	private final Consumer[] consumer;
+	private final Runnable[] runners;
+
+	private int blockCnt;
+	private volatile boolean finished;
+
+	public QueueThroughput(int kind) {
+
+		this.kind = kind;
+		bq = kind==SYNC ? new BufferQueue(CAPACITY) : null;
+		q = kind==MPSC ? new MPSCQueue<byte[]>(CAPACITY) :
+			kind==MPMC ? new MPMCQueue<byte[]>(CAPACITY) : null;
+		token = new byte[1];
+
+		int cores = Util.getNrOfCores();
+		int nrCons = kind==MPMC ? cores/2 : 1;
+		if (nrCons<1) nrCons = 1;
+		int nrProd = cores-nrCons;
+		if (nrProd<1) nrProd = 1;
+
+		producer = new Producer[nrProd];
+		consumer = new Consumer[nrCons];
+		runners = new Runnable[nrProd+nrCons];
+		for (int i=0; i<nrProd; ++i) {
+			producer[i] = new Producer();
+			runners[i] = producer[i];
+		}
+		for (int i=0; i<nrCons; ++i) {
+			consumer[i] = new Consumer();
+			runners[nrProd+i] = consumer[i];
+		}
+	}
+
+	public String toString() {
+		return "Queue " + NAMES[kind] + " " + producer.length + "/" + consumer.length;
+	}
+
+	public Runnable[] getWorkers() {
+		return runners;
+	}
+
+	protected int getDepth() {
+		return runners.length;
+	}
+
+	public void reset(int cnt) {
+		finished = false;
+		blockCnt = cnt;
+		int n = producer.length;
+		for (int i=0; i<n; ++i) {
+			producer[i].quota = cnt/n + (i<cnt%n ? 1 : 0);
+			producer[i].cnt = 0;
+		}
+		for (int i=0; i<consumer.length; ++i) {
+			consumer[i].cnt = 0;
+		}
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	boolean enq(byte[] b) {
+		if (kind==SYNC) {
+			return bq.checkedEnq(b);
+		}
+		return q.offer(b);
+	}
+
+	byte[] deq() {
+		if (kind==SYNC) {
+			return bq.deq();
+		}
+		return q.poll();
+	}
+
+	int received() {
+		int sum = 0;
+		for (int i=0; i<consumer.length; ++i) {
+			sum += consumer[i].cnt;
+		}
+		return sum;
+	}
+
+	private class Producer implements Runnable {
+
+		int quota;
+		int cnt;
+
+		public void run() {
+			if (cnt<quota) {
+				if (enq(token)) {
+					++cnt;
+				}
+			}
+		}
+	}
+
+	private class Consumer implements Runnable {
+
+		volatile int cnt;
+
+		public void run() {
+			if (deq()!=null) {
+				++cnt;
+			} else if (received()>=blockCnt) {
+				finished = true;
+				Runner.stop();
+			}
+		}
+	}
+}
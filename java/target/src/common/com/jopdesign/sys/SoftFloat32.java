@@ -265,6 +265,19 @@ public final class SoftFloat32 {
 	 * @return the <code>float</code> representation of the argument
 	 */
 	public static int intToFloat(int x) {
+		// fast path: integers up to 24 bits are exact, no rounding
+		if (x > -0x01000000 && x < 0x01000000) {
+			if (x == 0) {
+				return 0;
+			}
+			int sign = 0;
+			if (x < 0) {
+				sign = 0x80000000;
+				x = -x;
+			}
+			int z = BitUtils.countLeadingZeros(x);
+			return sign | ((158 - z) << 23) | ((x << (z - 8)) & 0x007fffff);
+		}
 		if (x < 0) {
 			return pack(true, 0, -x);
 		}
@@ -365,6 +378,21 @@ public final class SoftFloat32 {
 	 * @return the <code>int</code> representation of the argument
 	 */
 	public static int intValue(int f) {
+		// fast path: |f| < 2^31 without long arithmetic
+		int e = (f >> 23) & 0xff;
+		if (e < 127) {
+			// zero, subnormal or |f| < 1
+			return 0;
+		}
+		if (e < 158) {
+			int m = (f & 0x007fffff) | 0x00800000;
+			if (e >= 150) {
+				m <<= e - 150;
+			} else {
+				m >>>= 150 - e;
+			}
+			return (f < 0 ? -m : m);
+		}
 		long x = longValue(f);
 		if (x >= Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
@@ -420,6 +448,13 @@ public final class SoftFloat32 {
 	 * @return  the sum of the two arguments
 	 */
 	public static int float_add(int f1, int f2) {
+		// fast path: both operands normal with the same sign
+		int e1 = (f1 >> 23) & 0xff;
+		int e2 = (f2 >> 23) & 0xff;
+		if ((f1 ^ f2) >= 0 && e1 != 0 && e1 != 0xff && e2 != 0 && e2 != 0xff) {
+			return addMagnitudes(f1, e1, f2, e2);
+		}
+
 		if (isNaN(f1) || isNaN(f2)) {
 			return 0x7fc00000;
 		}
@@ -502,6 +537,48 @@ public final class SoftFloat32 {
 		return f;
 	}
 
+	/**
+	 * Sum of two normal numbers with the same sign. The exponents are
+	 * passed unpacked. Only an overflow to infinity has to be handled,
+	 * the result cannot be zero or subnormal.
+	 */
+	private static int addMagnitudes(int f1, int e1, int f2, int e2) {
+		if (e1 < e2) {
+			int t = f1; f1 = f2; f2 = t;
+			t = e1; e1 = e2; e2 = t;
+		}
+		int dx = e1 - e2;
+		if (dx > 25) {
+			// f2 is less than half an ulp of f1
+			return f1;
+		}
+		// implied one at bit 29, 6 guard bits
+		int m1 = ((f1 & 0x007fffff) | 0x00800000) << 6;
+		int m2 = ((f2 & 0x007fffff) | 0x00800000) << 6;
+		if (dx != 0) {
+			m2 = BitUtils.stickyRightShift(m2, dx);
+		}
+		int m = m1 + m2;
+		if (m >= 0x40000000) {
+			m = (m >>> 1) | (m & 1);
+			e1++;
+		}
+		// round half even
+		int r = m & 0x3f;
+		m >>>= 6;
+		if (r > 0x20 || (r == 0x20 && (m & 1) != 0)) {
+			m++;
+			if (m == 0x01000000) {
+				m = 0x00800000;
+				e1++;
+			}
+		}
+		if (e1 >= 0xff) {
+			return (f1 & 0x80000000) | 0x7f800000;
+		}
+		return (f1 & 0x80000000) | (e1 << 23) | (m & 0x007fffff);
+	}
+
 	/**
 	 * Returns the difference of the two <code>float</code> arguments according to
 	 * <a href="http://java.sun.com/docs/books/jls/second_edition/html/expressions.doc.html#13510">section
@@ -529,6 +606,21 @@ public final class SoftFloat32 {
 	 * @return  the product of the two arguments
 	 */
 	public static int float_mul(int f1, int f2) {
+		// fast path: scaling of a normal number by a power of two
+		int e1 = (f1 >> 23) & 0xff;
+		int e2 = (f2 >> 23) & 0xff;
+		if (e1 != 0 && e1 != 0xff && e2 != 0 && e2 != 0xff) {
+			int e = e1 + e2 - 127;
+			if (e > 0 && e < 0xff) {
+				if ((f2 & 0x007fffff) == 0) {
+					return ((f1 ^ f2) & 0x80000000) | (e << 23) | (f1 & 0x007fffff);
+				}
+				if ((f1 & 0x007fffff) == 0) {
+					return ((f1 ^ f2) & 0x80000000) | (e << 23) | (f2 & 0x007fffff);
+				}
+			}
+		}
+
 		if (isNaN(f1) || isNaN(f2)) {
 			return 0x7fc00000;
 		}
@@ -572,12 +664,28 @@ public final class SoftFloat32 {
 	 * @return  the quotient of the two arguments
 	 */
 	public static int float_div(int f1, int f2) {
+		boolean negative = (f1 < 0) ^ (f2 < 0);
+
+		// fast paths for normal operands
+		int e1 = (f1 >> 23) & 0xff;
+		int e2 = (f2 >> 23) & 0xff;
+		if (e1 != 0 && e1 != 0xff && e2 != 0 && e2 != 0xff) {
+			if ((f2 & 0x007fffff) == 0) {
+				// division by a power of two
+				int e = e1 - e2 + 127;
+				if (e > 0 && e < 0xff) {
+					return ((f1 ^ f2) & 0x80000000) | (e << 23) | (f1 & 0x007fffff);
+				}
+			}
+			if (RECIP_SEED != null) {
+				return divMantissas(negative, f1, e1, f2, e2);
+			}
+		}
+
 		if (isNaN(f1) || isNaN(f2)) {
 			return 0x7fc00000;
 		}
 
-		boolean negative = (f1 < 0) ^ (f2 < 0);
-
 		// special handling of infinity
 		boolean n1 = isInfinite(f1);
 		boolean n2 = isInfinite(f2);
@@ -627,6 +735,73 @@ public final class SoftFloat32 {
 		return pack(negative, x, m);
 	}
 
+	/**
+	 * Reciprocal seeds: floor(2^30/((i+129)*256)) is a lower bound of
+	 * 2^30/d for all d with d>>>8 == i+128, about 7 bits precise.
+	 */
+	private static final int[] RECIP_SEED = {
+		32513, 32263, 32017, 31775, 31536, 31300, 31068, 30840,
+		30615, 30393, 30174, 29959, 29746, 29537, 29330, 29127,
+		28926, 28728, 28532, 28339, 28149, 27962, 27776, 27594,
+		27413, 27235, 27060, 26886, 26715, 26546, 26379, 26214,
+		26051, 25890, 25731, 25575, 25420, 25266, 25115, 24966,
+		24818, 24672, 24528, 24385, 24244, 24105, 23967, 23831,
+		23696, 23563, 23431, 23301, 23172, 23045, 22919, 22795,
+		22671, 22550, 22429, 22310, 22192, 22075, 21959, 21845,
+		21732, 21620, 21509, 21399, 21290, 21183, 21076, 20971,
+		20867, 20763, 20661, 20560, 20460, 20360, 20262, 20164,
+		20068, 19972, 19878, 19784, 19691, 19599, 19508, 19418,
+		19328, 19239, 19152, 19065, 18978, 18893, 18808, 18724,
+		18641, 18558, 18477, 18396, 18315, 18236, 18157, 18078,
+		18001, 17924, 17848, 17772, 17697, 17623, 17549, 17476,
+		17403, 17331, 17260, 17189, 17119, 17050, 16980, 16912,
+		16844, 16777, 16710, 16644, 16578, 16513, 16448, 16384,
+	};
+
+	/**
+	 * Quotient of two normal numbers. The reciprocal of the divisor
+	 * is seeded from RECIP_SEED and refined by one Newton iteration to
+	 * about 14 bits. The quotient is then generated in two digits of
+	 * 12 bits. A digit estimate is never too large and at most 2 too
+	 * small, the exact remainder corrects it. All arithmetic is int;
+	 * the remainder computation may overflow, but the exact result
+	 * fits into 32 bits.
+	 */
+	private static int divMantissas(boolean negative, int f1, int e1, int f2, int e2) {
+		int a = (f1 & 0x007fffff) | 0x00800000;
+		int b = (f2 & 0x007fffff) | 0x00800000;
+		int x = e1 - e2 - 25;
+		if (a < b) {
+			a <<= 1;
+			x--;
+		}
+
+		// y <= 2^30/d with d = (b>>>8)+1
+		int d = (b >>> 8) + 1;
+		int y = RECIP_SEED[(b >>> 16) & 0x7f];
+		int e = (1 << 30) - d * y;
+		y += (y * (e >>> 15)) >>> 15;
+
+		// integer digit is 1
+		int r = a - b;
+		int q = 1;
+		for (int i = 0; i < 2; ++i) { // @WCA loop=2
+			int digit = ((r >>> 8) * y) >>> 18;
+			r = (r << 12) - digit * b;
+			while (r >= b) { // @WCA loop<=2
+				r -= b;
+				digit++;
+			}
+			q = (q << 12) | digit;
+		}
+		// one guard bit, the remainder goes into the sticky bit
+		q <<= 1;
+		if (r != 0) {
+			q |= 1;
+		}
+		return pack(negative, x, q);
+	}
+
 	/**
 	 * Returns the remainder of the two <code>float</code> arguments according to
 	 * <a href="http://java.sun.com/docs/books/jls/second_edition/html/expressions.doc.html#24956">section
@@ -669,6 +844,89 @@ public final class SoftFloat32 {
 	}
 
 
+	/**
+	 * floor(sqrt(i*256)) for i in [64, 256), the first 8 bits of a
+	 * square root. Shared with SoftFloat64.
+	 */
+	static final int[] SQRT_SEED = {
+		128, 128, 129, 130, 131, 132, 133, 134, 135, 136, 137, 138, 139, 140, 141, 142,
+		143, 144, 144, 145, 146, 147, 148, 149, 150, 150, 151, 152, 153, 154, 155, 155,
+		156, 157, 158, 159, 160, 160, 161, 162, 163, 163, 164, 165, 166, 167, 167, 168,
+		169, 170, 170, 171, 172, 173, 173, 174, 175, 176, 176, 177, 178, 178, 179, 180,
+		181, 181, 182, 183, 183, 184, 185, 185, 186, 187, 187, 188, 189, 189, 190, 191,
+		192, 192, 193, 193, 194, 195, 195, 196, 197, 197, 198, 199, 199, 200, 201, 201,
+		202, 203, 203, 204, 204, 205, 206, 206, 207, 208, 208, 209, 209, 210, 211, 211,
+		212, 212, 213, 214, 214, 215, 215, 216, 217, 217, 218, 218, 219, 219, 220, 221,
+		221, 222, 222, 223, 224, 224, 225, 225, 226, 226, 227, 227, 228, 229, 229, 230,
+		230, 231, 231, 232, 232, 233, 234, 234, 235, 235, 236, 236, 237, 237, 238, 238,
+		239, 240, 240, 241, 241, 242, 242, 243, 243, 244, 244, 245, 245, 246, 246, 247,
+		247, 248, 248, 249, 249, 250, 250, 251, 251, 252, 252, 253, 253, 254, 254, 255,
+	};
+
+	/**
+	 * Mimics <a href="http://java.sun.com/j2se/1.4.2/docs/api/java/lang/Math.html#sqrt(double)">Math.sqrt(double)</a>,
+	 * using single precision.
+	 * <p>
+	 * The root of the 15 most significant bits is seeded from SQRT_SEED
+	 * and refined by one Newton iteration. A second Newton iteration
+	 * on the exact remainder yields the remaining bits. All arithmetic
+	 * is int.
+	 */
+	public static int sqrt(int f) {
+		if (isZero(f)) {
+			return f;
+		} else if (f < 0 || isNaN(f)) {
+			return 0x7fc00000;
+		} else if (f == 0x7f800000) {
+			return f;
+		}
+		// f is positive, nonzero, and finite
+
+		// unpack and normalize, f = m*2^x
+		int e = f >>> 23;
+		int m;
+		int x;
+		if (e != 0) {
+			m = (f & 0x007fffff) | 0x00800000;
+			x = e - 150;
+		} else {
+			int z = BitUtils.countLeadingZeros(f) - 8;
+			m = f << z;
+			x = -149 - z;
+		}
+		// n = m*2^k in [2^48, 2^50) with x-k even, the root q of n
+		// has 25 bits
+		int k = ((x & 1) != 0) ? 25 : 26;
+		int t = m << (k - 20); // n>>>20
+
+		// root of the upper bits: seed and one Newton iteration
+		int s = SQRT_SEED[(t >>> 22) - 64] << 7;
+		s = (s + t / s) >>> 1;
+		while (s * s > t) { // @WCA loop<=2
+			s--;
+		}
+		while ((s + 1) * (s + 1) <= t) { // @WCA loop<=2
+			s++;
+		}
+
+		// Newton iteration with the exact remainder, q is at most 2 too large
+		int q = (s << 10) + (((t - s * s) << 9) / s);
+		// the remainder n-q*q fits into an int, n is m<<k modulo 2^32
+		int r = (m << k) - q * q;
+		while (r < 0) { // @WCA loop<=2
+			r += (q << 1) - 1;
+			q--;
+		}
+
+		// one guard bit, the remainder goes into the sticky bit
+		q <<= 1;
+		if (r != 0) {
+			q |= 1;
+		}
+		return pack(false, ((x - k) >> 1) - 1, q);
+	}
+
+
 	/////////////////////////////////////////////////////////////////////////////
 	// Rounding
 	/////////////////////////////////////////////////////////////////////////////
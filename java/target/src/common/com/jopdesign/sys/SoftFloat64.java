@@ -254,7 +254,19 @@ public class SoftFloat64 {
 	 * @return the <code>double</code> representation of the argument
 	 */
 	public static long intToDouble(int x) {
-		return longToDouble(x);
+		// an int is always exact, no rounding
+		if (x == 0) {
+			return 0L;
+		}
+		long sign = 0L;
+		if (x < 0) {
+			sign = 0x8000000000000000L;
+			x = -x;
+		}
+		// x is unsigned now (Integer.MIN_VALUE stays negative)
+		int z = BitUtils.countLeadingZeros(x);
+		long m = (((long) x) & 0xffffffffL) << (z + 21);
+		return sign | (((long) (1054 - z)) << 52) | (m & FRACTION_MASK);
 	}
 
 	/**
@@ -315,6 +327,18 @@ public class SoftFloat64 {
 	 * @return the <code>int</code> representation of the argument
 	 */
 	public static int intValue(long d) {
+		// fast path: |d| < 2^31 from the upper 32 bits of the mantissa
+		int hi = (int) (d >>> 32);
+		int e = (hi >>> 20) & 0x7ff;
+		if (e < 1023) {
+			// zero, subnormal or |d| < 1
+			return 0;
+		}
+		if (e < 1054) {
+			int m = (((hi & 0x000fffff) | 0x00100000) << 11) | (((int) d) >>> 21);
+			m >>>= 1054 - e;
+			return (hi < 0 ? -m : m);
+		}
 		long x = longValue(d);
 		if (x >= Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
@@ -370,6 +394,13 @@ public class SoftFloat64 {
 	 * @return  the sum of the two arguments
 	 */
 	public static long double_add(long d1, long d2) {
+		// fast path: both operands normal with the same sign
+		int e1 = ((int) (d1 >>> 52)) & 0x7ff;
+		int e2 = ((int) (d2 >>> 52)) & 0x7ff;
+		if ((d1 ^ d2) >= 0L && e1 != 0 && e1 != 0x7ff && e2 != 0 && e2 != 0x7ff) {
+			return addMagnitudes(d1, e1, d2, e2);
+		}
+
 		if (isNaN(d1) || isNaN(d2)) {
 			return 0x7ff8000000000000L;
 		}
@@ -452,6 +483,48 @@ public class SoftFloat64 {
 		return d;
 	}
 
+	/**
+	 * Sum of two normal numbers with the same sign. The exponents are
+	 * passed unpacked. Only an overflow to infinity has to be handled,
+	 * the result cannot be zero or subnormal.
+	 */
+	private static long addMagnitudes(long d1, int e1, long d2, int e2) {
+		if (e1 < e2) {
+			long t = d1; d1 = d2; d2 = t;
+			int u = e1; e1 = e2; e2 = u;
+		}
+		int dx = e1 - e2;
+		if (dx > 54) {
+			// d2 is less than half an ulp of d1
+			return d1;
+		}
+		// implied one at bit 61, 9 guard bits
+		long m1 = ((d1 & FRACTION_MASK) | IMPLIED_ONE) << 9;
+		long m2 = ((d2 & FRACTION_MASK) | IMPLIED_ONE) << 9;
+		if (dx != 0) {
+			m2 = BitUtils.stickyRightShift(m2, dx);
+		}
+		long m = m1 + m2;
+		if (m >= 0x4000000000000000L) {
+			m = (m >>> 1) | (m & 1L);
+			e1++;
+		}
+		// round half even
+		int r = ((int) m) & 0x1ff;
+		m >>>= 9;
+		if (r > 0x100 || (r == 0x100 && (m & 1L) != 0L)) {
+			m++;
+			if (m == 0x0020000000000000L) {
+				m = IMPLIED_ONE;
+				e1++;
+			}
+		}
+		if (e1 >= 0x7ff) {
+			return (d1 & SIGN_MASK) | POSITIVE_INFINITY;
+		}
+		return (d1 & SIGN_MASK) | (((long) e1) << 52) | (m & FRACTION_MASK);
+	}
+
 	/**
 	 * Returns the difference of the two <code>double</code> arguments according to
 	 * <a href="http://java.sun.com/docs/books/jls/second_edition/html/expressions.doc.html#13510">section
@@ -479,6 +552,21 @@ public class SoftFloat64 {
 	 * @return  the product of the two arguments
 	 */
 	public static long double_mul(long d1, long d2) {
+		// fast path: scaling of a normal number by a power of two
+		int e1 = ((int) (d1 >>> 52)) & 0x7ff;
+		int e2 = ((int) (d2 >>> 52)) & 0x7ff;
+		if (e1 != 0 && e1 != 0x7ff && e2 != 0 && e2 != 0x7ff) {
+			int e = e1 + e2 - 1023;
+			if (e > 0 && e < 0x7ff) {
+				if ((d2 & FRACTION_MASK) == 0L) {
+					return ((d1 ^ d2) & SIGN_MASK) | (((long) e) << 52) | (d1 & FRACTION_MASK);
+				}
+				if ((d1 & FRACTION_MASK) == 0L) {
+					return ((d1 ^ d2) & SIGN_MASK) | (((long) e) << 52) | (d2 & FRACTION_MASK);
+				}
+			}
+		}
+
 		if (isNaN(d1) || isNaN(d2)) {
 			return 0x7ff8000000000000L;
 		}
@@ -552,6 +640,16 @@ public class SoftFloat64 {
 	 * @return  the quotient of the two arguments
 	 */
 	public static long double_div(long d1, long d2) {
+		// fast path: division of a normal number by a power of two
+		int e1 = ((int) (d1 >>> 52)) & 0x7ff;
+		int e2 = ((int) (d2 >>> 52)) & 0x7ff;
+		if ((d2 & FRACTION_MASK) == 0L && e1 != 0 && e1 != 0x7ff && e2 != 0 && e2 != 0x7ff) {
+			int e = e1 - e2 + 1023;
+			if (e > 0 && e < 0x7ff) {
+				return ((d1 ^ d2) & SIGN_MASK) | (((long) e) << 52) | (d1 & FRACTION_MASK);
+			}
+		}
+
 		if (isNaN(d1) || isNaN(d2)) {
 			return 0x7ff8000000000000L;
 		}
@@ -703,10 +801,29 @@ public class SoftFloat64 {
 	    
 	    // generate sqrt(x) bit by bit
 	    m <<= 1;
-	    long q = 0L; // q = sqrt(x)
-	    long s = 0L;
-	    long r = 0x0020000000000000L;
-	    while (r != 0) { // @WCA loop = 53
+	    long q; // q = sqrt(x)
+	    long s;
+	    long r;
+	    if (SoftFloat32.SQRT_SEED != null) {
+	      // the first 8 bits are the largest k with k*k*2^39 < m
+	      int t = (int) (m >>> 39);
+	      int k = SoftFloat32.SQRT_SEED[(t >>> 8) - 64];
+	      if ((k + 1) * (k + 1) <= t) {
+	        k++;
+	      }
+	      if (k * k == t && (m & 0x7fffffffffL) == 0L) {
+	        k--;
+	      }
+	      m = (m - (((long) (k * k)) << 39)) << 8;
+	      q = ((long) k) << 46;
+	      s = q << 1;
+	      r = 0x0000200000000000L;
+	    } else {
+	      q = 0L;
+	      s = 0L;
+	      r = 0x0020000000000000L;
+	    }
+	    while (r != 0) { // @WCA loop <= 54
 	      long t = s + r;
 	      if (t < m) {
 	        s = t + r;
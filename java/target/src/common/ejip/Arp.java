@@ -50,17 +50,19 @@ package ejip;
 
 public class Arp {
 	
-	static class Entry {
-
-		final static int ENTRY_CNT = 4;
+	/**
+	 * Default number of ARP entries.
+	 */
+	final static int ENTRY_CNT = 4;
 //	 TODO: use this one when the merge is finished
-//		final static int ENTRY_CNT = StackParameters.ARP_ENTRY_POOL_SIZE + 1;
-		static Entry[] list;
+//	final static int ENTRY_CNT = StackParameters.ARP_ENTRY_POOL_SIZE + 1;
+	/**
+	 * Maximum probe length in the ARP table. Bounds lookup
+	 * and insert for the WCET analysis.
+	 */
+	final static int MAX_PROBE = 4;
 
-//		TODO: not used - age wraps around after 4 billion requests
-//		static int ageCnt;
-		
-		// TODO: make this list non-static
+	static class Entry {
 
 		int ip;
 		int[] mac;		// could be optimized to use 16-bit words
@@ -68,91 +70,128 @@ public class Arp {
 		boolean valid;
 		int age;
 
-		static void init() {
-			if (list!=null) return;
-			
-			list = new Entry[ENTRY_CNT];
-			for (int i=0; i<ENTRY_CNT; ++i) list[i] = new Entry();
-			// Static ARP entry: IP Broadcast -> Ethernet Broadcast
-			list[0].ip = 0xFFFFFFFF; // 255.255.255.255
-			list[0].mac[0] = 0xFF; // -> resolves to FF:FF:FF:FF:FF:FF
-			list[0].mac[1] = 0xFF;
-			list[0].mac[2] = 0xFF;
-			list[0].mac[3] = 0xFF;
-			list[0].mac[4] = 0xFF;
-			list[0].mac[5] = 0xFF;
-			list[0].valid = true;
-			list[0].age = 1;
-
-		}
-		
 		Entry() {
 			mac = new int[6];
 			ip = 0;
 			valid = false;
 			age = 0;
 		}
-		
-		/**
-		 * Add an entry into the ARP table
-		 * @param p A received ARP request or reply
-		 */
-		static void add(Packet p) {
+	}
 
-			int ip_src = (p.buf[3]<<16) + (p.buf[4]>>>16);
+	/**
+	 * Open addressed hash table on the IP address with
+	 * a bounded probe sequence.
+	 */
+	private Entry[] list;
+	private int mask;
+	/**
+	 * Age counter for replacement of the oldest entry in
+	 * the probe sequence.
+	 * TODO: age wraps around after 4 billion requests
+	 */
+	private int ageCnt;
 
-			int nr = -1;
-			int oldest = list[0].age;
-			int youngest = oldest;
-			for (int i=0; i<ENTRY_CNT; ++i) {
-				if (list[i].ip==ip_src) {
-					// we have an entry for this IP
-					// address
-					nr = i;
-				}
-				if (list[i].age<oldest) {
-					oldest = list[i].age;
-					// replace the oldest entry
-					if (nr==-1) {
-						nr = i;					
-					}
-				} else if (list[i].age>youngest) {
-					youngest = list[i].age;
-				}
+	/**
+	 * Allocate the table with at least twice the number of
+	 * entries as slots.
+	 */
+	private void init(int entryCnt) {
+
+		int size = MAX_PROBE;
+		while (size < (entryCnt<<1)) {
+			size <<= 1;
+		}
+		list = new Entry[size];
+		for (int i=0; i<size; ++i) list[i] = new Entry();
+		mask = size-1;
+
+		// Static ARP entry: IP Broadcast -> Ethernet Broadcast
+		Entry e = list[slot(0xFFFFFFFF)];
+		e.ip = 0xFFFFFFFF; // 255.255.255.255
+		e.mac[0] = 0xFF; // -> resolves to FF:FF:FF:FF:FF:FF
+		e.mac[1] = 0xFF;
+		e.mac[2] = 0xFF;
+		e.mac[3] = 0xFF;
+		e.mac[4] = 0xFF;
+		e.mac[5] = 0xFF;
+		e.valid = true;
+		e.age = 0x7fffffff;	// never replaced
+	}
+
+	private static int hash(int ip) {
+		int h = ip ^ (ip>>>16);
+		h *= 0x45d9f3b;
+		return h ^ (h>>>16);
+	}
+
+	/**
+	 * Slot for the IP address: the matching entry, a free one
+	 * or the oldest one in the probe sequence.
+	 */
+	private int slot(int ip) {
+
+		int h = hash(ip);
+		int nr = -1;
+		int oldest = 0;
+		for (int i=0; i<MAX_PROBE; ++i) {
+			int j = (h+i) & mask;
+			Entry e = list[j];
+			if (e.ip==ip) {
+				// we have an entry for this IP address
+				return j;
+			}
+			if (nr==-1 || (list[nr].valid && (!e.valid || e.age<oldest))) {
+				nr = j;
+				oldest = e.age;
 			}
+		}
+		return nr;
+	}
 
-			Entry e = list[nr];
-			e.ip = ip_src;
-			
-			e.mac[0] = p.buf[2]>>>24;
-			e.mac[1] = (p.buf[2]>>>16)&0xff;
-			e.mac[2] = (p.buf[2]>>>8)&0xff;
-			e.mac[3] = (p.buf[2])&0xff;
-			e.mac[4] = (p.buf[3]>>>24);
-			e.mac[5] = (p.buf[3]>>>16)&0xff;
-			
-			e.valid = true;
-			e.age = youngest++;
-			dump(nr);
+	/**
+	 * Add an entry into the ARP table
+	 * @param p A received ARP request or reply
+	 */
+	private void add(Packet p) {
+
+		int ip_src = (p.buf[3]<<16) + (p.buf[4]>>>16);
+
+		int nr = slot(ip_src);
+		Entry e = list[nr];
+		e.ip = ip_src;
+		
+		e.mac[0] = p.buf[2]>>>24;
+		e.mac[1] = (p.buf[2]>>>16)&0xff;
+		e.mac[2] = (p.buf[2]>>>8)&0xff;
+		e.mac[3] = (p.buf[2])&0xff;
+		e.mac[4] = (p.buf[3]>>>24);
+		e.mac[5] = (p.buf[3]>>>16)&0xff;
+		
+		e.valid = true;
+		if (e.age!=0x7fffffff) {
+			e.age = ++ageCnt;
 		}
+		dump(nr);
+	}
+	
+	private Entry find(int ip) {
 		
-		static Entry find(int ip) {
-			
-			for (int i=0; i<ENTRY_CNT; ++i) {
-				if (list[i].ip==ip && list[i].valid) {
-					return list[i];
-				}
+		int h = hash(ip);
+		for (int i=0; i<MAX_PROBE; ++i) {
+			Entry e = list[(h+i) & mask];
+			if (e.ip==ip && e.valid) {
+				return e;
 			}
-			return null;
 		}
+		return null;
+	}
+	
+	private void dump(int nr) {
 		
-		static void dump(int nr) {
-			
-			if (Logging.LOG) Logging.wr("add ARP IP=");
-			if (Logging.LOG) Logging.hexVal(list[nr].ip);
-			for (int i=0; i<6; ++i) {
-				if (Logging.LOG) Logging.hexVal(list[nr].mac[i]);
-			}
+		if (Logging.LOG) Logging.wr("add ARP IP=");
+		if (Logging.LOG) Logging.hexVal(list[nr].ip);
+		for (int i=0; i<6; ++i) {
+			if (Logging.LOG) Logging.hexVal(list[nr].mac[i]);
 		}
 	}
 
@@ -162,11 +201,18 @@ public class Arp {
 	LinkLayer ll;
 
 	public Arp(Ejip ejip, LinkLayer interf, int ipAddr, int ethAddr[]) {
+		this(ejip, interf, ipAddr, ethAddr, ENTRY_CNT);
+	}
+
+	/**
+	 * Create the ARP handling with a table for entryCnt hosts.
+	 */
+	public Arp(Ejip ejip, LinkLayer interf, int ipAddr, int ethAddr[], int entryCnt) {
 		eth = ethAddr;
 		ip = ipAddr;
 		this.ejip = ejip;
 		ll = interf;
-		Entry.init();
+		init(entryCnt);
 	}
 /**
 *	handle ARP request.
@@ -203,7 +249,7 @@ public class Arp {
 */
 			int arp_op = p.buf[1] & 0xffff;
 
-			Entry.add(p);	// Add the entry anyway
+			add(p);	// Add the entry anyway
 			
 			if (arp_op==1) {
 				// System.out.println("request");
@@ -258,6 +304,11 @@ public class Arp {
 	protected void sendRequest(Packet p) {
 		
 		int ip_dest = p.buf[4];
+
+		if (p.next!=null) {					// the payload is lost anyway
+			ejip.returnPacket(p.next);
+			p.next = null;
+		}
 		
 		p.buf[0] = 0x00010800;	// hw addr. space 1, Protocol add. space IP 
 		p.buf[1] = 0x06040001;	// hw-len, sw-len, opcode request
@@ -298,9 +349,9 @@ public class Arp {
 		// IP destination address (without gateway) is
 		// at position 4 for IP packets and at 6 for ARP packets
 		if (p.llh[6] == 0x0806) {
-			e = Entry.find(p.buf[6]);
+			e = find(p.buf[6]);
 		} else {
-			e = Entry.find(p.buf[4]);			
+			e = find(p.buf[4]);			
 		}
 		// TODO: for dhcp
 		// int firstHopDest = CS8900.isSameSubnet(p.buf[addrPos]) ?
@@ -345,7 +396,7 @@ public class Arp {
 		// TODO dhcp
 		// return Entry.find(CS8900.isSameSubnet(ip) ? ip :
 		// Net.linkLayer.gateway) != null;
-		return Entry.find(ip) != null;
+		return find(ip) != null;
 
 	}
 }
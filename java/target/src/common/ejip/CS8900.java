@@ -463,6 +463,14 @@ public class CS8900 extends LinkLayer {
 	 * Allocate buffer and reset the chip.
 	 */
 	public CS8900(Ejip ejip, int[] mac, int ipaddr) {
+		this(ejip, mac, ipaddr, Arp.ENTRY_CNT);
+	}
+
+	/**
+	 * Allocate buffer, an ARP table for arpCnt hosts
+	 * and reset the chip.
+	 */
+	public CS8900(Ejip ejip, int[] mac, int ipaddr, int arpCnt) {
 
 		super(ejip, ipaddr);
 		txFree = true;
@@ -484,7 +492,7 @@ public class CS8900 extends LinkLayer {
 		rx_bytes = 0;
 		rx_dropped = 0;
 		
-		arp = new Arp(ejip, this, ip, eth);
+		arp = new Arp(ejip, this, ip, eth, arpCnt);
 
 		reset();
 
@@ -654,13 +662,24 @@ public class CS8900 extends LinkLayer {
 	}
 
 	/**
-	 * write tx data.
+	 * write tx data of the packet and all chained fragments.
 	 */
 	private void writeData(Packet p) {
 
+		Packet f = p;
+		for (int k = 0; k < Packet.MAXFRAG && f != null; ++k) {
+			writeData(f.buf, f.len);
+			f = f.next;
+		}
+		Native.wr(TX_FRAME_PORT + 1, Const.IO_CTRL); // disable dout
+	}
+
+	/**
+	 * write tx data from one buffer.
+	 */
+	private void writeData(int[] buf, int length) {
+
 		int i, val;
-		int[] buf = p.buf;
-		int length = p.len;
 
 		if ((length & 1) == 1)
 			++length; // even bytes
@@ -695,7 +714,6 @@ public class CS8900 extends LinkLayer {
 			Native.wr(TX_FRAME_PORT + 1 | ISA_DIR, Const.IO_CTRL); // niow high
 																	// again
 		}
-		Native.wr(TX_FRAME_PORT + 1, Const.IO_CTRL); // disable dout
 	}
 
 	/**
@@ -826,7 +844,7 @@ public class CS8900 extends LinkLayer {
 		// netif_stop_queue(dev);
 		/* initiate a transmit sequence */
 		writeWord(TX_CMD_PORT, TX_AFTER_ALL);
-		writeWord(TX_LEN_PORT, p.len + 14);
+		writeWord(TX_LEN_PORT, p.totalLen() + 14);
 
 		/* Test to see if the chip has allocated memory for the packet */
 		if ((readReg(PP_BusST) & READY_FOR_TX_NOW) == 0) {
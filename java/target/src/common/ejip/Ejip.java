@@ -40,8 +40,7 @@ package ejip;
  * @author Martin Schoeberl
  * 
  * TODO list:
- *		TcpConnection: outstanding packet shall be returned to the free pool.
- *			remove static array
+ *		TcpConnection: remove static array
  *		Merge Net and Ejip -> remove Net reference in OEBB Logging and other apps
  *		There are still some statics around
  *		Merge TFTP implementations and test it with OEBB
@@ -108,16 +107,32 @@ public class Ejip {
 			Logging.intVal(freePool.cnt());
 			Logging.lf();
 		}
-		if (p!=null) p.interf = link;
+		if (p!=null) {
+			p.interf = link;
+			p.sumOff = -1;
+		}
 		return p;
 	}
 	
 	/**
-	 * Return a packet into the free pool.
+	 * Return a packet and all chained fragments into the free pool.
 	 * @param p
 	 */
 	synchronized public void returnPacket(Packet p) {
-		freePool.enq(p);
+		for (int i=0; i<Packet.MAXFRAG && p!=null; ++i) {
+			Packet f = p.next;
+			p.next = null;
+			freePool.enq(p);
+			p = f;
+		}
+	}
+
+	/**
+	 * Number of packets in the free pool.
+	 * @return
+	 */
+	synchronized public int getFreeCount() {
+		return freePool.cnt();
 	}
 
 	/**
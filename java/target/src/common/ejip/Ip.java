@@ -89,6 +89,16 @@ public class Ip {
 	 */
 	public static int chkSum(int[] buf, int off, int cnt) {
 	
+		return chkSum(sum(buf, off, cnt));
+	}
+
+	/**
+	 * Partial ones' complement sum (not folded) of the 16-bit words.
+	 * assume (32 bit) word boundaries. rest of buffer is 0.
+	 * off offset in buffer (in words) cnt length in bytes
+	 */
+	public static int sum(int[] buf, int off, int cnt) {
+	
 		int i;
 		int sum = 0;
 		int max = buf.length;
@@ -108,15 +118,92 @@ public class Ip {
 //			++off;
 //			--cnt;
 //		}
-	
+		return sum;
+	}
+
+	/**
+	 * Partial sum from word off to the end of the packet including
+	 * the chained fragments. The sum accumulated while the payload
+	 * was written is used when valid, only the words in front of
+	 * it are summed. The accumulated sum is used only once, so a
+	 * packet that is changed and sent again is summed again.
+	 */
+	public static int sum(Packet p, int off) {
+
+		int sum;
+		if (p.next==null) {
+			int dataOff = p.sumOff;
+			if (dataOff>=off && p.sumLen==p.len) {
+				p.sumOff = -1;
+				return sum(p.buf, off, (dataOff-off)<<2) + p.dataSum;
+			}
+			return sum(p.buf, off, p.len-(off<<2));
+		}
+		sum = sum(p.buf, off, p.len-(off<<2));
+		Packet f = p.next;
+		for (int k=1; k<Packet.MAXFRAG && f!=null; ++k) {
+			sum = fold(sum) + sum(f.buf, 0, f.len);
+			f = f.next;
+		}
+		return sum;
+	}
+
+	/**
+	 * Fold a partial sum to 16 bits.
+	 */
+	public static int fold(int sum) {
+
 		while ((sum >> 16) != 0) // @WCA loop<=2
-			sum = (sum & 0xffff) + (sum >> 16);
-	
-		sum = (~sum) & 0xffff;
-	
+			sum = (sum & 0xffff) + (sum >>> 16);
 		return sum;
 	}
 
+	/**
+	 * Combine two partial sums, e.g. of a prepended header and the
+	 * payload. The second block has to start on an even byte.
+	 */
+	public static int combine(int sum1, int sum2) {
+		return fold(fold(sum1) + fold(sum2));
+	}
+
+	/**
+	 * Check sum from a partial sum.
+	 */
+	public static int chkSum(int sum) {
+		return (~fold(sum)) & 0xffff;
+	}
+
+	/**
+	 * calc IP check sum over a packet and its chained fragments.
+	 * off offset in the head fragment (in words), the following
+	 * fragments are summed from their start.
+	 */
+	public static int chkSum(Packet p, int off) {
+		return chkSum(sum(p, off));
+	}
+
+	/**
+	 * Incremental update of a check sum when a 16-bit field
+	 * changes from oldVal to newVal (RFC 1624, eqn. 3).
+	 */
+	public static int update(int chk, int oldVal, int newVal) {
+
+		int sum = (~chk & 0xffff) + (~oldVal & 0xffff) + (newVal & 0xffff);
+		return (~fold(sum)) & 0xffff;
+	}
+
+	/**
+	 * Incremental update of a check sum for a changed 32-bit field,
+	 * e.g. a sequence number or an address.
+	 */
+	public static int update32(int chk, int oldVal, int newVal) {
+
+		int sum = (~chk & 0xffff)
+			+ (~oldVal & 0xffff) + (~oldVal >>> 16)
+			+ (newVal & 0xffff) + (newVal >>> 16);
+		return (~fold(sum)) & 0xffff;
+	}
+
 	/**
 	 * Copy packet data into a StringBuffer
 	 * @param p packet
@@ -143,17 +230,20 @@ public class Ip {
 		
 		int[] buf = p.buf;
 		int cnt = s.length();
-		// copy buffer
+		// copy buffer and accumulate the check sum
 		int k = 0;
+		int sum = 0;
 		for (int i=0; i<cnt; i+=4) {
 			for (int j=0; j<4; ++j) {
 				k <<= 8;
 				if (i+j < cnt) k += s.charAt(i+j);
 			}
 			buf[off + (i>>>2)] = k;
+			sum += (k>>>16) + (k & 0xffff);
 		}
 	
 		p.len = (off<<2)+cnt;
+		setSum(p, off, sum);
 	}
 
 	/**
@@ -173,17 +263,20 @@ public class Ip {
 			cnt = (buf.length-off)<<2;
 		}
 
-		// copy buffer
+		// copy buffer and accumulate the check sum
 		int k = 0;
+		int sum = 0;
 		for (int i=0; i<cnt; i+=4) {
 			for (int j=0; j<4; ++j) {
 				k <<= 8;
 				if (i+j < cnt) k += s.charAt(start+i+j);
 			}
 			buf[off + (i>>>2)] = k;
+			sum += (k>>>16) + (k & 0xffff);
 		}
 	
 		p.len = (off<<2)+cnt;
+		setSum(p, off, sum);
 
 		return cnt+start;
 	}
@@ -198,17 +291,20 @@ public class Ip {
 		
 		int[] buf = p.buf;
 		int cnt = s.length();
-		// copy buffer
+		// copy buffer and accumulate the check sum
 		int k = 0;
+		int sum = 0;
 		for (int i=0; i<cnt; i+=4) {
 			for (int j=0; j<4; ++j) {
 				k <<= 8;
 				if (i+j < cnt) k += s.charAt(i+j);
 			}
 			buf[off + (i>>>2)] = k;
+			sum += (k>>>16) + (k & 0xffff);
 		}
 	
 		p.len = (off<<2)+cnt;
+		setSum(p, off, sum);
 	}
 
 	/**
@@ -231,17 +327,28 @@ public class Ip {
 	public static void setData(Packet p, int off, byte[] b, int cnt) {
 
 		int[] buf = p.buf;
-		// copy buffer
+		// copy buffer and accumulate the check sum
 		int k = 0;
+		int sum = 0;
 		for (int i=0; i<cnt; i+=4) {
 			for (int j=0; j<4; ++j) {
 				k <<= 8;
 				if (i+j < cnt) k += (int)b[i+j] & 0xff;
 			}
 			buf[off + (i>>>2)] = k;
+			sum += (k>>>16) + (k & 0xffff);
 		}
 
 		p.len = (off<<2)+cnt;
+		setSum(p, off, sum);
 	}
 
+	/**
+	 * Remember the payload sum accumulated by setData().
+	 */
+	private static void setSum(Packet p, int off, int sum) {
+		p.dataSum = sum;
+		p.sumOff = off;
+		p.sumLen = p.len;
+	}
 }
@@ -68,7 +68,16 @@ public class Loopback extends LinkLayer {
 						rxQueue.enq(cp);
 					}					
 				}
+			} else if (p.next!=null) {
+				// the receiver expects the datagram in one buffer
+				Packet cp = ejip.getFreePacket(this);
+				if (cp!=null) {
+					cp.copy(p);
+					rxQueue.enq(cp);
+				}
+				ejip.returnPacket(p);
 			} else {
+				p.invalidateSum();
 				rxQueue.enq(p);				
 			}
 		}
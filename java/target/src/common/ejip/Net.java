@@ -44,10 +44,17 @@ public class Net implements Runnable {
 	private Tcp tcp;
 
 	public Net(Ejip ejipRef) {
+		this(ejipRef, TcpConnection.CNT);
+	}
+
+	/**
+	 * Create the network layer with tcpConnCnt TCP connections.
+	 */
+	public Net(Ejip ejipRef, int tcpConnCnt) {
 		ejip = ejipRef;
 		ip = new Ip(ejip);
 		udp = new Udp(ejip);
-		tcp = new Tcp(ejip);
+		tcp = new Tcp(ejip, tcpConnCnt);
 	}
 
 
@@ -132,9 +139,9 @@ public class Net implements Runnable {
 		if (Logging.LOG) Logging.hexVal(type_code);
 		if (type_code == 0x0800) {
 			// TODO check received ICMP checksum
-			p.buf[5] = 0; // echo replay plus clear checksum,
-			p.buf[5] = Ip.chkSum(p.buf, 5, p.len - 20); // echo replay (0x0000)
-														// plus checksum
+			// echo replay (0x0000), only the type changes so we
+			// can update the checksum incrementally (RFC 1624)
+			p.buf[5] = Ip.update(p.buf[5], 0x0800, 0x0000);
 		} else {
 			p.len = 0;
 		}
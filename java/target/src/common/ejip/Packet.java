@@ -42,17 +42,47 @@ package ejip;
 public class Packet {
 
 	public final static int MAXLLH = 7;		// 7 16 bit words for ethernet
+	/** Maximum number of fragments in a packet chain (including the head) */
+	public final static int MAXFRAG = 4;
+	/**
+	 * Maximum length of an IP datagram on the link layers
+	 * (Ethernet, PPP and SLIP).
+	 */
+	public final static int MTU = 1500;
 
 	/** interface source/destination */
 	public LinkLayer interf;
 	/** place for link layer data */
 	public int[] llh;
-	/** Buffer for the ip datagram */
+	/**
+	 * Buffer for the ip datagram. Code that changes the payload
+	 * directly after Ip.setData() or the put methods has to call
+	 * invalidateSum().
+	 */
 	public int[] buf;
 	/** Packet length in bytes */
 	public int len;
 	/** Mark as TCP packet on the fly. Don't free it in the link layer. */
 	public boolean isTcpOnFly;
+	/**
+	 * Next payload fragment for a scatter/gather send. Only the
+	 * head fragment contains the IP header. All fragments except
+	 * the last one have to be a multiple of 4 bytes long.
+	 */
+	public Packet next;
+	/** Write position in bytes for the in-place payload methods */
+	private int wrPos;
+	/**
+	 * Ones' complement sum of the payload, accumulated while the
+	 * payload is written with Ip.setData() or the put methods.
+	 * It covers the words from sumOff up to sumLen bytes and is
+	 * not valid when sumOff is -1 or sumLen differs from len.
+	 * Every method that changes the payload updates or drops it,
+	 * and it is dropped when it has been used for a check sum.
+	 */
+	int dataSum;
+	int sumOff;
+	int sumLen;
 		
 	/**
 	 * Create a packet with maximum length. 
@@ -62,6 +92,7 @@ public class Packet {
 		buf = new int[(pktSize+3)>>2]; // DFA likes shift, but not division
 		len = 0;
 		interf = null;
+		sumOff = -1;
 	}
 
 
@@ -75,21 +106,178 @@ public class Packet {
 
 
 	/**
-	 * Make a deep copy from Packet p. Used just for ARP requests
-	 * with a TCP packet as the TCP packet is kept in the connection.
+	 * Length of the packet including all chained fragments.
+	 * @return length in bytes
+	 */
+	public int totalLen() {
+
+		int cnt = len;
+		Packet f = next;
+		for (int i=1; i<MAXFRAG && f!=null; ++i) {
+			cnt += f.len;
+			f = f.next;
+		}
+		return cnt;
+	}
+
+	/**
+	 * Append a payload fragment to the end of the chain. The
+	 * current last fragment has to end on a word boundary.
+	 * The whole chain has to fit into the MTU and into the
+	 * buffer of this packet, which is used when the chain
+	 * is gathered by copy().
+	 * @param frag the fragment, already filled from offset 0
+	 * @return false if the chain is full, too long or not
+	 * word aligned
+	 */
+	public boolean append(Packet frag) {
+
+		Packet f = this;
+		int cnt = len;
+		int i;
+		for (i=1; i<MAXFRAG && f.next!=null; ++i) { // @WCA loop<=3
+			f = f.next;
+			cnt += f.len;
+		}
+		if (f.next!=null || i==MAXFRAG || (f.len & 3)!=0) {
+			return false;
+		}
+		cnt += frag.len;
+		if (cnt>MTU || cnt>(buf.length<<2)) {
+			return false;
+		}
+		frag.next = null;
+		frag.sumOff = -1;
+		f.next = frag;
+		sumOff = -1;
+		return true;
+	}
+
+	/**
+	 * Drop the accumulated payload sum. Needed when the payload
+	 * is changed directly in buf after Ip.setData() or the put
+	 * methods.
+	 */
+	public void invalidateSum() {
+		sumOff = -1;
+	}
+
+	/**
+	 * Start writing payload data in place at word offset off,
+	 * e.g. Udp.DATA or Tcp.DATA. Sets the packet length to
+	 * the offset.
+	 * @param off offset in 32-bit words
+	 */
+	public void setPayloadOffset(int off) {
+		wrPos = off<<2;
+		len = wrPos;
+		dataSum = 0;
+		sumOff = off;
+		sumLen = len;
+	}
+
+	/**
+	 * Free space for in-place payload data.
+	 * @return free bytes after the current write position
+	 */
+	public int getPayloadSpace() {
+		return (buf.length<<2) - wrPos;
+	}
+
+	/**
+	 * Write one byte at the current payload position.
+	 * Bytes after the write position in the same word are
+	 * cleared as the checksum relies on zero padding.
+	 */
+	public void putByte(int b) {
+
+		int pos = wrPos;
+		int shift = 24 - ((pos & 3)<<3);
+		if ((pos & 3)==0) {
+			buf[pos>>>2] = b<<24;
+		} else {
+			buf[pos>>>2] |= (b & 0xff)<<shift;
+		}
+		dataSum += (b & 0xff) << ((pos & 1)==0 ? 8 : 0);
+		wrPos = len = sumLen = pos+1;
+	}
+
+	/**
+	 * Write a 16-bit value in network byte order.
+	 */
+	public void putShort(int s) {
+
+		int pos = wrPos;
+		if ((pos & 3)==0) {
+			buf[pos>>>2] = s<<16;
+			dataSum += s & 0xffff;
+			wrPos = len = sumLen = pos+2;
+		} else if ((pos & 3)==2) {
+			buf[pos>>>2] |= s & 0xffff;
+			dataSum += s & 0xffff;
+			wrPos = len = sumLen = pos+2;
+		} else {
+			putByte(s>>>8);
+			putByte(s);
+		}
+	}
+
+	/**
+	 * Write a 32-bit value in network byte order.
+	 */
+	public void putInt(int val) {
+
+		int pos = wrPos;
+		if ((pos & 3)==0) {
+			buf[pos>>>2] = val;
+			dataSum += (val>>>16) + (val & 0xffff);
+			wrPos = len = sumLen = pos+4;
+		} else {
+			putShort(val>>>16);
+			putShort(val);
+		}
+	}
+
+	/**
+	 * Write the characters of s as bytes.
+	 */
+	public void putString(String s) {
+
+		int cnt = s.length();
+		for (int i=0; i<cnt; ++i) {
+			putByte(s.charAt(i));
+		}
+	}
+
+	/**
+	 * Make a deep copy from Packet p. Used for ARP requests
+	 * with a TCP packet as the TCP packet is kept in the connection
+	 * and to gather a fragment chain into a single buffer.
+	 * Only the used words are copied.
 	 * @param p
 	 */
 	synchronized public void copy(Packet p) {
 
-		int i;
+		int i, j;
+		int max = buf.length;
 		
-		this.len = p.len;
 		this.interf = p.interf;
 		for (i=0; i<MAXLLH; ++i) {
 			this.llh[i] = p.llh[i];
 		}
-		for (i=0; i<buf.length; ++i) {
-			this.buf[i] = p.buf[i];
+		j = 0;
+		Packet f = p;
+		for (int k=0; k<MAXFRAG && f!=null; ++k) {
+			int cnt = (f.len+3)>>2;
+			int[] src = f.buf;
+			for (i=0; i<cnt && j<max; ++i) {
+				buf[j++] = src[i];
+			}
+			f = f.next;
 		}
+		i = p.totalLen();
+		this.len = i < (max<<2) ? i : max<<2;
+		this.next = null;
+		this.sumOff = -1;
 	}
 }
@@ -934,21 +934,27 @@ dbgIp(ipRemote);
 	void sendIp(Packet p) {
 
 		int i, k;
-		int[] pb = p.buf;
 
 		sbuf[0] = 0xff;
 		sbuf[1] = 0x03;
 		sbuf[2] = IP>>8;
 		sbuf[3] = IP&0xff;
 
-		int slen = p.len;
+		int slen = 0;
 		sent = 0;
-		for (i=0; i<slen; i+=4) {
-			k = pb[i>>>2];
-			sbuf[i+4] = k>>>24;
-			sbuf[i+4+1] = (k>>>16)&0xff;
-			sbuf[i+4+2] = (k>>>8)&0xff;
-			sbuf[i+4+3] = k&0xff;
+		Packet f = p;
+		for (int n=0; n<Packet.MAXFRAG && f!=null; ++n) {
+			int[] pb = f.buf;
+			int flen = f.len;
+			for (i=0; i<flen; i+=4) {
+				k = pb[i>>>2];
+				sbuf[slen+i+4] = k>>>24;
+				sbuf[slen+i+4+1] = (k>>>16)&0xff;
+				sbuf[slen+i+4+2] = (k>>>8)&0xff;
+				sbuf[slen+i+4+3] = k&0xff;
+			}
+			slen += flen;
+			f = f.next;
 		}
 		if (!p.isTcpOnFly) {
 			ejip.returnPacket(p);
@@ -72,9 +72,9 @@ private static int simSendErr, simRcvErr;
 */
 	private int[] rbuf;
 /**
-*	send buffer
+*	private copy of a TCP packet on the fly.
 */
-	private int[] sbuf;
+	private Packet tcpCopy;
 /**
 *	bytes received.
 */
@@ -89,11 +89,15 @@ private static int simSendErr, simRcvErr;
 	private boolean ready;
 
 /**
-*	bytes to be sent. 0 means txFree
+*	packet on the wire. null means txFree
 */
-	private int scnt;
+	private Packet sp;
 /**
-*	allready sent bytes.
+*	fragment of sp that is sent.
+*/
+	private Packet sf;
+/**
+*	allready sent bytes of the fragment.
 */
 	private int sent;
 	
@@ -107,11 +111,12 @@ private static int simSendErr, simRcvErr;
 		super(ejip, ipAddr);
 
 		rbuf = new int[MAX_BUF];
-		sbuf = new int[MAX_BUF];
+		tcpCopy = new Packet(ejip.getMaxLength());
 		cnt = 0;
 		esc = false;
 		ready = false;
-		scnt = 0;
+		sp = null;
+		sf = null;
 		sent = 0;
 
 		ser = serPort;
@@ -174,7 +179,7 @@ private static int simSendErr, simRcvErr;
 		if (ready) { // we got a packet
 			read();
 		}
-		if (scnt == 0) { // transmit buffer is free
+		if (sp == null) { // transmitter is free
 			//
 			// get a ready to send packet with source from this driver.
 			//
@@ -237,13 +242,11 @@ return;
 
 
 /**
-*	copy packet to send buffer.
+*	start sending a packet. The bytes are streamed from the
+*	packet buffer (and the chained fragments) by snd().
 */
 	private void send(Packet p) {
 
-		int i, k;
-		int[] pb = p.buf;
-
 		if (Logging.LOG) Logging.wr('s');
 		if (Logging.LOG) Logging.intVal(p.len);
 
@@ -256,18 +259,15 @@ if (Logging.LOG) Logging.lf();
 return;
 }
 */
-		scnt = p.len;
-		sent = 0;
-		for (i=0; i<scnt; i+=4) {
-			k = pb[i>>>2];
-			sbuf[i] = k>>>24;
-			sbuf[i+1] = (k>>>16)&0xff;
-			sbuf[i+2] = (k>>>8)&0xff;
-			sbuf[i+3] = k&0xff;
-		}
-		if (!p.isTcpOnFly) {
-			ejip.returnPacket(p);
+		if (p.isTcpOnFly) {
+			// the connection can free the packet on an ACK while
+			// we are still sending it
+			tcpCopy.copy(p);
+			p = tcpCopy;
 		}
+		sp = p;
+		sf = p;
+		sent = 0;
 	}
 
 /**
@@ -285,7 +285,7 @@ return;
 			rcv(i);
 		}
 		if (cnt==MAX_BUF && !ready) cnt = 0;	// buffer full, but not ready => drop it
-		if (scnt!=0) {
+		if (sp!=null) {
 			i = ser.txFreeCnt();
 			if (i>2) {	
 				snd(i);
@@ -296,38 +296,48 @@ return;
 	}
 
 /**
-*	copy from send buffer to serial buffer.
+*	copy from the packet buffer to serial buffer.
 */
 	private void snd(int free) {
 
 		int i;
 
-		if (sent==0) {
+		if (sent==0 && sf==sp) {
 			ser.wr(END);
 			--free;
 		}
 
-		for (i=sent; free>1 && i<scnt; ++i) {
-
-			int c = sbuf[i];
-			if (c==END) {
-				ser.wr(ESC);
-				ser.wr(ESC_END);
-				free -= 2;
-			} else if (c==ESC) {
-				ser.wr(ESC);
-				ser.wr(ESC_ESC);
-				free -= 2;
-			} else {
-				ser.wr(c);
-				--free;
+		for (int k=0; k<Packet.MAXFRAG && sf!=null; ++k) {
+			int[] pb = sf.buf;
+			int cnt = sf.len;
+			for (i=sent; free>1 && i<cnt; ++i) {
+
+				int c = (pb[i>>>2] >>> (24-((i&3)<<3))) & 0xff;
+				if (c==END) {
+					ser.wr(ESC);
+					ser.wr(ESC_END);
+					free -= 2;
+				} else if (c==ESC) {
+					ser.wr(ESC);
+					ser.wr(ESC_ESC);
+					free -= 2;
+				} else {
+					ser.wr(c);
+					--free;
+				}
 			}
+			sent = i;
+			if (sent<cnt) break;
+			sf = sf.next;
+			sent = 0;
 		}
-		sent = i;
 
-		if (sent==scnt && free!=0) {
+		if (sf==null && free!=0) {
 			ser.wr(END);
-			scnt = 0;
+			if (sp!=tcpCopy) {
+				ejip.returnPacket(sp);
+			}
+			sp = null;
 			sent = 0;
 		}
 	}
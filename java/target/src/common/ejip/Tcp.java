@@ -134,6 +134,22 @@ public class Tcp implements Runnable {
 	 * Maximum retransmissions.
 	 */
 	public static final int MAX_RETRANSMIT = 10;
+
+	/**
+	 * Upper limit of the exponential retransmit backoff as shift
+	 * of TIMEOUT.
+	 */
+	public static final int MAX_BACKOFF = 3;
+
+	/**
+	 * Number of duplicate ACKs that trigger a fast retransmit.
+	 */
+	public static final int DUP_ACK_THRESHOLD = 3;
+
+	/**
+	 * Maximum segment size we announce and use for the receive window.
+	 */
+	public static final int MSS = 512;
 	
 	/**
 	 * The timer.
@@ -147,10 +163,23 @@ public class Tcp implements Runnable {
 	private int[] ports;
 	private int loopCnt;
 	private int conLoopCnt;
+	/**
+	 * The connections of this TCP layer.
+	 */
+	private TcpConnection.Pool conPool;
 	
 	private Ejip ejip;
 
 	public Tcp(Ejip ejipRef) {
+		this(ejipRef, TcpConnection.CNT);
+	}
+
+	/**
+	 * Create the TCP layer with a table for connCnt concurrent
+	 * connections.
+	 */
+	public Tcp(Ejip ejipRef, int connCnt) {
+		conPool = new TcpConnection.Pool(connCnt);
 		ejip = ejipRef;
 		mutex = new Object();
 		list = new TcpHandler[MAX_HANDLER];
@@ -209,7 +238,7 @@ public class Tcp implements Runnable {
 			// this is probably a quite big synchronized block
 			// for a SLIP connection
 			synchronized (mutex) {
-				TcpConnection tc = TcpConnection.connections[conLoopCnt];
+				TcpConnection tc = conPool.connections[conLoopCnt];
 
 //				if (Logging.LOG) {
 //					Logging.intVal(tc.idleTime);
@@ -226,20 +255,22 @@ public class Tcp implements Runnable {
 					return;
 				}
 
-				if (tc.outStanding!=null) {
+				if (!tc.rtxEmpty()) {
 					tc.timeout--;
-					if (tc.timeout==0) {
-						// TODO: exponential backoff 
+					if (tc.timeout<=0) {
 						tc.retryCnt++;
 						if (tc.retryCnt==MAX_RETRANSMIT) {
 							Logging.wr("maximum retransmit - close");
 							tc.close(ejip);
 							tc.retryCnt=0;
 						} else {
-							tc.timeout = TIMEOUT;
-							// let it retransmit
+							// exponential backoff
+							tc.timeout = TIMEOUT << (tc.retryCnt<MAX_BACKOFF ? tc.retryCnt : MAX_BACKOFF);
+							// let the oldest segment retransmit
 							Logging.wr("retransmit");
-							tc.outStanding.interf.txQueue.enq(tc.outStanding);								
+							Packet os = tc.rtxFirst();
+							refresh(os, tc);
+							os.interf.txQueue.enq(os);
 						}
 					}
 				}
@@ -247,7 +278,7 @@ public class Tcp implements Runnable {
 			
 			++conLoopCnt;
 			// All connection done, restart timer
-			if (conLoopCnt==TcpConnection.CNT) {
+			if (conLoopCnt==conPool.connections.length) {
 				conLoopCnt = 0;				
 				timer = (short)(System.currentTimeMillis() + TIMER_TICK);
 			}
@@ -282,7 +313,7 @@ public class Tcp implements Runnable {
 			return;
 		}
 
-		TcpConnection tc = TcpConnection.findConnection(p);
+		TcpConnection tc = conPool.findConnection(p);
 		// connection pool is empty, drop the packet
 		if (tc==null) {
 			ejip.returnPacket(p);
@@ -358,7 +389,7 @@ public class Tcp implements Runnable {
 			tc.idleTime = USER_TIMEOUT;
 		}
 
-		if (!checkAck(p, th, tc, flags)) {
+		if (!checkAck(p, th, tc, flags, datlen)) {
 			return;
 		}
 		
@@ -379,8 +410,10 @@ public class Tcp implements Runnable {
 			th.connection = tc;
 			// TODO: read options (MSS)
 			tc.rcvNxt = buf[SEQNR]+1;
+			tc.sndWnd = buf[FLAGS] & 0xffff;
 			tc.sndNxt = (int)System.currentTimeMillis();	// TODO: get time dependent initial seqnrs
-			buf[OPTION] = 0x02040000 + 512;	// set MSS to 512
+			tc.sndUna = tc.sndNxt;
+			buf[OPTION] = 0x02040000 + MSS;	// set MSS
 			p.len = (OPTION+1)<<2;	// len in bytes
 			fillHeader(p, tc, FL_SYN|FL_ACK);
 			tc.sndNxt++;		// SYN send counts for one
@@ -454,6 +487,7 @@ public class Tcp implements Runnable {
 				if (h==null) {
 					if (flags==FL_ACK && len==0 && !th.finished()) {
 						// nothing to send and nothing to ack
+						ejip.returnPacket(p);
 					} else {
 						flags = FL_ACK | (th.finished() ? FL_FIN : 0);
 						// return plain ack
@@ -476,8 +510,11 @@ public class Tcp implements Runnable {
 				}
 
 			} else {
-				ejip.returnPacket(p);
-				// TODO ack last segment
+				// out of order or duplicate segment: acknowledge
+				// what we have, the duplicate ACK lets the remote
+				// host retransmit early
+				Ip.setData(p, Tcp.DATA, "");
+				fillHeader(p, tc, FL_ACK);
 				if (Logging.LOG) {
 					Logging.wr("dropped wrong SEQNR ");
 				}
@@ -624,7 +661,10 @@ public class Tcp implements Runnable {
 
 
 	/**
-	 * TODO: explain...
+	 * Process the acknowledgment of an incoming segment. A cumulative
+	 * ACK releases all covered segments from the retransmission
+	 * queue. DUP_ACK_THRESHOLD duplicate ACKs retransmit the oldest
+	 * segment without waiting for the timeout.
 	 * 
 	 * Packet consumed on false return.
 	 * 
@@ -632,27 +672,18 @@ public class Tcp implements Runnable {
 	 * @param th
 	 * @param tc
 	 * @param flags
+	 * @param datlen length of the segment data
 	 * @return
 	 */
-	private boolean checkAck(Packet p, TcpHandler th, TcpConnection tc, int flags) {
+	private boolean checkAck(Packet p, TcpHandler th, TcpConnection tc, int flags, int datlen) {
 
 		int buf[] = p.buf;
 
-		// check for ACK
 		synchronized (mutex) {
-			if ((flags&FL_ACK)!=0 && tc.outStanding!=null) {
-				if (buf[ACKNR]==tc.sndNxt) {
-					if (Logging.LOG) {
-						Logging.wr("ACK received");
-						Logging.lf();
-					}
-					Packet os = tc.outStanding;
-					// recycle the outstanding packet and reset isTcpOnFly
-					tc.outStanding = null;
-					os.isTcpOnFly = false;
-					ejip.returnPacket(os);
-				} else {
-					// not the correct ACK - drop it
+			if ((flags&FL_ACK)!=0) {
+				int ack = buf[ACKNR];
+				if (ack-tc.sndNxt > 0) {
+					// acknowledges data we did not send - drop it
 					ejip.returnPacket(p);
 					if (Logging.LOG) {
 						Logging.wr("dropped wrong ACKNR");
@@ -660,14 +691,37 @@ public class Tcp implements Runnable {
 					}
 					return false;
 				}
-			}			
-		}		
-		if (tc.outStanding!=null) {
-			// we handle only one packet at a time
-			// so we have to drop it.
+				tc.sndWnd = buf[FLAGS] & 0xffff;
+				if (ack-tc.sndUna > 0) {
+					if (Logging.LOG) {
+						Logging.wr("ACK received");
+						Logging.lf();
+					}
+					tc.rtxAck(ack, ejip);
+					tc.sndUna = ack;
+					tc.dupAcks = 0;
+					tc.retryCnt = 0;
+					tc.timeout = TIMEOUT;
+				} else if (!tc.rtxEmpty() && datlen==0 && (flags&(FL_SYN|FL_FIN))==0) {
+					tc.dupAcks++;
+					if (tc.dupAcks==DUP_ACK_THRESHOLD) {
+						if (Logging.LOG) {
+							Logging.wr("fast retransmit");
+							Logging.lf();
+						}
+						Packet os = tc.rtxFirst();
+						refresh(os, tc);
+						os.interf.txQueue.enq(os);
+						tc.timeout = TIMEOUT;
+					}
+				}
+			}
+		}
+		if (tc.rtxFull()) {
+			// no room for a reply, the remote host will retransmit
 			ejip.returnPacket(p);
 			if (Logging.LOG) {
-				Logging.wr("waiting on ACK - dropped");
+				Logging.wr("window full - dropped");
 				Logging.lf();
 			}
 			return false;
@@ -676,17 +730,96 @@ public class Tcp implements Runnable {
 		return true;
 	}
 
+	/**
+	 * Number of data bytes that can be sent on the connection now.
+	 * Limited by the window of the remote host and by the
+	 * retransmission queue.
+	 * @param tc
+	 * @return
+	 */
+	public int sendWindow(TcpConnection tc) {
+		synchronized (mutex) {
+			if (tc.state!=ESTABLISHED || tc.rtxFull()) {
+				return 0;
+			}
+			int w = tc.sndWnd - (tc.sndNxt - tc.sndUna);
+			return w<0 ? 0 : w;
+		}
+	}
+
+	/**
+	 * Send a data segment on an established connection without
+	 * waiting for the acknowledgment of previous segments. The data
+	 * starts at DATA and p.len is set, e.g., with Ip.setData().
+	 * Intended for the run() method of a handler that streams data.
+	 * 
+	 * @param tc
+	 * @param p
+	 * @return false if the window does not allow to send p, the
+	 * 		packet is not consumed then
+	 */
+	public boolean send(TcpConnection tc, Packet p) {
+
+		int len = p.len-(DATA<<2);
+		synchronized (mutex) {
+			if (len<=0 || len>sendWindow(tc)) {
+				return false;
+			}
+			fillHeader(p, tc, FL_ACK|FL_PSH);
+			tc.sndNxt += len;
+		}
+		return true;
+	}
+
+	/**
+	 * Receive window derived from the free packets of the pool.
+	 * At least one segment to avoid a window deadlock, as we do not
+	 * send window updates.
+	 * @return
+	 */
+	private int rcvWindow() {
+		int w = ejip.getFreeCount()*MSS;
+		if (w<MSS) {
+			w = MSS;
+		} else if (w>0xffff) {
+			w = 0xffff;
+		}
+		return w;
+	}
+
 	public void startConnection(LinkLayer ll, int ip, int port) {
 		Packet p = ejip.getFreePacket(ll);
-		p.buf[OPTION] = 0x02040000 + 512;	// set MSS to 512
+		p.buf[OPTION] = 0x02040000 + MSS;	// set MSS
 		p.len = (OPTION+1)<<2;	// len in bytes
-		TcpConnection tc = TcpConnection.findConnection(ip, port, ll.getIpAddress(), 10000+port);
+		TcpConnection tc = conPool.findConnection(ip, port, ll.getIpAddress(), 10000+port);
 		tc.sndNxt = (int)System.currentTimeMillis();	// TODO: get time dependent initial seqnrs
+		tc.sndUna = tc.sndNxt;
 		fillHeader(p, tc, FL_SYN);
 		tc.sndNxt++;		// SYN send counts for one
 		tc.state = SYN_SENT;
 	}
 
+	/**
+	 * Update acknowledge number and window of a segment for the
+	 * retransmission. The check sum is updated incrementally
+	 * (RFC 1624) instead of summing the segment again.
+	 */
+	private void refresh(Packet p, TcpConnection tc) {
+
+		int[] buf = p.buf;
+		if ((buf[FLAGS] & (FL_ACK<<16))==0) {
+			return;
+		}
+		int chk = buf[CHKSUM]>>>16;
+		int val = tc.rcvNxt;
+		chk = Ip.update32(chk, buf[ACKNR], val);
+		buf[ACKNR] = val;
+		val = (buf[FLAGS] & 0xffff0000) + rcvWindow();
+		chk = Ip.update(chk, buf[FLAGS], val);
+		buf[FLAGS] = val;
+		buf[CHKSUM] = (chk<<16) + (buf[CHKSUM] & 0xffff);
+	}
+
 	/**
 	 * Fill in the header and enqueue the packet into the send queue.
 	 * 
@@ -711,17 +844,17 @@ public class Tcp implements Runnable {
 		buf[HEAD] = (tc.localPort << 16) + tc.remotePort;
 		buf[SEQNR] = tc.sndNxt;
 		buf[ACKNR] = (fl & FL_ACK) != 0 ? tc.rcvNxt : 0;
-		// TODO: set window according to buffer
+		int wnd = rcvWindow();
 		if ((fl&FL_SYN)!=0) {
-			buf[FLAGS] = 0x60000000 + (fl << 16) + 512; // hlen = 24, mss option						
+			buf[FLAGS] = 0x60000000 + (fl << 16) + wnd; // hlen = 24, mss option						
 		} else {
-			buf[FLAGS] = 0x50000000 + (fl << 16) + 512; // hlen = 20, no options			
+			buf[FLAGS] = 0x50000000 + (fl << 16) + wnd; // hlen = 20, no options			
 		}
 		buf[CHKSUM] = 0; // clear checksum field
 		buf[Ip.CHKSUM] = (PROTOCOL << 16) + p.len - 20; // set protocol and tcp length
 												// in iph checksum for tcp
 												// checksum
-		buf[CHKSUM] = Ip.chkSum(buf, 2, p.len - 8) << 16;
+		buf[CHKSUM] = Ip.chkSum(p, 2) << 16;
 		// TODO: set to 0xffff if 0, or is this only in UDP?
 		// fill in IP header, swap IP addresses and mark for send
 		
@@ -735,10 +868,17 @@ public class Tcp implements Runnable {
 		// need to be retransmitted
 		if (p.len>(DATA<<2) || (fl & (FL_SYN|FL_FIN))!=0) {
 			synchronized (mutex) {
-				tc.outStanding = p;
-				tc.timeout = TIMEOUT;
+				if (tc.rtxEmpty()) {
+					tc.timeout = TIMEOUT;
+				}
+				// callers check for a free entry, see checkAck()
+				if (tc.rtxAdd(p)) {
+					p.isTcpOnFly = true;
+				} else if (Logging.LOG) {
+					Logging.wr("retransmit queue full - segment not retransmittable");
+					Logging.lf();
+				}
 			}
-			p.isTcpOnFly = true;
 		}
 
 		// we send _something_ on this connection
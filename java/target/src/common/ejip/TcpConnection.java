@@ -60,11 +60,31 @@ public class TcpConnection {
 	 */
 	int sndNxt;
 	/**
-	 * The outstandig packet. We only allow one packet on the fly.
+	 * The oldest unacknowledged sequence number.
 	 */
-	Packet outStanding;
+	int sndUna;
 	/**
-	 * Timeout for retransmit of the outstanding packet. Will be
+	 * Window advertised by the remote host in bytes.
+	 */
+	int sndWnd;
+	/**
+	 * Maximum number of unacknowledged segments per connection.
+	 */
+	public final static int MAX_OUTSTANDING = 4;
+	/**
+	 * The retransmission queue: sent segments that are not yet
+	 * acknowledged, oldest first. The packets are from the Ejip
+	 * pool and marked as isTcpOnFly.
+	 */
+	private Packet[] rtxQueue;
+	private int rtxHead;
+	private int rtxCnt;
+	/**
+	 * Number of duplicate ACKs received for sndUna.
+	 */
+	int dupAcks;
+	/**
+	 * Timeout for retransmit of the oldest outstanding packet. Will be
 	 * decremented and retransmit on 0
 	 */
 	int timeout;
@@ -80,123 +100,257 @@ public class TcpConnection {
 	int idleTime;
 	
 	/**
-	 * Maximum number of active TCP connections
+	 * Default number of active TCP connections
 	 */
 	final static int CNT = 10;
-	static TcpConnection[] connections;
-	
-	private static Object mutex = new Object();
-	static {
-		connections = new TcpConnection[CNT];
-		for (int i=0; i<CNT; ++i) {
-			connections[i] = new TcpConnection();
+	/**
+	 * Maximum probe length in the connection table. Bounds the
+	 * lookup for the WCET analysis.
+	 */
+	final static int MAX_PROBE = 4;
+
+	/**
+	 * The connections of one Tcp instance: an open addressed hash
+	 * table on the 4-tuple and a free list, so that lookup and
+	 * allocation of a connection are constant time.
+	 */
+	static class Pool {
+
+		TcpConnection[] connections;
+		/**
+		 * A slot is empty when it is null or the connection is FREE.
+		 */
+		private TcpConnection[] table;
+		private int mask;
+		/**
+		 * Free connections, linked with nextFree.
+		 */
+		private TcpConnection free;
+		/**
+		 * Number of connections not in the free list.
+		 */
+		private int used;
+
+		private Object mutex = new Object();
+
+		/**
+		 * Allocate cnt connections. The table has at least twice
+		 * as many slots.
+		 */
+		Pool(int cnt) {
+			int size = MAX_PROBE;
+			while (size < (cnt<<1)) {
+				size <<= 1;
+			}
+			connections = new TcpConnection[cnt];
+			for (int i=0; i<cnt; ++i) {
+				TcpConnection tc = new TcpConnection(this);
+				connections[i] = tc;
+				tc.nextFree = free;
+				free = tc;
+			}
+			table = new TcpConnection[size];
+			mask = size-1;
 		}
-	}
-	
-	
-	private TcpConnection() {
-		state = Tcp.FREE;
-		// not needed, right?
-//		Packet os = outStanding;
-//		outStanding = null;
-//		if (os!=null) {
-//			os.setStatus(Packet.FREE);			
-//		}
-	}
-	
-	public static TcpConnection findConnection(Packet p) {
-		
-		int[] buf = p.buf;
 
-		int dstPort = buf[Tcp.HEAD];
-		int srcPort = dstPort >>> 16;
-		dstPort &= 0xffff;
-		int src = buf[Ip.SOURCE];
-		int dest = buf[Ip.DESTINATION];
-		
-		return findConnection(src, srcPort, dest, dstPort);
-	}
+		TcpConnection findConnection(Packet p) {
 
-	public static TcpConnection findConnection(int src, int srcPort, int dest, int dstPort) {
-				
-		TcpConnection free = null;
-		TcpConnection conn = null;
-				
-		synchronized (mutex) {
-			for (int i=0; i<CNT; ++i) {
-				TcpConnection tc = connections[i];
-				if (tc.state!=Tcp.FREE) {
-					if (dstPort==tc.localPort &&
-						srcPort==tc.remotePort &&
-						src==tc.remoteIP &&
-						dest==tc.localIP) {
-						
-						conn = tc;
-						break;
+			int[] buf = p.buf;
+
+			int dstPort = buf[Tcp.HEAD];
+			int srcPort = dstPort >>> 16;
+			dstPort &= 0xffff;
+			int src = buf[Ip.SOURCE];
+			int dest = buf[Ip.DESTINATION];
+
+			return findConnection(src, srcPort, dest, dstPort);
+		}
+
+		/**
+		 * Find the connection for the 4-tuple or allocate a new one.
+		 * @return the connection or null if no connection is free
+		 */
+		TcpConnection findConnection(int src, int srcPort, int dest, int dstPort) {
+
+			TcpConnection conn = null;
+			int freeSlot = -1;
+
+			synchronized (mutex) {
+				int h = hash(src, srcPort, dest, dstPort);
+				for (int i=0; i<MAX_PROBE; ++i) { // @WCA loop<=MAX_PROBE
+					int j = (h+i) & mask;
+					TcpConnection tc = table[j];
+					if (tc!=null && tc.state!=Tcp.FREE) {
+						if (dstPort==tc.localPort &&
+							srcPort==tc.remotePort &&
+							src==tc.remoteIP &&
+							dest==tc.localIP) {
+
+							conn = tc;
+							break;
+						}
+					} else {
+						if (freeSlot==-1) {
+							freeSlot = j;
+						}
 					}
-				} else {
-					if (free==null) {
-						free = tc;
+				}
+				// if not found get a new one when possible
+				if (conn==null && freeSlot!=-1 && free!=null) {
+					conn = free;
+					free = conn.nextFree;
+					conn.nextFree = null;
+					++used;
+					if (conn.slot!=-1 && table[conn.slot]==conn) {
+						table[conn.slot] = null;
 					}
+					table[freeSlot] = conn;
+					conn.slot = freeSlot;
+					conn.state = Tcp.CLOSED;
+					conn.localPort = dstPort;
+					conn.remotePort = srcPort;
+					conn.remoteIP = src;
+					conn.localIP = dest;
 				}
-			}
-			// if not found get a new one when possible
-			if (conn==null) {
-				conn = free;
-				if (free!=null) {
-					free.state = Tcp.CLOSED;
-					free.localPort = dstPort;
-					free.remotePort = srcPort;
-					free.remoteIP = src;
-					free.localIP = dest;
+
+				if (conn != null) {
+					// we use it, so we're not idle
+					conn.idleTime = 0;
 				}
 			}
 
-			if (conn != null) {
-				// we use it, so we're not idle
-				conn.idleTime = 0;
-			}
-		}
-		
-		int cnt=0;
-		for (int i=0; i<CNT; ++i ) {
-			if (connections[i].state!=Tcp.FREE) {
-				++cnt;
+			if (Logging.LOG) {
+				Logging.wr("getCon: con in use: ");
+				Logging.intVal(used);
+				Logging.lf();
 			}
+
+			return conn;
 		}
 
-		if (Logging.LOG) {
-			Logging.wr("getCon: con in use: ");
-			Logging.intVal(cnt);
-			Logging.lf();
+		/**
+		 * Put a closed connection back to the free list.
+		 * Call with the lock held.
+		 */
+		private void release(TcpConnection tc) {
+			tc.nextFree = free;
+			free = tc;
+			--used;
 		}
+	}
+
+	private final Pool pool;
+	/**
+	 * Next connection in the free list of the pool.
+	 */
+	private TcpConnection nextFree;
+	/**
+	 * Slot of this connection in the table, -1 if not inserted.
+	 */
+	private int slot;
 
-		return conn;
+	private TcpConnection(Pool pool) {
+		this.pool = pool;
+		state = Tcp.FREE;
+		slot = -1;
+		rtxQueue = new Packet[MAX_OUTSTANDING];
+	}
+
+	private static int hash(int src, int srcPort, int dest, int dstPort) {
+		int h = src ^ dest ^ ((srcPort<<16) + dstPort);
+		h ^= h>>>16;
+		h *= 0x45d9f3b;
+		return h ^ (h>>>16);
 	}
 	
-	public static TcpConnection getFreeConnection() {
-		
-		// local port number is the connection number
-		// tc.localPort = 1024+i;
-		return null;
+	boolean rtxEmpty() {
+		return rtxCnt==0;
+	}
+
+	boolean rtxFull() {
+		return rtxCnt==MAX_OUTSTANDING;
 	}
 
 	/**
-	 * Close the connection and return any outstanding packet to the pool.
+	 * The oldest unacknowledged segment.
+	 * @return the packet or null if all segments are acknowledged
+	 */
+	Packet rtxFirst() {
+		return rtxCnt==0 ? null : rtxQueue[rtxHead];
+	}
+
+	/**
+	 * Append a sent segment to the retransmission queue.
+	 * @return false if the queue is full
+	 */
+	boolean rtxAdd(Packet p) {
+		if (rtxCnt==MAX_OUTSTANDING) {
+			return false;
+		}
+		int i = rtxHead+rtxCnt;
+		if (i>=MAX_OUTSTANDING) i -= MAX_OUTSTANDING;
+		rtxQueue[i] = p;
+		++rtxCnt;
+		return true;
+	}
+
+	/**
+	 * Cumulative acknowledgment: return all segments that end at
+	 * or before ack to the pool.
+	 * @return number of released segments
+	 */
+	int rtxAck(int ack, Ejip ejip) {
+		int cnt = 0;
+		for (int i=0; i<MAX_OUTSTANDING; ++i) { // @WCA loop<=MAX_OUTSTANDING
+			if (rtxCnt==0) break;
+			Packet p = rtxQueue[rtxHead];
+			if (ack-segEnd(p) < 0) break;
+			rtxQueue[rtxHead] = null;
+			if (++rtxHead==MAX_OUTSTANDING) rtxHead = 0;
+			--rtxCnt;
+			++cnt;
+			p.isTcpOnFly = false;
+			ejip.returnPacket(p);
+		}
+		return cnt;
+	}
+
+	/**
+	 * Sequence number following a sent segment. SYN and FIN
+	 * count for one.
+	 */
+	static int segEnd(Packet p) {
+		int[] buf = p.buf;
+		int i = buf[Tcp.FLAGS] >>> 16;
+		int end = buf[Tcp.SEQNR] + p.len - 20 - ((i >>> 12) << 2);
+		if ((i & Tcp.FL_SYN)!=0) ++end;
+		if ((i & Tcp.FL_FIN)!=0) ++end;
+		return end;
+	}
+	
+	/**
+	 * Close the connection and return all outstanding packets to the pool.
 	 *
 	 */
 	public void close(Ejip ejip) {
 
-		synchronized (mutex) {
-			if (outStanding != null) {
-				Packet os = outStanding;
+		synchronized (pool.mutex) {
+			for (int i=0; i<MAX_OUTSTANDING; ++i) { // @WCA loop<=MAX_OUTSTANDING
+				if (rtxCnt==0) break;
+				Packet os = rtxQueue[rtxHead];
 				// recycle the outstanding packet and reset isTcpOnFly
-				outStanding = null;
+				rtxQueue[rtxHead] = null;
+				if (++rtxHead==MAX_OUTSTANDING) rtxHead = 0;
+				--rtxCnt;
 				os.isTcpOnFly = false;
 				ejip.returnPacket(os);
 			}
-			state = Tcp.FREE;
-			outStanding = null;
+			rtxHead = 0;
+			dupAcks = 0;
+			if (state!=Tcp.FREE) {
+				state = Tcp.FREE;
+				pool.release(this);
+			}
 		}
 	}
 }
@@ -201,10 +201,11 @@ public class Udp implements Runnable {
 
 		int i;
 		int[] buf = p.buf;
+		int len = p.next==null ? p.len : p.totalLen();
 
 		// IP header
 		// TODO unique id for sent packet
-		buf[0] = 0x45000000 + p.len;		// ip length	(header without options)
+		buf[0] = 0x45000000 + len;		// ip length	(header without options)
 		buf[1] = Ip.getId();				// identification, no fragmentation
 		buf[3] = srcIp;
 		buf[4] = dstIp;
@@ -213,9 +214,10 @@ public class Udp implements Runnable {
 		// 'set' port numbers
 		buf[HEAD] = ((port+10000)<<16) + port;		// src port = dst port + 10000
 		// Fill in UDP header
-		buf[HEAD+1] = (p.len-20)<<16;
-		buf[2] = (PROTOCOL<<16) + p.len - 20; 		// set protocol and udp length in iph checksum for tcp checksum
-		i = Ip.chkSum(buf, 2, p.len-8);
+		buf[HEAD+1] = (len-20)<<16;
+		buf[2] = (PROTOCOL<<16) + len - 20; 		// set protocol and udp length in iph checksum for tcp checksum
+		// uses the payload sum from Ip.setData() and covers the fragments
+		i = Ip.chkSum(p, 2);
 		if (i==0) i = 0xffff;
 		buf[HEAD+1] |= i;
 
@@ -88,6 +88,14 @@ public class Nfs {
 		this.gid = gid;
 	}
 	
+	public int getUID() {
+		return uid;
+	}
+	
+	public int getGID() {
+		return gid;
+	}
+	
 	public int getNfsPort() {
 		return nfsPort;
 	}
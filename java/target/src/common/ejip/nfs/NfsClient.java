@@ -107,6 +107,11 @@ public class NfsClient {
 	
 	WaitList[] waitList = new WaitList[MAX_PACKETS];
 	
+	/**
+	 * pipelined transfer, gets the replies with a matching xid
+	 */
+	NfsPipeline pipeline;
+	
 	protected GetAttr3Res getAttrRes;
 
 	/**
@@ -163,6 +168,25 @@ public class NfsClient {
 	}
 	
 	protected int newHandle(int action, ResultType dataStruct, int service) {
+		int id = nextXid();
+		for (int i = 0; i < waitList.length; i++) {
+			if (waitList[i].xid == 0) {
+				waitList[i].xid = id;
+				waitList[i].service = service;
+				waitList[i].action = action;
+				if (dataStruct != null) {
+					waitList[i].dataStruct = dataStruct;
+				}
+				break;
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * @return a new xid, not registered in the wait list
+	 */
+	protected synchronized int nextXid() {
 		if (hid == 0) {
 			int ts;
 			ts = Timer.us();
@@ -175,16 +199,9 @@ public class NfsClient {
 		} else {
 			hid ++;
 		}
-		for (int i = 0; i < waitList.length; i++) {
-			if (waitList[i].xid == 0) {
-				waitList[i].xid = hid;
-				waitList[i].service = service;
-				waitList[i].action = action;
-				if (dataStruct != null) {
-					waitList[i].dataStruct = dataStruct;
-				}
-				break;
-			}
+		// 0 marks a free slot
+		if (hid == 0) {
+			hid ++;
 		}
 		return hid;
 	}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) Martin Schoeberl, martin@jopdesign.com
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. All advertising materials mentioning features or use of this software
+ *    must display the following acknowledgement:
+ *	This product includes software developed by Martin Schoeberl
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE REGENTS AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package ejip.nfs;
+
+import ejip.Packet;
+import ejip.Udp;
+
+/**
+ * Pipelined READ or WRITE of a file range. Up to depth RPCs of
+ * CHUNK_SIZE bytes are kept in flight. Replies are matched by xid and may
+ * arrive in any order. Lost calls are retransmitted with the same xid and
+ * a doubled timeout, up to MAX_RETRIES times.
+ * 
+ * The calls are encoded directly into packets from the ejip pool and the
+ * replies are decoded in the received packet, without a StringBuffer copy.
+ * The caller is notified with callback(error) when the transfer is done.
+ * 
+ * One pipeline can be registered per NfsClient. The depth should leave
+ * some packets of the pool for receiving.
+ */
+public class NfsPipeline {
+
+	/**
+	 * bytes per READ or WRITE call, fits into one packet with the RPC and
+	 * NFS headers
+	 */
+	public static final int CHUNK_SIZE = 1024;
+	/**
+	 * first retransmission timeout in ms, doubled for each retry
+	 */
+	public static final int RETRANSMIT_TIMEOUT = 500;
+	public static final int MAX_RETRIES = 5;
+	/**
+	 * maximum number of calls in flight, the loop bound for the slots
+	 */
+	public static final int MAX_DEPTH = 8;
+
+	/**
+	 * error values besides the NFS3ERR_* codes
+	 */
+	public static final int ERROR_TIMEOUT = -1;
+	public static final int ERROR_RPC = -2;
+
+	private static final int FATTR3_SIZE = 84;
+	private static final int WCC_ATTR_SIZE = 24;
+
+	private NfsClient nc;
+	private Callbackable caller;
+
+	// one slot per call in flight, xid 0 marks a free slot
+	private int[] xid;
+	private int[] pos;		// position of the chunk in the transfer
+	private int[] len;
+	private int[] tstamp;
+	private int[] timeout;
+	private int[] retries;
+	private boolean[] sent;
+
+	private boolean busy;
+	private boolean writing;
+	private StringBuffer fileHandle;
+	private long fileOffset;
+	private byte[] data;
+	private int dataOff;
+	private int length;		// shortened on end of file
+	private int next;		// first byte not yet requested
+	private int stable;
+	private int error;
+
+	/**
+	 * @param nc the client, needs the NFS port set
+	 * @param depth maximum number of calls in flight, at most MAX_DEPTH
+	 * @param caller gets callback(error) at the end of a transfer, may be null
+	 */
+	public NfsPipeline(NfsClient nc, int depth, Callbackable caller) {
+		if (depth < 1) {
+			depth = 1;
+		}
+		if (depth > MAX_DEPTH) {
+			depth = MAX_DEPTH;
+		}
+		this.nc = nc;
+		this.caller = caller;
+		xid = new int[depth];
+		pos = new int[depth];
+		len = new int[depth];
+		tstamp = new int[depth];
+		timeout = new int[depth];
+		retries = new int[depth];
+		sent = new boolean[depth];
+		nc.pipeline = this;
+	}
+
+	/**
+	 * Start reading cnt bytes at offset of the file into b.
+	 * 
+	 * @return false if a transfer is still running
+	 */
+	public synchronized boolean read(StringBuffer fHandle, long offset, byte[] b, int off, int cnt) {
+		return start(false, fHandle, offset, b, off, cnt, 0);
+	}
+
+	/**
+	 * Start writing cnt bytes of b at offset of the file.
+	 * 
+	 * @param stable One of FILE_SYNC, DATA_SYNC or UNSTABLE
+	 * @return false if a transfer is still running
+	 */
+	public synchronized boolean write(StringBuffer fHandle, long offset, byte[] b, int off, int cnt, int stable) {
+		return start(true, fHandle, offset, b, off, cnt, stable);
+	}
+
+	public synchronized boolean isBusy() {
+		return busy;
+	}
+
+	/**
+	 * @return NFS3_OK, an NFS3ERR_* code, ERROR_TIMEOUT or ERROR_RPC
+	 */
+	public int getError() {
+		return error;
+	}
+
+	/**
+	 * @return number of bytes transferred, less than requested when a
+	 *         read hit the end of the file
+	 */
+	public int getCount() {
+		return length;
+	}
+
+	private boolean start(boolean wr, StringBuffer fHandle, long offset, byte[] b, int off, int cnt, int stbl) {
+		if (busy) {
+			return false;
+		}
+		busy = true;
+		writing = wr;
+		fileHandle = fHandle;
+		fileOffset = offset;
+		data = b;
+		dataOff = off;
+		length = cnt;
+		next = 0;
+		stable = stbl;
+		error = NfsConst.NFS3_OK;
+		fill();
+		if (length == 0) {
+			finish(NfsConst.NFS3_OK);
+		}
+		return true;
+	}
+
+	/**
+	 * put the next chunks into free slots
+	 */
+	private void fill() {
+		for (int i = 0; i < xid.length && next < length; i++) { //@WCA loop<=MAX_DEPTH
+			if (xid[i] == 0) {
+				int n = length - next;
+				if (n > CHUNK_SIZE) {
+					n = CHUNK_SIZE;
+				}
+				pos[i] = next;
+				len[i] = n;
+				next += n;
+				issue(i);
+			}
+		}
+	}
+
+	/**
+	 * new call for slot i
+	 */
+	private void issue(int i) {
+		xid[i] = nc.nextXid();
+		timeout[i] = RETRANSMIT_TIMEOUT;
+		retries[i] = 0;
+		send(i);
+	}
+
+	/**
+	 * (re)send the call of slot i, it stays unsent when the packet pool
+	 * is empty and is sent from loop()
+	 */
+	private void send(int i) {
+		Packet p = nc.ejip.getFreePacket(nc.ipLink);
+		sent[i] = false;
+		if (p == null) {
+			return;
+		}
+		Rpc.setupHeader(p, xid[i], RpcConst.AUTH_SYS, nc.nfs.getUID(), nc.nfs.getGID(), NfsConst.NFS_PROGRAM,
+				NfsConst.NFS_VERSION, writing ? NfsConst.NFS3PROC3_WRITE : NfsConst.NFS3PROC3_READ, nc.hostname);
+		Xdr.append(p, fileHandle);
+		Xdr.append(p, fileOffset + pos[i]);
+		Xdr.append(p, len[i]);
+		if (writing) {
+			Xdr.append(p, stable);
+			Xdr.append(p, data, dataOff + pos[i], len[i]);
+		}
+		nc.net.getUdp().build(p, nc.destIP, nc.nfs.getNfsPort());
+		sent[i] = true;
+		tstamp[i] = (int) System.currentTimeMillis();
+	}
+
+	/**
+	 * Handle a received packet.
+	 * 
+	 * @return true if it was a reply for this pipeline, the packet is not
+	 *         returned to the pool
+	 */
+	synchronized boolean reply(Packet p) {
+		if (!busy || p.len < (Udp.DATA << 2) + 4) {
+			return false;
+		}
+		int x = Xdr.getInt(p, Udp.DATA << 2);
+		int i;
+		for (i = 0; i < xid.length; i++) { //@WCA loop<=MAX_DEPTH
+			if (xid[i] == x) {
+				break;
+			}
+		}
+		if (i == xid.length || x == 0) {
+			// also late replies of retransmitted calls end here
+			return false;
+		}
+
+		int rpos = Rpc.decodeReply(p);
+		if (rpos < 0 || p.len < rpos + 4) {
+			finish(ERROR_RPC);
+			return true;
+		}
+		int status = Xdr.getInt(p, rpos);
+		rpos += 4;
+		if (status != NfsConst.NFS3_OK) {
+			finish(status);
+			return true;
+		}
+
+		int n;
+		boolean eof = false;
+		if (writing) {
+			// wcc_data: pre_op_attr and post_op_attr
+			if (Xdr.getInt(p, rpos) != 0) {
+				rpos += WCC_ATTR_SIZE;
+			}
+			rpos += 4;
+			if (Xdr.getInt(p, rpos) != 0) {
+				rpos += FATTR3_SIZE;
+			}
+			rpos += 4;
+			if (p.len < rpos + 4) {
+				finish(ERROR_RPC);
+				return true;
+			}
+			n = Xdr.getInt(p, rpos);
+		} else {
+			// post_op_attr, count, eof, opaque data
+			if (Xdr.getInt(p, rpos) != 0) {
+				rpos += FATTR3_SIZE;
+			}
+			rpos += 4;
+			if (p.len < rpos + 12) {
+				finish(ERROR_RPC);
+				return true;
+			}
+			n = Xdr.getInt(p, rpos);
+			eof = Xdr.getInt(p, rpos + 4) != 0;
+			rpos += 12;
+			if (n > len[i]) {
+				n = len[i];
+			}
+			if (n < 0 || p.len < rpos + n) {
+				finish(ERROR_RPC);
+				return true;
+			}
+			Xdr.getBytes(p, rpos, data, dataOff + pos[i], n);
+		}
+
+		if (n > len[i]) {
+			n = len[i];
+		}
+		if (eof && pos[i] + n < length) {
+			length = pos[i] + n;
+		}
+		if (n < len[i] && !eof && pos[i] + n < length) {
+			if (n <= 0) {
+				// the server makes no progress
+				finish(ERROR_RPC);
+				return true;
+			}
+			// short transfer, ask for the rest
+			pos[i] += n;
+			len[i] -= n;
+			issue(i);
+		} else {
+			xid[i] = 0;
+			fill();
+		}
+
+		checkDone();
+		return true;
+	}
+
+	/**
+	 * Send pending calls and retransmit lost ones, called periodically by
+	 * the UDP handler.
+	 */
+	synchronized void loop() {
+		if (!busy) {
+			return;
+		}
+		int now = (int) System.currentTimeMillis();
+		for (int i = 0; i < xid.length; i++) { //@WCA loop<=MAX_DEPTH
+			if (xid[i] != 0) {
+				if (!sent[i]) {
+					send(i);
+				} else if (now - tstamp[i] > timeout[i]) {
+					if (retries[i] >= MAX_RETRIES) {
+						finish(ERROR_TIMEOUT);
+						return;
+					}
+					retries[i]++;
+					timeout[i] <<= 1;
+					send(i);
+				}
+			}
+		}
+	}
+
+	private void checkDone() {
+		if (!busy) {
+			return;
+		}
+		for (int i = 0; i < xid.length; i++) { //@WCA loop<=MAX_DEPTH
+			// chunks behind the end of file are not waited for
+			if (xid[i] != 0 && pos[i] < length) {
+				return;
+			}
+		}
+		if (next >= length) {
+			finish(NfsConst.NFS3_OK);
+		}
+	}
+
+	private void finish(int err) {
+		for (int i = 0; i < xid.length; i++) { //@WCA loop<=MAX_DEPTH
+			xid[i] = 0;
+		}
+		error = err;
+		busy = false;
+		if (caller != null) {
+			caller.callback(err);
+		}
+	}
+}
@@ -30,6 +30,8 @@
 
 package ejip.nfs;
 
+import ejip.Packet;
+import ejip.Udp;
 import ejip.nfs.datastructs.RpcDecodeMessageResult;
 
 /**
@@ -61,7 +63,7 @@ public class Rpc {
 			break;
 		case RpcConst.AUTH_SYS:
 			Xdr.append(rpcMessageBuffer,RpcConst.AUTH_SYS);
-			Xdr.append(rpcMessageBuffer,(hostname.length()) + 4 - (hostname.length()%4) + 6 * 4);
+			Xdr.append(rpcMessageBuffer,((hostname.length() + 3) & ~3) + 6 * 4);
 			Xdr.append(rpcMessageBuffer,262);
 			Xdr.append(rpcMessageBuffer,hostname);
 			Xdr.append(rpcMessageBuffer,uid);
@@ -74,6 +76,66 @@ public class Rpc {
 		}
 	}
 	
+	/**
+	 * writes the header directly into the payload of packet p
+	 * 
+	 * @param xid - the xid to set
+	 * @param authType - authorization type (AUTH_NULL or AUTH_SYS)
+	 */
+	public static void setupHeader(Packet p, int xid, byte authType, int uid, int gid, int prog, int vers, int proc, StringBuffer hostname) {
+		p.setPayloadOffset(Udp.DATA);
+		Xdr.append(p,xid);
+		Xdr.append(p,0); //message type = call
+		Xdr.append(p,RpcConst.RPC_RPCVERS);
+		Xdr.append(p,prog);
+		Xdr.append(p,vers);
+		Xdr.append(p,proc);
+		switch (authType) {
+		case RpcConst.AUTH_NULL:
+			Xdr.append(p,0);
+			Xdr.append(p,0);
+			Xdr.append(p,0);
+			Xdr.append(p,0);
+			break;
+		case RpcConst.AUTH_SYS:
+			Xdr.append(p,RpcConst.AUTH_SYS);
+			Xdr.append(p,((hostname.length() + 3) & ~3) + 6 * 4);
+			Xdr.append(p,262);
+			Xdr.append(p,hostname);
+			Xdr.append(p,uid);
+			Xdr.append(p,gid);
+			Xdr.append(p,1);
+			Xdr.append(p,0);
+			Xdr.append(p,RpcConst.AUTH_NULL);
+			Xdr.append(p,0);
+			break;
+		}
+	}
+	
+	/**
+	 * decodes the header of an rpc reply in place
+	 * 
+	 * @return the byte position of the procedure results in p, -1 if the
+	 *         message is not an accepted and successful reply
+	 */
+	public static int decodeReply(Packet p) {
+		int pos = Udp.DATA << 2;
+
+		if (p.len < pos + 24) {
+			return -1;
+		}
+		if (Xdr.getInt(p, pos + 4) != RpcConst.TYPE_REPLY
+				|| Xdr.getInt(p, pos + 8) != RpcConst.RPC_MSG_RPLY_STAT_ACCEPTED) {
+			return -1;
+		}
+		// skip the verifier
+		pos += 20 + ((Xdr.getInt(p, pos + 16) + 3) & ~3);
+		if (p.len < pos + 4 || Xdr.getInt(p, pos) != RpcConst.RPC_MSG_ACCEPT_STAT_SUCCESS) {
+			return -1;
+		}
+		return pos + 4;
+	}
+	
 	/**
 	 * decodes the rpc message state
 	 * 
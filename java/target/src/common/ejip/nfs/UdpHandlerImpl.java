@@ -52,6 +52,12 @@ class UdpHandlerImpl implements UdpHandler {
 	public void request(Packet p) {
 		RpcDecodeMessageResult result;
 
+		// replies of a pipelined transfer are decoded in the packet
+		if (nc.pipeline != null && nc.pipeline.reply(p)) {
+			nc.ejip.returnPacket(p);
+			return;
+		}
+
 		Ip.getData(p, Udp.DATA, decodeMessageBuffer);
 		nc.ejip.returnPacket(p);
 		result = Rpc.decodeMessage(decodeMessageBuffer);
@@ -79,6 +85,9 @@ class UdpHandlerImpl implements UdpHandler {
 	 * checks for lost packets 
 	 */
 	public void loop() {
+		if (nc.pipeline != null) {
+			nc.pipeline.loop();
+		}
 		for (int i=0; i < nc.waitList.length; i++) {
 			if (nc.waitList[i].xid != 0) {
 				if (((int)System.currentTimeMillis() - nc.waitList[i].tstamp) > NfsClient.PACKET_TIMEOUT) {
@@ -33,12 +33,20 @@
  */
 package ejip.nfs;
 
+import ejip.Packet;
+
 /**
  * @author Daniel Reichhard
  * 
  */
 public class Xdr {
 
+	/**
+	 * opaque data is copied into or out of a single packet, the
+	 * loop bound in bytes
+	 */
+	public static final int MAX_OPAQUE = Packet.MTU;
+
 	/**
 	 * read an integer at position n (non-consuming)
 	 * 
@@ -219,4 +227,104 @@ public class Xdr {
 		}
 	}
 
+	/**
+	 * append an integer to the payload of packet <code>p</code>
+	 * 
+	 * @param p
+	 *            the packet, the payload offset has to be set
+	 * @param i
+	 *            the integer to append
+	 */
+	public static void append(Packet p, int i) {
+		p.putInt(i);
+	}
+
+	/**
+	 * append a long integer to the payload of packet <code>p</code>
+	 */
+	public static void append(Packet p, long i) {
+		p.putInt((int) (i >>> 32));
+		p.putInt((int) i);
+	}
+
+	/**
+	 * append a StringBuffer s as variable length opaque to the payload of
+	 * packet <code>p</code>
+	 */
+	public static void append(Packet p, StringBuffer s) {
+		p.putInt(s.length());
+		Xdr.appendRaw(p, s);
+	}
+
+	/**
+	 * append a StringBuffer as Opaque with fixed size to the payload of
+	 * packet <code>p</code>
+	 */
+	public static void appendRaw(Packet p, StringBuffer s) {
+		int cnt = s.length();
+		for (int i = 0; i < cnt; i++) { //@WCA loop<=MAX_OPAQUE
+			p.putByte(s.charAt(i));
+		}
+		for (int i = cnt; (i & 3) != 0; i++) { //@WCA loop<=3
+			p.putByte(0);
+		}
+	}
+
+	/**
+	 * append cnt bytes of b as variable length opaque to the payload of
+	 * packet <code>p</code>
+	 */
+	public static void append(Packet p, byte[] b, int off, int cnt) {
+		int i;
+		p.putInt(cnt);
+		// XDR items are word aligned, so whole words can be written
+		for (i = 0; i + 4 <= cnt; i += 4) { //@WCA loop<=MAX_OPAQUE/4
+			p.putInt(b[off + i] << 24 | (b[off + i + 1] & 0xff) << 16
+					| (b[off + i + 2] & 0xff) << 8 | (b[off + i + 3] & 0xff));
+		}
+		for (; i < cnt; i++) { //@WCA loop<=3
+			p.putByte(b[off + i]);
+		}
+		for (; (i & 3) != 0; i++) { //@WCA loop<=3
+			p.putByte(0);
+		}
+	}
+
+	/**
+	 * read the integer at byte position pos of packet <code>p</code>
+	 * 
+	 * @param p
+	 *            the packet
+	 * @param pos
+	 *            the position in bytes from the start of the IP header,
+	 *            a multiple of 4
+	 * @return the integer
+	 */
+	public static int getInt(Packet p, int pos) {
+		return p.buf[pos >>> 2];
+	}
+
+	public static long getLong(Packet p, int pos) {
+		return ((long) p.buf[pos >>> 2]) << 32 | (p.buf[(pos >>> 2) + 1] & 0xffffffffL);
+	}
+
+	/**
+	 * copy cnt bytes starting at byte position pos of packet
+	 * <code>p</code> to b
+	 */
+	public static void getBytes(Packet p, int pos, byte[] b, int off, int cnt) {
+		int[] buf = p.buf;
+		int i = 0;
+		for (; i + 4 <= cnt; i += 4) { //@WCA loop<=MAX_OPAQUE/4
+			int w = buf[(pos + i) >>> 2];
+			b[off + i] = (byte) (w >>> 24);
+			b[off + i + 1] = (byte) (w >>> 16);
+			b[off + i + 2] = (byte) (w >>> 8);
+			b[off + i + 3] = (byte) w;
+		}
+		for (; i < cnt; i++) { //@WCA loop<=3
+			b[off + i] = (byte) (buf[(pos + i) >>> 2] >>> (24 - (((pos + i) & 3) << 3)));
+		}
+	}
+
 }
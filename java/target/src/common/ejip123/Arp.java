@@ -34,13 +34,41 @@ import ejip123.util.Dbg;
 
 /** see RFC 826. */
 class Arp{
-private final static int ENTRY_CNT = 4;
-private static final Entry[] list;
+/** Default number of ARP entries. */
+final static int ENTRY_CNT = 4;
+/** Maximum probe length in the ARP table. Bounds lookup and insert for the WCET analysis. */
+private final static int MAX_PROBE = 4;
+/** Open addressed hash table on the IP address with a bounded probe sequence. */
+private static Entry[] list;
+private static int mask;
+/** Age counter for the replacement of the oldest entry in the probe sequence. */
+private static int ageCnt;
 public static final int ETHER_PROT = 0x0806;
 
 private Arp(){
 }
 
+/**
+ Allocates the ARP table for entryCnt hosts. The table gets at least twice as many slots.
+
+ @param entryCnt Number of hosts. */
+static void init(int entryCnt){
+	int size = MAX_PROBE;
+	while(size < (entryCnt<<1))
+		size <<= 1;
+	Entry[] tab = new Entry[size];
+	for(int i = 0; i < size; ++i)
+		tab[i] = new Entry();
+	mask = size - 1;
+	list = tab;
+}
+
+private static int hash(int ip){
+	int h = ip^(ip >>> 16);
+	h *= 0x45d9f3b;
+	return h^(h >>> 16);
+}
+
 /**
  Adds an entry into the ARP table.
 
@@ -49,22 +77,22 @@ private static void add(Packet p){
 
 	int ip_src = (p.buf[3] << 16) + (p.buf[4] >>> 16);
 
+	// take the entry for that IP, a free one or the oldest in the probe sequence
+	int h = hash(ip_src);
 	int nr = -1;
-	int oldest = list[0].age;
-	int youngest = oldest;
-	for(int i = 0; i < ENTRY_CNT; ++i){
-		if(list[i].ip == ip_src){
+	for(int i = 0; i < MAX_PROBE; ++i){
+		int j = (h + i)&mask;
+		Entry e = list[j];
+		if(e.ip == ip_src){
 			// we have an entry for this IP address
-			nr = i;
+			nr = j;
+			break;
 		}
-		if(list[i].age < oldest){
-			oldest = list[i].age;
-		} else if(list[i].age > youngest){
-			youngest = list[i].age;
+		if(nr == -1 || (list[nr].valid && (!e.valid || e.age < list[nr].age))){
+			nr = j;
 		}
 	}
-	// if there is no previous entry for that IP, replace the oldest entry
-	Entry e = list[(nr == -1) ? oldest : nr];
+	Entry e = list[nr];
 	e.ip = ip_src;
 
 	e.mac[0] = p.buf[2] >>> 24;
@@ -75,14 +103,16 @@ private static void add(Packet p){
 	e.mac[5] = (p.buf[3] >>> 16)&0xff;
 
 	e.valid = true;
-	e.age = ++youngest;
+	e.age = ++ageCnt;
 	dump(nr);
 }
 
 private static Entry find(int ip){
-	for(int i = 0; i < ENTRY_CNT; ++i){
-		if(list[i].ip == ip && list[i].valid){
-			return list[i];
+	int h = hash(ip);
+	for(int i = 0; i < MAX_PROBE; ++i){
+		Entry e = list[(h + i)&mask];
+		if(e.ip == ip && e.valid){
+			return e;
 		}
 	}
 	return null;
@@ -117,9 +147,7 @@ private static class Entry{
 
 static{
 
-	list = new Entry[ENTRY_CNT];
-	for(int i = 0; i < ENTRY_CNT; ++i)
-		list[i] = new Entry();
+	init(ENTRY_CNT);
 	// Static ARP entry: IP Broadcast -> Ethernet Broadcast
 	// this is just one possibility, should be resolved algorithmically not with the table
 	// solved with LinkLayer.isLocalBroadcast(ip)
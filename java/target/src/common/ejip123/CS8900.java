@@ -446,10 +446,17 @@ protected void loop(){
 
 /** allocate buffer, reset chip and start Thread. */
 public static LinkLayer init(int prio, int us, int[] mac, int ipaddr){
+	return init(prio, us, mac, ipaddr, Arp.ENTRY_CNT);
+}
+
+/** allocate buffer and an ARP table for arpCnt hosts, reset chip and start Thread. */
+public static LinkLayer init(int prio, int us, int[] mac, int ipaddr, int arpCnt){
 
 	if(single != null)
 		return single; // already called init()
 
+	Arp.init(arpCnt);
+
 	txFree = true;
 
 	for(int i = 0; i < 6; ++i)
@@ -7,6 +7,14 @@ public class Router{
 private static int CNT;
 private static final Object mutex = new Object();
 private static Route[] routes;
+/** Distinct network masks of the routes, longest prefix first. */
+private static int[] masks;
+private static int maskCnt;
+/** Maximum probe length in the route table. Bounds the lookup for the WCET analysis. */
+private static final int MAX_PROBE = 4;
+/** Open addressed hash table on network and mask. */
+private static Route[] table;
+private static int tabMask;
 private static LinkLayer defaultInterface = null;
 //private static int minMTU = Integer.MAX_VALUE;
 
@@ -20,6 +28,20 @@ private Router(){
 public static void init(int routeCnt){
 	CNT = routeCnt < 0 ? 0 : routeCnt;
 	routes = new Route[CNT];
+	masks = new int[CNT];
+	maskCnt = 0;
+	int size = MAX_PROBE;
+	while(size < (CNT<<1))
+		size <<= 1;
+	table = new Route[size];
+	tabMask = size - 1;
+}
+
+private static int hash(int net, int mask){
+	int h = net^(mask >>> 8);
+	h ^= h >>> 16;
+	h *= 0x45d9f3b;
+	return h^(h >>> 16);
 }
 
 /**
@@ -29,9 +51,14 @@ public static void init(int routeCnt){
  @return The interface to be used or null if there is no corresponding route and no default interface is set. */
 public static LinkLayer getIf(int dstIp){
 	synchronized(mutex){
-		for(int i = 0; i < CNT; i++){
-			Route cur;
-			if((cur = routes[i]) != null && (dstIp&cur.getMask()) == cur.getNet()){
+		// one table probe per distinct mask instead of a scan over all routes
+		for(int m = 0; m < maskCnt; m++){
+			int mask = masks[m];
+			int net = dstIp&mask;
+			int h = hash(net, mask);
+			for(int i = 0; i < MAX_PROBE; i++){
+				Route cur = table[(h + i)&tabMask];
+				if(cur != null && cur.getNet() == net && cur.getMask() == mask){
 /*
 					Dbg.wr("found a route to ");
 					Dbg.ip(dstIp);
@@ -39,7 +66,8 @@ public static LinkLayer getIf(int dstIp){
 					Dbg.ip(cur.getNet());
 					Dbg.lf();
 */
-				return cur.getLinkLayer();
+					return cur.getLinkLayer();
+				}
 			}
 		}
 	}
@@ -48,15 +76,35 @@ public static LinkLayer getIf(int dstIp){
 	return defaultInterface;
 }
 
+/**
+ Adds a route. Routes with a longer network mask take precedence. Network and mask of the route must not be changed
+ after it is added.
+
+ @param r The route.
+ @return False, if the table is full. */
 public static boolean addRoute(Route r){
 //	int mtu = r.getLinkLayer().getMtu();
 	synchronized(mutex){
 //		if(mtu < minMTU)
 //			minMTU = mtu;
 
+		int h = hash(r.getNet(), r.getMask());
+		int slot = -1;
+		for(int i = 0; i < MAX_PROBE; i++){
+			int j = (h + i)&tabMask;
+			if(table[j] == null){
+				slot = j;
+				break;
+			}
+		}
+		if(slot == -1)
+			return false;
+
 		for(int i = 0; i < routes.length; i++){
 			if(routes[i] == null){
 				routes[i] = r;
+				table[slot] = r;
+				addMask(r.getMask());
 				return true;
 			}
 		}
@@ -64,6 +112,22 @@ public static boolean addRoute(Route r){
 	return false;
 }
 
+/* Inserts the mask into the sorted mask list, if it is not yet there. Call with mutex held. */
+private static void addMask(int mask){
+	int i;
+	for(i = 0; i < maskCnt; i++){
+		if(masks[i] == mask)
+			return;
+		// unsigned compare: a longer prefix is a larger mask
+		if((mask^0x80000000) > (masks[i]^0x80000000))
+			break;
+	}
+	for(int j = maskCnt; j > i; j--)
+		masks[j] = masks[j - 1];
+	masks[i] = mask;
+	maskCnt++;
+}
+
 public static LinkLayer getDefaultInterface(){
 	return defaultInterface;
 }
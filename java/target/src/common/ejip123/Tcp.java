@@ -19,6 +19,13 @@ private static int[] ports = null;
 private static TcpConnection[] connections = null;
 /** Maximum number of active TCP connections. */
 private static int MAX_CON = 0;
+/** Maximum probe length in the connection table. Bounds the lookup for the WCET analysis. */
+private static final int MAX_PROBE = 4;
+/** Open addressed hash table on the 4-tuple. A slot is empty when it is null or the connection is not used. */
+private static TcpConnection[] table = null;
+private static int mask = 0;
+/** Table slot of each connection, -1 if not inserted. */
+private static int[] slotOf = null;
 
 private Tcp(){
 }
@@ -30,9 +37,60 @@ public static void init(int handlerCnt, int concurrConnCnt){
 	list = new TcpHandler[MAX_HANDLER];
 	ports = new int[MAX_HANDLER];
 	connections = new TcpConnection[Tcp.MAX_CON];
+	slotOf = new int[Tcp.MAX_CON];
 	for(int i = 0; i < Tcp.MAX_CON; ++i){
 		connections[i] = new TcpConnection();
+		slotOf[i] = -1;
 	}
+	int size = MAX_PROBE;
+	while(size < (MAX_CON<<1))
+		size <<= 1;
+	table = new TcpConnection[size];
+	mask = size - 1;
+}
+
+private static int hash(int remIp, int locIp, int remPort, int locPort){
+	int h = remIp^locIp^((remPort<<16) + locPort);
+	h ^= h >>> 16;
+	h *= 0x45d9f3b;
+	return h^(h >>> 16);
+}
+
+/* Probes the table for a used connection matching the 4-tuple. Call with lock held. */
+private static TcpConnection lookup(int remIp, int locIp, int remPort, int locPort, int h){
+	for(int i = 0; i < MAX_PROBE; ++i){
+		TcpConnection tc = table[(h + i)&mask];
+		if(tc != null && tc.isUsed() && tc.matches(remIp, locIp, remPort, locPort))
+			return tc;
+	}
+	return null;
+}
+
+/* Returns a free slot in the probe sequence or -1. Call with lock held. */
+private static int freeSlot(int h){
+	for(int i = 0; i < MAX_PROBE; ++i){
+		int j = (h + i)&mask;
+		TcpConnection tc = table[j];
+		if(tc == null || !tc.isUsed())
+			return j;
+	}
+	return -1;
+}
+
+/* Takes an unused connection from the pool and puts it into the table slot. Call with lock held. */
+private static TcpConnection insert(int slot){
+	for(int i = 0; i < MAX_CON; ++i){
+		TcpConnection tc = connections[i];
+		if(!tc.isUsed()){
+			int old = slotOf[i];
+			if(old != -1 && table[old] == tc)
+				table[old] = null;
+			table[slot] = tc;
+			slotOf[i] = slot;
+			return tc;
+		}
+	}
+	return null;
 }
 
 /* Called periodic from Net for timeout processing. */
@@ -67,18 +125,14 @@ static void process(Packet p, int off){
 	dstPort &= 0xffff;
 
 	synchronized(lock){
-		TcpConnection free = null;
-		for(int i = 0; i < MAX_CON; ++i){
-			TcpConnection tc = connections[i];
-			if(tc.isUsed()){
-				if(tc.processPacket(src, dst, srcPort, dstPort, p, off)){
-					return;
-				}
-			} else{
-				free = tc;
-			}
+		int h = hash(src, dst, srcPort, dstPort);
+		TcpConnection tc = lookup(src, dst, srcPort, dstPort, h);
+		if(tc != null && tc.processPacket(src, dst, srcPort, dstPort, p, off)){
+			return;
 		}
 		// if not found get a new one if possible or drop the packet
+		int slot = freeSlot(h);
+		TcpConnection free = slot == -1 ? null : insert(slot);
 		if(free != null){
 //			Dbg.wr("new con\n");
 			free.newIncoming(src, dst, srcPort, dstPort, p, off);
@@ -139,17 +193,11 @@ public static TcpConnection open(int srcIp, int dstIp, int srcPort, int dstPort,
 			return null;
 
 		// check that there is no matching connection yet
-		TcpConnection free = null;
-		for(int i = 0; i < MAX_CON; ++i){
-			TcpConnection tc = connections[i];
-			if(tc.isUsed()){
-				if(tc.matches(srcIp, dstIp, srcPort, dstPort)){
-					return null;
-				}
-			} else{
-				free = tc;
-			}
-		}
+		int h = hash(dstIp, srcIp, dstPort, srcPort);
+		if(lookup(dstIp, srcIp, dstPort, srcPort, h) != null)
+			return null;
+		int slot = freeSlot(h);
+		TcpConnection free = slot == -1 ? null : insert(slot);
 		if(free != null && free.open(dstIp, srcIp, dstPort, srcPort, th))
 			return free;
 	}
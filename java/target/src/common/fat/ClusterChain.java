@@ -0,0 +1,181 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package fat;
+
+/**
+ * Cluster chain of one open file, cached as a list of runs of
+ * consecutive clusters (extents). The chain is read lazily from the FAT,
+ * so sequential access costs one FAT lookup per cluster instead of
+ * following the chain from the start for every block.
+ */
+public final class ClusterChain {
+
+	static final int INITIAL_RUNS = 8;
+
+	int[] runIndex = new int[INITIAL_RUNS];   // cluster index in the file of the first cluster of the run
+	int[] runCluster = new int[INITIAL_RUNS]; // first cluster of the run on the medium
+	int[] runLength = new int[INITIAL_RUNS];  // number of clusters in the run
+	int runs;
+	boolean complete;                         // end of chain has been read
+	private int hit;                          // run of the last lookup
+
+	public ClusterChain() {
+	}
+
+	public ClusterChain(int startCluster) {
+		reset(startCluster);
+	}
+
+	/**
+	 * Forget the cached runs and start over with the chain of startCluster.
+	 */
+	public void reset(int startCluster) {
+		hit = 0;
+		if (startCluster < 2 || startCluster >= 0xFFF8) {
+			runs = 0;
+			complete = true;
+		} else {
+			runs = 1;
+			runIndex[0] = 0;
+			runCluster[0] = startCluster;
+			runLength[0] = 1;
+			complete = false;
+		}
+	}
+
+	public int getStartCluster() {
+		return runs == 0 ? 0 : runCluster[0];
+	}
+
+	/**
+	 * Number of clusters known so far.
+	 */
+	int length() {
+		return runs == 0 ? 0 : runIndex[runs - 1] + runLength[runs - 1];
+	}
+
+	/**
+	 * Last known cluster of the chain, 0 for an empty chain.
+	 */
+	int lastCluster() {
+		return runs == 0 ? 0 : runCluster[runs - 1] + runLength[runs - 1] - 1;
+	}
+
+	/**
+	 * Return the cluster with the given index in the file, or 0xFFFF if the
+	 * chain is shorter.
+	 */
+	int get(FatLowLevel fat_access, int index) {
+		int r = find(fat_access, index);
+		if (r < 0) {
+			return 0xFFFF;
+		}
+		return runCluster[r] + index - runIndex[r];
+	}
+
+	/**
+	 * Number of clusters that follow the cluster with the given index
+	 * consecutively on the medium (including itself), as far as known.
+	 */
+	int contiguous(FatLowLevel fat_access, int index) {
+		int r = find(fat_access, index);
+		if (r < 0) {
+			return 0;
+		}
+		return runIndex[r] + runLength[r] - index;
+	}
+
+	/**
+	 * Read the whole chain and return its last cluster.
+	 */
+	int readToEnd(FatLowLevel fat_access) {
+		while (!complete) {
+			extend(fat_access);
+		}
+		return lastCluster();
+	}
+
+	/**
+	 * Record a cluster that was linked to the end of the chain.
+	 */
+	void append(int cluster) {
+		if (runs > 0 && runCluster[runs - 1] + runLength[runs - 1] == cluster) {
+			runLength[runs - 1]++;
+			return;
+		}
+		if (runs == runIndex.length) {
+			grow();
+		}
+		runIndex[runs] = length();
+		runCluster[runs] = cluster;
+		runLength[runs] = 1;
+		runs++;
+	}
+
+	private int find(FatLowLevel fat_access, int index) {
+		// sequential access mostly hits the same run again
+		if (hit < runs && index >= runIndex[hit] && index < runIndex[hit] + runLength[hit]) {
+			return hit;
+		}
+		while (index >= length()) {
+			if (complete) {
+				return -1;
+			}
+			extend(fat_access);
+		}
+		int lo = 0;
+		int hi = runs - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >> 1;
+			if (runIndex[mid] <= index) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		hit = lo;
+		return lo;
+	}
+
+	private void extend(FatLowLevel fat_access) {
+		int next = FatItS.fat_get_cluster_value(fat_access, lastCluster());
+		// a chain longer than the FAT is corrupt (a loop), stop there
+		if (next < 2 || next >= 0xFFF8 || length() >= FatItS.cluster_count) {
+			complete = true;
+		} else {
+			append(next);
+		}
+	}
+
+	private void grow() {
+		int n = runIndex.length * 2;
+		int[] a = new int[n];
+		int[] b = new int[n];
+		int[] c = new int[n];
+		for (int i = 0; i < runs; i++) {
+			a[i] = runIndex[i];
+			b[i] = runCluster[i];
+			c[i] = runLength[i];
+		}
+		runIndex = a;
+		runCluster = b;
+		runLength = c;
+	}
+}
@@ -86,6 +86,25 @@ public class FatItS {
 
 	private static int[] tmp_buffer = new int[BlockSize];
 
+	// number of FAT sectors kept in the write-back FAT cache
+	public static final int FAT_CACHE_SIZE = 4;
+
+	private static int[][] fat_cache_buf = new int[FAT_CACHE_SIZE][BlockSize];
+	private static int[] fat_cache_sector = new int[FAT_CACHE_SIZE]; // sector within the FAT, -1 if unused
+	private static int[] fat_cache_used = new int[FAT_CACHE_SIZE];   // LRU stamp
+	private static boolean[] fat_cache_dirty = new boolean[FAT_CACHE_SIZE];
+	private static int fat_cache_clock;
+	// device the cached sectors belong to, used for write back
+	private static FatLowLevel fat_cache_access;
+
+	// free cluster bitmap, one bit per FAT entry, built at mount
+	private static int[] free_map;
+	private static int next_free;
+	// number of FAT entries including the two reserved ones
+	static int cluster_count;
+	private static int fat_count;
+	private static boolean mounted;
+
 	// preallocate exceptions
 	private static IOException IOExc = new IOException();
 	private static FileNotFoundException FNFExc = new FileNotFoundException();
@@ -128,14 +147,6 @@ public class FatItS {
 
 	private static int fat_load(FatLowLevel fat_access, int cluster, int block) {
 		//System.out.println("fat_load(): cluster=" + cluster + ", block=" + block);
-		// Zum berprfen ob der FAT Block schon geladen wurde
-		int blockStore = 0;
-		// Byte Adresse innerhalb des Fat Blocks
-		int byteAddress;
-		// FAT Block Adresse
-		int blockAddress;
-		
-		// Berechnung fr den ersten FAT Block (FAT Start Addresse)
 		for (int a = 0;; a++) {
 			
 			if (a == block) {
@@ -144,31 +155,120 @@ public class FatItS {
 				return block;
 			}
 			
-			if (cluster == 0xFFFF) {
+			if (cluster >= 0xFFF8 || cluster < 2) {
 				block = 0xFFFF;
 				break; // Ist das Ende des Files erreicht Schleife beenden
 			}
 			
-			// Berechnung des Bytes innerhalb des FAT Blocks
-			byteAddress = (cluster * 2) % BlockSize;
-			// Berechnung des Blocks der gelesen werden mu
-			blockAddress = ((cluster * 2) / BlockSize) + volume_boot_record_addr + fat_offset;
-			// Lesen des FAT Blocks
-			// berprfung ob dieser Block schon gelesen wurde
-			if (blockAddress != blockStore) {
-				blockStore = blockAddress;
-				// Lesen des FAT Blocks
-				fat_access.ReadSector(blockAddress, tmp_buffer);
-			}
-
 			// Lesen der nchsten Clusternummer
-			cluster = (tmp_buffer[byteAddress + 1] << 8) + tmp_buffer[byteAddress];
+			cluster = fat_get_cluster_value(fat_access, cluster);
 		}
 		//System.out.println("fat_load() finished: block=" + block);
 
 		return block;
 	}
 
+	// -----------------------------------------------------------------------------
+	// FAT sector cache: the FAT is only accessed through a few cached sectors.
+	// Changes are written to all FAT copies when a sector is evicted or on
+	// fat_flush().
+	// -----------------------------------------------------------------------------
+	private static int fat_cache_get(FatLowLevel fat_access, int sector) {
+		int victim = 0;
+
+		for (int i = 0; i < FAT_CACHE_SIZE; i++) {
+			if (fat_cache_sector[i] == sector) {
+				fat_cache_used[i] = ++fat_cache_clock;
+				return i;
+			}
+			if (fat_cache_used[i] < fat_cache_used[victim]) {
+				victim = i;
+			}
+		}
+
+		fat_cache_write_back(victim);
+		fat_access.ReadSector(volume_boot_record_addr + fat_offset + sector, fat_cache_buf[victim]);
+		fat_cache_sector[victim] = sector;
+		fat_cache_used[victim] = ++fat_cache_clock;
+		fat_cache_access = fat_access;
+		return victim;
+	}
+
+	private static void fat_cache_write_back(int slot) {
+		if (fat_cache_dirty[slot]) {
+			int addr = volume_boot_record_addr + fat_offset + fat_cache_sector[slot];
+			for (int i = 0; i < fat_count; i++) {
+				fat_cache_access.WriteSector(addr + i * fat_size, fat_cache_buf[slot]);
+			}
+			fat_cache_dirty[slot] = false;
+		}
+	}
+
+	private static void fat_cache_invalidate() {
+		for (int i = 0; i < FAT_CACHE_SIZE; i++) {
+			fat_cache_sector[i] = -1;
+			fat_cache_used[i] = 0;
+			fat_cache_dirty[i] = false;
+		}
+		fat_cache_clock = 0;
+	}
+
+	/**
+	 * Write modified FAT sectors back to the medium.
+	 */
+	public static void fat_flush(FatLowLevel fat_access) {
+		for (int i = 0; i < FAT_CACHE_SIZE; i++) {
+			fat_cache_write_back(i);
+		}
+	}
+
+	/**
+	 * Flush the FAT and forget all cached state. The next fat_init()
+	 * reads the volume again, e.g., after the medium was changed.
+	 */
+	public static void fat_unmount(FatLowLevel fat_access) {
+		if (mounted) {
+			fat_flush(fat_access);
+		}
+		fat_cache_invalidate();
+		free_map = null;
+		mounted = false;
+	}
+
+	static int fat_get_cluster_value(FatLowLevel fat_access, int cluster) {
+		int slot = fat_cache_get(fat_access, (cluster * 2) / BlockSize);
+		int byteAddress = (cluster * 2) % BlockSize;
+		int[] buf = fat_cache_buf[slot];
+
+		return (buf[byteAddress + 1] << 8) + buf[byteAddress];
+	}
+
+	// Build the free cluster bitmap from the FAT
+	private static void fat_build_free_map(FatLowLevel fat_access) {
+		int totalSectors = BootSec.BPB_TotSec16 != 0 ? BootSec.BPB_TotSec16 : BootSec.BPB_TotSec32;
+		int dataSectors = totalSectors - (cluster_offset - volume_boot_record_addr);
+
+		cluster_count = fat_size * (BlockSize / 2);
+		if (totalSectors != 0 && dataSectors / cluster_size + 2 < cluster_count) {
+			cluster_count = dataSectors / cluster_size + 2;
+		}
+
+		free_map = new int[(cluster_count + 31) >> 5];
+		// cluster 0 and 1 are reserved
+		free_map[0] = 0x3;
+		next_free = 2;
+
+		for (int sector = 0; sector * (BlockSize / 2) < cluster_count; sector++) {
+			fat_access.ReadSector(volume_boot_record_addr + fat_offset + sector, tmp_buffer);
+			for (int b = 0; b < BlockSize; b = b + 2) {
+				int cluster = sector * (BlockSize / 2) + (b >> 1);
+				if (cluster < cluster_count && (tmp_buffer[b] | tmp_buffer[b + 1]) != 0) {
+					free_map[cluster >> 5] |= 1 << (cluster & 0x1f);
+				}
+			}
+		}
+	}
+
 	public static void fat_init(FatLowLevel fat_access) throws IOException {
 		//System.out.println("fat_init");
 		// Init Fat system and underlying hardware
@@ -176,6 +276,12 @@ public class FatItS {
 			throw new IOException("FatLowLevel.Init failed or no Card connected");
 		}
 
+		// The volume is only read once, further streams share the
+		// FAT cache and the free cluster bitmap.
+		if (mounted) {
+			return;
+		}
+
 		// Retrieve number of sector where volume boot record starts
 		volume_boot_record_addr = fat_addr(fat_access);
 		
@@ -200,6 +306,11 @@ public class FatItS {
 		cluster_offset += fat_root_dir_addr(fat_access);
 		
 		System.out.println("cluster offset" + cluster_offset);
+
+		fat_count = BootSec.BPB_NumFATs;
+		fat_cache_invalidate();
+		fat_build_free_map(fat_access);
+		mounted = true;
 	}
 
 	public static void fat_read_file(FatLowLevel fat_access, int cluster,// Angabe des Startclusters vom File
@@ -241,6 +352,61 @@ public class FatItS {
 		return;
 	}
 
+	/**
+	 * Read up to count consecutive blocks of a file into buffer, starting
+	 * with block blockCount. Fewer blocks are read when the clusters are
+	 * not consecutive on the medium. A block beyond the end of the cluster
+	 * chain reads as zeros.
+	 * @return number of blocks read
+	 */
+	public static int fat_read_file(FatLowLevel fat_access, ClusterChain chain, int[] buffer, int blockCount, int count) {
+		int index = blockCount / cluster_size;
+		int cluster = chain.get(fat_access, index);
+
+		if (cluster >= 0xFFF8) {
+			for (int i = 0; i < BlockSize; i++) {
+				buffer[i] = 0;
+			}
+			return 1;
+		}
+
+		int avail = chain.contiguous(fat_access, index) * cluster_size - (blockCount % cluster_size);
+		if (count > avail) {
+			count = avail;
+		}
+		if (count > buffer.length / BlockSize) {
+			count = buffer.length / BlockSize;
+		}
+
+		int block = ((cluster - 2) * cluster_size) + cluster_offset + (blockCount % cluster_size);
+		if (count > 1) {
+			fat_access.ReadSectors(block, count, buffer);
+		} else {
+			count = 1;
+			fat_access.ReadSector(block, buffer);
+		}
+		return count;
+	}
+
+	/**
+	 * Write one block of a file, the cluster chain is extended as needed.
+	 * @return false if the medium is full and the block was not written
+	 */
+	public static boolean fat_write_file(FatLowLevel fat_access, ClusterChain chain, int[] buffer, int blockCount) {
+		int index = blockCount / cluster_size;
+
+		while (chain.get(fat_access, index) >= 0xFFF8) {
+			if (!fat_grow_file(fat_access, chain)) {
+				return false;
+			}
+		}
+
+		int block = ((chain.get(fat_access, index) - 2) * cluster_size) + cluster_offset;
+		block += (blockCount % cluster_size);
+		fat_access.WriteSector(block, buffer);
+		return true;
+	}
+
 	public static DirEntry fat_search_file(FatLowLevel fat_access, int dirCluster, char[] filename, DirEntry entry) throws IOException
 	{
 		for (int a = 0; a < MAX_ENTRIES; a++) {
@@ -310,87 +476,78 @@ public class FatItS {
 		}
 	}
 
+	// Find a free cluster in the bitmap, starting after the last one
+	// allocated, and mark it as end of chain
 	private static int fat_get_free_cluster(FatLowLevel fat_access, int block)
 	{
 		//System.out.println("fat_get_free_cluster");
-		// FAT Block Adresse
-		int blockAddress;
-		// Berechnung fr den ersten FAT Block (FAT Start Addresse)
+		int cluster = next_free;
 
-		blockAddress = volume_boot_record_addr + fat_offset;
-
-		for (int a = 0;; a++) {
-			if (!(blockAddress < fat_size)) {
-				block = 0xFFFFFFFF;
-				return block;
+		for (int a = 0; a < cluster_count; a++) {
+			if (cluster >= cluster_count) {
+				cluster = 2;
 			}
-
-			// Lesen des FAT Blocks
-			fat_access.ReadSector(blockAddress, tmp_buffer);
-
-			for (int b = 0; b < BlockSize; b = b + 2) {
-				if (((tmp_buffer[b] & 0x000000FF) == 0x00)
-						&& ((tmp_buffer[b + 1] & 0x000000FF) == 0x00)) {
-
-					block = ((((blockAddress - volume_boot_record_addr - fat_offset) & 0x000000FF) << 8) | ((b / 2) & 0x000000FF));
-
-					tmp_buffer[b + 0] = 0xFF;
-					tmp_buffer[b + 1] = 0xFF;
-
-					fat_access.WriteSector(blockAddress, tmp_buffer);
-					fat_access.WriteSector((blockAddress + fat_size), tmp_buffer);
-					return block;
-				}
+			// skip full words
+			if ((cluster & 0x1f) == 0 && free_map[cluster >> 5] == 0xFFFFFFFF) {
+				a += 31;
+				cluster += 32;
+				continue;
 			}
-
-			blockAddress++;
+			if ((free_map[cluster >> 5] & (1 << (cluster & 0x1f))) == 0) {
+				fat_set_cluster_value(fat_access, cluster, 0xFFFF);
+				next_free = cluster + 1;
+				block = cluster;
+				return block;
+			}
+			cluster++;
 		}
+
+		block = 0xFFFFFFFF;
+		return block;
 	}
 
 	public static void fat_grow_file(FatLowLevel fat_access, int cluster) {
-		int last_cluster = 0xFFFFFFFF;
-		int i = 0;
-
-		int block = i;
-		block = fat_load(fat_access, cluster, block);
-		last_cluster = (block & 0x0000FFFF);
+		ClusterChain chain = new ClusterChain(cluster);
+		fat_grow_file(fat_access, chain);
+	}
 
-		// Loop until end of chain
-		while ((block & 0x0000FFFF) < 0x0000FFF8) {
-			i++;
-			last_cluster = (block & 0x0000FFFF);
-			block = i;
-			block = fat_load(fat_access, cluster, block);
+	/**
+	 * Link a free cluster to the end of the chain.
+	 * @return false if the medium is full
+	 */
+	public static boolean fat_grow_file(FatLowLevel fat_access, ClusterChain chain) {
+		int last_cluster = chain.readToEnd(fat_access);
+		if (last_cluster == 0) {
+			return false;
 		}
 
 		// Find free Cluster & Mark new cluster as end of chain
-		block = fat_get_free_cluster(fat_access, block);
-		// Mark new cluster as end of chain
+		int block = fat_get_free_cluster(fat_access, 0);
+		if (block == 0xFFFFFFFF) {
+			return false;
+		}
+		// Link new cluster to the end of chain
 		fat_set_cluster_value(fat_access, last_cluster, block);
+		chain.append(block);
+		return true;
 	}
 
 	private static void fat_set_cluster_value(FatLowLevel fat_access, int cluster, int nextCluster) {
 		//System.out.println("fat_set_cluster_value");
 		// Byte Adresse innerhalb des Fat Blocks
-		int byteAddress;
-
-		// FAT Block Adresse
-		int blockAddress;
+		int byteAddress = (cluster * 2) % BlockSize;
 
-		byteAddress = (cluster * 2) % BlockSize;
+		int slot = fat_cache_get(fat_access, (cluster * 2) / BlockSize);
 
-		// Berechnung des Blocks der gelesen werden mu
-		blockAddress = ((cluster * 2) / BlockSize) + volume_boot_record_addr + fat_offset;
+		fat_cache_buf[slot][byteAddress + 0] = (0x000000FF & nextCluster);
+		fat_cache_buf[slot][byteAddress + 1] = (0x000000FF & (nextCluster >> 8));
+		fat_cache_dirty[slot] = true;
 
-		// FAT_Block_Store = FAT_Block_Addresse;
-		// Lesen des FAT Blocks
-		fat_access.ReadSector(blockAddress, tmp_buffer);
-
-		tmp_buffer[byteAddress + 0] = (0x000000FF & nextCluster);
-		tmp_buffer[byteAddress + 1] = (0x000000FF & (nextCluster >> 8));
-
-		fat_access.WriteSector(blockAddress, tmp_buffer);
-		fat_access.WriteSector((blockAddress + fat_size), tmp_buffer);
+		if ((nextCluster & 0xFFFF) == 0) {
+			free_map[cluster >> 5] &= ~(1 << (cluster & 0x1f));
+		} else {
+			free_map[cluster >> 5] |= 1 << (cluster & 0x1f);
+		}
 	}
 
 	private static DirEntry fat_set_dir_ent(FatLowLevel fat_access, int dir_cluster, int index, long size, int dirAttrib, DirEntry entry) throws IOException
@@ -573,6 +730,9 @@ public class FatItS {
 		
 		int retvalue=0;
 		
+		// Drop the cached FAT of the old file system
+		fat_unmount(fat_access);
+
 		// Clear medium in preparation for formatting
 		System.out.println("Clearing medium");
 		fat_access.ClearMedium();
@@ -46,6 +46,15 @@ public interface FatLowLevel {
 	 * @return !=0 on error
 	 */
 	public int ReadSector(int addr, int[] buffer);
+
+	/**
+	 * read count consecutive sectors of 512 bytes
+	 * @param addr first sector
+	 * @param count number of sectors
+	 * @param buffer Note: this is an int array with size count*512, but one entry is max 1 byte
+	 * @return !=0 on error
+	 */
+	public int ReadSectors(int addr, int count, int[] buffer);
 	
 	/**
 	 * write 512 bytes
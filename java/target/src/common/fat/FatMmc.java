@@ -56,6 +56,21 @@ public class FatMmc implements FatLowLevel {
 	}
 
 	public int ReadSector(int addr, int[] buffer) {
+		return ReadSector(addr, buffer, 0);
+	}
+
+	public int ReadSectors(int addr, int count, int[] buffer) {
+		// The SPI core only implements single block transfers, so
+		// the multi block read is a sequence of block reads.
+		for (int i = 0; i < count; i++) {
+			if (ReadSector(addr + i, buffer, i * 512) != 0) {
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	private int ReadSector(int addr, int[] buffer, int off) {
 		int i;
 
 		Native.wrMem(0, Const.WB_SPI + 0x07); // SD_ADDR_7_0
@@ -72,7 +87,7 @@ public class FatMmc implements FatLowLevel {
 		// TRANS_ERROR_REG[5:4] == 00
 		if ((Native.rdMem(Const.WB_SPI + 5) & 0x3F) == 0) {
 			for (i = 0; i < 512; i++) {
-				buffer[i] = Native.rdMem(Const.WB_SPI + 0x10) & 0xFF;
+				buffer[off + i] = Native.rdMem(Const.WB_SPI + 0x10) & 0xFF;
 				//RX_FIFO_DATA_REG
 			}
 		} else {
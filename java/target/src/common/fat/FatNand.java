@@ -81,6 +81,19 @@ public class FatNand implements FatLowLevel {
 	}
 	
 	public int ReadSector(int addr, int[] buffer) {
+		return ReadSector(addr, buffer, 0);
+	}
+
+	public int ReadSectors(int addr, int count, int[] buffer) {
+		for (int i = 0; i < count; i++) {
+			if (ReadSector(addr + i, buffer, i * size) != 0) {
+				return -1;
+			}
+		}
+		return 0;
+	}
+
+	private int ReadSector(int addr, int[] buffer, int off) {
 		int ret=-1;
 		
 		// NAND available, continue
@@ -131,10 +144,10 @@ public class FatNand implements FatLowLevel {
 				for (int i = 0; i < size; i += 4) {
 					// Invert bytes before writing 
 					// (see ClearMedium() for explanation)
-					buffer[i+3] = ((~tmpBuffer[tmpIndex]) & 0xFF000000) >>> 24;
-					buffer[i+2] = ((~tmpBuffer[tmpIndex]) & 0x00FF0000) >>> 16;
-					buffer[i+1] = ((~tmpBuffer[tmpIndex]) & 0x0000FF00) >>>  8;
-					buffer[i+0] = ((~tmpBuffer[tmpIndex]) & 0x000000FF);
+					buffer[off+i+3] = ((~tmpBuffer[tmpIndex]) & 0xFF000000) >>> 24;
+					buffer[off+i+2] = ((~tmpBuffer[tmpIndex]) & 0x00FF0000) >>> 16;
+					buffer[off+i+1] = ((~tmpBuffer[tmpIndex]) & 0x0000FF00) >>>  8;
+					buffer[off+i+0] = ((~tmpBuffer[tmpIndex]) & 0x000000FF);
 					
 					tmpIndex++;
 				}
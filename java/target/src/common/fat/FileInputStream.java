@@ -25,13 +25,21 @@ import java.io.IOException;
 
 public class FileInputStream extends FileStream {
 
-	private int[] buffer = new int[FatItS.BlockSize];
+	// number of blocks read ahead
+	public static final int READ_BLOCKS = 4;
+
+	private int[] buffer = new int[READ_BLOCKS * FatItS.BlockSize];
 	private DirEntry entryBuffer = new DirEntry();
+	private ClusterChain chain = new ClusterChain();
 
 	private long size = 0;
 	private int startcluster = 0;
 	private long offset = 0;
 
+	// blocks currently in buffer
+	private int bufferBlock = -1;
+	private int bufferCount = 0;
+
 	/**
 	 * Creates a FileInputStream by opening a connection to an actual file, the
 	 * file named by the path name name in the file system.
@@ -126,9 +134,55 @@ public class FileInputStream extends FileStream {
 		entryBuffer = FatItS.fat_search_file(fatlowlevel, entryBuffer.getCluster(), filename, entryBuffer);
 		size = entryBuffer.getSize();
 		startcluster = entryBuffer.getCluster();
+		chain.reset(startcluster);
 		offset = 0;
 	}
 
+	/**
+	 * Return the index in buffer of the byte at offset, reads the block
+	 * and the following ones if they are not buffered.
+	 */
+	private int fill() {
+		int block = ((int) offset) / FatItS.BlockSize;
+
+		if (block < bufferBlock || block >= bufferBlock + bufferCount) {
+			int last = ((int) (size - 1)) / FatItS.BlockSize;
+			int count = last - block + 1;
+			if (count > READ_BLOCKS) {
+				count = READ_BLOCKS;
+			}
+			bufferCount = FatItS.fat_read_file(fatlowlevel, chain, buffer, block, count);
+			bufferBlock = block;
+		}
+
+		return ((int) offset) - bufferBlock * FatItS.BlockSize;
+	}
+
+	/**
+	 * Copy up to len bytes from the file to b, buffer by buffer.
+	 */
+	private int copy(byte b[], int len) {
+		int i = 0;
+
+		while ((!(offset >= size)) && (i < len)) {
+			int pos = fill();
+			int n = bufferCount * FatItS.BlockSize - pos;
+			if (n > len - i) {
+				n = len - i;
+			}
+			if (n > size - offset) {
+				n = (int) (size - offset);
+			}
+			for (int k = 0; k < n; k++) {
+				b[i + k] = (byte) buffer[pos + k];
+			}
+			i += n;
+			offset += n;
+		}
+
+		return i;
+	}
+
 	/***************************************************************************
 	 * public int read() Reads up to one byte of data from this input stream.
 	 * This method blocks until some input is available.
@@ -138,17 +192,13 @@ public class FileInputStream extends FileStream {
 	 * Returns: the next byte of data, or -1 if the end of the file is reached.
 	 **************************************************************************/
 	public int read() {
-		int block;
 		int byte_count;
 
 		if (offset >= size) {
 			return -1;
 		}
 
-		block = ((int) offset) / FatItS.BlockSize;
-		byte_count = ((int) offset) % FatItS.BlockSize;
-
-		FatItS.fat_read_file(fatlowlevel, startcluster, buffer, block);
+		byte_count = fill();
 
 		offset++;
 
@@ -165,31 +215,11 @@ public class FileInputStream extends FileStream {
 	 * data because the end of the file has been reached.
 	 **************************************************************************/
 	public int read(byte b[]) {
-		int block = 0xFFFFFFFF, block_alt;
-		int byte_count, i = 0;
-
 		if (offset >= size) {
 			return -1;
 		}
 
-		while (!(offset >= size) && (i < b.length)) {
-
-			block_alt = block;
-			block = ((int) offset) / FatItS.BlockSize;
-			byte_count = ((int) offset) % FatItS.BlockSize;
-
-			if (block_alt != block) {
-				FatItS.fat_read_file(fatlowlevel, startcluster, buffer, block);
-			}
-
-			offset++;
-
-			b[i] = (byte) buffer[byte_count];
-
-			i++;
-		}
-
-		return i;
+		return copy(b, b.length);
 	}
 
 	/***************************************************************************
@@ -214,27 +244,7 @@ public class FileInputStream extends FileStream {
 
 		offset = offset + off;
 
-		int block = 0xFFFFFFFF, block_alt;
-		int byte_count, i = 0;
-
-		while ((!(offset >= size)) && (i < len) && (i < b.length)) {
-
-			block_alt = block;
-			block = ((int) offset) / FatItS.BlockSize;
-			byte_count = ((int) offset) % FatItS.BlockSize;
-
-			if (block_alt != block) {
-				FatItS.fat_read_file(fatlowlevel, startcluster, buffer, block);
-			}
-
-			offset++;
-
-			b[i] = (byte) buffer[byte_count];
-
-			i++;
-		}
-
-		return i;
+		return copy(b, len < b.length ? len : b.length);
 	}
 
 	/***************************************************************************
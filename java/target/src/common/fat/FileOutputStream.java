@@ -28,6 +28,16 @@ public class FileOutputStream extends FileStream {
 
 	private int[] buffer = new int[FatItS.BlockSize];
 	private DirEntry entryBuffer = new DirEntry();
+	private ClusterChain chain = new ClusterChain();
+
+	// block currently in buffer, written to the medium when another
+	// block is selected, on flush() and on close()
+	private int bufferBlock = -1;
+	private boolean bufferDirty = false;
+
+	// file size not yet written to the directory entry
+	private long entrySize = 0;
+	private boolean entryDirty = false;
 
 	private long size = 0;
 	private int attribs = 0;
@@ -130,6 +140,7 @@ public class FileOutputStream extends FileStream {
 		size = entryBuffer.getSize();
 		startcluster = entryBuffer.getCluster();
 		attribs = entryBuffer.getAttribs();
+		chain.reset(startcluster);
 		offset = 0;
 
 		if (append == false) {
@@ -162,10 +173,63 @@ public class FileOutputStream extends FileStream {
 	 * system resources associated with this stream. This file output stream may
 	 * no longer be used for writing bytes.
 	 **************************************************************************/
-	public void close() {
+	public void close() throws IOException {
+		flush();
+	}
+
+	/***************************************************************************
+	 * public void flush() Writes the buffered data block, the directory entry
+	 * and the FAT to the medium.
+	 **************************************************************************/
+	public void flush() throws IOException {
+		writeBlock();
+		writeEntry();
+		FatItS.fat_flush(fatlowlevel);
 		fatlowlevel.Flush();
 	}
 
+	/*
+	 * The file size in the directory entry is updated when a block is
+	 * completed and on close(), together with the FAT, and not for every
+	 * byte written. The completed block is written before the entry.
+	 */
+	private void setEntrySize(long newSize) throws IOException {
+		entrySize = newSize;
+		entryDirty = true;
+		if ((((int) offset) % FatItS.BlockSize) == 0) {
+			writeBlock();
+			writeEntry();
+		}
+	}
+
+	/*
+	 * Make block the current block of the buffer. The previous block is
+	 * written if it has been modified.
+	 */
+	private void selectBlock(int block) throws IOException {
+		if (block != bufferBlock) {
+			writeBlock();
+			FatItS.fat_read_file(fatlowlevel, chain, buffer, block, 1);
+			bufferBlock = block;
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		if (bufferDirty) {
+			if (!FatItS.fat_write_file(fatlowlevel, chain, buffer, bufferBlock)) {
+				throw new IOException("medium full");
+			}
+			bufferDirty = false;
+		}
+	}
+
+	private void writeEntry() throws IOException {
+		if (entryDirty) {
+			entryBuffer = FatItS.fat_mod_file(fatlowlevel, dirCluster, filename, entrySize, attribs, entryBuffer);
+			entryDirty = false;
+		}
+	}
+
 	/***************************************************************************
 	 * public void write(byte[] b) Writes b.length or while (b[i++] != 0) bytes
 	 * from the specified byte array to this file output stream.
@@ -196,12 +260,7 @@ public class FileOutputStream extends FileStream {
 
 			if (((offset + (long) (off + len)) / FatItS.BlockSize) < (size / FatItS.BlockSize)) {
 
-				int diff = ((int) (offset + (long) (off + len)) / FatItS.BlockSize)	- (int) (size / FatItS.BlockSize);
-
-				for (int i = 0; i < diff; i++) {
-					FatItS.fat_grow_file(fatlowlevel, startcluster);
-				}
-
+				// the cluster chain is extended by fat_write_file()
 				size = offset + (long) (off + len - 1);
 				entryBuffer = FatItS.fat_mod_file(fatlowlevel, dirCluster, filename, size, attribs, entryBuffer);
 			}
@@ -216,7 +275,7 @@ public class FileOutputStream extends FileStream {
 			block = ((int) offset) / FatItS.BlockSize;
 			byte_count = ((int) offset) % FatItS.BlockSize;
 
-			FatItS.fat_read_file(fatlowlevel, startcluster, buffer, block);
+			selectBlock(block);
 
 			while ((byte_count < 512) && (k < len)) {
 				buffer[byte_count] = (int) b[k];
@@ -227,21 +286,12 @@ public class FileOutputStream extends FileStream {
 					size++;
 				}
 			}
-
-			offset--;
-
-			FatItS.fat_write_file(fatlowlevel, startcluster, buffer, block);
-
-			offset++;
+			bufferDirty = true;
 
 			if (size <= offset) {
 				size++;
 
-				if (((offset) % FatItS.BlockSize) == 0) {
-					FatItS.fat_grow_file(fatlowlevel, startcluster);
-				}
-
-				entryBuffer = FatItS.fat_mod_file(fatlowlevel, dirCluster, filename, size-1, attribs, entryBuffer);
+				setEntrySize(size-1);
 			}
 
 			if (!(k < len)) {
@@ -264,21 +314,17 @@ public class FileOutputStream extends FileStream {
 		block = ((int) offset) / FatItS.BlockSize;
 		byte_count = ((int) offset) % FatItS.BlockSize;
 
-		FatItS.fat_read_file(fatlowlevel, startcluster, buffer, block);
+		selectBlock(block);
 
 		buffer[byte_count] = b;
-		FatItS.fat_write_file(fatlowlevel, startcluster, buffer, block);
+		bufferDirty = true;
 
 		offset++;
 
 		if (size <= offset) {
 			size++;
 
-			if (((offset) % FatItS.BlockSize) == 0) {
-				FatItS.fat_grow_file(fatlowlevel, startcluster);
-			}
-
-			entryBuffer = FatItS.fat_mod_file(fatlowlevel, dirCluster, filename, size-1, attribs, entryBuffer);
+			setEntrySize(size-1);
 		}
 	}
 
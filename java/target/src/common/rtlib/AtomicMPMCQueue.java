@@ -0,0 +1,49 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package rtlib;
+
+import rttm.atomic;
+
+/**
+ * A MPMCQueue where the producer and consumer positions are
+ * claimed in RTTM transactions instead of under the CMP lock.
+ * Claims on enqPos and deqPos from different cores then only
+ * conflict when they touch the same position counter.
+ *
+ * Only usable on a JOP configuration with the transactional memory
+ * (RTTM) and a JOPizer run that transforms @atomic methods.
+ *
+ */
+public class AtomicMPMCQueue<T> extends MPMCQueue<T> {
+
+	public AtomicMPMCQueue(int capacity) {
+		super(capacity);
+	}
+
+	@atomic protected boolean casEnqPos(int expect, int update) {
+		if (enqPos!=expect) return false;
+		enqPos = update;
+		return true;
+	}
+
+	@atomic protected boolean casDeqPos(int expect, int update) {
+		if (deqPos!=expect) return false;
+		deqPos = update;
+		return true;
+	}
+}
@@ -0,0 +1,142 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package rtlib;
+
+/**
+ * A fixed size set of bits.
+ *
+ * Unlike java.util.BitSet the set does not grow, bits outside
+ * of the size are not checked. nextSetBit() skips empty words,
+ * its loop is bounded by the number of words.
+ *
+ */
+public class BitSet {
+
+	/**
+	 * Upper bound for the number of bits, used for the loop bounds.
+	 */
+	public static final int MAX_BITS = 65536;
+	/**
+	 * MAX_BITS/32
+	 */
+	public static final int MAX_WORDS = 2048;
+
+	private int[] words;
+	private int nbits;
+
+	public BitSet(int nbits) {
+		if (nbits<0 || nbits>MAX_BITS) {
+			throw new IllegalArgumentException("nbits");
+		}
+		words = new int[(nbits+31)>>>5];
+		this.nbits = nbits;
+	}
+
+	public int size() {
+		return nbits;
+	}
+
+	public boolean get(int idx) {
+		return (words[idx>>>5] & (1<<(idx & 0x1f)))!=0;
+	}
+
+	public void set(int idx) {
+		words[idx>>>5] |= 1<<(idx & 0x1f);
+	}
+
+	public void clear(int idx) {
+		words[idx>>>5] &= ~(1<<(idx & 0x1f));
+	}
+
+	public void set(int idx, boolean val) {
+		if (val) {
+			set(idx);
+		} else {
+			clear(idx);
+		}
+	}
+
+	public void clear() {
+		for (int i=0; i<words.length; ++i) { // @WCA loop<=MAX_WORDS
+			words[i] = 0;
+		}
+	}
+
+	/**
+	 * @return index of the first set bit at or after from, -1 if none
+	 */
+	public int nextSetBit(int from) {
+		if (from>=nbits) return -1;
+		int w = from>>>5;
+		int bits = words[w] & (-1<<(from & 0x1f));
+		while (bits==0) { // @WCA loop<=MAX_WORDS
+			if (++w==words.length) return -1;
+			bits = words[w];
+		}
+		return (w<<5) + lowestBit(bits);
+	}
+
+	/**
+	 * @return index of the first clear bit at or after from, -1 if none
+	 */
+	public int nextClearBit(int from) {
+		if (from>=nbits) return -1;
+		int w = from>>>5;
+		int bits = ~words[w] & (-1<<(from & 0x1f));
+		while (bits==0) { // @WCA loop<=MAX_WORDS
+			if (++w==words.length) return -1;
+			bits = ~words[w];
+		}
+		int idx = (w<<5) + lowestBit(bits);
+		return idx<nbits ? idx : -1;
+	}
+
+	/**
+	 * @return number of set bits
+	 */
+	public int cardinality() {
+		int cnt = 0;
+		for (int i=0; i<words.length; ++i) { // @WCA loop<=MAX_WORDS
+			cnt += bitCount(words[i]);
+		}
+		return cnt;
+	}
+
+	/**
+	 * Index of the lowest set bit of a non zero word with a binary
+	 * search, no loop.
+	 */
+	static int lowestBit(int x) {
+		int n = 0;
+		if ((x & 0xffff)==0) { n += 16; x >>>= 16; }
+		if ((x & 0xff)==0) { n += 8; x >>>= 8; }
+		if ((x & 0xf)==0) { n += 4; x >>>= 4; }
+		if ((x & 0x3)==0) { n += 2; x >>>= 2; }
+		if ((x & 0x1)==0) { n += 1; }
+		return n;
+	}
+
+	static int bitCount(int x) {
+		x = x - ((x>>>1) & 0x55555555);
+		x = (x & 0x33333333) + ((x>>>2) & 0x33333333);
+		x = (x + (x>>>4)) & 0x0f0f0f0f;
+		x = x + (x>>>8);
+		x = x + (x>>>16);
+		return x & 0x3f;
+	}
+}
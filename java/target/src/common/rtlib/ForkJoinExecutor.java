@@ -0,0 +1,273 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package rtlib;
+
+/**
+ * A work-stealing executor for fork/join tasks on the CMP version
+ * of JOP.
+ *
+ * Each core owns a bounded deque of tasks. The owner pushes and
+ * pops at the bottom, idle cores steal from the top. Owner
+ * operations take no lock, only a steal and an owner pop that
+ * races with a steal for the last task synchronize on the deque
+ * (the THE protocol from Cilk-5). On JOP a monitor is the global
+ * CMP lock, therefore it is kept out of the common path.
+ *
+ * Idle cores do not spin on shared fields. After a failed steal
+ * round they wait in a local delay loop that doubles up to
+ * MAX_BACKOFF iterations. The loop runs in the on-chip stack and
+ * does not access main memory, so idle cores do not load the
+ * memory arbiter.
+ *
+ * The core that calls invoke() is worker 0 and executes the root
+ * task; one thread per additional core is started by start().
+ *
+ */
+public class ForkJoinExecutor {
+
+	/**
+	 * Upper bound of the idle delay loop.
+	 */
+	public static final int MAX_BACKOFF = 1024;
+
+	/**
+	 * Default capacity of the per core deque.
+	 */
+	public static final int DEQUE_SIZE = 64;
+
+	/**
+	 * The state of one core: its deque and the steal loop.
+	 */
+	final class Worker implements Runnable {
+
+		final int id;
+		private final ForkJoinTask[] deque;
+		/**
+		 * Next steal position, changed by thieves under the lock.
+		 */
+		private volatile int top;
+		/**
+		 * Next push position, changed only by the owner.
+		 */
+		private volatile int bottom;
+
+		Worker(int id, int size) {
+			this.id = id;
+			deque = new ForkJoinTask[size];
+			top = bottom = 0;
+		}
+
+		/**
+		 * Owner: push a task at the bottom.
+		 * @return false if the deque is full
+		 */
+		boolean push(ForkJoinTask t) {
+			int b = bottom;
+			if (b==deque.length) {
+				// try to compact when all entries have been stolen
+				synchronized (this) {
+					if (top!=b) return false;
+					top = bottom = b = 0;
+				}
+			}
+			deque[b] = t;
+			bottom = b+1;
+			return true;
+		}
+
+		/**
+		 * Owner: remove the task at the bottom.
+		 * @return the task or null if the deque is empty
+		 */
+		ForkJoinTask pop() {
+			int b = bottom-1;
+			bottom = b;
+			if (top>b) {
+				// conflict with a thief on the last element
+				synchronized (this) {
+					if (top>b) {
+						bottom = b+1;
+						return null;
+					}
+				}
+			}
+			ForkJoinTask t = deque[b];
+			deque[b] = null;
+			return t;
+		}
+
+		/**
+		 * Thief: remove the task at the top.
+		 * @return the task or null if the deque is empty
+		 */
+		ForkJoinTask steal() {
+			if (top>=bottom) return null;
+			synchronized (this) {
+				int t = top;
+				top = t+1;
+				if (t+1>bottom) {
+					top = t;
+					return null;
+				}
+				return deque[t];
+			}
+		}
+
+		void exec(ForkJoinTask t) {
+			t.run(this);
+		}
+
+		/**
+		 * Try to steal one task from the other workers, starting
+		 * with the next core.
+		 */
+		ForkJoinTask stealOther() {
+			int n = workers.length;
+			int v = id;
+			for (int i=1; i<n; ++i) {
+				if (++v==n) v = 0;
+				ForkJoinTask t = workers[v].steal();
+				if (t!=null) return t;
+			}
+			return null;
+		}
+
+		void join(ForkJoinTask t) {
+			int delay = 1;
+			while (!t.isDone()) {
+				// Run our own tasks first. In the common case t is on
+				// top of the deque. When subtasks are joined in another
+				// order than they have been forked, the tasks on top of
+				// t are executed before t. They are done when they are
+				// joined later.
+				ForkJoinTask p = bottom>top ? pop() : null;
+				if (p!=null) {
+					exec(p);
+					delay = 1;
+					continue;
+				}
+				// t was stolen: help the others until it is done
+				ForkJoinTask s = stealOther();
+				if (s!=null) {
+					exec(s);
+					delay = 1;
+				} else {
+					delay = backoff(delay);
+				}
+			}
+		}
+
+		/**
+		 * The steal loop of the additional cores.
+		 */
+		public void run() {
+			int delay = 1;
+			for (;;) {
+				ForkJoinTask t = stealOther();
+				if (t!=null) {
+					exec(t);
+					delay = 1;
+				} else {
+					if (requestStop) {
+						break;
+					}
+					delay = backoff(delay);
+				}
+			}
+			synchronized (ForkJoinExecutor.this) {
+				--running;
+			}
+		}
+	}
+
+	/**
+	 * Wait without memory accesses.
+	 * @return the next delay
+	 */
+	static int backoff(int delay) {
+		for (int i=0; i<delay; ++i) { // @WCA loop<=MAX_BACKOFF
+			;
+		}
+		return delay<MAX_BACKOFF ? delay<<1 : delay;
+	}
+
+	private final Worker[] workers;
+	/** Executor not needed anymore - stop threads */
+	private volatile boolean requestStop;
+	/** Number of worker threads that have not yet left run() */
+	private volatile int running;
+
+	/**
+	 * Create an executor for all available cores.
+	 */
+	public ForkJoinExecutor() {
+		this(Runtime.getRuntime().availableProcessors(), DEQUE_SIZE);
+	}
+
+	/**
+	 * @param cores number of cores that execute tasks
+	 * @param dequeSize capacity of the per core deque
+	 */
+	public ForkJoinExecutor(int cores, int dequeSize) {
+		if (cores<1) cores = 1;
+		workers = new Worker[cores];
+		for (int i=0; i<cores; ++i) {
+			workers[i] = new Worker(i, dequeSize);
+		}
+	}
+
+	public int getNrOfCores() {
+		return workers.length;
+	}
+
+	/**
+	 * Create and start the threads for the additional cores.
+	 * The executor has to be stopped before it is started again.
+	 */
+	public void start() {
+		if (running!=0) {
+			throw new IllegalStateException("executor is running");
+		}
+		requestStop = false;
+		running = workers.length-1;
+		for (int i=1; i<workers.length; ++i) {
+			new Thread(workers[i]).start();
+		}
+	}
+
+	/**
+	 * Request termination from the worker threads and wait until
+	 * all of them have left the steal loop, so that the deques
+	 * are not used by an old thread after the next start().
+	 */
+	public void stop() {
+		requestStop = true;
+		int delay = 1;
+		while (running!=0) {
+			delay = backoff(delay);
+		}
+	}
+
+	/**
+	 * Execute a root task on the calling core and return when it
+	 * and all its subtasks have finished.
+	 */
+	public void invoke(ForkJoinTask root) {
+		workers[0].exec(root);
+	}
+}
@@ -0,0 +1,106 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package rtlib;
+
+/**
+ * A unit of work for the ForkJoinExecutor.
+ *
+ * compute() splits the work and forks subtasks with fork(), which
+ * are then awaited with join(). A task can be reused after it has
+ * completed by calling reset(). Subtasks are usually preallocated
+ * and reset by the parent before it forks them, so that a run of
+ * the executor does not allocate objects.
+ *
+ * <pre>
+ *   protected void compute() {
+ *     if (hi-lo&lt;=GRAIN) {
+ *       ... sequential work ...
+ *     } else {
+ *       left.reset(); right.reset();
+ *       fork(left);
+ *       right.invoke(this);   // run inline on this core
+ *       join(left);
+ *     }
+ *   }
+ * </pre>
+ *
+ */
+public abstract class ForkJoinTask {
+
+	/**
+	 * Set when compute() has returned.
+	 */
+	private volatile boolean done;
+	/**
+	 * The worker that executes this task. Set before compute()
+	 * is invoked and used by fork() and join() to find the
+	 * deque of the current core without a thread local.
+	 */
+	ForkJoinExecutor.Worker worker;
+
+	/**
+	 * The work of this task.
+	 */
+	protected abstract void compute();
+
+	/**
+	 * Push a subtask to the deque of the current core, where it
+	 * can be stolen by an idle core. When the deque is full the
+	 * subtask is executed immediately.
+	 */
+	protected final void fork(ForkJoinTask t) {
+		if (!worker.push(t)) {
+			worker.exec(t);
+		}
+	}
+
+	/**
+	 * Wait for a forked subtask. When the subtask is still in the
+	 * deque of this core it is executed inline, otherwise this core
+	 * steals work from the others until the subtask has been
+	 * finished by the thief.
+	 */
+	protected final void join(ForkJoinTask t) {
+		worker.join(t);
+	}
+
+	/**
+	 * Execute a task inline on the core of the parent task.
+	 */
+	public final void invoke(ForkJoinTask parent) {
+		parent.worker.exec(this);
+	}
+
+	public final boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Prepare a completed task for another execution.
+	 */
+	public void reset() {
+		done = false;
+		worker = null;
+	}
+
+	final void run(ForkJoinExecutor.Worker w) {
+		worker = w;
+		compute();
+		done = true;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package rtlib;
+
+/**
+ * A double ended queue of int values with a fixed capacity.
+ *
+ * A ring buffer with a power of two size. All operations are
+ * constant time and allocation free. In contrast to Buffer it is
+ * not safe for concurrent use by a reader and a writer.
+ *
+ */
+public class IntDeque {
+
+	private int[] data;
+	private int mask;
+	/**
+	 * Index of the first element.
+	 */
+	private int head;
+	private int size;
+
+	/**
+	 * Create a deque for at least capacity elements. The capacity
+	 * is rounded up to a power of two.
+	 * @param capacity minimum number of elements
+	 */
+	public IntDeque(int capacity) {
+		if (capacity<1) capacity = 1;
+		if (capacity>IntList.MAX_CAPACITY) {
+			throw new IllegalArgumentException("capacity");
+		}
+		int n = 1;
+		while (n<capacity) { // @WCA loop<=12
+			n <<= 1;
+		}
+		data = new int[n];
+		mask = n-1;
+		head = size = 0;
+	}
+
+	public int capacity() {
+		return data.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	public boolean full() {
+		return size==data.length;
+	}
+
+	/**
+	 * @return false if the deque is full
+	 */
+	public boolean addFirst(int val) {
+		if (size==data.length) return false;
+		head = (head-1) & mask;
+		data[head] = val;
+		++size;
+		return true;
+	}
+
+	/**
+	 * @return false if the deque is full
+	 */
+	public boolean addLast(int val) {
+		if (size==data.length) return false;
+		data[(head+size) & mask] = val;
+		++size;
+		return true;
+	}
+
+	/**
+	 * @return first element or -1 on an empty deque
+	 */
+	public int removeFirst() {
+		if (size==0) return -1;
+		int val = data[head];
+		head = (head+1) & mask;
+		--size;
+		return val;
+	}
+
+	/**
+	 * @return last element or -1 on an empty deque
+	 */
+	public int removeLast() {
+		if (size==0) return -1;
+		--size;
+		return data[(head+size) & mask];
+	}
+
+	public int peekFirst() {
+		return data[head];
+	}
+
+	public int peekLast() {
+		return data[(head+size-1) & mask];
+	}
+
+	/**
+	 * @param idx position counted from the first element
+	 */
+	public int get(int idx) {
+		return data[(head+idx) & mask];
+	}
+
+	public void clear() {
+		head = size = 0;
+	}
+}
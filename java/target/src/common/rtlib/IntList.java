@@ -0,0 +1,130 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package rtlib;
+
+/**
+ * A list of int values with a fixed capacity.
+ *
+ * The backing array is allocated in the constructor; add() returns
+ * false when the list is full instead of growing it.
+ *
+ */
+public class IntList {
+
+	/**
+	 * Upper bound for the capacity, used for the loop bounds.
+	 */
+	public static final int MAX_CAPACITY = 4096;
+
+	private int[] data;
+	private int size;
+
+	public IntList(int capacity) {
+		if (capacity<0 || capacity>MAX_CAPACITY) {
+			throw new IllegalArgumentException("capacity");
+		}
+		data = new int[capacity];
+		size = 0;
+	}
+
+	public int capacity() {
+		return data.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	public boolean full() {
+		return size==data.length;
+	}
+
+	/**
+	 * Append a value.
+	 * @return false if the list is full
+	 */
+	public boolean add(int val) {
+		if (size==data.length) return false;
+		data[size++] = val;
+		return true;
+	}
+
+	/**
+	 * Unchecked access, the index is not compared to size().
+	 */
+	public int get(int idx) {
+		return data[idx];
+	}
+
+	public void set(int idx, int val) {
+		data[idx] = val;
+	}
+
+	/**
+	 * @return the index of the first occurrence of val or -1
+	 */
+	public int indexOf(int val) {
+		for (int i=0; i<size; ++i) { // @WCA loop<=MAX_CAPACITY
+			if (data[i]==val) return i;
+		}
+		return -1;
+	}
+
+	public boolean contains(int val) {
+		return indexOf(val)>=0;
+	}
+
+	/**
+	 * Remove the element at idx and keep the order.
+	 * @return the removed value
+	 */
+	public int removeAt(int idx) {
+		int val = data[idx];
+		--size;
+		for (int i=idx; i<size; ++i) { // @WCA loop<=MAX_CAPACITY
+			data[i] = data[i+1];
+		}
+		return val;
+	}
+
+	/**
+	 * Remove the element at idx in constant time by moving the last
+	 * element to idx. Does not keep the order.
+	 * @return the removed value
+	 */
+	public int swapRemove(int idx) {
+		int val = data[idx];
+		data[idx] = data[--size];
+		return val;
+	}
+
+	/**
+	 * Remove the last element. Unchecked on an empty list.
+	 */
+	public int pop() {
+		return data[--size];
+	}
+
+	public void clear() {
+		size = 0;
+	}
+}
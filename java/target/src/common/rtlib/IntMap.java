@@ -0,0 +1,217 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package rtlib;
+
+/**
+ * A map from int keys to object values with a fixed capacity.
+ *
+ * Open addressing with linear probing. The probe sequence is limited
+ * to MAX_PROBE slots, which bounds every operation for the WCET
+ * analysis. When no free slot is found within MAX_PROBE slots
+ * put() fails and returns false. Removed entries leave a tombstone
+ * that is reused by the next put() in the same probe window.
+ *
+ * No operation allocates an object; the map is never rehashed.
+ * Iteration is done by slot index:
+ * <pre>
+ *   for (int i=0; i&lt;map.slots(); ++i) {
+ *     if (map.used(i)) { ... map.keyAt(i) ... map.valueAt(i) ... }
+ *   }
+ * </pre>
+ *
+ */
+public class IntMap<V> {
+
+	/**
+	 * Maximum number of slots inspected by one operation.
+	 */
+	public static final int MAX_PROBE = 16;
+	/**
+	 * Upper bound for the number of slots, used for the loop bound
+	 * of clear().
+	 */
+	public static final int MAX_SLOTS = 4096;
+
+	static final byte FREE = 0;
+	static final byte USED = 1;
+	static final byte DELETED = 2;
+
+	private int[] keys;
+	private Object[] vals;
+	private byte[] state;
+	private int mask;
+	private int size;
+
+	/**
+	 * Create a map for at least capacity entries. The number of
+	 * slots is the next power of two of 2*capacity.
+	 * @param capacity maximum number of entries
+	 */
+	public IntMap(int capacity) {
+		int n = slotCount(capacity);
+		keys = new int[n];
+		vals = new Object[n];
+		state = new byte[n];
+		mask = n-1;
+		size = 0;
+	}
+
+	/**
+	 * Power of two slot count for capacity entries at a load
+	 * factor of at most 0.5.
+	 */
+	static int slotCount(int capacity) {
+		if (capacity<1) capacity = 1;
+		if (capacity>MAX_SLOTS/2) {
+			throw new IllegalArgumentException("capacity");
+		}
+		int n = 2;
+		while (n<2*capacity) { // @WCA loop<=12
+			n <<= 1;
+		}
+		return n;
+	}
+
+	/**
+	 * Fibonacci hashing: the multiplication moves the key bits up,
+	 * the shift folds them back to the slot index bits. Keys that
+	 * differ only in the upper bits (e.g. IP addresses, aligned
+	 * addresses) still spread over the table.
+	 */
+	static int hash(int key) {
+		int h = key*0x9e3779b9;
+		return h ^ (h>>>16);
+	}
+
+	/**
+	 * Find the slot of a key.
+	 * @return slot index or -1 if not found
+	 */
+	private int find(int key) {
+		int i = hash(key) & mask;
+		for (int j=0; j<MAX_PROBE; ++j) { // @WCA loop<=MAX_PROBE
+			byte s = state[i];
+			if (s==FREE) {
+				return -1;
+			}
+			if (s==USED && keys[i]==key) {
+				return i;
+			}
+			i = (i+1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Insert or replace a mapping.
+	 * @return false if the probe window is full
+	 */
+	public boolean put(int key, V val) {
+		int i = hash(key) & mask;
+		int free = -1;
+		for (int j=0; j<MAX_PROBE; ++j) { // @WCA loop<=MAX_PROBE
+			byte s = state[i];
+			if (s==USED) {
+				if (keys[i]==key) {
+					vals[i] = val;
+					return true;
+				}
+			} else {
+				if (free<0) free = i;
+				if (s==FREE) break;
+			}
+			i = (i+1) & mask;
+		}
+		if (free<0) return false;
+		keys[free] = key;
+		vals[free] = val;
+		state[free] = USED;
+		++size;
+		return true;
+	}
+
+	/**
+	 * @return the value or null if not found
+	 */
+	public V get(int key) {
+		int i = find(key);
+		return i<0 ? null : valueAt(i);
+	}
+
+	public boolean containsKey(int key) {
+		return find(key)>=0;
+	}
+
+	/**
+	 * Remove a mapping.
+	 * @return the old value or null if not found
+	 */
+	public V remove(int key) {
+		int i = find(key);
+		if (i<0) return null;
+		V old = valueAt(i);
+		vals[i] = null;
+		state[i] = DELETED;
+		--size;
+		return old;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	/**
+	 * Remove all mappings and tombstones.
+	 */
+	public void clear() {
+		for (int i=0; i<state.length; ++i) { // @WCA loop<=MAX_SLOTS
+			state[i] = FREE;
+			vals[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return number of slots for iteration
+	 */
+	public int slots() {
+		return state.length;
+	}
+
+	public boolean used(int slot) {
+		return state[slot]==USED;
+	}
+
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 * The only cast of a value: vals is an Object[] as JOP has
+	 * no checkcast for array types.
+	 */
+	@SuppressWarnings("unchecked")
+	public V valueAt(int slot) {
+		return (V) vals[slot];
+	}
+}
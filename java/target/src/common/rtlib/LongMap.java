@@ -0,0 +1,179 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package rtlib;
+
+/**
+ * A map from long keys to object values with a fixed capacity.
+ *
+ * Avoids the Long boxing of java.util.Hashtable, e.g. for time stamps
+ * or 64 bit identifiers as keys.
+ *
+ * See IntMap for the probing scheme and slot iteration.
+ *
+ */
+public class LongMap<V> {
+
+	/**
+	 * Maximum number of slots inspected by one operation.
+	 */
+	public static final int MAX_PROBE = IntMap.MAX_PROBE;
+	/**
+	 * Upper bound for the number of slots.
+	 */
+	public static final int MAX_SLOTS = IntMap.MAX_SLOTS;
+
+	private long[] keys;
+	private Object[] vals;
+	private byte[] state;
+	private int mask;
+	private int size;
+
+	/**
+	 * Create a map for at least capacity entries. The number of
+	 * slots is the next power of two of 2*capacity.
+	 * @param capacity maximum number of entries
+	 */
+	public LongMap(int capacity) {
+		int n = IntMap.slotCount(capacity);
+		keys = new long[n];
+		vals = new Object[n];
+		state = new byte[n];
+		mask = n-1;
+		size = 0;
+	}
+
+	/**
+	 * Fold the long key to an int and spread the upper bits.
+	 */
+	static int hash(long key) {
+		return IntMap.hash((int) key ^ (int) (key>>>32));
+	}
+
+	/**
+	 * Find the slot of a key.
+	 * @return slot index or -1 if not found
+	 */
+	private int find(long key) {
+		int i = hash(key) & mask;
+		for (int j=0; j<MAX_PROBE; ++j) { // @WCA loop<=MAX_PROBE
+			byte s = state[i];
+			if (s==IntMap.FREE) {
+				return -1;
+			}
+			if (s==IntMap.USED && keys[i]==key) {
+				return i;
+			}
+			i = (i+1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Insert or replace a mapping.
+	 * @return false if the probe window is full
+	 */
+	public boolean put(long key, V val) {
+		int i = hash(key) & mask;
+		int free = -1;
+		for (int j=0; j<MAX_PROBE; ++j) { // @WCA loop<=MAX_PROBE
+			byte s = state[i];
+			if (s==IntMap.USED) {
+				if (keys[i]==key) {
+					vals[i] = val;
+					return true;
+				}
+			} else {
+				if (free<0) free = i;
+				if (s==IntMap.FREE) break;
+			}
+			i = (i+1) & mask;
+		}
+		if (free<0) return false;
+		keys[free] = key;
+		vals[free] = val;
+		state[free] = IntMap.USED;
+		++size;
+		return true;
+	}
+
+	/**
+	 * @return the value or null if not found
+	 */
+	public V get(long key) {
+		int i = find(key);
+		return i<0 ? null : valueAt(i);
+	}
+
+	public boolean containsKey(long key) {
+		return find(key)>=0;
+	}
+
+	/**
+	 * Remove a mapping.
+	 * @return the old value or null if not found
+	 */
+	public V remove(long key) {
+		int i = find(key);
+		if (i<0) return null;
+		V old = valueAt(i);
+		vals[i] = null;
+		state[i] = IntMap.DELETED;
+		--size;
+		return old;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	/**
+	 * Remove all mappings and tombstones.
+	 */
+	public void clear() {
+		for (int i=0; i<state.length; ++i) { // @WCA loop<=MAX_SLOTS
+			state[i] = IntMap.FREE;
+			vals[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return number of slots for iteration
+	 */
+	public int slots() {
+		return state.length;
+	}
+
+	public boolean used(int slot) {
+		return state[slot]==IntMap.USED;
+	}
+
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	@SuppressWarnings("unchecked")
+	public V valueAt(int slot) {
+		return (V) vals[slot];
+	}
+}
@@ -0,0 +1,188 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package rtlib;
+
+/**
+ * A bounded queue for multiple producers and multiple consumers
+ * on the CMP version of JOP.
+ *
+ * Each slot carries a sequence number that tells whether the slot
+ * is free for the producer of a given position or holds the
+ * element for the consumer of that position (D. Vyukov's bounded
+ * MPMC queue). Producers and consumers only contend on claiming a
+ * position, i.e. on incrementing enqPos or deqPos. Writing and
+ * reading the element and publishing it through the sequence number
+ * happen outside of any critical section.
+ *
+ * JOP has no compare-and-swap instruction. The claim is done in
+ * casEnqPos() and casDeqPos(), which hold the CMP lock for only a
+ * compare and a store. AtomicMPMCQueue implements them with RTTM
+ * transactions instead, MPSCQueue drops the lock on the consumer
+ * side.
+ *
+ * offer() and poll() are lock-free but not wait-free: a failed
+ * claim means that another core has made progress. To keep them
+ * analyzable the number of claims is bounded by MAX_RETRY. When
+ * all attempts fail offer() returns false and poll() returns null,
+ * as for a full or empty queue, and the caller retries later.
+ *
+ */
+public class MPMCQueue<T> {
+
+	/**
+	 * Maximum number of attempts to claim a position in one
+	 * offer() or poll().
+	 */
+	public static final int MAX_RETRY = 8;
+
+	private final Object[] data;
+	private final int[] seq;
+	private final int mask;
+	/**
+	 * Next position to be claimed by a producer.
+	 */
+	protected volatile int enqPos;
+	/**
+	 * Next position to be claimed by a consumer.
+	 */
+	protected volatile int deqPos;
+
+	/**
+	 * Create a queue for at least capacity elements. The capacity
+	 * is rounded up to a power of two.
+	 * @param capacity minimum number of elements
+	 */
+	public MPMCQueue(int capacity) {
+		if (capacity<2) capacity = 2;
+		if (capacity>IntList.MAX_CAPACITY) {
+			throw new IllegalArgumentException("capacity");
+		}
+		int n = 2;
+		while (n<capacity) { // @WCA loop<=11
+			n <<= 1;
+		}
+		data = new Object[n];
+		seq = new int[n];
+		for (int i=0; i<n; ++i) { // @WCA loop<=4096
+			seq[i] = i;
+		}
+		mask = n-1;
+		enqPos = deqPos = 0;
+	}
+
+	/**
+	 * Enqueue an element.
+	 * @return false if the queue is full or the position could
+	 * not be claimed within MAX_RETRY attempts
+	 */
+	public boolean offer(T val) {
+		for (int n=0; n<MAX_RETRY; ++n) { // @WCA loop<=MAX_RETRY
+			int pos = enqPos;
+			int i = pos & mask;
+			int dif = seq[i]-pos;
+			if (dif==0) {
+				if (casEnqPos(pos, pos+1)) {
+					data[i] = val;
+					// publish to the consumer of pos
+					seq[i] = pos+1;
+					return true;
+				}
+			} else if (dif<0) {
+				// the slot still holds the element from the last round
+				return false;
+			}
+			// another producer claimed pos, retry with the new enqPos
+		}
+		return false;
+	}
+
+	/**
+	 * Dequeue an element.
+	 * @return the element or null if the queue is empty or the
+	 * position could not be claimed within MAX_RETRY attempts
+	 */
+	public T poll() {
+		for (int n=0; n<MAX_RETRY; ++n) { // @WCA loop<=MAX_RETRY
+			int pos = deqPos;
+			int i = pos & mask;
+			int dif = seq[i]-(pos+1);
+			if (dif==0) {
+				if (casDeqPos(pos, pos+1)) {
+					T val = element(i);
+					data[i] = null;
+					// free the slot for the producer of the next round
+					seq[i] = pos+mask+1;
+					return val;
+				}
+			} else if (dif<0) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * data is an Object[], a T[] would need a checkcast on an
+	 * array type, which JOP does not support.
+	 */
+	@SuppressWarnings("unchecked")
+	private T element(int i) {
+		return (T) data[i];
+	}
+
+	/**
+	 * Claim the producer position expect.
+	 * @return false if another producer was faster
+	 */
+	protected boolean casEnqPos(int expect, int update) {
+		synchronized (this) {
+			if (enqPos!=expect) return false;
+			enqPos = update;
+			return true;
+		}
+	}
+
+	/**
+	 * Claim the consumer position expect.
+	 * @return false if another consumer was faster
+	 */
+	protected boolean casDeqPos(int expect, int update) {
+		synchronized (this) {
+			if (deqPos!=expect) return false;
+			deqPos = update;
+			return true;
+		}
+	}
+
+	public int capacity() {
+		return data.length;
+	}
+
+	/**
+	 * Number of elements. Only a snapshot when other cores
+	 * are active on the queue.
+	 */
+	public int cnt() {
+		int i = enqPos-deqPos;
+		return i<0 ? 0 : i;
+	}
+
+	public boolean empty() {
+		return enqPos==deqPos;
+	}
+}
@@ -0,0 +1,41 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package rtlib;
+
+/**
+ * A bounded queue for multiple producers and a single consumer,
+ * e.g. several cores that send requests to one server thread.
+ *
+ * The consumer owns deqPos and advances it without a lock.
+ * poll() must not be invoked from more than one thread.
+ *
+ */
+public class MPSCQueue<T> extends MPMCQueue<T> {
+
+	public MPSCQueue(int capacity) {
+		super(capacity);
+	}
+
+	/**
+	 * Only the consumer changes deqPos, no claim is needed.
+	 */
+	protected boolean casDeqPos(int expect, int update) {
+		deqPos = update;
+		return true;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package rtlib;
+
+/**
+ * A map from object keys to object values with a fixed capacity.
+ *
+ * Keys are compared with equals() and must not be null. The cost of
+ * an operation includes up to MAX_PROBE invocations of equals() and
+ * one of hashCode(), so keys should have bounded implementations.
+ *
+ * See IntMap for the probing scheme and slot iteration.
+ *
+ */
+public class ObjectMap<K, V> {
+
+	/**
+	 * Maximum number of slots inspected by one operation.
+	 */
+	public static final int MAX_PROBE = IntMap.MAX_PROBE;
+	/**
+	 * Upper bound for the number of slots.
+	 */
+	public static final int MAX_SLOTS = IntMap.MAX_SLOTS;
+
+	private Object[] keys;
+	private Object[] vals;
+	private byte[] state;
+	private int mask;
+	private int size;
+
+	/**
+	 * Create a map for at least capacity entries. The number of
+	 * slots is the next power of two of 2*capacity.
+	 * @param capacity maximum number of entries
+	 */
+	public ObjectMap(int capacity) {
+		int n = IntMap.slotCount(capacity);
+		keys = new Object[n];
+		vals = new Object[n];
+		state = new byte[n];
+		mask = n-1;
+		size = 0;
+	}
+
+	/**
+	 * Spread the upper bits of the hash code.
+	 */
+	static int hash(Object key) {
+		return IntMap.hash(key.hashCode());
+	}
+
+	/**
+	 * Find the slot of a key.
+	 * @return slot index or -1 if not found
+	 */
+	private int find(Object key) {
+		int i = hash(key) & mask;
+		for (int j=0; j<MAX_PROBE; ++j) { // @WCA loop<=MAX_PROBE
+			byte s = state[i];
+			if (s==IntMap.FREE) {
+				return -1;
+			}
+			if (s==IntMap.USED && key.equals(keys[i])) {
+				return i;
+			}
+			i = (i+1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Insert or replace a mapping.
+	 * @return false if the probe window is full
+	 */
+	public boolean put(K key, V val) {
+		int i = hash(key) & mask;
+		int free = -1;
+		for (int j=0; j<MAX_PROBE; ++j) { // @WCA loop<=MAX_PROBE
+			byte s = state[i];
+			if (s==IntMap.USED) {
+				if (key.equals(keys[i])) {
+					vals[i] = val;
+					return true;
+				}
+			} else {
+				if (free<0) free = i;
+				if (s==IntMap.FREE) break;
+			}
+			i = (i+1) & mask;
+		}
+		if (free<0) return false;
+		keys[free] = key;
+		vals[free] = val;
+		state[free] = IntMap.USED;
+		++size;
+		return true;
+	}
+
+	/**
+	 * @return the value or null if not found
+	 */
+	public V get(K key) {
+		int i = find(key);
+		return i<0 ? null : valueAt(i);
+	}
+
+	public boolean containsKey(K key) {
+		return find(key)>=0;
+	}
+
+	/**
+	 * Remove a mapping.
+	 * @return the old value or null if not found
+	 */
+	public V remove(K key) {
+		int i = find(key);
+		if (i<0) return null;
+		V old = valueAt(i);
+		keys[i] = null;
+		vals[i] = null;
+		state[i] = IntMap.DELETED;
+		--size;
+		return old;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	/**
+	 * Remove all mappings and tombstones.
+	 */
+	public void clear() {
+		for (int i=0; i<state.length; ++i) { // @WCA loop<=MAX_SLOTS
+			state[i] = IntMap.FREE;
+			keys[i] = null;
+			vals[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return number of slots for iteration
+	 */
+	public int slots() {
+		return state.length;
+	}
+
+	public boolean used(int slot) {
+		return state[slot]==IntMap.USED;
+	}
+
+	@SuppressWarnings("unchecked")
+	public K keyAt(int slot) {
+		return (K) keys[slot];
+	}
+
+	@SuppressWarnings("unchecked")
+	public V valueAt(int slot) {
+		return (V) vals[slot];
+	}
+}
@@ -87,9 +87,16 @@ public abstract class Guts_H
 	static final int YAFFS_OBJECTID_CHECKPOINT_DATA =	0x20;
 	static final int YAFFS_SEQUENCE_CHECKPOINT_DATA = 0x21;
 
+	/* Pseudo object id of the block summary in the last chunk of a yaffs2 block */
+	static final int YAFFS_OBJECTID_SUMMARY =	0x30;
+	static final int YAFFS_SUMMARY_MAGIC =	0x5953554d;	/* "YSUM" */
+
 	/* */
 
-	static final int YAFFS_MAX_SHORT_OP_CACHES =	20;
+	static final int YAFFS_MAX_SHORT_OP_CACHES =	256;
+
+	/* Chunks prefetched into the short op cache on sequential short reads */
+	static final int YAFFS_READ_AHEAD_CHUNKS =	4;
 
 	static final int YAFFS_N_TEMP_BUFFERS =		4;
 
@@ -48,7 +48,7 @@ public class yaffs_BlockInfo extends yaffs2.utils.SerializableObject
 	}
 	int pagesInUse()
 	{
-		return (yaffs2.utils.Utils.byteAsUnsignedByte(serialized[offset+1]) >>> 2) | ((serialized[offset+2] & 0xf ) << 2);
+		return (yaffs2.utils.Utils.byteAsUnsignedByte(serialized[offset+1]) >>> 2) | ((serialized[offset+2] & 0xf ) << 6);
 	}
 	void setPagesInUse(int value)
 	{
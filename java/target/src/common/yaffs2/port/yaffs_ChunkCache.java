@@ -5,7 +5,11 @@ public class yaffs_ChunkCache
 {
 	yaffs_Object object;
 	int chunkId;
-	int lastUse;
+	yaffs_ChunkCache hashNext;	/* Next entry in the (object, chunkId) hash bucket */
+	yaffs_ChunkCache lruPrev;	/* Circular LRU list, least recently used first */
+	yaffs_ChunkCache lruNext;
+	yaffs_ChunkCache dirtyPrev;	/* Dirty entries of the object, sorted by chunkId */
+	yaffs_ChunkCache dirtyNext;
 	boolean dirty;
 	int nBytes;		/* Only valid if the cache is dirty */
 	boolean locked;		/* Can't push out or flush while locked. */
@@ -36,6 +36,7 @@ public class yaffs_Device
 		removeObjectCallbackInterface removeObjectCallback;
 		public markSuperBlockDirtyInterface markSuperBlockDirty;
 		public boolean wideTnodesDisabled;
+		public boolean blockSummaryDisabled;	/* Don't keep tag summaries in the last chunk of yaffs2 blocks */
 		public int chunkGroupBits;
 		public int chunkGroupSize;
 		
@@ -187,7 +188,11 @@ public class yaffs_Device
 		public int doingBufferedBlockRewrite;
 
 		public yaffs_ChunkCache[] srCache;
-		public int srLastUse;
+		public yaffs_ChunkCache[] srCacheHash;	/* (object, chunkId) index, size is a power of 2 */
+		public yaffs_ChunkCache srLru;	/* Head of the LRU list. Free entries first, then least recently used */
+		public int srDirty;	/* Number of dirty cache entries */
+
+		public int tnodeGeneration;	/* Changed when tnodes are freed, invalidates cached tnode lookups */
 
 		public int cacheHits;
 
@@ -210,6 +215,10 @@ public class yaffs_Device
 		public long sequenceNumber;	/* Sequence number of currently allocating block */
 		public long oldestDirtySequence;
 
+		/* Block summary (objectId, chunkId, byteCount per chunk) of the allocation block */
+		public int[] summaryTags;
+		public int summaryBlock;	/* Block the summary belongs to, -1 if none */
+
 	//};
 
 	//typedef struct yaffs_DeviceStruct yaffs_Device;
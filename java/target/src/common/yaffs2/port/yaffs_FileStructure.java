@@ -8,6 +8,12 @@ public class yaffs_FileStructure
 	/** __u32 */ public int shrinkSize;
 	public int topLevel;
 	public yaffs_Tnode top;
+	
+	/* PORT Cached level 0 tnode of the last lookup, valid while
+	 * lastTnGeneration equals the device tnodeGeneration. */
+	public yaffs_Tnode lastTn;
+	public int lastTnBase;
+	public int lastTnGeneration;
 	//} yaffs_FileStructure;
 
 
@@ -48,6 +48,11 @@ public class yaffs_Object implements list_head_or_yaffs_Object
 
 		public int nDataChunks;	/* Number of data chunks attached to the file. */
 
+		public yaffs_ChunkCache dirtyCacheHead;	/* Dirty short op cache entries, sorted by chunkId */
+		public yaffs_ChunkCache dirtyCacheTail;
+
+		public int readAheadChunk;	/* Chunk following the last short read, for read-ahead */
+
 		/**__u32*/ public int objectId;		/* the object id value */
 
 		/**__u32*/ public int yst_mode;
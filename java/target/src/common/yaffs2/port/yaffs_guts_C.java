@@ -400,6 +400,160 @@ public class yaffs_guts_C
 
 	}
 
+	/*
+	 * Block summaries (yaffs2 only).
+	 * The last chunk of a block is a copy of the tags (objectId, chunkId,
+	 * byteCount) of the chunks before it. It is written when the block
+	 * is filled and deleted straight away, so it only costs one chunk
+	 * per block until the block is erased. A scan after an unclean
+	 * shutdown reads it instead of the tags of every chunk; only object
+	 * headers still need their own tags for the extra header info.
+	 *
+	 * Summary chunk layout:
+	 *	magic, sequence number, number of entries, checksum,
+	 *	then objectId, chunkId, byteCount per entry.
+	 * An objectId of 0 marks a chunk that was never written.
+	 */
+
+	static final int SUMMARY_HEADER_WORDS = 4;
+
+	static void yaffs_SummaryStart(yaffs_Device dev, int blk)
+	{
+		int i;
+
+		if (dev.summaryTags != null) {
+			dev.summaryBlock = blk;
+			for (i = 0; i < dev.summaryTags.length; i++)
+				dev.summaryTags[i] = 0;
+		}
+	}
+
+	static void yaffs_SummaryAdd(yaffs_Device dev, int chunkInNAND, yaffs_ExtendedTags tags)
+	{
+		int c = chunkInNAND % dev.subField1.nChunksPerBlock;
+
+		if (dev.summaryTags != null &&
+				chunkInNAND / dev.subField1.nChunksPerBlock == dev.summaryBlock &&
+				c < dev.subField1.nChunksPerBlock - 1) {
+			dev.summaryTags[c * 3] = tags.objectId;
+			dev.summaryTags[c * 3 + 1] = tags.chunkId;
+			dev.summaryTags[c * 3 + 2] = tags.byteCount;
+		}
+	}
+
+	/*
+	 * Writes the summary once everything but the last chunk of the
+	 * allocation block is used.
+	 */
+	static void yaffs_SummaryWrite(yaffs_Device dev)
+	{
+		int chunk;
+		int i;
+		int nEntries = dev.subField1.nChunksPerBlock - 1;
+		int sum = 0;
+		byte[] buffer;
+		yaffs_ExtendedTags tags;
+		yaffs_BlockInfo bi;
+
+		if (!(dev.summaryTags != null) ||
+				dev.subField3.allocationBlock < 0 ||
+				dev.subField3.allocationBlock != dev.summaryBlock ||
+				dev.subField3.allocationPage != nEntries)
+			return;
+
+		dev.summaryBlock = -1;
+		bi = Guts_H.yaffs_GetBlockInfo(dev, dev.subField3.allocationBlock);
+
+		buffer = yaffs_GetTempBuffer(dev, 38 /*Utils.__LINE__()*/);
+		Unix.memset(buffer, 0, (byte)0xff, dev.subField1.nDataBytesPerChunk);
+		for (i = 0; i < nEntries * 3; i++) {
+			sum += dev.summaryTags[i];
+			Utils.writeIntToByteArray(buffer, (SUMMARY_HEADER_WORDS + i) * 4, dev.summaryTags[i]);
+		}
+		Utils.writeIntToByteArray(buffer, 0, Guts_H.YAFFS_SUMMARY_MAGIC);
+		Utils.writeIntToByteArray(buffer, 4, bi.sequenceNumber());
+		Utils.writeIntToByteArray(buffer, 8, nEntries);
+		Utils.writeIntToByteArray(buffer, 12, sum);
+
+		tags = new yaffs_ExtendedTags();
+		yaffs_tagsvalidity_C.yaffs_InitialiseTags(tags);
+		tags.objectId = Guts_H.YAFFS_OBJECTID_SUMMARY;
+		tags.chunkId = 1;
+		tags.byteCount = (SUMMARY_HEADER_WORDS + nEntries * 3) * 4;
+
+		chunk = yaffs_AllocateChunk(dev, true, null);
+		if (chunk >= 0) {
+			if (yaffs_nand_C.yaffs_WriteChunkWithTagsToNAND(dev, chunk, buffer, 0, tags)) {
+				/* Holds no object data, so it is garbage as soon as it is written */
+				yaffs_DeleteChunk(dev, chunk, false, 39 /*Utils.__LINE__()*/);
+			} else {
+				yaffs_HandleWriteChunkError(dev, chunk, true);
+			}
+		}
+
+		yaffs_ReleaseTempBuffer(dev, buffer, 40 /*Utils.__LINE__()*/);
+	}
+
+	/*
+	 * Reads and checks the summary of a block for scanning.
+	 * Returns false if the block has none (or a broken one) and has to be
+	 * scanned chunk by chunk.
+	 */
+	static boolean yaffs_SummaryRead(yaffs_Device dev, int blk, int sequenceNumber,
+			int[] summary, byte[] buffer, int bufferIndex)
+	{
+		int i;
+		int nEntries = dev.subField1.nChunksPerBlock - 1;
+		int sum = 0;
+		yaffs_ExtendedTags sumTags = new yaffs_ExtendedTags();
+
+		yaffs_nand_C.yaffs_ReadChunkWithTagsFromNAND(dev, blk * dev.subField1.nChunksPerBlock + nEntries,
+				buffer, bufferIndex, sumTags);
+
+		if (!sumTags.chunkUsed ||
+				sumTags.objectId != Guts_H.YAFFS_OBJECTID_SUMMARY ||
+				sumTags.eccResult > Guts_H.YAFFS_ECC_RESULT_FIXED ||
+				Utils.getIntFromByteArray(buffer, bufferIndex) != Guts_H.YAFFS_SUMMARY_MAGIC ||
+				Utils.getIntFromByteArray(buffer, bufferIndex + 4) != sequenceNumber ||
+				Utils.getIntFromByteArray(buffer, bufferIndex + 8) != nEntries)
+			return false;
+
+		for (i = 0; i < nEntries * 3; i++) {
+			summary[i] = Utils.getIntFromByteArray(buffer, bufferIndex + (SUMMARY_HEADER_WORDS + i) * 4);
+			sum += summary[i];
+		}
+
+		return sum == Utils.getIntFromByteArray(buffer, bufferIndex + 12);
+	}
+
+	/*
+	 * Gets the scan tags of chunk c from a block summary.
+	 * Object headers are read from NAND, the scan needs their extra info.
+	 */
+	static boolean yaffs_SummaryGetTags(yaffs_Device dev, int chunkInNAND, int c,
+			int[] summary, int sequenceNumber, yaffs_ExtendedTags tags)
+	{
+		if (c < dev.subField1.nChunksPerBlock - 1 && summary[c * 3] != 0 && summary[c * 3 + 1] == 0)
+			return yaffs_nand_C.yaffs_ReadChunkWithTagsFromNAND(dev, chunkInNAND, null, 0, tags);
+
+		yaffs_tagsvalidity_C.yaffs_InitialiseTags(tags);
+
+		if (c == dev.subField1.nChunksPerBlock - 1) {
+			tags.chunkUsed = true;
+			tags.objectId = Guts_H.YAFFS_OBJECTID_SUMMARY;
+			tags.chunkId = 1;
+		} else if (summary[c * 3] != 0) {
+			tags.chunkUsed = true;
+			tags.objectId = summary[c * 3];
+			tags.chunkId = summary[c * 3 + 1];
+			tags.byteCount = summary[c * 3 + 2];
+		}
+		tags.sequenceNumber = sequenceNumber;
+		tags.eccResult = Guts_H.YAFFS_ECC_RESULT_NO_ERROR;
+
+		return Guts_H.YAFFS_OK;
+	}
+
 
 	static int yaffs_WriteNewChunkWithTagsToNAND(yaffs_Device dev,
 			byte[] data, int dataIndex,
@@ -415,6 +569,9 @@ public class yaffs_guts_C
 
 		yaffs_InvalidateCheckpoint(dev);
 
+		/* A block left one chunk short of full by a scan still gets its summary */
+		yaffs_SummaryWrite(dev);
+
 		do {
 			yaffs_BlockInfoPointer biPointer = new yaffs_BlockInfoPointer();
 			chunk = yaffs_AllocateChunk(dev, useReserve, biPointer);
@@ -474,6 +631,7 @@ public class yaffs_guts_C
 						 *  Todo
 						 */
 						yaffs_HandleWriteChunkOk(dev, chunk, data, dataIndex, tags);
+						yaffs_SummaryAdd(dev, chunk, tags);
 
 					} else {
 						/* The erased check or write failed */
@@ -484,6 +642,9 @@ public class yaffs_guts_C
 
 		} while (chunk >= 0 && !writeOk);
 
+		if (writeOk)
+			yaffs_SummaryWrite(dev);
+
 		if (attempts > 1) {
 			yportenv.T(yportenv.YAFFS_TRACE_ERROR,
 					("**>> yaffs write required %d attempts" + ydirectenv.TENDSTR),
@@ -770,6 +931,7 @@ public class yaffs_guts_C
 			tn.internal[0] = dev.subField3.freeTnodes;
 			dev.subField3.freeTnodes = tn;
 			dev.subField3.nFreeTnodes++;
+			dev.tnodeGeneration++;
 		}
 	}
 
@@ -800,6 +962,7 @@ public class yaffs_guts_C
 		dev.subField3.freeTnodes = null;
 		dev.subField3.nFreeTnodes = 0;
 		dev.subField3.nTnodesCreated = 0;
+		dev.tnodeGeneration++;
 
 	}
 
@@ -921,6 +1084,28 @@ public class yaffs_guts_C
 		return tn;
 	}
 
+	/* Sequential access looks up the same level 0 tnode for consecutive
+	 * chunks. Remember the last one found, freeing any tnode invalidates it.
+	 */
+	static yaffs_Tnode yaffs_FindLevel0TnodeCached(yaffs_Device dev,
+			yaffs_FileStructure fStruct,
+			int chunkId)
+	{
+		int base = chunkId >>> Guts_H.YAFFS_TNODES_LEVEL0_BITS;
+		yaffs_Tnode tn;
+
+		if (fStruct.lastTn != null && fStruct.lastTnBase == base &&
+				fStruct.lastTnGeneration == dev.tnodeGeneration)
+			return fStruct.lastTn;
+
+		tn = yaffs_FindLevel0Tnode(dev, fStruct, chunkId);
+		fStruct.lastTn = tn;
+		fStruct.lastTnBase = base;
+		fStruct.lastTnGeneration = dev.tnodeGeneration;
+
+		return tn;
+	}
+
 
 	/* AddOrFindLevel0Tnode finds the level 0 tnode if it exists, otherwise first expands the tree.
 	 * This happens in two steps:
@@ -2349,6 +2534,7 @@ public class yaffs_guts_C
 			/* Get next block to allocate off */
 			dev.subField3.allocationBlock = yaffs_FindBlockForAllocation(dev);
 			dev.subField3.allocationPage = 0;
+			yaffs_SummaryStart(dev, dev.subField3.allocationBlock);
 		}
 
 		if (!useReserve && !yaffs_CheckSpaceForAllocation(dev)) {
@@ -2709,7 +2895,7 @@ public class yaffs_guts_C
 			tags = localTags;
 		}
 
-		tn = yaffs_FindLevel0Tnode(dev, in.variant.fileVariant(), chunkInInode);
+		tn = yaffs_FindLevel0TnodeCached(dev, in.variant.fileVariant(), chunkInInode);
 
 		if (tn != null) {
 			theChunk = yaffs_GetChunkGroupBase(dev,tn,chunkInInode);
@@ -3240,68 +3426,160 @@ public class yaffs_guts_C
 	 *   In Linux, the page cache provides read buffering aand the short op cache provides write 
 	 *   buffering.
 	 *
-	 *   There are a limited number (~10) of cache chunks per device so that we don't
-	 *   need a very intelligent search.
+	 *   The cache entries are indexed by (object, chunkId) in a hash table, kept on
+	 *   an LRU list with the free entries at the head, and the dirty entries of an
+	 *   object are on a list sorted by chunkId. None of the operations below scans
+	 *   the whole cache per chunk, so a device can be configured with many more
+	 *   cache chunks.
 	 */
 
-	static boolean yaffs_ObjectHasCachedWriteData(yaffs_Object obj)
+	static int yaffs_CacheHash(yaffs_Device dev, yaffs_Object obj, int chunkId)
+	{
+		int h = obj.objectId * 0x9e3779b1 + chunkId;
+
+		return (h ^ (h >>> 16)) & (dev.srCacheHash.length - 1);
+	}
+
+	/* Move an entry to the tail (most recently used) or the head of the LRU list */
+	static void yaffs_CacheMoveLru(yaffs_Device dev, yaffs_ChunkCache cache,
+			boolean toHead)
+	{
+		yaffs_ChunkCache lru = dev.srLru;
+
+		cache.lruPrev.lruNext = cache.lruNext;
+		cache.lruNext.lruPrev = cache.lruPrev;
+		if (toHead) {
+			cache.lruPrev = lru;
+			cache.lruNext = lru.lruNext;
+		} else {
+			cache.lruPrev = lru.lruPrev;
+			cache.lruNext = lru;
+		}
+		cache.lruPrev.lruNext = cache;
+		cache.lruNext.lruPrev = cache;
+	}
+
+	/* Assign a free cache entry to a chunk of an object */
+	static void yaffs_CacheAttach(yaffs_Object obj, yaffs_ChunkCache cache,
+			int chunkId)
 	{
 		yaffs_Device dev = obj.myDev;
-		int i;
-		yaffs_ChunkCache cache;
-		int nCaches = obj.myDev.subField1.nShortOpCaches;
+		int h = yaffs_CacheHash(dev, obj, chunkId);
 
-		for(i = 0; i < nCaches; i++){
-			cache = dev.srCache[i];
-			if (cache.object == obj &&
-					cache.dirty)
-				return true;
+		cache.object = obj;
+		cache.chunkId = chunkId;
+		cache.dirty = false;
+		cache.locked = false;
+		cache.hashNext = dev.srCacheHash[h];
+		dev.srCacheHash[h] = cache;
+		yaffs_CacheMoveLru(dev, cache, false);
+	}
+
+	/* Free a cache entry without writing it out */
+	static void yaffs_CacheDetach(yaffs_ChunkCache cache)
+	{
+		yaffs_Object obj = cache.object;
+		yaffs_Device dev;
+		yaffs_ChunkCache prev;
+		int h;
+
+		if (obj == null)
+			return;
+
+		dev = obj.myDev;
+		yaffs_CacheSetClean(cache);
+
+		h = yaffs_CacheHash(dev, obj, cache.chunkId);
+		if (dev.srCacheHash[h] == cache) {
+			dev.srCacheHash[h] = cache.hashNext;
+		} else {
+			for (prev = dev.srCacheHash[h]; prev.hashNext != cache; prev = prev.hashNext)
+				;
+			prev.hashNext = cache.hashNext;
 		}
+		cache.hashNext = null;
+		cache.object = null;
+		yaffs_CacheMoveLru(dev, cache, true);
+	}
 
-		return false;
+	static void yaffs_CacheSetDirty(yaffs_ChunkCache cache)
+	{
+		yaffs_Object obj = cache.object;
+		yaffs_ChunkCache prev;
+
+		if (cache.dirty)
+			return;
+
+		/* Short writes are mostly sequential, so search from the tail */
+		for (prev = obj.dirtyCacheTail; prev != null && prev.chunkId > cache.chunkId;
+				prev = prev.dirtyPrev)
+			;
+
+		cache.dirtyPrev = prev;
+		if (prev == null) {
+			cache.dirtyNext = obj.dirtyCacheHead;
+			obj.dirtyCacheHead = cache;
+		} else {
+			cache.dirtyNext = prev.dirtyNext;
+			prev.dirtyNext = cache;
+		}
+		if (cache.dirtyNext == null)
+			obj.dirtyCacheTail = cache;
+		else
+			cache.dirtyNext.dirtyPrev = cache;
+
+		cache.dirty = true;
+		obj.myDev.srDirty++;
 	}
 
+	static void yaffs_CacheSetClean(yaffs_ChunkCache cache)
+	{
+		yaffs_Object obj = cache.object;
+
+		if (!cache.dirty)
+			return;
 
-	static void yaffs_FlushFilesChunkCache(yaffs_Object  obj)
+		if (cache.dirtyPrev == null)
+			obj.dirtyCacheHead = cache.dirtyNext;
+		else
+			cache.dirtyPrev.dirtyNext = cache.dirtyNext;
+		if (cache.dirtyNext == null)
+			obj.dirtyCacheTail = cache.dirtyPrev;
+		else
+			cache.dirtyNext.dirtyPrev = cache.dirtyPrev;
+		cache.dirtyPrev = null;
+		cache.dirtyNext = null;
+
+		cache.dirty = false;
+		obj.myDev.srDirty--;
+	}
+
+	static boolean yaffs_ObjectHasCachedWriteData(yaffs_Object obj)
 	{
-		yaffs_Device dev = obj.myDev;
-		int lowest = -99;	/* Stop compiler whining. */
-		int i;
-		yaffs_ChunkCache cache;
-		int chunkWritten = 0;
-		int nCaches = obj.myDev.subField1.nShortOpCaches;
-
-		if (nCaches > 0) {
-			do {
-				cache = null;
-
-				/* Find the dirty cache for this object with the lowest chunk id. */
-				for (i = 0; i < nCaches; i++) {
-					if (dev.srCache[i].object == obj &&
-							dev.srCache[i].dirty) {
-						if (!(cache != null)					
-								|| dev.srCache[i].chunkId <
-								lowest) {
-							cache = dev.srCache[i];				// nBytes given 156
-							lowest = cache.chunkId;
-						}
-					}
-				}
+		return obj.dirtyCacheHead != null;
+	}
 
-				if ((cache != null) && !cache.locked) {
-					/* Write it out and free it up */
 
-					chunkWritten =
-						yaffs_WriteChunkDataToObject(cache.object,
-								cache.chunkId,
-								cache.data, cache.dataIndex,
-								cache.nBytes,
-								true);
-					cache.dirty = false;
-					cache.object = null;
-				}
+	static void yaffs_FlushFilesChunkCache(yaffs_Object  obj)
+	{
+		yaffs_ChunkCache cache = null;
+		int chunkWritten;
 
-			} while ((cache != null) && chunkWritten > 0);
+		if (obj.myDev.subField1.nShortOpCaches > 0) {
+			/* The dirty list is sorted, write out from the lowest chunk id. */
+			while ((cache = obj.dirtyCacheHead) != null && !cache.locked) {
+				/* Write it out and free it up */
+
+				chunkWritten =
+					yaffs_WriteChunkDataToObject(cache.object,
+							cache.chunkId,
+							cache.data, cache.dataIndex,
+							cache.nBytes,
+							true);
+				yaffs_CacheDetach(cache);
+				if (chunkWritten <= 0)
+					break;
+			}
 
 			if (cache != null) {
 				/* Hoosterman, disk full while writing cache out. */
@@ -3324,108 +3602,59 @@ public class yaffs_guts_C
 		int nCaches = dev.subField1.nShortOpCaches;
 		int i;
 
-		/* Find a dirty object in the cache and flush it...
-		 * until there are no further dirty objects.
-		 */
-		do {
-			obj = null;
-			for( i = 0; i < nCaches && !(obj != null); i++) {
-				if ((dev.srCache[i].object != null) &&
-						dev.srCache[i].dirty)
-					obj = dev.srCache[i].object;
-
-			}
-			if(obj != null)
+		/* Flush each object with dirty entries once. */
+		for (i = 0; i < nCaches && dev.srDirty > 0; i++) {
+			obj = dev.srCache[i].object;
+			if (obj != null && dev.srCache[i].dirty)
 				yaffs_FlushFilesChunkCache(obj);
-
-		} while(obj != null);
+		}
 
 	}
 
 
 	/* Grab us a cache chunk for use.
-	 * First look for an empty one. 
-	 * Then look for the least recently used non-dirty one.
-	 * Then look for the least recently used dirty one...., flush and look again.
+	 * The free entries are at the head of the LRU list.
 	 */
 	static yaffs_ChunkCache yaffs_GrabChunkCacheWorker(yaffs_Device dev)
 	{
-		int i;
-		int usage;
-		int theOne;
+		yaffs_ChunkCache cache;
 
 		if (dev.subField1.nShortOpCaches > 0) {
-			for (i = 0; i < dev.subField1.nShortOpCaches; i++) {
-				if (!(dev.srCache[i].object != null)) 
-					return dev.srCache[i];
-			}
-
-			return null;
-
-			// PORT the Java compiler whines about the rest of the block to be not reachable
-//			theOne = -1;
-//			usage = 0;	/* just to stop the compiler grizzling */
-
-//			for (i = 0; i < dev.nShortOpCaches; i++) {
-//			if (!dev.srCache[i].dirty &&
-//			((dev.srCache[i].lastUse < usage && theOne >= 0) ||
-//			theOne < 0)) {
-//			usage = dev.srCache[i].lastUse;
-//			theOne = i;
-//			}
-//			}
-
-
-//			return theOne >= 0 ? dev.srCache[theOne] : null;
-		} else {
-			return null;
+			cache = dev.srLru.lruNext;
+			if (cache != dev.srLru && !(cache.object != null))
+				return cache;
 		}
+		return null;
 
 	}
 
 	static yaffs_ChunkCache yaffs_GrabChunkCache(yaffs_Device dev)
 	{
 		yaffs_ChunkCache cache;
-		yaffs_Object theObj;
-		int usage;
-		int i;
-		int pushout;
 
 		if (dev.subField1.nShortOpCaches > 0) {
-			/* Try find a non-dirty one... */
+			/* Try find a free one... */
 
 			cache = yaffs_GrabChunkCacheWorker(dev);
 
 			if (!(cache != null)) {
-				/* They were all dirty, find the last recently used object and flush
-				 * its cache, then  find again.
-				 * NB what's here is not very accurate, we actually flush the object
-				 * the last recently used page.
+				/* They were all in use. Take the least recently used entry
+				 * that is not locked. A clean one can be reused, for a dirty
+				 * one flush its object and then find again.
 				 */
 
-				/* With locking we can't assume we can use entry zero */
-
-				theObj = null;
-				usage = -1;
-				cache = null;
-				pushout = -1;
+				for (cache = dev.srLru.lruNext; cache != dev.srLru && cache.locked;
+						cache = cache.lruNext)
+					;
 
-				for (i = 0; i < dev.subField1.nShortOpCaches; i++) {
-					if ((dev.srCache[i].object != null) &&
-							!dev.srCache[i].locked &&
-							(dev.srCache[i].lastUse < usage || !(cache != null)))
-					{
-						usage = dev.srCache[i].lastUse;
-						theObj = dev.srCache[i].object;
-						cache = dev.srCache[i];
-						pushout = i;
-					}
-				}
-
-				if (!(cache != null) || cache.dirty) {
+				if (cache == dev.srLru) {
+					cache = null;
+				} else if (cache.dirty) {
 					/* Flush and try again */
-					yaffs_FlushFilesChunkCache(theObj);
+					yaffs_FlushFilesChunkCache(cache.object);
 					cache = yaffs_GrabChunkCacheWorker(dev);
+				} else {
+					yaffs_CacheDetach(cache);
 				}
 
 			}
@@ -3435,23 +3664,64 @@ public class yaffs_guts_C
 
 	}
 
+	static yaffs_ChunkCache yaffs_CacheLookup(yaffs_Device dev, yaffs_Object obj,
+			int chunkId)
+	{
+		yaffs_ChunkCache cache;
+
+		for (cache = dev.srCacheHash[yaffs_CacheHash(dev, obj, chunkId)];
+				cache != null; cache = cache.hashNext) {
+			if (cache.object == obj &&
+					cache.chunkId == chunkId)
+				return cache;
+		}
+		return null;
+	}
+
 	/* Find a cached chunk */
 	static yaffs_ChunkCache yaffs_FindChunkCache(yaffs_Object  obj,
 			int chunkId)
 	{
 		yaffs_Device dev = obj.myDev;
-		int i;
+		yaffs_ChunkCache cache = null;
 		if (dev.subField1.nShortOpCaches > 0) {
-			for (i = 0; i < dev.subField1.nShortOpCaches; i++) {
-				if (dev.srCache[i].object == obj &&
-						dev.srCache[i].chunkId == chunkId) {
-					dev.cacheHits++;
+			cache = yaffs_CacheLookup(dev, obj, chunkId);
+			if (cache != null)
+				dev.cacheHits++;
+		}
+		return cache;
+	}
 
-					return dev.srCache[i];
-				}
-			}
+	/* Prefetch the chunks following chunk up to lastChunk into the cache.
+	 * Read-ahead only takes free entries or the least recently used one
+	 * if it is clean, it never flushes dirty data.
+	 */
+	static void yaffs_ReadAheadChunkCache(yaffs_Object in, int chunk,
+			int lastChunk)
+	{
+		yaffs_Device dev = in.myDev;
+		yaffs_ChunkCache cache;
+		int n = dev.subField1.nShortOpCaches / 2;
+
+		if (n > Guts_H.YAFFS_READ_AHEAD_CHUNKS)
+			n = Guts_H.YAFFS_READ_AHEAD_CHUNKS;
+		if (chunk + n > lastChunk)
+			n = lastChunk - chunk;
+
+		for (chunk++; n > 0; chunk++, n--) {
+			if (yaffs_CacheLookup(dev, in, chunk) != null)
+				continue;
+
+			cache = dev.srLru.lruNext;
+			if (cache == dev.srLru || cache.locked || cache.dirty)
+				break;
+
+			yaffs_CacheDetach(cache);
+			yaffs_CacheAttach(in, cache, chunk);
+			yaffs_ReadChunkDataFromObject(in, chunk,
+					cache.data, cache.dataIndex);
+			cache.nBytes = 0;
 		}
-		return null;
 	}
 
 	/* Mark the chunk for the least recently used algorithym */
@@ -3460,21 +3730,10 @@ public class yaffs_guts_C
 	{
 
 		if (dev.subField1.nShortOpCaches > 0) {
-			if (dev.srLastUse < 0 || dev.srLastUse > 100000000) {
-				/* Reset the cache usages */
-				int i;
-				for (i = 1; i < dev.subField1.nShortOpCaches; i++) {
-					dev.srCache[i].lastUse = 0;
-				}
-				dev.srLastUse = 0;
-			}
-
-			dev.srLastUse++;
-
-			cache.lastUse = dev.srLastUse;
+			yaffs_CacheMoveLru(dev, cache, false);
 
 			if (isAWrite) {
-				cache.dirty = true;
+				yaffs_CacheSetDirty(cache);
 			}
 		}
 	}
@@ -3489,7 +3748,7 @@ public class yaffs_guts_C
 			yaffs_ChunkCache cache = yaffs_FindChunkCache(object, chunkId);
 
 			if (cache != null) {
-				cache.object = null;
+				yaffs_CacheDetach(cache);
 			}
 		}
 	}
@@ -3506,7 +3765,7 @@ public class yaffs_guts_C
 			/* Invalidate it. */
 			for (i = 0; i < dev.subField1.nShortOpCaches; i++) {
 				if (dev.srCache[i].object == in) {
-					dev.srCache[i].object = null;
+					yaffs_CacheDetach(dev.srCache[i]);
 				}
 			}
 		}
@@ -4011,17 +4270,26 @@ public class yaffs_guts_C
 		int nToCopy;
 		int n = nBytes;
 		int nDone = 0;
+		int lastChunk;
 		yaffs_ChunkCache cache;
 
 		yaffs_Device dev;
+		IntegerPointer chunkPointer = new IntegerPointer();
+		IntegerPointer startPointer = new IntegerPointer();
 
 		dev = in.myDev;
 
+		/* Last chunk of the file, read-ahead stops there */
+		lastChunk = 0;
+		if (in.variant.fileVariant().fileSize > 0) {
+			yaffs_AddrToChunk(dev,in.variant.fileVariant().fileSize - 1,
+					chunkPointer,startPointer);
+			lastChunk = chunkPointer.dereferenced + 1;
+		}
+
 		while (n > 0) {
 			//chunk = offset / dev.nDataBytesPerChunk + 1;
 			//start = offset % dev.nDataBytesPerChunk;
-			IntegerPointer chunkPointer = new IntegerPointer();
-			IntegerPointer startPointer = new IntegerPointer();
 			yaffs_AddrToChunk(dev,offset,chunkPointer,startPointer);
 			chunk = chunkPointer.dereferenced;
 			start = startPointer.dereferenced;
@@ -4049,14 +4317,19 @@ public class yaffs_guts_C
 
 					if (!(cache != null)) {
 						cache = yaffs_GrabChunkCache(in.myDev);
-						cache.object = in;
-						cache.chunkId = chunk;
-						cache.dirty = false;
-						cache.locked = false;
+						yaffs_CacheAttach(in, cache, chunk);
 						yaffs_ReadChunkDataFromObject(in, chunk,
 								cache.data, cache.dataIndex);
 						cache.nBytes = 0;
+
+						/* A miss on a sequential read, fetch the next chunks as well */
+						if (chunk == in.readAheadChunk) {
+							cache.locked = true;
+							yaffs_ReadAheadChunkCache(in, chunk, lastChunk);
+							cache.locked = false;
+						}
 					}
+					in.readAheadChunk = chunk + 1;
 
 					yaffs_UseChunkCache(dev, cache, false);
 
@@ -4141,14 +4414,14 @@ public class yaffs_guts_C
 		int nBytesRead;
 
 		yaffs_Device dev;
+		IntegerPointer chunkPointer = new IntegerPointer();
+		IntegerPointer startPointer = new IntegerPointer();
 
 		dev = in.myDev;
 
 		while (n > 0 && chunkWritten >= 0) {
 			//chunk = offset / dev.nDataBytesPerChunk + 1;
 			//start = offset % dev.nDataBytesPerChunk;
-			IntegerPointer chunkPointer = new IntegerPointer();
-			IntegerPointer startPointer = new IntegerPointer();
 			yaffs_AddrToChunk(dev,offset,chunkPointer,startPointer);
 			chunk = chunkPointer.dereferenced;
 			start = startPointer.dereferenced;
@@ -4194,12 +4467,16 @@ public class yaffs_guts_C
 							&& yaffs_CheckSpaceForAllocation(in.
 									myDev)) {
 						cache = yaffs_GrabChunkCache(in.myDev);
-						cache.object = in;
-						cache.chunkId = chunk;
-						cache.dirty = false;
-						cache.locked = false;
-						yaffs_ReadChunkDataFromObject(in, chunk,
-								cache.data, cache.dataIndex);
+						yaffs_CacheAttach(in, cache, chunk);
+						if ((chunk - 1) * dev.subField1.nDataBytesPerChunk >=
+								in.variant.fileVariant().fileSize) {
+							/* Appending, there is nothing to read */
+							Unix.memset(cache.data, cache.dataIndex, (byte)0,
+									dev.subField1.nDataBytesPerChunk);
+						} else {
+							yaffs_ReadChunkDataFromObject(in, chunk,
+									cache.data, cache.dataIndex);
+						}
 					}
 					else if(cache != null && 
 							!cache.dirty &&
@@ -4226,14 +4503,18 @@ public class yaffs_guts_C
 						cache.locked = false;
 						cache.nBytes = nToWriteBack;
 
-						if (writeThrough) {
+						/* Short writes that complete a chunk are coalesced into
+						 * one full chunk write, the entry stays as read cache.
+						 */
+						if (writeThrough ||
+								start + nToCopy == dev.subField1.nDataBytesPerChunk) {
 							chunkWritten =
 								yaffs_WriteChunkDataToObject
 								(cache.object,
 										cache.chunkId,
 										cache.data, cache.dataIndex, cache.nBytes,
 										true);
-							cache.dirty = false;
+							yaffs_CacheSetClean(cache);
 						}
 
 					} else {
@@ -5366,6 +5647,8 @@ public class yaffs_guts_C
 	static boolean foundChunksInBlock;
 	static int equivalentObjectId;
 	static boolean altBlockIndex = false;
+	static int[] scanSummary;	/* Summary of the block being scanned */
+	static boolean scanSummaryOk;
 
 	static boolean yaffs_ScanBackwards(yaffs_Device dev)
 	{
@@ -5431,6 +5714,9 @@ public class yaffs_guts_C
 		chunkData = yaffs_GetTempBuffer(dev, 31 /*Utils.__LINE__()*/);
 		//chunkDataIndex = 0; XXX
 
+		scanSummary = (dev.summaryTags != null) ? ydirectenv.YMALLOC_INT(dev.subField1.nChunksPerBlock * 3) : null;
+		dev.summaryBlock = -1;
+
 		/* Scan all the blocks to determine their state */
 		for (blk = dev.subField2.internalStartBlock; blk <= dev.subField2.internalEndBlock; blk++) {
 			bi = Guts_H.yaffs_GetBlockInfo(dev, blk);
@@ -5553,6 +5839,11 @@ public class yaffs_guts_C
 
 			deleted = 0;
 
+			/* A full block with a summary doesn't need the tags of every chunk */
+			scanSummaryOk = scanSummary != null &&
+				state == Guts_H.YAFFS_BLOCK_STATE_NEEDS_SCANNING &&
+				yaffs_SummaryRead(dev, blk, bi.sequenceNumber(), scanSummary, chunkData, chunkDataIndex);
+
 			/* For each chunk in each block that needs scanning.... */
 			foundChunksInBlock = false;
 			for (c = dev.subField1.nChunksPerBlock - 1; c >= 0 &&
@@ -5563,8 +5854,11 @@ public class yaffs_guts_C
 				 */
 				chunk = blk * dev.subField1.nChunksPerBlock + c;
 
-				result = yaffs_nand_C.yaffs_ReadChunkWithTagsFromNAND(dev, chunk, null, 0,
-						tags);
+				if (scanSummaryOk)
+					result = yaffs_SummaryGetTags(dev, chunk, c, scanSummary, bi.sequenceNumber(), tags);
+				else
+					result = yaffs_nand_C.yaffs_ReadChunkWithTagsFromNAND(dev, chunk, null, 0,
+							tags);
 
 				/* Let's have a good look at this chunk... */
 
@@ -5601,6 +5895,9 @@ public class yaffs_guts_C
 								dev.subField3.allocationBlock = blk;
 								dev.subField3.allocationPage = c;
 								dev.subField3.allocationBlockFinder = blk;	
+
+								/* Rebuild its summary from the chunks below */
+								yaffs_SummaryStart(dev, blk);
 							}
 							else {
 								/* This is a partially written block that is not
@@ -5622,6 +5919,11 @@ public class yaffs_guts_C
 
 					dev.subField3.nFreeChunks++;
 
+				} else if (tags.objectId == Guts_H.YAFFS_OBJECTID_SUMMARY) {
+					/* The block summary holds no object data, it was deleted when written */
+					foundChunksInBlock = true;
+					dev.subField3.nFreeChunks++;
+
 				} else if (tags.chunkId > 0) {
 					/* chunkId > 0 so it is a data chunk... */
 					/*unsigned int*/ int endpos;
@@ -5629,6 +5931,7 @@ public class yaffs_guts_C
 						(tags.chunkId - 1) * dev.subField1.nDataBytesPerChunk;
 
 					foundChunksInBlock = true;
+					yaffs_SummaryAdd(dev, chunk, tags);
 
 
 					yaffs_SetChunkBit(dev, blk, c);
@@ -5674,6 +5977,7 @@ public class yaffs_guts_C
 					 * Thus, we read in the object header and make the object
 					 */
 					foundChunksInBlock = true;
+					yaffs_SummaryAdd(dev, chunk, tags);
 
 					yaffs_SetChunkBit(dev, blk, c);
 					bi.setPagesInUse(bi.pagesInUse()+1);
@@ -5998,6 +6302,9 @@ public class yaffs_guts_C
 		else
 			ydirectenv.YFREE(blockIndex);
 
+		ydirectenv.YFREE(scanSummary);
+		scanSummary = null;
+
 		/* Ok, we've done all the scanning.
 		 * Fix up the hard link chains.
 		 * We should now have scanned all the objects, now it's time to add these 
@@ -6679,20 +6986,41 @@ public class yaffs_guts_C
 			dev.srCache =
 				ydirectenv.YMALLOC_CHUNKCACHE(dev.subField1.nShortOpCaches/* * sizeof(yaffs_ChunkCache)*/);
 
+			for (i = 1; i < 2 * dev.subField1.nShortOpCaches; i <<= 1)
+				;
+			dev.srCacheHash = new yaffs_ChunkCache[i];
+
+			/* LRU list head, all entries are free */
+			dev.srLru = new yaffs_ChunkCache();
+			dev.srLru.lruPrev = dev.srLru;
+			dev.srLru.lruNext = dev.srLru;
+
 			for (i = 0; i < dev.subField1.nShortOpCaches; i++) {
 				dev.srCache[i].object = null;
-				dev.srCache[i].lastUse = 0;
 				dev.srCache[i].dirty = false;
 				dev.srCache[i].data = ydirectenv.YMALLOC_DMA(dev.subField1.nDataBytesPerChunk);
 				dev.srCache[i].dataIndex = 0;
+				dev.srCache[i].lruPrev = dev.srLru.lruPrev;
+				dev.srCache[i].lruNext = dev.srLru;
+				dev.srLru.lruPrev.lruNext = dev.srCache[i];
+				dev.srLru.lruPrev = dev.srCache[i];
 			}
-			dev.srLastUse = 0;
+			dev.srDirty = 0;
 		}
 
 		dev.cacheHits = 0;
 
 		dev.subField3.gcCleanupList = ydirectenv.YMALLOC_INT(dev.subField1.nChunksPerBlock /*sizeof(__u32)*/);
 
+		/* Block summaries, if the tags of a block fit into one chunk */
+		dev.summaryTags = null;
+		dev.summaryBlock = -1;
+		if (dev.subField1.isYaffs2 && !dev.subField1.blockSummaryDisabled &&
+				(SUMMARY_HEADER_WORDS + (dev.subField1.nChunksPerBlock - 1) * 3) * 4 <=
+					dev.subField1.nDataBytesPerChunk) {
+			dev.summaryTags = ydirectenv.YMALLOC_INT(dev.subField1.nChunksPerBlock * 3);
+		}
+
 		if (dev.subField1.isYaffs2) {
 			dev.subField1.useHeaderFileSize = true;
 		}
@@ -6758,9 +7086,13 @@ public class yaffs_guts_C
 				}
 
 				ydirectenv.YFREE(dev.srCache);
+				dev.srCacheHash = null;
+				dev.srLru = null;
 			}
 
 			ydirectenv.YFREE(dev.subField3.gcCleanupList);
+			ydirectenv.YFREE(dev.summaryTags);
+			dev.summaryTags = null;
 
 			for (i = 0; i < Guts_H.YAFFS_N_TEMP_BUFFERS; i++) {
 				ydirectenv.YFREE(dev.tempBuffer[i].buffer);
@@ -6818,13 +7150,7 @@ public class yaffs_guts_C
 
 		/* Now count the number of dirty chunks in the cache and subtract those */
 
-		{
-			int i;
-			for (nDirtyCacheChunks = 0, i = 0; i < dev.subField1.nShortOpCaches; i++) {
-				if (dev.srCache[i].dirty)
-					nDirtyCacheChunks++;
-			}
-		}
+		nDirtyCacheChunks = dev.srDirty;
 
 		nFree -= nDirtyCacheChunks;
 
@@ -128,6 +128,10 @@ public class Unix
 
 		s.nDataChunks = 0;
 
+		s.dirtyCacheHead = null;
+		s.dirtyCacheTail = null;
+		s.readAheadChunk = 0;
+
 		s.objectId = 0;
 
 		s.yst_mode = 0;
@@ -167,6 +171,7 @@ public class Unix
 		s.shrinkSize = 0;
 		s.topLevel = 0;
 		s.top = null;
+		s.lastTn = null;
 	}
 
 	public static void memset(yaffs_DirectoryStructure s)
@@ -345,7 +345,6 @@ public final class Math
   private static final int TAYLOR_TERMS_SINUS = 5;
   private static final int TAYLOR_TERMS_COSINUS = 5;
   private static final int TAYLOR_TERMS_ATAN = 5;
-  private static final int NEWTON_TERMS_SQRT = 20;
   
   // x - 1/3 x^3 + 1/5 x^5 - 1/7 x^7 
   public static float atan(float f) {
@@ -362,18 +361,15 @@ public final class Math
       }
       return f;
   }
-  // If you want a really cool implementation, take a look at: http://www.mceniry.net/papers/Fast%20Inverse%20Square%20Root.pdf
-  // But there are some many options ... so I chose the simplest (and worst) one for now
-  // From wikipedia:
-  //  2. Let xn+1 be the average of xn and S / xn (using the arithmetic mean to approximate the geometric mean).
-
+  /**
+   * Correctly rounded square root, see SoftFloat32.sqrt().
+   */
   public static float sqrt(float number) {
-	  
-	  float x = number;
-	  for(int i = 0; i < NEWTON_TERMS_SQRT; i++) {
-		  x = (x + (number/x)) / 2;
+	  if (Const.SUPPORT_FLOAT) {
+		  return Float.intBitsToFloat(SoftFloat32.sqrt(Float.floatToIntBits(number)));
+	  } else {
+		  throw new RuntimeException("Not implemented");
 	  }
-	  return x;
   }
 
   public static float sin(float f) {
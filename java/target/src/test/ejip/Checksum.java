@@ -0,0 +1,110 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package ejip;
+
+/**
+ * Functional test of the payload sum that is accumulated while
+ * the payload of a packet is written.
+ *
+ */
+public class Checksum {
+
+	static boolean ok = true;
+
+	static void check(boolean b, String s) {
+		if (!b) {
+			System.out.print("FAIL ");
+			System.out.println(s);
+			ok = false;
+		}
+	}
+
+	/**
+	 * The check sum without the accumulated sum.
+	 */
+	static int reference(Packet p, int off) {
+		return Ip.chkSum(p.buf, off, p.len-(off<<2));
+	}
+
+	static byte[] data(int cnt, int seed) {
+		byte[] b = new byte[cnt];
+		for (int i=0; i<cnt; ++i) {
+			b[i] = (byte) (i*seed+7);
+		}
+		return b;
+	}
+
+	public static void main(String[] args) {
+
+		System.out.println("ejip payload sum test");
+
+		Packet p = new Packet(1500);
+		Packet q = new Packet(1500);
+
+		Ip.setData(p, Udp.DATA, data(101, 3));
+		int chk = reference(p, 2);
+		check(Ip.chkSum(p, 2)==chk, "setData");
+
+		// the sum is used only once
+		Ip.setData(p, Udp.DATA, data(101, 3));
+		Ip.chkSum(p, 2);
+		p.buf[Udp.DATA+3] ^= 0x12345678;
+		check(Ip.chkSum(p, 2)==reference(p, 2), "changed after send");
+
+		// direct change of the payload
+		Ip.setData(p, Udp.DATA, data(64, 5));
+		p.buf[Udp.DATA] = 0x01020304;
+		p.invalidateSum();
+		check(Ip.chkSum(p, 2)==reference(p, 2), "invalidateSum");
+
+		// changed length
+		Ip.setData(p, Udp.DATA, data(64, 5));
+		p.len -= 4;
+		check(Ip.chkSum(p, 2)==reference(p, 2), "changed length");
+
+		// put methods
+		p.setPayloadOffset(Udp.DATA);
+		p.putByte(1);
+		p.putShort(0x2345);
+		p.putInt(0x6789abcd);
+		p.putString("abc");
+		check(Ip.chkSum(p, 2)==reference(p, 2), "put");
+
+		// payload starts again
+		p.setPayloadOffset(Udp.DATA);
+		p.putInt(0x11111111);
+		check(Ip.chkSum(p, 2)==reference(p, 2), "setPayloadOffset");
+
+		// copy into a packet with a stale sum
+		Ip.setData(q, Udp.DATA, data(200, 11));
+		Ip.setData(p, Udp.DATA, data(40, 13));
+		q.copy(p);
+		check(Ip.chkSum(q, 2)==reference(q, 2), "copy");
+
+		// a fragment with a stale sum
+		Ip.setData(p, Udp.DATA, data(40, 13));
+		Ip.setData(q, 0, data(30, 17));
+		check(p.append(q), "append");
+		int len = p.len;
+		Packet g = new Packet(1500);
+		g.copy(p);
+		check(g.len==len+30 && Ip.chkSum(p, 2)==reference(g, 2), "fragment");
+
+		System.out.println(ok ? "OK" : "FAILED");
+	}
+}
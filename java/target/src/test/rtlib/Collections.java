@@ -0,0 +1,96 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package rtlib;
+
+/**
+ * Functional test of the allocation free rtlib collections.
+ *
+ */
+public class Collections {
+
+	static boolean ok = true;
+
+	static void check(boolean b, String s) {
+		if (!b) {
+			System.out.print("FAIL ");
+			System.out.println(s);
+			ok = false;
+		}
+	}
+
+	public static void main(String[] args) {
+
+		System.out.println("rtlib collections test");
+
+		IntMap<String> im = new IntMap<String>(20);
+		for (int i=0; i<20; ++i) {
+			check(im.put(i*1024, "v"), "IntMap put");
+		}
+		check(im.size()==20, "IntMap size");
+		check(im.get(5*1024)!=null, "IntMap get");
+		check(im.get(5)==null, "IntMap get missing");
+		check(im.remove(5*1024)!=null, "IntMap remove");
+		check(!im.containsKey(5*1024), "IntMap containsKey");
+		check(im.put(5*1024, "w"), "IntMap reuse tombstone");
+		check(im.get(5*1024)=="w", "IntMap replace");
+		int cnt = 0;
+		for (int i=0; i<im.slots(); ++i) {
+			if (im.used(i)) ++cnt;
+		}
+		check(cnt==20, "IntMap iteration");
+
+		LongMap<String> lm = new LongMap<String>(4);
+		check(lm.put(1L<<40, "a"), "LongMap put");
+		check(lm.get(1L<<40)=="a", "LongMap get");
+		check(lm.get(0)==null, "LongMap get missing");
+
+		ObjectMap<String, String> om = new ObjectMap<String, String>(4);
+		om.put("key", "val");
+		check("val".equals(om.get("key")), "ObjectMap get");
+		check(om.remove("key")!=null && om.isEmpty(), "ObjectMap remove");
+
+		IntList il = new IntList(4);
+		for (int i=0; i<4; ++i) il.add(i);
+		check(!il.add(4), "IntList full");
+		check(il.removeAt(1)==1 && il.get(1)==2, "IntList removeAt");
+		check(il.indexOf(3)==2, "IntList indexOf");
+
+		IntDeque dq = new IntDeque(3);
+		check(dq.capacity()==4, "IntDeque capacity");
+		dq.addLast(1);
+		dq.addLast(2);
+		dq.addFirst(0);
+		check(dq.get(0)==0 && dq.peekLast()==2, "IntDeque order");
+		check(dq.removeLast()==2 && dq.removeFirst()==0, "IntDeque remove");
+		dq.removeFirst();
+		check(dq.removeFirst()==-1 && dq.removeLast()==-1 && dq.isEmpty(), "IntDeque empty");
+		dq.addLast(5);
+		check(dq.size()==1 && dq.peekFirst()==5, "IntDeque after empty");
+
+		BitSet bs = new BitSet(100);
+		bs.set(3);
+		bs.set(64);
+		check(bs.nextSetBit(0)==3 && bs.nextSetBit(4)==64, "BitSet nextSetBit");
+		check(bs.nextClearBit(3)==4, "BitSet nextClearBit");
+		check(bs.cardinality()==2, "BitSet cardinality");
+		bs.clear(3);
+		check(!bs.get(3), "BitSet clear");
+
+		System.out.println(ok ? "OK" : "FAILED");
+	}
+}
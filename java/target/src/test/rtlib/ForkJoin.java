@@ -0,0 +1,112 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package rtlib;
+
+/**
+ * Functional test of the fork/join executor.
+ *
+ */
+public class ForkJoin {
+
+	static boolean ok = true;
+
+	static void check(boolean b, String s) {
+		if (!b) {
+			System.out.print("FAIL ");
+			System.out.println(s);
+			ok = false;
+		}
+	}
+
+	/**
+	 * Sums up a range, forks all chunks first and joins
+	 * them in the order they have been forked.
+	 */
+	static class Sum extends ForkJoinTask {
+
+		static final int CHUNKS = 4;
+
+		int lo, hi, sum;
+		Sum[] sub;
+
+		Sum(int lo, int hi, int depth) {
+			this.lo = lo;
+			this.hi = hi;
+			if (depth>0) {
+				sub = new Sum[CHUNKS];
+				int step = (hi-lo)/CHUNKS;
+				for (int i=0; i<CHUNKS; ++i) {
+					sub[i] = new Sum(lo+i*step, i==CHUNKS-1 ? hi : lo+(i+1)*step, depth-1);
+				}
+			}
+		}
+
+		public void reset() {
+			super.reset();
+			sum = 0;
+		}
+
+		protected void compute() {
+			if (sub==null) {
+				for (int i=lo; i<hi; ++i) {
+					sum += i;
+				}
+				return;
+			}
+			for (int i=0; i<CHUNKS; ++i) {
+				sub[i].reset();
+				fork(sub[i]);
+			}
+			// not LIFO: the first forked task is joined first
+			for (int i=0; i<CHUNKS; ++i) {
+				join(sub[i]);
+				sum += sub[i].sum;
+			}
+		}
+	}
+
+	static int expected(int n) {
+		return n*(n-1)/2;
+	}
+
+	public static void main(String[] args) {
+
+		System.out.println("rtlib fork/join test");
+
+		// without thieves all tasks are executed by the joining core
+		ForkJoinExecutor fje = new ForkJoinExecutor(1, ForkJoinExecutor.DEQUE_SIZE);
+		Sum root = new Sum(0, 1000, 2);
+		fje.start();
+		root.reset();
+		fje.invoke(root);
+		fje.stop();
+		check(root.isDone() && root.sum==expected(1000), "FIFO join on one core");
+
+		// restart of the same executor
+		fje = new ForkJoinExecutor(2, ForkJoinExecutor.DEQUE_SIZE);
+		for (int i=0; i<3; ++i) {
+			fje.start();
+			root.reset();
+			fje.invoke(root);
+			fje.stop();
+			check(root.sum==expected(1000), "restart");
+		}
+
+		System.out.println(ok ? "OK" : "FAILED");
+	}
+}
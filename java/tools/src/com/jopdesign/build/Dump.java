@@ -24,6 +24,7 @@ package com.jopdesign.build;
 
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 
 import org.apache.bcel.classfile.*;
 
@@ -31,6 +32,9 @@ import org.apache.bcel.classfile.*;
  * @author martin
  *
  * Just dump all methods to the debug text file
+ *
+ * The dump uses static state of BCEL and cannot be
+ * run in parallel to another dump.
  */
 public class Dump extends AppVisitor {
 
@@ -39,10 +43,27 @@ public class Dump extends AppVisitor {
 		super(ai);
 		outTxt = pw;
 	}
-	
-	public void visitMethod(Method method) {
 
-		outTxt.println(clazz.getClassName()+":"+method.getName()+method.getSignature());
-		outTxt.println(method.getCode());
+	public void visitJavaClass(JavaClass clazz) {
+
+		super.visitJavaClass(clazz);
+
+		LinkCache cache = ai instanceof JOPizer ? ((JOPizer) ai).linkCache : null;
+		String dump = cache != null ? cache.getDump(clazz.getClassName()) : null;
+		if (dump == null) {
+			StringWriter buf = new StringWriter();
+			PrintWriter pw = new PrintWriter(buf);
+			Method[] methods = clazz.getMethods();
+			for (int i = 0; i < methods.length; i++) {
+				pw.println(clazz.getClassName()+":"+methods[i].getName()+methods[i].getSignature());
+				pw.println(methods[i].getCode());
+			}
+			pw.flush();
+			dump = buf.toString();
+		}
+		if (cache != null) {
+			cache.setDump(clazz.getClassName(), dump);
+		}
+		outTxt.print(dump);
 	}
 }
@@ -59,6 +59,19 @@ public class FindUsedConstants extends JOPizerVisitor {
 	public void visitJavaClass(JavaClass clazz) {
 
 		super.visitJavaClass(clazz);
+
+		LinkCache cache = getLinkCache();
+		int[] used = cache != null ? cache.getUsedConstants(clazz.getClassName()) : null;
+		if (used != null) {
+			for (int i = 0; i < used.length; i++) {
+				if (used[i] != -1) {
+					boolean isLong = i+1 < used.length && used[i+1] == -1;
+					getCli().addUsedConst(used[i], isLong ? 2 : 1);
+				}
+			}
+			cache.setUsedConstants(clazz.getClassName(), getCli().cpoolUsed);
+			return;
+		}
 		
 		cpool = new ConstantPoolGen(clazz.getConstantPool());
 
@@ -72,7 +85,10 @@ public class FindUsedConstants extends JOPizerVisitor {
 		}
 //		clazz.setConstantPool(cpoolNew.getConstantPool());
 //System.out.println(clazz.getConstantPool());
-		
+
+		if (cache != null) {
+			cache.setUsedConstants(clazz.getClassName(), getCli().cpoolUsed);
+		}
 	}
 
 
@@ -113,8 +129,6 @@ public class FindUsedConstants extends JOPizerVisitor {
 			
 		}
 		
-		il.dispose();
-
 		CodeExceptionGen[] et = mg.getExceptionHandlers();
 		for (int i = 0; i < et.length; i++) {
 			ObjectType ctype = et[i].getCatchType();
@@ -102,6 +102,7 @@ public class InsertSynchronized implements ClassVisitor {
             method.getCode().retarget(ih, newh);
         }
         il.setPositions();
+        mc.notifyModified();
 
         method.compile();
     }
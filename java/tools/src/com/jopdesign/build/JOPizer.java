@@ -22,10 +22,14 @@
 package com.jopdesign.build;
 
 import com.jopdesign.common.bcel.CustomAttribute;
+import org.apache.bcel.classfile.Visitor;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.util.concurrent.Future;
 
 /**
  * @author flavius, martin
@@ -73,6 +77,8 @@ public class JOPizer extends OldAppInfo implements Serializable {
 	transient PrintWriter outTxt;
 	/** link info for the D$ analysis */
 	transient PrintWriter outLinkInfo;
+	/** results of the last run, null if not in incremental mode */
+	transient LinkCache linkCache;
 
 	/**
 	 * Length of the generated application in words.
@@ -103,6 +109,11 @@ public class JOPizer extends OldAppInfo implements Serializable {
 	public static void main(String[] args) {
 
 		dumpMgci = System.getProperty("mgci", "false").equals("true");
+		// number of threads for the per class passes
+		int threads = Integer.getInteger("jopizer.threads",
+				Runtime.getRuntime().availableProcessors()).intValue();
+		// reuse the results of the last run for unchanged classes
+		boolean incremental = System.getProperty("jopizer.incremental", "false").equals("true");
 
 		if (USE_RTTM) {
                     // This will be done by AppSetup
@@ -132,11 +143,17 @@ public class JOPizer extends OldAppInfo implements Serializable {
 		jz.excludeClass(nativeClass);
 
 		try {
-			jz.out = new PrintWriter(new FileOutputStream(jz.outFile));
-			jz.outTxt = new PrintWriter(new FileOutputStream(jz.outFile+".txt"));
-			jz.outLinkInfo = new PrintWriter(new FileOutputStream(jz.outFile+".link.txt"));
+			jz.out = new PrintWriter(new BufferedOutputStream(new FileOutputStream(jz.outFile)));
+			jz.outTxt = new PrintWriter(new BufferedOutputStream(new FileOutputStream(jz.outFile+".txt")));
+			jz.outLinkInfo = new PrintWriter(new BufferedOutputStream(new FileOutputStream(jz.outFile+".link.txt")));
+			jz.setThreads(threads);
 
 			jz.load(); 
+
+			if (incremental) {
+				jz.linkCache = LinkCache.load(new File(jz.outFile+".cache"));
+				jz.linkCache.setApplication(jz);
+			}
 			
 			if (USE_RTTM) {
 				jz.iterate(new ReplaceAtomicAnnotation(jz));
@@ -145,7 +162,12 @@ public class JOPizer extends OldAppInfo implements Serializable {
 			// Reduce constant pool
 			// TODO: remove unused field and static field entries
 			// and remove the code from resolveCPool(cp).
-			jz.iterate(new FindUsedConstants(jz));
+			// Classes are independent, run in parallel
+			jz.iterate(new VisitorFactory() {
+				public Visitor createVisitor(PrintWriter out) {
+					return new FindUsedConstants(jz);
+				}
+			}, null);
 			// length of the reduced cpool is now known
 	        if(dumpMgci){
 	          jz.iterate(new SetGCRTMethodInfo(jz));
@@ -162,8 +184,13 @@ public class JOPizer extends OldAppInfo implements Serializable {
 			jz.iterate(new InsertSynchronized());
             */
 
-	        // dump of BCEL info to a text file
-			jz.iterate(new Dump(jz, jz.outTxt));
+	        // dump of BCEL info to a text file,
+			// in the background of the following passes
+			Future<?> dump = jz.submit(new Runnable() {
+				public void run() {
+					jz.iterate(new Dump(jz, jz.outTxt));
+				}
+			});
 
 			// BuildVT was after SetMethodInfo
 			// we need it for replace of field offsets
@@ -193,7 +220,19 @@ public class JOPizer extends OldAppInfo implements Serializable {
 			// change methods - replace Native calls
 			// TODO: also change the index into the cp for the
 			// reduced version.
-			jz.iterate(new ReplaceNativeAndCPIdx(jz));
+			// The dump has to be finished before as it also
+			// writes to outTxt and reads the original code.
+			jz.await(dump);
+			if (dumpMgci) {
+				// the stack maps of GCRTMethodInfo are kept in static state
+				jz.iterate(new ReplaceNativeAndCPIdx(jz));
+			} else {
+				jz.iterate(new VisitorFactory() {
+					public Visitor createVisitor(PrintWriter out) {
+						return new ReplaceNativeAndCPIdx(jz, out);
+					}
+				}, jz.outTxt);
+			}
 			// No further access via BCEL is now possible -
 			// we have 'illegal' instructions in the bytecode.
 
@@ -224,7 +263,13 @@ public class JOPizer extends OldAppInfo implements Serializable {
 			new JopWriter(jz).write();
 
 			jz.outLinkInfo.close();
+			jz.outTxt.close();
+
+			if (jz.linkCache != null) {
+				jz.linkCache.store();
+			}
 
 		} catch(Exception e) { e.printStackTrace();}
+		finally { jz.shutdown(); }
 	}
 }
@@ -46,4 +46,12 @@ public class JOPizerVisitor extends AppVisitor {
 		return (JopClassInfo) cli;
 	}
 
+	/**
+	 * Return the results of the last run, or null if
+	 * the incremental mode is not used.
+	 */
+	protected LinkCache getLinkCache() {
+		return ai instanceof JOPizer ? ((JOPizer) ai).linkCache : null;
+	}
+
 }
@@ -0,0 +1,322 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.jopdesign.build;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.CodeException;
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+
+/**
+ * Per class results of the JOPizer passes from the last run, used for
+ * the incremental mode.
+ * 
+ * Results which only depend on the class file itself (used constants,
+ * the dump) are reused if the class file did not change. The code
+ * produced by ReplaceNativeAndCPIdx also depends on the field layout of
+ * the application, it is only reused if no class, field or method has
+ * been added, removed or changed its signature, i.e. if only method
+ * bodies changed.
+ */
+public class LinkCache implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	static class MethodEntry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		byte[] code;
+		int maxStack, maxLocals;
+		/** start, end, handler and catch type of each handler */
+		int[] exceptions;
+	}
+
+	static class ClassEntry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		String digest;
+		/** the used constants, -1 for the dummy entry of a long constant */
+		int[] usedConsts;
+		String dump;
+		String nativeInfo;
+		Map<String, MethodEntry> methods;
+
+		ClassEntry(String digest) {
+			this.digest = digest;
+		}
+	}
+
+	private String layout;
+	private Map<String, ClassEntry> classes;
+
+	private transient File file;
+	private transient Map<String, String> digests;
+	private transient String currentLayout;
+	private transient ConcurrentHashMap<String, ClassEntry> newClasses;
+
+	private LinkCache(File file) {
+		this.file = file;
+		classes = new HashMap<String, ClassEntry>();
+	}
+
+	/**
+	 * Load the cache of the last run. Any error is ignored, all classes
+	 * are linked from scratch in this case.
+	 * 
+	 * @param file the cache file
+	 * @return the cache, empty if the file does not exist
+	 */
+	public static LinkCache load(File file) {
+		if (file.exists()) {
+			try {
+				ObjectInputStream in = new ObjectInputStream(
+						new BufferedInputStream(new FileInputStream(file)));
+				try {
+					LinkCache cache = (LinkCache) in.readObject();
+					cache.file = file;
+					return cache;
+				} finally {
+					in.close();
+				}
+			} catch (Exception e) {
+				System.out.println("Ignoring link cache "+file+": "+e);
+			}
+		}
+		return new LinkCache(file);
+	}
+
+	/**
+	 * Calculate the digests of the loaded classes. Must be called
+	 * after the classes are loaded and before the first pass.
+	 * 
+	 * @param jz the application
+	 */
+	public void setApplication(JOPizer jz) {
+		MessageDigest layoutMd = getDigest();
+		digests = new HashMap<String, String>();
+		newClasses = new ConcurrentHashMap<String, ClassEntry>();
+
+		int reused = 0;
+		Iterator<?> it = jz.cliMap.values().iterator();
+		while (it.hasNext()) {
+			JavaClass clz = ((JopClassInfo) it.next()).clazz;
+			String digest = toHex(getDigest().digest(clz.getBytes()));
+			digests.put(clz.getClassName(), digest);
+			if (getEntry(clz.getClassName()) != null) {
+				reused++;
+			}
+
+			update(layoutMd, clz.getClassName(), clz.getSuperclassName(), clz.getAccessFlags());
+			String[] ifs = clz.getInterfaceNames();
+			for (int i = 0; i < ifs.length; i++) {
+				update(layoutMd, ifs[i]);
+			}
+			Field[] fields = clz.getFields();
+			for (int i = 0; i < fields.length; i++) {
+				update(layoutMd, fields[i].getName(), fields[i].getSignature(), fields[i].getAccessFlags());
+			}
+			Method[] methods = clz.getMethods();
+			for (int i = 0; i < methods.length; i++) {
+				update(layoutMd, methods[i].getName(), methods[i].getSignature(), methods[i].getAccessFlags());
+			}
+		}
+		update(layoutMd, String.valueOf(JOPizer.dumpMgci), String.valueOf(JOPizer.CACHE_INVAL),
+				JOPizer.USE_RTTM ? 1 : 0);
+		currentLayout = toHex(layoutMd.digest());
+
+		System.out.println("Link cache: "+reused+" of "+digests.size()+" classes unchanged"+
+				(isLayoutValid() ? "" : ", layout changed"));
+	}
+
+	/**
+	 * @return true if the layout did not change since the last run.
+	 */
+	public boolean isLayoutValid() {
+		return currentLayout.equals(layout) && !JOPizer.dumpMgci;
+	}
+
+	public int[] getUsedConstants(String className) {
+		ClassEntry e = getEntry(className);
+		return e != null ? e.usedConsts : null;
+	}
+
+	public void setUsedConstants(String className, List<Integer> cpoolUsed) {
+		int[] used = new int[cpoolUsed.size()];
+		for (int i = 0; i < used.length; i++) {
+			Integer idx = cpoolUsed.get(i);
+			used[i] = idx != null ? idx.intValue() : -1;
+		}
+		getNewEntry(className).usedConsts = used;
+	}
+
+	public String getDump(String className) {
+		ClassEntry e = getEntry(className);
+		return e != null ? e.dump : null;
+	}
+
+	public void setDump(String className, String dump) {
+		getNewEntry(className).dump = dump;
+	}
+
+	/**
+	 * @param className the class name
+	 * @return true if the code of the class produced by ReplaceNativeAndCPIdx
+	 * can be reused.
+	 */
+	public boolean hasReplacedCode(String className) {
+		ClassEntry e = getEntry(className);
+		return e != null && e.methods != null && isLayoutValid();
+	}
+
+	public String getNativeInfo(String className) {
+		return getEntry(className).nativeInfo;
+	}
+
+	/**
+	 * Create the method with the code of the last run.
+	 * 
+	 * @param className the class of the method
+	 * @param method the method as loaded from the class file
+	 * @return the method with the replaced code
+	 */
+	public Method getReplacedMethod(String className, Method method) {
+		MethodEntry me = getEntry(className).methods.get(method.getName()+method.getSignature());
+		Method m = method.copy(method.getConstantPool());
+		Code code = m.getCode();
+		code.setCode(me.code);
+		code.setMaxStack(me.maxStack);
+		code.setMaxLocals(me.maxLocals);
+		CodeException[] exc = new CodeException[me.exceptions.length / 4];
+		for (int i = 0; i < exc.length; i++) {
+			exc[i] = new CodeException(me.exceptions[4*i], me.exceptions[4*i+1],
+					me.exceptions[4*i+2], me.exceptions[4*i+3]);
+		}
+		code.setExceptionTable(exc);
+		return m;
+	}
+
+	public void setReplacedCode(String className, Method[] methods, String nativeInfo) {
+		Map<String, MethodEntry> map = new HashMap<String, MethodEntry>();
+		for (int i = 0; i < methods.length; i++) {
+			Code code = methods[i].getCode();
+			if (code == null) continue;
+			MethodEntry me = new MethodEntry();
+			me.code = code.getCode();
+			me.maxStack = code.getMaxStack();
+			me.maxLocals = code.getMaxLocals();
+			CodeException[] exc = code.getExceptionTable();
+			me.exceptions = new int[exc.length * 4];
+			for (int j = 0; j < exc.length; j++) {
+				me.exceptions[4*j] = exc[j].getStartPC();
+				me.exceptions[4*j+1] = exc[j].getEndPC();
+				me.exceptions[4*j+2] = exc[j].getHandlerPC();
+				me.exceptions[4*j+3] = exc[j].getCatchType();
+			}
+			map.put(methods[i].getName()+methods[i].getSignature(), me);
+		}
+		ClassEntry e = getNewEntry(className);
+		e.methods = map;
+		e.nativeInfo = nativeInfo;
+	}
+
+	/**
+	 * Write the results of this run to the cache file.
+	 */
+	public void store() throws IOException {
+		LinkCache cache = new LinkCache(file);
+		cache.layout = currentLayout;
+		cache.classes.putAll(newClasses);
+		ObjectOutputStream out = new ObjectOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeObject(cache);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return the entry of the last run if the class did not change.
+	 */
+	private ClassEntry getEntry(String className) {
+		ClassEntry e = classes.get(className);
+		if (e == null || !e.digest.equals(digests.get(className))) {
+			return null;
+		}
+		return e;
+	}
+
+	private ClassEntry getNewEntry(String className) {
+		ClassEntry e = newClasses.get(className);
+		if (e == null) {
+			e = new ClassEntry(digests.get(className));
+			ClassEntry old = newClasses.putIfAbsent(className, e);
+			if (old != null) e = old;
+		}
+		return e;
+	}
+
+	private static void update(MessageDigest md, String... values) {
+		for (int i = 0; i < values.length; i++) {
+			md.update(String.valueOf(values[i]).getBytes());
+			md.update((byte) 0);
+		}
+	}
+
+	private static void update(MessageDigest md, String a, String b, int flags) {
+		update(md, a, b, String.valueOf(flags));
+	}
+
+	private static MessageDigest getDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new Error(e);
+		}
+	}
+
+	private static String toHex(byte[] data) {
+		StringBuffer sb = new StringBuffer(data.length * 2);
+		for (int i = 0; i < data.length; i++) {
+			sb.append(Character.forDigit((data[i] >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(data[i] & 0xf, 16));
+		}
+		return sb.toString();
+	}
+}
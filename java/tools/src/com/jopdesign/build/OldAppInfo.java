@@ -21,7 +21,10 @@
 package com.jopdesign.build;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -29,6 +32,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.DescendingVisitor;
@@ -89,6 +98,25 @@ public class OldAppInfo implements Serializable {
 //	protected Map<String, ClassInfo> cliMap;
 
 	public final static String clinitSig = "<clinit>()V";
+
+	/**
+	 * Creates the visitors of a pass which only modifies the class
+	 * it visits. Such a pass can visit the classes in parallel.
+	 */
+	public interface VisitorFactory {
+		/**
+		 * @param out the text output for the visited class, or null
+		 * if the pass has no text output.
+		 * @return a new visitor for one class
+		 */
+		Visitor createVisitor(PrintWriter out);
+	}
+
+	/**
+	 * Thread pool for the parallel passes, null if all passes
+	 * are executed sequentially.
+	 */
+	private transient ExecutorService executor;
 	
 
 	/**
@@ -219,6 +247,118 @@ public class OldAppInfo implements Serializable {
 		}
 	}
 
+	/**
+	 * Iterate over all classes in parallel. A new visitor is created
+	 * for each class. The text output of the visitors is written to out
+	 * in the same order as with {@link #iterate(Visitor)}.
+	 * <p>
+	 * The visitors must not dispose() instruction lists, neither may a
+	 * pass that runs while another one is in the background (the dump).
+	 * BCEL recycles disposed handles in a static pool without any
+	 * synchronization.
+	 * 
+	 * @param factory creates the visitors of the pass
+	 * @param out the text output of the pass, can be null
+	 */
+	public void iterate(final VisitorFactory factory, final PrintWriter out) {
+
+		if (executor == null) {
+			Visitor v = factory.createVisitor(out);
+			Iterator<? extends OldClassInfo> it = cliMap.values().iterator();
+			while (it.hasNext()) {
+				new DescendingVisitor(it.next().clazz, v).visit();
+			}
+			return;
+		}
+
+		List<Future<String>> results = new ArrayList<Future<String>>(cliMap.size());
+		Iterator<? extends OldClassInfo> it = cliMap.values().iterator();
+		while (it.hasNext()) {
+			final JavaClass clz = it.next().clazz;
+			results.add(executor.submit(new Callable<String>() {
+				public String call() {
+					StringWriter buf = new StringWriter();
+					PrintWriter pw = out != null ? new PrintWriter(buf) : null;
+					new DescendingVisitor(clz, factory.createVisitor(pw)).visit();
+					if (pw == null) return null;
+					pw.flush();
+					return buf.toString();
+				}
+			}));
+		}
+		for (Future<String> f : results) {
+			String txt = await(f);
+			if (txt != null) {
+				out.print(txt);
+			}
+		}
+	}
+
+	/**
+	 * Run a task in the background, if parallel passes are enabled.
+	 * 
+	 * @param task the task to run
+	 * @return the future of the task, or null if the task has already
+	 * been executed.
+	 */
+	public Future<?> submit(Runnable task) {
+		if (executor == null) {
+			task.run();
+			return null;
+		}
+		return executor.submit(task);
+	}
+
+	/**
+	 * Wait for a task started with {@link #submit(Runnable)}.
+	 * 
+	 * @param f the future of the task, can be null
+	 * @return the result of the task
+	 */
+	public <T> T await(Future<T> f) {
+		if (f == null) return null;
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			throw new Error("interrupted while waiting for a pass");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new Error(cause);
+		}
+	}
+
+	/**
+	 * Set the number of threads for the parallel passes.
+	 * 
+	 * @param threads the number of threads, 1 to run all
+	 * passes sequentially.
+	 */
+	public void setThreads(int threads) {
+		shutdown();
+		if (threads > 1) {
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					// do not keep the VM alive if a pass fails
+					Thread t = new Thread(r, "OldAppInfo-pass");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Stop the threads of the parallel passes.
+	 */
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
 	/**
 	 * A simple example main that prints the Map of ClassInfo
 	 * 
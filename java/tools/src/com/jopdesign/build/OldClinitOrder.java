@@ -42,9 +42,9 @@ import org.apache.bcel.generic.InstructionList;
 import org.apache.bcel.generic.MethodGen;
 import org.apache.bcel.util.InstructionFinder;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -58,7 +58,11 @@ import java.util.Set;
 public class OldClinitOrder extends AppVisitor {
 
 
-	Map clinit = new HashMap();
+	/**
+	 * Keeps the order of the visited classes, the order of the
+	 * <clinit> table shall not depend on identity hash codes.
+	 */
+	Map<OldClassInfo, Set<?>> clinit = new LinkedHashMap<OldClassInfo, Set<?>>();
 	
 	public OldClinitOrder(OldAppInfo jz) {
 		super(jz);
@@ -196,8 +200,6 @@ public class OldClinitOrder extends AppVisitor {
 			
 		}
 		
-		il.dispose();
-		
 		return depends;
 	}
 	/**
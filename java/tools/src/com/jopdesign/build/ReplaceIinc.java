@@ -92,6 +92,7 @@ public class ReplaceIinc implements ClassVisitor {
             ih = il.append(ih, new IADD());
             ih = il.append(ih, new ISTORE(idx));
         }
+        mc.notifyModified();
 
         method.compile();
     }
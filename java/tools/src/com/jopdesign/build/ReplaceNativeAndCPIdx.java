@@ -52,6 +52,8 @@ import org.apache.bcel.generic.ReferenceType;
 import org.apache.bcel.generic.Type;
 import org.apache.bcel.util.InstructionFinder;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.Iterator;
 
 /**
@@ -65,8 +67,20 @@ public class ReplaceNativeAndCPIdx extends JOPizerVisitor {
 
 	private ConstantPool cp;
 
+	/** text file for additional information */
+	private PrintWriter outTxt;
+
 	public ReplaceNativeAndCPIdx(OldAppInfo jz) {
+		this((JOPizer) jz, ((JOPizer) jz).outTxt);
+	}
+
+	/**
+	 * @param jz the application
+	 * @param outTxt the text output for the replaced native calls
+	 */
+	public ReplaceNativeAndCPIdx(JOPizer jz, PrintWriter outTxt) {
 		super(jz);
+		this.outTxt = outTxt;
 	}
 
 	public void visitJavaClass(JavaClass clazz) {
@@ -77,10 +91,22 @@ public class ReplaceNativeAndCPIdx extends JOPizerVisitor {
 		cp = clazz.getConstantPool();
 		cpoolgen = new ConstantPoolGen(cp);
 
+		String name = clazz.getClassName();
+		LinkCache cache = getLinkCache();
+		boolean reuse = cache != null && cache.hasReplacedCode(name);
+		PrintWriter classTxt = outTxt;
+		StringWriter buf = null;
+		if (reuse) {
+			outTxt.print(cache.getNativeInfo(name));
+		} else if (cache != null) {
+			buf = new StringWriter();
+			outTxt = new PrintWriter(buf);
+		}
+
 		for (int i = 0; i < methods.length; i++) {
 			if (!(methods[i].isAbstract() || methods[i].isNative())) {
 
-				Method m = replace(methods[i]);
+				Method m = reuse ? cache.getReplacedMethod(name, methods[i]) : replace(methods[i]);
 		        OldMethodInfo mi = getCli().getMethodInfo(m.getName()+m.getSignature());
 		        // set new method also in MethodInfo
 		        mi.setMethod(m);
@@ -89,6 +115,15 @@ public class ReplaceNativeAndCPIdx extends JOPizerVisitor {
 				}
 			}
 		}
+
+		if (buf != null) {
+			outTxt.flush();
+			outTxt = classTxt;
+			outTxt.print(buf.toString());
+		}
+		if (cache != null) {
+			cache.setReplacedCode(name, methods, reuse ? cache.getNativeInfo(name) : buf.toString());
+		}
 	}
 
 	private Method replace(Method method) {
@@ -118,7 +153,7 @@ public class ReplaceNativeAndCPIdx extends JOPizerVisitor {
 					first.setInstruction(new NOP());
 				} else {
 					first.setInstruction(new NativeInstruction(opid, (short) 1));
-					((JOPizer) ai).outTxt.println("\t"+first.getPosition());
+					outTxt.println("\t"+first.getPosition());
 					// since the new instruction is of length 1 and
 					// the replaced invokespecial was of length 3
 					// then we remove pc+2 and pc+1 from the MGCI info
@@ -303,7 +338,6 @@ public class ReplaceNativeAndCPIdx extends JOPizerVisitor {
 		}
 
 		Method m = mg.getMethod();
-		il.dispose();
 		return m;
 
 	}
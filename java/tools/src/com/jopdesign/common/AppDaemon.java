@@ -0,0 +1,514 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jopdesign.common;
+
+import com.jopdesign.common.config.Config;
+import com.jopdesign.common.logger.LogConfig;
+import com.jopdesign.common.misc.AppInfoError;
+import com.jopdesign.common.misc.AppInfoException;
+import org.apache.log4j.Logger;
+import org.apache.bcel.util.ClassPath.ClassFile;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A daemon which keeps AppInfo and the results of the tools in memory and serves requests
+ * on a local socket, so that several analyses can be run without loading the application again.
+ * <p>
+ * While idle, the daemon polls the timestamps of the class files of all loaded classes. If a class file
+ * has been modified, all classes are reloaded using {@link AppSetup#reloadAppInfo()} and the registered
+ * {@link ReloadListener}s are notified. Requests are processed one at a time by the thread which runs
+ * {@link #run()}, so commands and reloads never run concurrently.
+ * </p><p>
+ * If a reload fails (e.g. a class file is only partially written by a running build), the daemon keeps
+ * running and retries at the next poll. Until a reload succeeds, only the standard commands are accepted,
+ * all other requests are answered with the reload error.
+ * </p><p>
+ * The protocol is line based: the client sends a single line containing the command name and
+ * its arguments separated by whitespace, the daemon sends the output of the command followed by a status
+ * line ({@link #STATUS_OK} or {@link #STATUS_ERROR} and a message), and closes the connection.
+ * Use {@link #main(String[])} as commandline client.
+ * </p>
+ */
+public class AppDaemon {
+
+    public interface Command {
+
+        String getDescription();
+
+        /**
+         * Execute the command. Everything printed to {@link System#out} while the command is running is
+         * sent to the client as well.
+         *
+         * @param args the arguments of the request, excluding the command name.
+         * @param out the stream to the client.
+         * @throws Exception if the command failed. The message is sent to the client.
+         */
+        void run(String[] args, PrintStream out) throws Exception;
+    }
+
+    public interface ReloadListener {
+
+        /**
+         * Called after the classes have been reloaded and the tools have been reinitialized.
+         *
+         * @param modified the names of the classes which have been modified or removed.
+         */
+        void onReload(Set<String> modified);
+    }
+
+    public static final String STATUS_OK = "#ok";
+    public static final String STATUS_ERROR = "#error";
+
+    /**
+     * Commands which do not use the loaded classes and can be run after a failed reload.
+     */
+    private static final Set<String> STANDARD_COMMANDS =
+            new HashSet<String>(Arrays.asList("help", "status", "reload", "shutdown"));
+
+    private static final Logger logger = Logger.getLogger(LogConfig.LOG_APPINFO + ".AppDaemon");
+
+    private final AppSetup setup;
+    private final AppInfo appInfo;
+    private final int port;
+    private final int pollInterval;
+
+    private final Map<String, Command> commands;
+    private final List<ReloadListener> listeners;
+
+    private final Map<String, Long> timestamps;
+    private long lastPoll;
+    private int reloads;
+    private int requests;
+    private boolean shutdown;
+    private String reloadError;
+
+    /**
+     * Create a new daemon using the port and poll interval set in the config of the setup.
+     *
+     * @param setup an AppSetup where AppInfo has already been initialized.
+     */
+    public AppDaemon(AppSetup setup) {
+        this(setup, setup.getConfig().getOption(Config.DAEMON_PORT).intValue(),
+                setup.getConfig().getOption(Config.DAEMON_POLL).intValue());
+    }
+
+    public AppDaemon(AppSetup setup, int port, int pollInterval) {
+        this.setup = setup;
+        this.appInfo = setup.getAppInfo();
+        this.port = port;
+        this.pollInterval = pollInterval;
+        this.commands = new LinkedHashMap<String, Command>();
+        this.listeners = new ArrayList<ReloadListener>();
+        this.timestamps = new HashMap<String, Long>();
+
+        registerStandardCommands();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getReloadCount() {
+        return reloads;
+    }
+
+    public void registerCommand(String name, Command command) {
+        commands.put(name, command);
+    }
+
+    public void addReloadListener(ReloadListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop the daemon after the current request has been processed.
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /**
+     * Serve requests until the daemon is shut down.
+     *
+     * @throws IOException if the server socket cannot be created.
+     */
+    public void run() throws IOException {
+        ServerSocket server = new ServerSocket(port, 10, InetAddress.getByName(null));
+        server.setSoTimeout(pollInterval > 0 ? pollInterval : 0);
+
+        updateTimestamps();
+        logger.info("Daemon listening on port "+server.getLocalPort());
+
+        try {
+            while (!shutdown) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    pollForUpdates();
+                    continue;
+                }
+                try {
+                    pollForUpdates();
+                    handleRequest(socket);
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            server.close();
+        }
+        logger.info("Daemon stopped");
+    }
+
+    /**
+     * @return the message of the last failed reload, or null if the last reload succeeded.
+     */
+    public String getReloadError() {
+        return reloadError;
+    }
+
+    /**
+     * Check if the class file of any loaded class has been modified since the last check, and reload
+     * all classes if so.
+     * <p>
+     * The timestamps of the modified classes are only updated if the reload succeeds, so a failed
+     * reload is retried at the next check.
+     * </p>
+     *
+     * @return true if the classes have been reloaded.
+     * @throws AppInfoError if reloading the classes failed.
+     */
+    public boolean checkForUpdates() {
+        long now = System.currentTimeMillis();
+        if (pollInterval > 0 && now - lastPoll < pollInterval) {
+            return false;
+        }
+        lastPoll = now;
+
+        Set<String> modified = new TreeSet<String>();
+        for (ClassInfo cls : appInfo.getClassInfos()) {
+            String name = cls.getClassName();
+            long time = getTimestamp(cls);
+            Long last = timestamps.get(name);
+            if (last != null && last == time) {
+                continue;
+            }
+            // Only reload if the content changed, a touched classfile does not invalidate anything
+            if (appInfo.isClassFileModified(name)) {
+                modified.add(name);
+            } else {
+                timestamps.put(name, time);
+            }
+        }
+        if (modified.isEmpty()) {
+            return false;
+        }
+
+        reload(modified);
+        return true;
+    }
+
+    /**
+     * Reload all classes and notify the listeners.
+     *
+     * @param modified the names of the modified classes, passed to the listeners.
+     */
+    public void reload(Set<String> modified) {
+        logger.info("Reloading classes, modified: "+modified);
+        long start = System.currentTimeMillis();
+        try {
+            setup.reloadAppInfo();
+        } catch (AppInfoException e) {
+            reloadError = "Reloading classes failed: "+e.getMessage();
+            throw new AppInfoError(reloadError, e);
+        } catch (Config.BadConfigurationException e) {
+            reloadError = "Reinitializing tools failed: "+e.getMessage();
+            throw new AppInfoError(reloadError, e);
+        } catch (RuntimeException e) {
+            // e.g. BCEL ClassFormatException for a partially written class file
+            reloadError = "Reloading classes failed: "+e;
+            throw e;
+        } catch (Error e) {
+            reloadError = "Reloading classes failed: "+e;
+            throw e;
+        }
+        reloadError = null;
+        reloads++;
+        updateTimestamps();
+
+        for (ReloadListener listener : listeners) {
+            listener.onReload(modified);
+        }
+        logger.info("Reloaded "+appInfo.getClassInfos().size()+" classes in "
+                    +(System.currentTimeMillis()-start)+" ms");
+    }
+
+    /**
+     * Check for updates, but do not let a failed reload stop the daemon. A failed reload is
+     * reported to the following requests by {@link #handleRequest(Socket)}.
+     */
+    private void pollForUpdates() {
+        try {
+            checkForUpdates();
+        } catch (RuntimeException e) {
+            logger.error("Checking for modified classes failed, retrying at next poll", e);
+        } catch (Error e) {
+            logger.error("Checking for modified classes failed, retrying at next poll", e);
+        }
+    }
+
+    private void updateTimestamps() {
+        timestamps.clear();
+        for (ClassInfo cls : appInfo.getClassInfos()) {
+            timestamps.put(cls.getClassName(), getTimestamp(cls));
+        }
+        lastPoll = System.currentTimeMillis();
+    }
+
+    private long getTimestamp(ClassInfo cls) {
+        try {
+            ClassFile file = appInfo.getClassFile(cls);
+            return file != null ? file.getTime() : -1;
+        } catch (FileNotFoundException e) {
+            return -1;
+        } catch (AppInfoError e) {
+            return -1;
+        }
+    }
+
+    private void handleRequest(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+
+        String line = in.readLine();
+        if (line == null || "".equals(line.trim())) {
+            out.println(STATUS_ERROR+" empty request");
+            return;
+        }
+        String[] words = line.trim().split("\\s+");
+        String[] args = Arrays.copyOfRange(words, 1, words.length);
+
+        Command cmd = commands.get(words[0]);
+        if (cmd == null) {
+            out.println(STATUS_ERROR+" unknown command '"+words[0]+"', use 'help' to list all commands");
+            return;
+        }
+        if (reloadError != null && !STANDARD_COMMANDS.contains(words[0])) {
+            // AppInfo may be only partially reloaded, do not run tools on it
+            out.println(STATUS_ERROR+" "+reloadError+" (retrying at next poll, or use 'reload')");
+            return;
+        }
+
+        requests++;
+        logger.info("Request: "+line);
+
+        PrintStream stdout = System.out;
+        System.setOut(new TeeStream(stdout, out));
+        try {
+            cmd.run(args, out);
+            System.out.flush();
+            out.println(STATUS_OK);
+        } catch (Exception e) {
+            logger.error("Request '"+line+"' failed", e);
+            System.out.flush();
+            out.println(STATUS_ERROR+" "+e.getMessage());
+        } catch (Error e) {
+            // Some tools report errors with AssertionError or AppInfoError, do not let them kill the daemon
+            logger.error("Request '"+line+"' failed", e);
+            System.out.flush();
+            out.println(STATUS_ERROR+" "+e);
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    private void registerStandardCommands() {
+        registerCommand("help", new Command() {
+            public String getDescription() {
+                return "list all commands";
+            }
+            public void run(String[] args, PrintStream out) {
+                for (Map.Entry<String,Command> e : commands.entrySet()) {
+                    out.println(String.format("  %-12s %s", e.getKey(), e.getValue().getDescription()));
+                }
+            }
+        });
+        registerCommand("status", new Command() {
+            public String getDescription() {
+                return "show the number of loaded classes, reloads and requests";
+            }
+            public void run(String[] args, PrintStream out) {
+                out.println("main: "+appInfo.getMainMethod());
+                out.println("classes: "+appInfo.getClassInfos().size());
+                out.println("callgraph: "+(appInfo.hasCallGraph() ? "yes" : "no"));
+                out.println("reloads: "+reloads);
+                out.println("requests: "+requests);
+                if (reloadError != null) {
+                    out.println("reload error: "+reloadError);
+                }
+            }
+        });
+        registerCommand("reload", new Command() {
+            public String getDescription() {
+                return "reload all classes, even if no classfile has been modified";
+            }
+            public void run(String[] args, PrintStream out) {
+                Set<String> modified = new TreeSet<String>();
+                for (ClassInfo cls : appInfo.getClassInfos()) {
+                    if (appInfo.isClassFileModified(cls.getClassName())) {
+                        modified.add(cls.getClassName());
+                    }
+                }
+                reload(modified);
+                out.println("classes: "+appInfo.getClassInfos().size());
+            }
+        });
+        registerCommand("shutdown", new Command() {
+            public String getDescription() {
+                return "stop the daemon";
+            }
+            public void run(String[] args, PrintStream out) {
+                shutdown();
+            }
+        });
+    }
+
+    /**
+     * Copies everything written to System.out during a request to the client.
+     */
+    private static class TeeStream extends PrintStream {
+
+        private final PrintStream second;
+
+        private TeeStream(PrintStream first, PrintStream second) {
+            super(first, true);
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) {
+            super.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) {
+            super.write(buf, off, len);
+            second.write(buf, off, len);
+        }
+
+        @Override
+        public void flush() {
+            super.flush();
+            second.flush();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////
+    // Client
+    //////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Send a request to a daemon running on the local host and copy the response to the given stream.
+     *
+     * @param port the port of the daemon
+     * @param request the command name and its arguments
+     * @param out the stream to write the output of the command to.
+     * @return true if the command succeeded.
+     * @throws IOException if the daemon could not be reached.
+     */
+    public static boolean sendRequest(int port, List<String> request, PrintStream out) throws IOException {
+        Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            StringBuilder line = new StringBuilder();
+            for (String word : request) {
+                if (line.length() > 0) line.append(' ');
+                line.append(word);
+            }
+            writer.println(line);
+            writer.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            String s;
+            while ((s = in.readLine()) != null) {
+                if (STATUS_OK.equals(s)) {
+                    return true;
+                }
+                if (s.startsWith(STATUS_ERROR)) {
+                    System.err.println("Error: "+s.substring(STATUS_ERROR.length()).trim());
+                    return false;
+                }
+                out.println(s);
+            }
+            System.err.println("Error: connection closed by daemon");
+            return false;
+        } finally {
+            socket.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: AppDaemon <port> <command> [<args>]");
+            System.err.println("  Send a request to a daemon started with --daemon-port <port>.");
+            System.err.println("  Use 'help' as command to list all commands of the daemon.");
+            System.exit(1);
+        }
+        int port;
+        try {
+            port = Integer.parseInt(args[0]);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid port: "+args[0]);
+            System.exit(1);
+            return;
+        }
+        List<String> request = new LinkedList<String>(Arrays.asList(args).subList(1, args.length));
+        try {
+            if (!sendRequest(port, request, System.out)) {
+                System.exit(2);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not connect to daemon on port "+port+": "+e.getMessage());
+            System.exit(3);
+        }
+    }
+}
@@ -76,6 +76,10 @@ public interface AppEventHandler {
     /**
      * Called whenever a new ControlFlowGraph is created, either via constructor or via
      * {@link MethodCode#getControlFlowGraph(boolean)}.
+     * <p>
+     * The {@link com.jopdesign.common.code.AnalysisResultCache} may create graphs of different methods (also of
+     * the same class) concurrently, so implementations must be thread-safe.
+     * </p>
      *
      * @see #onCreateMethodControlFlowGraph(ControlFlowGraph, boolean)
      * @param cfg the new CFG.
@@ -97,13 +101,14 @@ public interface AppEventHandler {
      * <p>
      * We currently do not have a safe way to detect modifications to instruction lists, therefore to be on the safe
      * side this event might be triggered before the actual modification takes place, i.e. when
-     * {@link MethodCode#getInstructionList()} is called.
+     * {@link MethodCode#getInstructionList()} is called. After the modification the user calls
+     * {@link MethodCode#notifyModified()}, which triggers this event again.
      * </p>
-     * TODO we might want to implement something like MethodCode#modified() which is called by the user after modification.
      *
      * @param methodCode the method which got modified.
      * @param beforeModification true if called when the instruction list is handed out for modification, false if
-     *        {@link MethodCode#setInstructionList(InstructionList)} is called.
+     *        {@link MethodCode#setInstructionList(InstructionList)} or {@link MethodCode#notifyModified()}
+     *        is called.
      */
     void onMethodCodeModify(MethodCode methodCode, boolean beforeModification);
 
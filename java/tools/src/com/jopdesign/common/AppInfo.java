@@ -21,6 +21,7 @@
 package com.jopdesign.common;
 
 import com.jopdesign.common.bcel.BcelRepositoryWrapper;
+import com.jopdesign.common.code.AnalysisResultCache;
 import com.jopdesign.common.code.CFGProvider;
 import com.jopdesign.common.code.CallGraph;
 import com.jopdesign.common.code.CallGraph.CallgraphBuilder;
@@ -56,6 +57,7 @@ import org.apache.bcel.util.ClassPath;
 import org.apache.bcel.util.ClassPath.ClassFile;
 import org.apache.log4j.Logger;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -75,6 +77,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * The AppInfo class loads, creates and holds ClassInfos, handles all the loading related stuff,
@@ -91,6 +97,11 @@ public final class AppInfo implements ImplementationFinder, CFGProvider {
     private ClassPath classPath;
     private final Map<String,ClassInfo> classes;
 
+    // class files which are parsed in the background, see prefetchClasses()
+    private final Map<String, Future<ParsedClass>> prefetched;
+    // SHA-1 digests of the class files the classes have been loaded from
+    private final Map<String, String> classFileDigests;
+
     private final Set<MemberInfo> roots;
     private MethodInfo mainMethod;
 
@@ -108,6 +119,7 @@ public final class AppInfo implements ImplementationFinder, CFGProvider {
     private final Set<String> ignoredClasses;
 
     private final List<AppEventHandler> eventHandlers;
+    private final AnalysisResultCache analysisResultCache;
 
     private ProcessorModel processor;
 
@@ -141,12 +153,17 @@ public final class AppInfo implements ImplementationFinder, CFGProvider {
         exitOnMissingClass = false;
 
         classes = new HashMap<String, ClassInfo>();
+        prefetched = new HashMap<String, Future<ParsedClass>>();
+        classFileDigests = new HashMap<String, String>();
         roots = new HashSet<MemberInfo>();
         hwObjectClasses = new HashSet<String>();
         libraryClasses = new HashSet<String>(1);
         ignoredClasses = new HashSet<String>(1);
 
         eventHandlers = new ArrayList<AppEventHandler>(3);
+
+        analysisResultCache = new AnalysisResultCache();
+        registerEventHandler(analysisResultCache);
     }
 
 
@@ -171,6 +188,16 @@ public final class AppInfo implements ImplementationFinder, CFGProvider {
         return Collections.unmodifiableList(eventHandlers);
     }
 
+    /**
+     * Get the cache for CFGs, loop information and other analysis results of methods, which is shared
+     * by all tools.
+     *
+     * @return the analysis result cache of this AppInfo.
+     */
+    public AnalysisResultCache getAnalysisResultCache() {
+        return analysisResultCache;
+    }
+
     /**
      * Just a shortcut for {@link KeyManager#getSingleton()}
      * @return the KeyManager
@@ -325,6 +352,69 @@ public final class AppInfo implements ImplementationFinder, CFGProvider {
         return checkClassExists(className);
     }
 
+    /**
+     * Start parsing the class files of the given classes in the background. Classes are still
+     * created and registered one by one by {@link #loadClass(String)} in the caller's thread,
+     * which uses the prefetched results, so the order in which classes are added to AppInfo
+     * does not depend on the executor.
+     * <p>
+     * Classes which are already loaded, excluded or already being prefetched are skipped.
+     * </p>
+     *
+     * @param classNames the fully qualified names of the classes to parse
+     * @param executor the executor to run the parser in
+     */
+    public void prefetchClasses(Collection<String> classNames, ExecutorService executor) {
+        for (final String className : classNames) {
+            if (classes.containsKey(className) || prefetched.containsKey(className)) continue;
+            if (isExcluded(className)) continue;
+            prefetched.put(className, executor.submit(new Callable<ParsedClass>() {
+                public ParsedClass call() throws IOException {
+                    return parseClassFile(className);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Drop all prefetched class files which have not been used by {@link #loadClass(String)}.
+     */
+    public void clearPrefetchedClasses() {
+        for (Future<ParsedClass> f : prefetched.values()) {
+            f.cancel(false);
+        }
+        prefetched.clear();
+    }
+
+    /**
+     * @param className the fully qualified name of a loaded class.
+     * @return the SHA-1 digest (hex string) of the class file the class has been loaded from, or null
+     *         if the class has not been loaded from a class file.
+     */
+    public String getClassFileDigest(String className) {
+        return classFileDigests.get(className);
+    }
+
+    /**
+     * Check if the class file of a loaded class differs from the class file it has been loaded from.
+     * This reads the class file from the current classpath and compares its digest.
+     *
+     * @param className the fully qualified name of a loaded class.
+     * @return true if the class file has been modified or removed, false if it is unchanged or if the
+     *         class has not been loaded from a class file.
+     */
+    public boolean isClassFileModified(String className) {
+        String digest = classFileDigests.get(className);
+        if (digest == null) {
+            return false;
+        }
+        try {
+            return !digest.equals(computeDigest(readClassFile(className)));
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
     public ClassFile getClassFile(ClassInfo ci) throws FileNotFoundException {
         try {
             return classPath.getClassFile(ci.getClassName());
@@ -386,6 +476,7 @@ public final class AppInfo implements ImplementationFinder, CFGProvider {
             }
 
             this.classes.remove(classInfo.getClassName());
+            this.classFileDigests.remove(classInfo.getClassName());
 
             classInfo.removeFromClassHierarchy();
         }
@@ -1509,7 +1600,7 @@ public final class AppInfo implements ImplementationFinder, CFGProvider {
         }
         md.update(bos.toByteArray());
         // finally, also add the code
-        md.update(mi.getCode().getInstructionList().getByteCode());
+        md.update(mi.getCode().getInstructionList(false, false).getByteCode());
     }
 
 
@@ -1542,9 +1633,11 @@ public final class AppInfo implements ImplementationFinder, CFGProvider {
         // try to load the class
         ClassInfo cls = null;
         try {
-            cls = tryLoadClass(className);
+            ParsedClass parsed = getParsedClass(className);
+            cls = new ClassInfo(parsed.classGen);
 
             classes.put(className, cls);
+            classFileDigests.put(className, parsed.digest);
 
             for (AppEventHandler mgr : eventHandlers) {
                 mgr.onCreateClass(cls,true);
@@ -1560,13 +1653,46 @@ public final class AppInfo implements ImplementationFinder, CFGProvider {
         return cls;
     }
 
-    private ClassInfo tryLoadClass(String className) throws IOException {
+    private static class ParsedClass {
+        private final ClassGen classGen;
+        private final String digest;
+
+        private ParsedClass(ClassGen classGen, String digest) {
+            this.classGen = classGen;
+            this.digest = digest;
+        }
+    }
+
+    private ParsedClass getParsedClass(String className) throws IOException {
+        Future<ParsedClass> f = prefetched.remove(className);
+        if (f == null) {
+            return parseClassFile(className);
+        }
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppInfoError("Interrupted while loading class "+className, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new AppInfoError("Loading class "+className+" failed", cause);
+        }
+    }
+
+    /**
+     * Read and parse a class file. This must not access any AppInfo state except for the classpath,
+     * since it is also executed by prefetch threads.
+     */
+    private ParsedClass parseClassFile(String className) throws IOException {
 
         loadLogger.debug("Loading class "+className);
 
-        InputStream is = classPath.getInputStream(className);
-        JavaClass javaClass = new ClassParser(is, className).parse();
-        is.close();
+        byte[] data = readClassFile(className);
+
+        JavaClass javaClass = new ClassParser(new ByteArrayInputStream(data), className).parse();
 
         if (javaClass.getMajor() > 50) {
             // TODO this requires some work: Java 7 introduces new Attributes (must be parsed correctly and
@@ -1576,7 +1702,39 @@ public final class AppInfo implements ImplementationFinder, CFGProvider {
                     ("Classfiles with versions 51.0 (Java 7) and above are currently not supported!");
         }
 
-        return new ClassInfo(new ClassGen(javaClass));
+        return new ParsedClass(new ClassGen(javaClass), computeDigest(data));
+    }
+
+    private byte[] readClassFile(String className) throws IOException {
+        InputStream is = classPath.getInputStream(className);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(4096);
+        try {
+            byte[] buf = new byte[4096];
+            int len;
+            while ((len = is.read(buf)) > 0) {
+                bos.write(buf, 0, len);
+            }
+        } finally {
+            is.close();
+        }
+        return bos.toByteArray();
+    }
+
+    private static String computeDigest(byte[] data) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA1");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        byte[] d = md.digest(data);
+        StringBuilder sb = new StringBuilder(d.length * 2);
+        for (byte b : d) {
+            int v = b < 0 ? (256 + b) : b;
+            sb.append(digits[v >> 4]);
+            sb.append(digits[v & 0xF]);
+        }
+        return sb.toString();
     }
 
     private boolean checkClassExists(String className) {
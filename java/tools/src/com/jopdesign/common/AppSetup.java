@@ -101,6 +101,7 @@ public class AppSetup {
     private LogConfig logConfig;
     private AppInfo appInfo;
     private boolean handleAppInfoInit;
+    private boolean loadTransitiveHull;
     private boolean loadSystemProps;
     private String programName;
     private String usageDescription;
@@ -295,6 +296,8 @@ public class AppSetup {
             config.addOption(Config.ROOTS);
             config.addOption(Config.CALLSTRING_LENGTH);
             config.addOption(Config.MAIN_METHOD_NAME);
+            config.addOption(Config.LOAD_THREADS);
+            config.addOption(Config.LOAD_INDEX);
             config.addOption(Config.HW_OBJECTS);
 
             addProcessorModelOptions();
@@ -315,6 +318,22 @@ public class AppSetup {
         JOPConfig.registerOptions(config);
     }
 
+    /**
+     * Add options to run the application as {@link AppDaemon}.
+     * Use {@link #useDaemon()} to check if the daemon should be started.
+     */
+    public void addDaemonOptions() {
+        config.addOption(Config.DAEMON_PORT);
+        config.addOption(Config.DAEMON_POLL);
+    }
+
+    /**
+     * @return true if the daemon options have been added and a daemon port has been set.
+     */
+    public boolean useDaemon() {
+        return config.hasOption(Config.DAEMON_PORT) && config.isSet(Config.DAEMON_PORT);
+    }
+
     /**
      * Add options to classify classes and packages and optionally exclude
      * them from the loader.
@@ -613,6 +632,7 @@ public class AppSetup {
         }
 
         // load and initialize all app classes
+        this.loadTransitiveHull = loadTransitiveHull;
         if (loadTransitiveHull) {
             loadClassInfos();
 
@@ -647,6 +667,32 @@ public class AppSetup {
         }
     }
 
+    /**
+     * Reload all classes from the classpath after {@link #setupAppInfo(String[], boolean)} has been called,
+     * load any new classes referenced by the reloaded code and let the tools reinitialize themselves
+     * by calling {@link JopTool#onSetupAppInfo(AppSetup, AppInfo)} again.
+     * <p>
+     * This is used by {@link AppDaemon} to pick up modified class files without restarting the JVM.
+     * The callgraph of AppInfo is discarded, tools are responsible to drop their own results.
+     * </p>
+     *
+     * @throws ClassInfoNotFoundException if a class or the main method could not be reloaded.
+     * @throws BadConfigurationException if a tool cannot be reinitialized.
+     */
+    public void reloadAppInfo() throws ClassInfoNotFoundException, BadConfigurationException {
+        appInfo.reloadClasses(true);
+
+        if (loadTransitiveHull) {
+            loadClassInfos();
+        }
+
+        for (String tool : tools.keySet()) {
+            if (useTool(tool)) {
+                tools.get(tool).onSetupAppInfo(this, appInfo);
+            }
+        }
+    }
+
     /**
      * Setup the logger. You may want to call {@link #setupConfig(String[])} first to
      * load commandline options.
@@ -776,7 +822,14 @@ public class AppSetup {
 
     private void loadClassInfos() {
         // We could use UsedCodeFinder here to load only reachable code, once it supports loading classes on the fly
-        new AppLoader().loadAll(false);
+        AppLoader loader = new AppLoader();
+        if (config.hasOption(Config.LOAD_THREADS)) {
+            loader.setThreads(config.getOption(Config.LOAD_THREADS).intValue());
+        }
+        if (config.hasOption(Config.LOAD_INDEX) && config.isSet(Config.LOAD_INDEX)) {
+            loader.setIndexFile(new File(config.getOption(Config.LOAD_INDEX)));
+        }
+        loader.loadAll(false);
         appInfo.reloadClassHierarchy();
     }
 
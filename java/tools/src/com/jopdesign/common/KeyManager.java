@@ -219,7 +219,7 @@ public class KeyManager {
             }
             if ( fromCode && method.hasCode() ) {
                 MethodCode code = method.getCode();
-                InstructionList il = code.getInstructionList();
+                InstructionList il = code.getInstructionList(false, false);
                 for (InstructionHandle ih : il.getInstructionHandles()) {
                     code.clearCustomKey(ih, key);
                 }
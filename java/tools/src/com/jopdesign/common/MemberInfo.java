@@ -187,12 +187,14 @@ public abstract class MemberInfo {
     /**
      * Sets a new custom info value for a key.
      * Setting null as value has the same effect as removing the key.
+     * Custom values may be accessed by several threads, e.g. by event handlers of flow graphs which are created
+     * concurrently by the {@link com.jopdesign.common.code.AnalysisResultCache}.
      *
      * @param key The key to set the new value for
      * @param customValue the new value to set, or null to unset the value.
      * @return the old value, or null if not set previously.
      */
-    public Object setCustomValue(KeyManager.CustomKey key, Object customValue) {
+    public synchronized Object setCustomValue(KeyManager.CustomKey key, Object customValue) {
         // We could use generics here, and even use customValue.class as key, but
         // 1) using class as key makes it impossible to attach the same CustomValue class
         //    with different values multiple times,
@@ -224,7 +226,7 @@ public abstract class MemberInfo {
         return null;
     }
 
-    public Object getCustomValue(KeyManager.CustomKey key) {
+    public synchronized Object getCustomValue(KeyManager.CustomKey key) {
         if ( customValues == null || key == null || key.getId() >= customValues.length ) {return null;}
         return customValues[key.getId()];
     }
@@ -98,6 +98,8 @@ public class MethodCode {
     private final MethodInfo methodInfo;
     private final MethodGen methodGen;
     private ControlFlowGraph cfg;
+    // incremented after every modification, used to detect outdated analysis results
+    private volatile int version;
 
     /**
      * Only to be used by MethodInfo.
@@ -125,6 +127,18 @@ public class MethodCode {
         return methodInfo.getConstantPoolGen();
     }
 
+    /**
+     * Get the modification counter of this code. The version is incremented after the code has been
+     * modified, i.e. by {@link #setInstructionList(InstructionList)} and {@link #notifyModified()}, but not
+     * when the instruction list is only handed out.
+     *
+     * @see com.jopdesign.common.code.AnalysisResultCache
+     * @return the current version of the code.
+     */
+    public int getVersion() {
+        return version;
+    }
+
     //////////////////////////////////////////////////////////////////////////////
     // Various wrappers to BCEL methods
     //////////////////////////////////////////////////////////////////////////////
@@ -522,6 +536,8 @@ public class MethodCode {
      * will be compiled and removed first.
      * <p>
      * Do not call {@code dispose()} for the returned instruction list, or you will remove the instructions.
+     * Call {@link #notifyModified()} after you modified the list. If you only read the code, use
+     * {@link #getInstructionList(boolean, boolean)} with {@code removeCFG} set to false.
      * </p>
      *
      * @see #compile()
@@ -577,6 +593,14 @@ public class MethodCode {
         removeCFG();
     }
 
+    /**
+     * Notify the event handlers that the instruction list of this code has been modified. This needs to be called
+     * after the list returned by {@link #getInstructionList()} has been changed, before the code is analysed again.
+     */
+    public void notifyModified() {
+        modifyCode(false);
+    }
+
     public InstructionHandle getInstructionHandle(int pos) {
         // we do not want to trigger events here ..
         InstructionList il = prepareInstructionList();
@@ -776,6 +800,8 @@ public class MethodCode {
 
         }
 
+        modifyCode(false);
+
         return next;
     }
 
@@ -893,6 +919,7 @@ public class MethodCode {
     public void removeNOPs() {
         prepareInstructionList();
         methodGen.removeNOPs();
+        modifyCode(false);
     }
 
     /**
@@ -927,6 +954,8 @@ public class MethodCode {
      * instead. Also if you want to construct a CFG for a specific context or with a different implementation finder,
      * you need to construct a callgraph yourself, keep a reference to it as long as you want to keep modifications to the
      * graph and you need ensure that changes to a graph invalidate other graphs of the same method yourself, if required.
+     * If you only need to analyse the graph or its loops, use the shared graph of the
+     * {@link com.jopdesign.common.code.AnalysisResultCache} instead.
      * </p>
      * @param clean if true, compile and recreate the graph if {@link ControlFlowGraph#isClean()} returns false.
      * @return the CFG for this method.
@@ -1184,6 +1213,9 @@ public class MethodCode {
     }
 
     private void modifyCode(boolean beforeModify) {
+        if (!beforeModify) {
+            version++;
+        }
         for (AppEventHandler e : AppInfo.getSingleton().getEventHandlers()) {
             e.onMethodCodeModify(this, beforeModify);
         }
@@ -0,0 +1,321 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ *   see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jopdesign.common.code;
+
+import com.jopdesign.common.AppInfo;
+import com.jopdesign.common.ClassInfo;
+import com.jopdesign.common.EmptyAppEventHandler;
+import com.jopdesign.common.MethodCode;
+import com.jopdesign.common.MethodInfo;
+import com.jopdesign.common.code.ControlFlowGraph.BasicBlockNode;
+import com.jopdesign.common.code.ControlFlowGraph.CFGEdge;
+import com.jopdesign.common.code.ControlFlowGraph.CFGNode;
+import com.jopdesign.common.graphutils.Dominators;
+import com.jopdesign.common.graphutils.LoopColoring;
+import com.jopdesign.common.graphutils.TopOrder;
+import com.jopdesign.common.logger.LogConfig;
+import com.jopdesign.common.misc.BadGraphError;
+import com.jopdesign.common.misc.BadGraphException;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.log4j.Logger;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache for analysis results of methods, which is shared by all tools using the same {@link AppInfo}.
+ * <p>
+ * Results are stored per method together with the {@link MethodCode#getVersion() version} of the code they
+ * have been computed for. All results of a method are dropped when the code of the method has been modified, i.e.
+ * after {@link MethodCode#setInstructionList(org.apache.bcel.generic.InstructionList)} or
+ * {@link MethodCode#notifyModified()}. Results of other methods are kept.
+ * </p>
+ * <p>
+ * Lookups can be performed concurrently by several threads. Results for the same method are computed only once,
+ * computations for different methods may run in parallel. Cached results are shared and must not be modified.
+ * Creating a {@link #FLOW_GRAPH} fires
+ * {@link com.jopdesign.common.AppEventHandler#onCreateControlFlowGraph(ControlFlowGraph)}, so this
+ * relies on thread-safe event handlers and on the synchronized custom values of classes and members.
+ * Modifications of the code itself still need exclusive access to the method, as in the rest of the framework.
+ * </p>
+ *
+ * @see AppInfo#getAnalysisResultCache()
+ */
+public class AnalysisResultCache extends EmptyAppEventHandler {
+
+    /**
+     * A key for a cached result, which also knows how to compute the result. Keys are compared by identity,
+     * so a tool should create its keys only once and keep them in static fields.
+     *
+     * @param <T> the type of the result.
+     */
+    public abstract static class ResultKey<T> {
+
+        private final String name;
+
+        protected ResultKey(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Compute the result for the current code of a method. This is called at most once per version
+         * of the code, with the lock for the method held.
+         *
+         * @param cache the cache, can be used to get other results of the same method.
+         * @param method the method to analyse, has code.
+         * @return the result, must not be null.
+         */
+        protected abstract T compute(AnalysisResultCache cache, MethodInfo method);
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * A control flow graph of the method which is not attached to the method code, with the
+     * {@link TopOrder} and the {@link LoopColoring} already computed.
+     */
+    public static final ResultKey<ControlFlowGraph> FLOW_GRAPH = new ResultKey<ControlFlowGraph>("FlowGraph") {
+        @Override
+        protected ControlFlowGraph compute(AnalysisResultCache cache, MethodInfo method) {
+            ControlFlowGraph cfg;
+            try {
+                cfg = new ControlFlowGraph(method);
+            } catch (BadGraphException e) {
+                throw new BadGraphError("Unable to create CFG for " + method, e);
+            }
+            // Those are computed lazily by the CFG, but the graph is shared by several threads
+            cfg.getTopOrder();
+            cfg.getLoopColoring();
+            return cfg;
+        }
+    };
+
+    /**
+     * A map from the instruction handles of the method to the nodes of the {@link #FLOW_GRAPH}. Instructions
+     * which are not part of the graph (dead code, exception handlers) are not contained in the map.
+     */
+    public static final ResultKey<Map<InstructionHandle, BasicBlockNode>> HANDLE_NODES =
+            new ResultKey<Map<InstructionHandle, BasicBlockNode>>("HandleNodes")
+    {
+        @Override
+        protected Map<InstructionHandle, BasicBlockNode> compute(AnalysisResultCache cache, MethodInfo method) {
+            ControlFlowGraph cfg = cache.getResult(method, FLOW_GRAPH);
+            Map<InstructionHandle, BasicBlockNode> map = new HashMap<InstructionHandle, BasicBlockNode>();
+            for (CFGNode node : cfg.getGraph().vertexSet()) {
+                if (!(node instanceof BasicBlockNode)) continue;
+                BasicBlockNode bbn = (BasicBlockNode) node;
+                for (InstructionHandle ih : bbn.getBasicBlock().getInstructions()) {
+                    map.put(ih, bbn);
+                }
+            }
+            return Collections.unmodifiableMap(map);
+        }
+    };
+
+    private static class Entry {
+        private final MethodCode code;
+        private final int version;
+        private final ConcurrentMap<ResultKey<?>, Object> results;
+
+        private Entry(MethodCode code) {
+            this.code = code;
+            this.version = code.getVersion();
+            this.results = new ConcurrentHashMap<ResultKey<?>, Object>(4);
+        }
+
+        private boolean isValid(MethodCode code) {
+            return this.code == code && this.version == code.getVersion();
+        }
+    }
+
+    private static final Logger logger = Logger.getLogger(LogConfig.LOG_CODE + ".AnalysisResultCache");
+
+    private final ConcurrentMap<MethodInfo, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AnalysisResultCache() {
+        entries = new ConcurrentHashMap<MethodInfo, Entry>();
+    }
+
+    /**
+     * Get a result for the current code of a method, and compute it if it is not cached.
+     *
+     * @param method the method to get the result for.
+     * @param key the key of the result.
+     * @param <T> the type of the result.
+     * @return the result, or null if the method has no code.
+     */
+    @SuppressWarnings({"unchecked"})
+    public <T> T getResult(MethodInfo method, ResultKey<T> key) {
+        MethodCode code = method.getCode();
+        if (code == null) return null;
+
+        Entry entry = getEntry(method, code);
+        Object result = entry.results.get(key);
+        if (result != null) {
+            hits.incrementAndGet();
+            return (T) result;
+        }
+
+        synchronized (entry) {
+            result = entry.results.get(key);
+            if (result != null) {
+                hits.incrementAndGet();
+                return (T) result;
+            }
+            misses.incrementAndGet();
+            if (logger.isTraceEnabled()) {
+                logger.trace("Computing " + key + " for " + method + " (version " + entry.version + ")");
+            }
+            T value = key.compute(this, method);
+            // do not store results which have been computed while the code has been modified
+            if (entry.isValid(code)) {
+                entry.results.put(key, value);
+            }
+            return value;
+        }
+    }
+
+    public boolean hasResult(MethodInfo method, ResultKey<?> key) {
+        MethodCode code = method.getCode();
+        if (code == null) return false;
+        Entry entry = entries.get(method);
+        return entry != null && entry.isValid(code) && entry.results.containsKey(key);
+    }
+
+    /**
+     * @param method the method to get the CFG for.
+     * @return a shared CFG which is not attached to the method code, or null if the method has no code.
+     *         Do not modify this graph.
+     * @see #FLOW_GRAPH
+     */
+    public ControlFlowGraph getFlowGraph(MethodInfo method) {
+        return getResult(method, FLOW_GRAPH);
+    }
+
+    /**
+     * @param method the method containing the instruction.
+     * @param ih an instruction of the method.
+     * @return the node of the shared CFG containing the instruction, or null if the instruction is not
+     *         part of the graph or the method has no code.
+     * @see #HANDLE_NODES
+     */
+    public BasicBlockNode getHandleNode(MethodInfo method, InstructionHandle ih) {
+        Map<InstructionHandle, BasicBlockNode> map = getResult(method, HANDLE_NODES);
+        return map != null ? map.get(ih) : null;
+    }
+
+    public TopOrder<CFGNode, CFGEdge> getTopOrder(MethodInfo method) {
+        ControlFlowGraph cfg = getFlowGraph(method);
+        return cfg != null ? cfg.getTopOrder() : null;
+    }
+
+    public LoopColoring<CFGNode, CFGEdge> getLoopColoring(MethodInfo method) {
+        ControlFlowGraph cfg = getFlowGraph(method);
+        return cfg != null ? cfg.getLoopColoring() : null;
+    }
+
+    public Dominators<CFGNode, CFGEdge> getDominators(MethodInfo method) {
+        TopOrder<CFGNode, CFGEdge> topOrder = getTopOrder(method);
+        return topOrder != null ? topOrder.getDominators() : null;
+    }
+
+    /**
+     * Drop all results of a method.
+     *
+     * @param method the method to invalidate.
+     */
+    public void invalidate(MethodInfo method) {
+        entries.remove(method);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////
+    // Event handler callbacks
+    //////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onRegisterEventHandler(AppInfo appInfo) {
+    }
+
+    @Override
+    public void onRemoveClass(ClassInfo classInfo) {
+        for (MethodInfo method : classInfo.getMethods()) {
+            invalidate(method);
+        }
+    }
+
+    @Override
+    public void onRemoveMethod(MethodInfo method) {
+        invalidate(method);
+    }
+
+    @Override
+    public void onClearAppInfo(AppInfo appInfo) {
+        clear();
+    }
+
+    @Override
+    public void onMethodCodeModify(MethodCode methodCode, boolean beforeModification) {
+        // handing out the instruction list does not change the code, wait for the actual modification
+        if (!beforeModification) {
+            invalidate(methodCode.getMethodInfo());
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////
+    // Private area
+    //////////////////////////////////////////////////////////////////////////////
+
+    private Entry getEntry(MethodInfo method, MethodCode code) {
+        Entry entry = entries.get(method);
+        while (entry == null || !entry.isValid(code)) {
+            Entry newEntry = new Entry(code);
+            if (entry == null) {
+                entry = entries.putIfAbsent(method, newEntry);
+                if (entry == null) return newEntry;
+            } else if (entries.replace(method, entry, newEntry)) {
+                return newEntry;
+            } else {
+                entry = entries.get(method);
+            }
+        }
+        return entry;
+    }
+}
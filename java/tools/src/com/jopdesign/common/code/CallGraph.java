@@ -33,6 +33,7 @@ import com.jopdesign.common.graphutils.AdvancedDOTExporter;
 import com.jopdesign.common.graphutils.BackEdgeFinder;
 import com.jopdesign.common.graphutils.DirectedCycleDetector;
 import com.jopdesign.common.graphutils.GraphUtils;
+import com.jopdesign.common.graphutils.IntGraph;
 import com.jopdesign.common.graphutils.InvokeDot;
 import com.jopdesign.common.graphutils.Pair;
 import com.jopdesign.common.logger.LogConfig;
@@ -261,6 +262,7 @@ public class CallGraph implements ImplementationFinder {
     private class GraphUpdateListener implements GraphListener<ExecutionContext, ContextEdge> {
         @Override
         public void edgeAdded(GraphEdgeChangeEvent<ExecutionContext, ContextEdge> e) {
+            intGraph = null;
             if (mergedCallGraph != null) {
                 addMergedGraphEdge(e.getEdge());
             }
@@ -270,6 +272,7 @@ public class CallGraph implements ImplementationFinder {
 
         @Override
         public void edgeRemoved(GraphEdgeChangeEvent<ExecutionContext, ContextEdge> e) {
+            intGraph = null;
             if (mergedCallGraph != null) {
                 removeMergedGraphEdge(e.getEdge());
             }
@@ -277,12 +280,14 @@ public class CallGraph implements ImplementationFinder {
 
         @Override
         public void vertexAdded(GraphVertexChangeEvent<ExecutionContext> e) {
+            intGraph = null;
             // we always call this because we need to update mergedNodes
             onAddExecutionContext(e.getVertex());
         }
 
         @Override
         public void vertexRemoved(GraphVertexChangeEvent<ExecutionContext> e) {
+            intGraph = null;
             // we always call this because we need to update mergedNodes
             onRemoveExecutionContext(e.getVertex());
         }
@@ -416,6 +421,7 @@ public class CallGraph implements ImplementationFinder {
     private Map<ExecutionContext, Integer> subgraphHeight = null;
     private ExecutionContext maxCallStackLeaf = null;
     private Map<MethodInfo,Boolean> leafNodeCache;
+    private IntGraph<ExecutionContext, ContextEdge> intGraph = null;
 
     /*---------------------------------------------------------------------------*
      * Constructor methods
@@ -1380,6 +1386,19 @@ public class CallGraph implements ImplementationFinder {
         return edges;
     }
 
+    /**
+     * Get a compact int-indexed snapshot of the callgraph. The snapshot is cached until the
+     * callgraph is modified.
+     *
+     * @return the int-indexed representation of the callgraph
+     */
+    public IntGraph<ExecutionContext, ContextEdge> getIntGraph() {
+        if (intGraph == null) {
+            intGraph = new IntGraph<ExecutionContext, ContextEdge>(callGraph);
+        }
+        return intGraph;
+    }
+
     public BackEdgeFinder<ExecutionContext,ContextEdge> getBackEdgeFinder() {
         return new BackEdgeFinder<ExecutionContext, ContextEdge>(callGraph);
     }
@@ -1877,6 +1896,7 @@ public class CallGraph implements ImplementationFinder {
         maxCallstackDAG = null;
         subgraphHeight = null;
         leafNodeCache = new HashMap<MethodInfo, Boolean>();
+        intGraph = null;
     }
 
     /**
@@ -62,7 +62,7 @@ public class CallString implements CallStringProvider, Iterable<InvokeSite> {
 				String methodID   = invokeSiteSpec.first();
 				Integer pos       = invokeSiteSpec.second();
 				MethodInfo method = appInfo.getMethodInfo(MemberID.parse(methodID));
-				InstructionHandle ih = method.getCode().getInstructionList().findHandle(pos);
+				InstructionHandle ih = method.getCode().getInstructionList(false, false).findHandle(pos);
 				InvokeSite site   = method.getCode().getInvokeSite(ih);
 				invokeSiteList.add(site);
 			}
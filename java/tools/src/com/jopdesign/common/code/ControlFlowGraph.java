@@ -30,6 +30,7 @@ import com.jopdesign.common.graphutils.AdvancedDOTExporter.DOTLabeller;
 import com.jopdesign.common.graphutils.AdvancedDOTExporter.DOTNodeLabeller;
 import com.jopdesign.common.graphutils.DefaultFlowGraph;
 import com.jopdesign.common.graphutils.FlowGraph;
+import com.jopdesign.common.graphutils.IntGraph;
 import com.jopdesign.common.graphutils.LoopColoring;
 import com.jopdesign.common.graphutils.TopOrder;
 import com.jopdesign.common.logger.LogConfig;
@@ -1212,6 +1213,16 @@ public class ControlFlowGraph {
         return topOrder;
     }
 
+    /**
+     * Get (cached) a compact int-indexed snapshot of the flow graph, shared with
+     * {@link #getTopOrder()} and {@link #getLoopColoring()}.
+     *
+     * @return the int-indexed representation of the flow graph
+     */
+    public IntGraph<CFGNode, CFGEdge> getIntGraph() {
+        return getTopOrder().getIntGraph();
+    }
+
     /**
      * Get the length of the implementation
      *
@@ -25,6 +25,7 @@ import com.jopdesign.common.MethodInfo;
 import com.jopdesign.common.code.ControlFlowGraph.CFGNode;
 import com.jopdesign.common.graphutils.AdvancedDOTExporter;
 import com.jopdesign.common.graphutils.FlowGraph;
+import com.jopdesign.common.graphutils.IntGraph;
 import com.jopdesign.common.graphutils.Pair;
 import com.jopdesign.common.graphutils.TopOrder;
 import com.jopdesign.common.misc.BadGraphException;
@@ -32,6 +33,7 @@ import org.jgrapht.graph.DirectedMultigraph;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -46,11 +48,31 @@ import java.util.Vector;
 /**
  * A supergraph is similar to a call graph, but models the actual edges
  * connecting the control flow graphs.
+ * <p>
+ * A supergraph is either built eagerly, or demand-driven: a demand-driven supergraph initially only
+ * contains the root node. Consumers expand one node at a time using {@link #expandNext()}, which
+ * materializes the callees of that node. Once a consumer has accounted for all call sites of a node,
+ * it may {@link #evict(SuperGraphNode)} it, so only the frontier of the traversal is kept in memory.
+ * </p>
  *
  * @author Benedikt Huber <benedikt.huber@gmail.com>
  */
 public class SuperGraph {
 
+    /**
+     * Decides whether all instances of a control flow graph may share one supergraph node
+     */
+    public interface ContextSharingPolicy {
+
+        /**
+         * @param cfg the invoked flow graph
+         * @return true if the analysis results for {@code cfg} and all flow graphs invoked from it
+         *         do not depend on the call context, i.e., one context-insensitive supergraph node
+         *         may represent all invocations of {@code cfg}
+         */
+        boolean isContextInsensitive(ControlFlowGraph cfg);
+    }
+
     /**
      * Call contexts distinguish different instances of one control flow graph
      */
@@ -195,6 +217,11 @@ public class SuperGraph {
      */
     private DirectedMultigraph<SuperGraphNode, SuperGraphEdge> superGraph;
 
+    /**
+     * Compact int-indexed copy of the supergraph, created on demand
+     */
+    private IntGraph<SuperGraphNode, SuperGraphEdge> intGraph;
+
     /**
      * The Java Application
      */
@@ -207,6 +234,22 @@ public class SuperGraph {
      */
     private Map<SuperInvokeEdge, SuperReturnEdge> superEdgePairs;
 
+    private int callstringLength;
+
+    private ContextSharingPolicy sharingPolicy;
+
+    private boolean demandDriven;
+
+    /**
+     * All nodes discovered so far (including evicted ones)
+     */
+    private Set<SuperGraphNode> discovered;
+
+    /**
+     * Discovered nodes whose callees have not been materialized yet
+     */
+    private Stack<SuperGraphNode> unexpanded;
+
     public SuperGraph(CFGProvider cfgProvider, ControlFlowGraph rootFlowGraph, int callstringLength) {
         this(cfgProvider, rootFlowGraph, callstringLength, CallString.EMPTY);
     }
@@ -215,13 +258,45 @@ public class SuperGraph {
                       ControlFlowGraph rootFlowGraph,
                       int callstringLength,
                       CallString initialCallString) {
+        this(cfgProvider, rootFlowGraph, callstringLength, initialCallString, null, false);
+    }
+
+    /**
+     * @param cfgProvider       provider for the flow graphs of invoked methods
+     * @param rootFlowGraph     the flow graph of the root method
+     * @param callstringLength  the maximum length of the callstrings distinguishing contexts
+     * @param initialCallString the callstring of the root method
+     * @param sharingPolicy     decides which callees are shared between contexts, or {@code null}
+     *                          to always distinguish contexts by callstring
+     * @param demandDriven      if true, only create the root node; consumers have to expand the
+     *                          graph using {@link #expandNext()}
+     */
+    public SuperGraph(CFGProvider cfgProvider,
+                      ControlFlowGraph rootFlowGraph,
+                      int callstringLength,
+                      CallString initialCallString,
+                      ContextSharingPolicy sharingPolicy,
+                      boolean demandDriven) {
         this.ai = AppInfo.getSingleton();
         this.cfgProvider = cfgProvider;
         this.rootNode = new SuperGraphNode(rootFlowGraph, initialCallString);
         this.superGraphNodes = new Vector<SuperGraphNode>();
         this.superGraph = new DirectedMultigraph<SuperGraphNode, SuperGraphEdge>(SuperGraphEdge.class);
         this.superEdgePairs = new HashMap<SuperInvokeEdge, SuperReturnEdge>();
-        createSuperGraph(callstringLength);
+        this.callstringLength = callstringLength;
+        this.sharingPolicy = sharingPolicy;
+        this.demandDriven = demandDriven;
+        this.discovered = new HashSet<SuperGraphNode>();
+        this.unexpanded = new Stack<SuperGraphNode>();
+
+        discovered.add(rootNode);
+        superGraph.addVertex(rootNode);
+        unexpanded.push(rootNode);
+        if (!demandDriven) expandAll();
+    }
+
+    public boolean isDemandDriven() {
+        return demandDriven;
     }
 
     public Set<SuperGraphNode> getSuperGraphNodes() {
@@ -265,6 +340,16 @@ public class SuperGraph {
         return superGraph;
     }
 
+    /**
+     * @return a compact int-indexed representation of the supergraph
+     */
+    public IntGraph<SuperGraphNode, SuperGraphEdge> getIntGraph() {
+        if (intGraph == null) {
+            intGraph = new IntGraph<SuperGraphNode, SuperGraphEdge>(superGraph);
+        }
+        return intGraph;
+    }
+
     public List<Pair<SuperInvokeEdge, SuperReturnEdge>> getCallSites(SuperGraphNode cfg) {
         Vector<Pair<SuperInvokeEdge, SuperReturnEdge>> callSites =
                 new Vector<Pair<SuperInvokeEdge, SuperReturnEdge>>();
@@ -359,35 +444,100 @@ public class SuperGraph {
 
     }
 
-    private void createSuperGraph(int callstringLength) {
-
-        Stack<SuperGraphNode> todo = new Stack<SuperGraphNode>();
+    /**
+     * @return true if there are discovered nodes whose callees have not been materialized yet
+     */
+    public boolean hasUnexpandedNodes() {
+        return !unexpanded.empty();
+    }
 
-        todo.push(rootNode);
-        superGraph.addVertex(rootNode);
+    /**
+     * Materialize the callees of the next unexpanded node, together with the invoke and return
+     * edges connecting them.
+     *
+     * @return the expanded node
+     */
+    public SuperGraphNode expandNext() {
+        SuperGraphNode current = unexpanded.pop();
+        if (!demandDriven) this.superGraphNodes.add(current);
+        intGraph = null;
+        /* the node may have been removed from the graph when its last caller was evicted */
+        if (!superGraph.containsVertex(current)) superGraph.addVertex(current);
+
+        CallString currentCS = current.getCallString();
+
+        for (CFGNode node : current.getCfg().getGraph().vertexSet()) {
+            if (node instanceof ControlFlowGraph.InvokeNode) {
+                ControlFlowGraph.InvokeNode iNode = (ControlFlowGraph.InvokeNode) node;
+                MethodInfo impl = iNode.getImplementingMethod();
+                ControlFlowGraph invokedCFG = cfgProvider.getFlowGraph(impl);
+                CallString invokedCS;
+                if (sharingPolicy != null && sharingPolicy.isContextInsensitive(invokedCFG)) {
+                    invokedCS = CallString.EMPTY;
+                } else {
+                    invokedCS = currentCS.push(iNode, callstringLength);
+                }
+                SuperGraphNode invoked = new SuperGraphNode(invokedCFG, invokedCS);
 
-        while (!todo.empty()) {
-            SuperGraphNode current = todo.pop();
-            this.superGraphNodes.add(current);
+                if (discovered.add(invoked)) {
+                    unexpanded.push(invoked);
+                }
+                if (!superGraph.containsVertex(invoked)) {
+                    superGraph.addVertex(invoked);
+                }
+                addEdge(iNode, current, invoked);
+            }
+        }
+        return current;
+    }
 
-            CallString currentCS = current.getCallString();
+    /**
+     * Expand all remaining nodes.
+     */
+    public void expandAll() {
+        while (hasUnexpandedNodes()) expandNext();
+    }
 
-            for (CFGNode node : current.getCfg().getGraph().vertexSet()) {
-                if (node instanceof ControlFlowGraph.InvokeNode) {
-                    ControlFlowGraph.InvokeNode iNode = (ControlFlowGraph.InvokeNode) node;
-                    MethodInfo impl = iNode.getImplementingMethod();
-                    ControlFlowGraph invokedCFG = cfgProvider.getFlowGraph(impl);
-                    CallString invokedCS = currentCS.push(iNode, callstringLength);
-                    SuperGraphNode invoked = new SuperGraphNode(invokedCFG, invokedCS);
+    /**
+     * Get the call sites of an expanded node, i.e., the invoke edges leaving the node
+     * and the corresponding return edges.
+     *
+     * @param invoker an expanded, not yet evicted supergraph node
+     * @return the (invoke,return) edge pairs of the invocations in {@code invoker}
+     */
+    public List<Pair<SuperInvokeEdge, SuperReturnEdge>> getInvokeSites(SuperGraphNode invoker) {
+        List<Pair<SuperInvokeEdge, SuperReturnEdge>> sites = new ArrayList<Pair<SuperInvokeEdge, SuperReturnEdge>>();
+        for (SuperGraphEdge e : superGraph.outgoingEdgesOf(invoker)) {
+            if (e instanceof SuperInvokeEdge) {
+                SuperInvokeEdge ei = (SuperInvokeEdge) e;
+                sites.add(new Pair<SuperInvokeEdge, SuperReturnEdge>(ei, superEdgePairs.get(ei)));
+            }
+        }
+        return sites;
+    }
 
-                    if (!superGraph.containsVertex(invoked)) {
-                        superGraph.addVertex(invoked);
-                        todo.push(invoked);
-                    }
-                    addEdge(iNode, current, invoked);
-                }
+    /**
+     * Drop the call sites of an expanded node from the graph, after a consumer has accounted
+     * for them. Nodes are removed as soon as they are not connected anymore; discovered nodes
+     * are never expanded twice, even if they have been removed.
+     *
+     * @param invoker an expanded supergraph node
+     */
+    public void evict(SuperGraphNode invoker) {
+        if (!superGraph.containsVertex(invoker)) return;
+        intGraph = null;
+        for (Pair<SuperInvokeEdge, SuperReturnEdge> site : getInvokeSites(invoker)) {
+            SuperGraphNode invoked = superGraph.getEdgeTarget(site.first());
+            superGraph.removeEdge(site.first());
+            superGraph.removeEdge(site.second());
+            superEdgePairs.remove(site.first());
+            if (superGraph.edgesOf(invoked).isEmpty()) {
+                superGraph.removeVertex(invoked);
             }
         }
+        if (superGraph.edgesOf(invoker).isEmpty()) {
+            superGraph.removeVertex(invoker);
+        }
     }
 
     private void addEdge(ControlFlowGraph.InvokeNode node, SuperGraphNode invoker, SuperGraphNode invoked) {
@@ -443,7 +593,7 @@ public class SuperGraph {
      * @throws BadGraphException if the graph is not acyclic
      */
     public TopOrder<SuperGraphNode, SuperGraphEdge> topologicalOrderIterator() throws BadGraphException {
-        return new TopOrder<SuperGraphNode, SuperGraphEdge>(superGraph, rootNode);
+        return new TopOrder<SuperGraphNode, SuperGraphEdge>(superGraph, getIntGraph(), rootNode, false);
     }
 
 
@@ -109,6 +109,18 @@ public class Config {
     public static final IntegerOption CALLSTRING_LENGTH =
 	    new IntegerOption("callstring-length", "Length of the callstring", 0);
 
+    public static final IntegerOption LOAD_THREADS =
+            new IntegerOption("load-threads", "number of threads used to parse classfiles (0: one per processor)", 0);
+
+    public static final StringOption LOAD_INDEX =
+            new StringOption("load-index", "file to cache the class references of loaded classfiles in", true);
+
+    public static final IntegerOption DAEMON_PORT =
+            new IntegerOption("daemon-port", "run as daemon and serve requests on this local port", true);
+
+    public static final IntegerOption DAEMON_POLL =
+            new IntegerOption("daemon-poll", "interval in ms to check for modified classfiles in daemon mode", 2000);
+
     public static final StringOption WRITE_PATH =
             new StringOption("outdir", "base path for output directories (classdir,reportdir,..)", 'o', "java/target/dist");
 
@@ -22,11 +22,10 @@ package com.jopdesign.common.graphutils;
 import org.jgrapht.DirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.SimpleDirectedGraph;
-import org.jgrapht.traverse.DepthFirstIterator;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,21 +34,34 @@ import java.util.Set;
  * Compute Dominators of a graph, following:
  * A Simple, Fast Dominance Algorithm
  * (Cooper, Keith  D.  and Harvey, Timothy  J.  and Kennedy, Ken).
+ * <p>
+ * The fixpoint iteration works on an {@link IntGraph} snapshot of the graph; immediate
+ * dominators are kept in an array indexed by pre-order number.
+ * </p>
  */
 public class Dominators<V, E> {
 
     private DirectedGraph<V, E> graph;
-    private List<V> vertexPreOrder;
-    private Map<V, V> idom = null;
-    private Map<V, Integer> preOrderMap;
+    private IntGraph<V, E> intGraph;
+    /* node ids in pre-order */
+    private int[] vertexPreOrder;
+    /* node id -> pre-order number, -1 if not part of the traversal */
+    private int[] preOrderMap;
+    /* pre-order number -> pre-order number of the immediate dominator, -1 if undefined */
+    private int[] idom = null;
+    private Map<V, V> idomMap = null;
 
     protected int getOrder(V vertex) {
-        return preOrderMap.get(vertex);
+        return preOrderMap[intGraph.getNodeId(vertex)];
     }
 
     protected V getIDom(V vertex) {
-        if (idom == null) computeDominators();
-        return idom.get(vertex);
+        computeDominators();
+        int id = intGraph.getNodeId(vertex);
+        if (id < 0) return null;
+        int order = preOrderMap[id];
+        if (order < 0 || idom[order] < 0) return null;
+        return intGraph.getNode(vertexPreOrder[idom[order]]);
     }
 
     /**
@@ -59,17 +71,20 @@ public class Dominators<V, E> {
      * @param entry the entry node
      */
     public Dominators(DirectedGraph<V, E> g, V entry) {
-        this(g, dfsPreOrder(g, entry));
+        this(g, new IntGraph<V, E>(g), entry);
     }
 
-    private static <V, E> List<V> dfsPreOrder(DirectedGraph<V, E> g, V exit) {
-        DepthFirstIterator<V, E> iter = new DepthFirstIterator<V, E>(g, exit);
-        iter.setCrossComponentTraversal(false);
-        List<V> trav = new LinkedList<V>();
-        while (iter.hasNext()) {
-            trav.add(iter.next());
-        }
-        return trav;
+    /**
+     * Dominators, using default pre-oder traversal and an existing int-indexed snapshot of the graph
+     *
+     * @param g        the graph
+     * @param intGraph the int-indexed representation of {@code g}
+     * @param entry    the entry node
+     */
+    public Dominators(DirectedGraph<V, E> g, IntGraph<V, E> intGraph, V entry) {
+        this.graph = g;
+        this.intGraph = intGraph;
+        initPreOrder(intGraph.dfsPreOrder(intGraph.getNodeId(entry)));
     }
 
     /**
@@ -80,57 +95,88 @@ public class Dominators<V, E> {
      */
     public Dominators(DirectedGraph<V, E> g, List<V> preOrder) {
         this.graph = g;
-        this.vertexPreOrder = preOrder;
+        this.intGraph = new IntGraph<V, E>(g);
         // just making sure we have a non-empty graph,
-        assert vertexPreOrder != null && !vertexPreOrder.isEmpty();
+        assert preOrder != null && !preOrder.isEmpty();
+
+        int[] order = new int[preOrder.size()];
+        int i = 0;
+        for (V v : preOrder) {
+            order[i++] = intGraph.getNodeId(v);
+        }
+        initPreOrder(order);
+    }
+
+    /**
+     * (Immediate) Dominators based on the given pre-order traversal of the int-indexed graph.
+     *
+     * @param g        the graph
+     * @param intGraph the int-indexed representation of {@code g}
+     * @param preOrder node ids in DFS pre-order. The first node is the entry point of the graph.
+     */
+    public Dominators(DirectedGraph<V, E> g, IntGraph<V, E> intGraph, int[] preOrder) {
+        this.graph = g;
+        this.intGraph = intGraph;
+        initPreOrder(preOrder);
+    }
 
-        this.preOrderMap = new HashMap<V, Integer>();
-        for (int i = 0; i < this.vertexPreOrder.size(); i++) {
-            preOrderMap.put(vertexPreOrder.get(i), i);
+    private void initPreOrder(int[] preOrder) {
+        // just making sure we have a non-empty graph,
+        assert preOrder != null && preOrder.length > 0;
+        this.vertexPreOrder = preOrder;
+        this.preOrderMap = intGraph.newNodeArray(-1);
+        for (int i = 0; i < preOrder.length; i++) {
+            preOrderMap[preOrder[i]] = i;
         }
     }
 
     protected void computeDominators() {
         if (this.idom != null) return;
-        this.idom = new HashMap<V, V>();
-        V firstElement = vertexPreOrder.get(0);
-        idom.put(firstElement, firstElement);
-        if (!graph.incomingEdgesOf(vertexPreOrder.get(0)).isEmpty())
+        if (intGraph.inDegree(vertexPreOrder[0]) != 0)
             throw new AssertionError("The entry of the flow graph is not allowed to have incoming edges");
 
+        int n = vertexPreOrder.length;
+        int[] doms = new int[n];
+        Arrays.fill(doms, -1);
+        doms[0] = 0;
+
+        int[] predOffset = intGraph.getPredecessorOffsets();
+        int[] predEdges = intGraph.getPredecessorEdges();
+        int[] edgeSource = intGraph.getEdgeSources();
+
         boolean changed;
         do {
             changed = false;
-            for (V v : vertexPreOrder) {
-                if (v.equals(firstElement)) continue;
-                V oldIdom = getIDom(v);
-                V newIdom = null;
-                for (E edge : graph.incomingEdgesOf(v)) {
-                    V pre = graph.getEdgeSource(edge);
-                    if (getIDom(pre) == null) /* not yet analyzed */ continue;
-                    if (newIdom == null) {
+            for (int v = 1; v < n; v++) {
+                int node = vertexPreOrder[v];
+                int newIdom = -1;
+                for (int k = predOffset[node]; k < predOffset[node + 1]; k++) {
+                    int pre = preOrderMap[edgeSource[predEdges[k]]];
+                    if (pre < 0 || doms[pre] < 0) /* not yet analyzed */ continue;
+                    if (newIdom < 0) {
                         /* If we only have one (defined) predecessor pre, IDom(v) = pre */
                         newIdom = pre;
                     } else {
                         /* compute the intersection of all defined predecessors of v */
-                        newIdom = intersectIDoms(pre, newIdom);
+                        newIdom = intersectIDoms(doms, pre, newIdom);
                     }
                 }
-                if (newIdom == null) throw new AssertionError("newIDom == null !, for " + v);
-                if (!newIdom.equals(oldIdom)) {
+                if (newIdom < 0) throw new AssertionError("newIDom == null !, for " + intGraph.getNode(node));
+                if (newIdom != doms[v]) {
                     changed = true;
-                    this.idom.put(v, newIdom);
+                    doms[v] = newIdom;
                 }
             }
         } while (changed);
+        this.idom = doms;
     }
 
-    private V intersectIDoms(V v1, V v2) {
+    private static int intersectIDoms(int[] doms, int v1, int v2) {
         while (v1 != v2) {
-            if (getOrder(v1) < getOrder(v2)) {
-                v2 = getIDom(v2);
+            if (v1 < v2) {
+                v2 = doms[v2];
             } else {
-                v1 = getIDom(v1);
+                v1 = doms[v1];
             }
         }
         return v1;
@@ -149,7 +195,13 @@ public class Dominators<V, E> {
      */
     public Map<V, V> getIDoms() {
         computeDominators();
-        return this.idom;
+        if (idomMap == null) {
+            idomMap = new HashMap<V, V>(vertexPreOrder.length * 2);
+            for (int i = 0; i < vertexPreOrder.length; i++) {
+                idomMap.put(intGraph.getNode(vertexPreOrder[i]), intGraph.getNode(vertexPreOrder[idom[i]]));
+            }
+        }
+        return idomMap;
     }
 
     /**
@@ -162,23 +214,29 @@ public class Dominators<V, E> {
     public boolean dominates(V dominator, V dominated) {
         computeDominators();
         if (dominator.equals(dominated)) return true; // Domination is reflexive ;)
-        V dom = getIDom(dominated);
+        int domId = intGraph.getNodeId(dominator);
+        int nodeId = intGraph.getNodeId(dominated);
+        if (domId < 0 || nodeId < 0) return false;
+        int target = preOrderMap[domId];
+        int dom = preOrderMap[nodeId];
+        if (target < 0 || dom < 0) return false;
+        dom = idom[dom];
         // as long as dominated >= dominator
-        while (dom != null && getOrder(dom) >= getOrder(dominator) && !dom.equals(dominator)) {
-            dom = getIDom(dom);
+        while (dom > target) {
+            dom = idom[dom];
         }
-        return dominator.equals(dom);
+        return dom == target;
     }
 
     public Set<V> getStrictDominators(V n) {
         computeDominators();
         Set<V> strictDoms = new HashSet<V>();
-        V dominated = n;
-        V iDom = getIDom(n);
+        int dominated = preOrderMap[intGraph.getNodeId(n)];
+        int iDom = idom[dominated];
         while (iDom != dominated) {
-            strictDoms.add(iDom);
+            strictDoms.add(intGraph.getNode(vertexPreOrder[iDom]));
             dominated = iDom;
-            iDom = getIDom(dominated);
+            iDom = idom[dominated];
         }
         return strictDoms;
     }
@@ -0,0 +1,265 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jopdesign.common.graphutils;
+
+import org.jgrapht.DirectedGraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, int-indexed snapshot of a directed graph in compressed sparse row form.
+ * <p>
+ * Nodes are numbered {@code 0..nodeCount()-1} in the iteration order of the vertex set,
+ * edges are numbered {@code 0..edgeCount()-1} in the iteration order of the edge set.
+ * Adjacency is stored in two pairs of arrays: the outgoing edges of node {@code n} are
+ * {@code succEdges[succOffset[n]] .. succEdges[succOffset[n+1]-1]}, and the same holds for
+ * the incoming edges with {@code predOffset} and {@code predEdges}.
+ * </p><p>
+ * Algorithms working on this representation should keep their per-node state in dense
+ * arrays indexed by node id (see {@link #newNodeArray(int)}), instead of hash maps.
+ * The arrays returned by the getters are shared and must not be modified.
+ * The snapshot does not track changes to the graph it has been built from.
+ * </p>
+ *
+ * @param <V> node type
+ * @param <E> edge type
+ */
+public final class IntGraph<V, E> {
+
+    private final Object[] nodes;
+    private final Object[] edges;
+    private final Map<V, Integer> nodeIds;
+    private final Map<E, Integer> edgeIds;
+
+    private final int[] edgeSource;
+    private final int[] edgeTarget;
+
+    private final int[] succOffset;
+    private final int[] succEdges;
+    private final int[] predOffset;
+    private final int[] predEdges;
+
+    /**
+     * Build the int-indexed representation of the given graph.
+     *
+     * @param graph the graph to copy
+     */
+    public IntGraph(DirectedGraph<V, E> graph) {
+        int n = graph.vertexSet().size();
+        int m = graph.edgeSet().size();
+
+        nodes = new Object[n];
+        nodeIds = new HashMap<V, Integer>(n * 2);
+        int i = 0;
+        for (V v : graph.vertexSet()) {
+            nodes[i] = v;
+            nodeIds.put(v, i);
+            i++;
+        }
+
+        edges = new Object[m];
+        edgeIds = new HashMap<E, Integer>(m * 2);
+        edgeSource = new int[m];
+        edgeTarget = new int[m];
+        succOffset = new int[n + 1];
+        predOffset = new int[n + 1];
+        i = 0;
+        for (E e : graph.edgeSet()) {
+            int src = nodeIds.get(graph.getEdgeSource(e));
+            int tgt = nodeIds.get(graph.getEdgeTarget(e));
+            edges[i] = e;
+            edgeIds.put(e, i);
+            edgeSource[i] = src;
+            edgeTarget[i] = tgt;
+            succOffset[src + 1]++;
+            predOffset[tgt + 1]++;
+            i++;
+        }
+
+        for (int k = 0; k < n; k++) {
+            succOffset[k + 1] += succOffset[k];
+            predOffset[k + 1] += predOffset[k];
+        }
+        succEdges = new int[m];
+        predEdges = new int[m];
+        int[] succFill = new int[n];
+        int[] predFill = new int[n];
+        System.arraycopy(succOffset, 0, succFill, 0, n);
+        System.arraycopy(predOffset, 0, predFill, 0, n);
+        // edges are inserted in edge id order, so each adjacency row is sorted by edge id
+        for (int e = 0; e < m; e++) {
+            succEdges[succFill[edgeSource[e]]++] = e;
+            predEdges[predFill[edgeTarget[e]]++] = e;
+        }
+    }
+
+    public int nodeCount() {
+        return nodes.length;
+    }
+
+    public int edgeCount() {
+        return edges.length;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    public V getNode(int id) {
+        return (V) nodes[id];
+    }
+
+    @SuppressWarnings({"unchecked"})
+    public E getEdge(int id) {
+        return (E) edges[id];
+    }
+
+    /**
+     * @param node a node of the graph
+     * @return the id of the node, or -1 if the node is not part of the graph
+     */
+    public int getNodeId(V node) {
+        Integer id = nodeIds.get(node);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param edge an edge of the graph
+     * @return the id of the edge, or -1 if the edge is not part of the graph
+     */
+    public int getEdgeId(E edge) {
+        Integer id = edgeIds.get(edge);
+        return id == null ? -1 : id;
+    }
+
+    public int getSource(int edge) {
+        return edgeSource[edge];
+    }
+
+    public int getTarget(int edge) {
+        return edgeTarget[edge];
+    }
+
+    public int outDegree(int node) {
+        return succOffset[node + 1] - succOffset[node];
+    }
+
+    public int inDegree(int node) {
+        return predOffset[node + 1] - predOffset[node];
+    }
+
+    /**
+     * @return the source node of each edge, indexed by edge id
+     */
+    public int[] getEdgeSources() {
+        return edgeSource;
+    }
+
+    /**
+     * @return the target node of each edge, indexed by edge id
+     */
+    public int[] getEdgeTargets() {
+        return edgeTarget;
+    }
+
+    /**
+     * @return row offsets into {@link #getSuccessorEdges()}, of length {@code nodeCount()+1}
+     */
+    public int[] getSuccessorOffsets() {
+        return succOffset;
+    }
+
+    /**
+     * @return the ids of the outgoing edges, grouped by source node
+     */
+    public int[] getSuccessorEdges() {
+        return succEdges;
+    }
+
+    /**
+     * @return row offsets into {@link #getPredecessorEdges()}, of length {@code nodeCount()+1}
+     */
+    public int[] getPredecessorOffsets() {
+        return predOffset;
+    }
+
+    /**
+     * @return the ids of the incoming edges, grouped by target node
+     */
+    public int[] getPredecessorEdges() {
+        return predEdges;
+    }
+
+    /**
+     * @param init the initial value of each entry
+     * @return a new per-node attribute array
+     */
+    public int[] newNodeArray(int init) {
+        int[] a = new int[nodes.length];
+        if (init != 0) Arrays.fill(a, init);
+        return a;
+    }
+
+    /**
+     * @param init the initial value of each entry
+     * @return a new per-edge attribute array
+     */
+    public int[] newEdgeArray(int init) {
+        int[] a = new int[edges.length];
+        if (init != 0) Arrays.fill(a, init);
+        return a;
+    }
+
+    /**
+     * Compute a depth first pre-order of all nodes reachable from {@code root}.
+     * Successors are visited in edge id order.
+     *
+     * @param root the start node
+     * @return the ids of the reachable nodes, in DFS pre-order
+     */
+    public int[] dfsPreOrder(int root) {
+        int n = nodes.length;
+        int[] order = new int[n];
+        int count = 0;
+        boolean[] seen = new boolean[n];
+        int[] stack = new int[n];
+        int[] next = new int[n];
+        int sp = 0;
+
+        seen[root] = true;
+        order[count++] = root;
+        stack[sp] = root;
+        next[sp] = succOffset[root];
+        sp++;
+        while (sp > 0) {
+            int v = stack[sp - 1];
+            if (next[sp - 1] == succOffset[v + 1]) {
+                sp--;
+                continue;
+            }
+            int w = edgeTarget[succEdges[next[sp - 1]++]];
+            if (seen[w]) continue;
+            seen[w] = true;
+            order[count++] = w;
+            stack[sp] = w;
+            next[sp] = succOffset[w];
+            sp++;
+        }
+        return count == n ? order : Arrays.copyOf(order, count);
+    }
+}
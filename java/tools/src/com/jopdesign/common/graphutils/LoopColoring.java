@@ -25,19 +25,16 @@ import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.DirectedSubgraph;
 import org.jgrapht.graph.SimpleDirectedGraph;
-import org.jgrapht.traverse.AbstractGraphIterator;
 import org.jgrapht.traverse.TopologicalOrderIterator;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
-import java.util.Stack;
 import java.util.TreeSet;
 import java.util.Vector;
 
@@ -52,44 +49,6 @@ import java.util.Vector;
  */
 public class LoopColoring<V, E> {
 
-    private enum SimpleVisitColor {
-        WHITE, GREY
-    }
-
-    private class LoopColorIterator extends AbstractGraphIterator<V, E> {
-        private Stack<V> stack;
-        private V hol;
-        private Map<V, SimpleVisitColor> visited;
-
-        LoopColorIterator(V headOfLoop, Collection<E> backEdges) {
-            this.hol = headOfLoop;
-            this.stack = new Stack<V>();
-            for (E edge : backEdges) {
-                stack.push(graph.getEdgeSource(edge));
-            }
-            this.visited = new HashMap<V, SimpleVisitColor>();
-        }
-
-        public boolean hasNext() {
-            return !stack.empty();
-        }
-
-        public V next() {
-            V nextV = stack.pop();
-            visited.put(nextV, SimpleVisitColor.GREY);
-            // push all non-visited predecessors on the stack, if the node != hol
-            if (!nextV.equals(hol)) {
-                for (E preEdge : graph.incomingEdgesOf(nextV)) {
-                    V pre = graph.getEdgeSource(preEdge);
-                    if (visited.containsKey(pre)) continue;
-                    stack.push(pre);
-                    visited.put(pre, SimpleVisitColor.WHITE);
-                }
-            }
-            return nextV;
-        }
-    }
-
     private DirectedGraph<V, E> graph;
     private TopOrder<V, E> topOrder;
     private Map<V, Set<V>> loopColors;
@@ -98,6 +57,9 @@ public class LoopColoring<V, E> {
     private SimpleDirectedGraph<V, DefaultEdge> loopNestForest;
     private Map<E, IterationBranchLabel<V>> iterationBranchEdges;
     private Set<E> backEdges;
+    /* loop membership per node id, indexed by the position of the head of loop in loopHeads */
+    private BitSet[] loopBits;
+    private List<V> loopHeads;
 
     public LoopColoring(DirectedGraph<V, E> graph, TopOrder<V, E> topOrder, V exit) {
         this.graph = graph;
@@ -110,46 +72,87 @@ public class LoopColoring<V, E> {
     }
 
     private void analyse() {
-        loopColors = new HashMap<V, Set<V>>();
-        for (V v : graph.vertexSet()) loopColors.put(v, new TreeSet<V>());
+        IntGraph<V, E> g = topOrder.getIntGraph();
+        int n = g.nodeCount();
+        int[] predOffset = g.getPredecessorOffsets();
+        int[] predEdges = g.getPredecessorEdges();
+        int[] edgeSource = g.getEdgeSources();
+
         /* Step 1: Group backedges by Head-Of-Loop */
         backEdgesByHOL = new HashMap<V, List<E>>();
+        List<V> hols = new ArrayList<V>();
         for (E backedge : this.topOrder.getBackEdges()) {
             V hol = graph.getEdgeTarget(backedge);
             List<E> endVxs = backEdgesByHOL.get(hol);
-            if (endVxs == null) endVxs = new ArrayList<E>();
+            if (endVxs == null) {
+                endVxs = new ArrayList<E>();
+                hols.add(hol);
+            }
             endVxs.add(backedge);
             backEdgesByHOL.put(hol, endVxs);
         }
         /* Step 2: For every (hol,endVertices) pair, perform a DFS starting at endVertices,
-                  * on the RCFG with all outgoing edges of hol removed. For this purpose, we provide
-                  * a special iterator.
-                  */
-        for (Entry<V, List<E>> loop : backEdgesByHOL.entrySet()) {
-            V hol = loop.getKey();
-            LoopColorIterator iter = new LoopColorIterator(hol, loop.getValue());
-            while (iter.hasNext()) {
-                loopColors.get(iter.next()).add(hol);
+         * on the RCFG with all outgoing edges of hol removed. Colors are collected as
+         * bit sets over the loop index.
+         */
+        loopBits = new BitSet[n];
+        int[] visited = g.newNodeArray(-1);
+        int[] stack = new int[n];
+        for (int loop = 0; loop < hols.size(); loop++) {
+            int hol = g.getNodeId(hols.get(loop));
+            int sp = 0;
+            for (E edge : backEdgesByHOL.get(hols.get(loop))) {
+                int src = g.getSource(g.getEdgeId(edge));
+                if (visited[src] == loop) continue;
+                visited[src] = loop;
+                stack[sp++] = src;
+            }
+            while (sp > 0) {
+                int v = stack[--sp];
+                if (loopBits[v] == null) loopBits[v] = new BitSet();
+                loopBits[v].set(loop);
+                // push all non-visited predecessors on the stack, if the node != hol
+                if (v == hol) continue;
+                for (int k = predOffset[v]; k < predOffset[v + 1]; k++) {
+                    int pre = edgeSource[predEdges[k]];
+                    if (visited[pre] == loop) continue;
+                    visited[pre] = loop;
+                    stack[sp++] = pre;
+                }
             }
         }
+        loopHeads = hols;
+        loopColors = new HashMap<V, Set<V>>(n * 2);
+        for (int v = 0; v < n; v++) {
+            Set<V> color = new TreeSet<V>();
+            if (loopBits[v] != null) {
+                for (int loop = loopBits[v].nextSetBit(0); loop >= 0; loop = loopBits[v].nextSetBit(loop + 1)) {
+                    color.add(hols.get(loop));
+                }
+            }
+            loopColors.put(g.getNode(v), color);
+        }
         computeExitEdges();
     }
 
     private void computeExitEdges() {
+        IntGraph<V, E> g = topOrder.getIntGraph();
         exitEdges = new HashMap<V, List<E>>();
         /* For each edge, compute the set difference of source color and target color */
-        for (E e : graph.edgeSet()) {
-            V src = graph.getEdgeSource(e);
-            V target = graph.getEdgeTarget(e);
-            Set<V> exitSet = new HashSet<V>(this.loopColors.get(src));
-            exitSet.removeAll(this.loopColors.get(target));
-            for (V loop : exitSet) {
-                List<E> exits = this.exitEdges.get(loop);
+        for (int e = 0; e < g.edgeCount(); e++) {
+            BitSet srcBits = loopBits[g.getSource(e)];
+            if (srcBits == null) continue;
+            BitSet exitSet = (BitSet) srcBits.clone();
+            BitSet targetBits = loopBits[g.getTarget(e)];
+            if (targetBits != null) exitSet.andNot(targetBits);
+            for (int loop = exitSet.nextSetBit(0); loop >= 0; loop = exitSet.nextSetBit(loop + 1)) {
+                V hol = loopHeads.get(loop);
+                List<E> exits = this.exitEdges.get(hol);
                 if (exits == null) {
                     exits = new ArrayList<E>();
-                    this.exitEdges.put(loop, exits);
+                    this.exitEdges.put(hol, exits);
                 }
-                exits.add(e);
+                exits.add(g.getEdge(e));
             }
         }
     }
@@ -414,9 +417,10 @@ public class LoopColoring<V, E> {
         iterationBranchEdges = new HashMap<E, IterationBranchLabel<V>>();
         Map<V, IterationBranchLabel<V>> nodeLabels = new HashMap<V, IterationBranchLabel<V>>();
         if (hols.isEmpty()) return iterationBranchEdges;
-        List<V> rTopTrav = this.topOrder.getTopologicalTraversal();
-        Collections.reverse(rTopTrav);
-        for (V source : rTopTrav) {
+        IntGraph<V, E> g = this.topOrder.getIntGraph();
+        int[] topTrav = this.topOrder.getTopologicalOrder();
+        for (int i = topTrav.length - 1; i >= 0; i--) {
+            V source = g.getNode(topTrav[i]);
             /* mark edges */
             if (loopColors.get(source).isEmpty()) continue;
             IterationBranchLabel<V> first = null;
@@ -23,12 +23,10 @@ import com.jopdesign.common.misc.BadGraphException;
 import org.jgrapht.DirectedGraph;
 import org.jgrapht.alg.BellmanFordShortestPath;
 import org.jgrapht.alg.ConnectivityInspector;
-import org.jgrapht.graph.DirectedSubgraph;
 import org.jgrapht.graph.EdgeReversedGraph;
-import org.jgrapht.traverse.DepthFirstIterator;
-import org.jgrapht.traverse.TopologicalOrderIterator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -38,6 +36,7 @@ import java.util.Set;
  * Given a rooted, directed graph, identify back-edges.
  * A back-edge is an edge <code>B -> A</code> s.t. A dominates B w.r.t to Entry.
  * If removing the back-edges leads to a DAG, compute a topological order using that graph.
+ * <p>The traversals are computed on an {@link IntGraph} snapshot of the graph.</p>
  *
  * @param <V> node type
  * @param <E> edge type
@@ -45,66 +44,118 @@ import java.util.Set;
 public class TopOrder<V, E> {
 
     private DirectedGraph<V, E> graph;
+    private IntGraph<V, E> intGraph;
     private List<V> dfsOrder = null;
     private List<E> backEdges = null;
+    private boolean[] isBackEdge;
     private V startVertex;
     private Dominators<V, E> dominators;
     private List<V> topTraversal;
 
-    /* Iterator detecting back edges using DFS search.
-         * This works for reducible graphs only.
-         */
-
-    private class BackEdgeDetector extends DepthFirstIterator<V, E> {
-
-        public BackEdgeDetector(DirectedGraph<V, E> g, V startVertex) {
-            super(g, startVertex);
-        }
-
-        // Topological order
-
-        @Override
-        protected void encounterVertex(V vertex, E edge) {
-            super.encounterVertex(vertex, edge);
-            dfsOrder.add(vertex);
-        }
-
-        @Override
-        protected void encounterVertexAgain(V vertex, E edge) {
-            super.encounterVertexAgain(vertex, edge);
-            if (getSeenData(vertex) != VisitColor.GRAY) {
-            } else {
-                backEdges.add(edge);
-            }
-        }
-    }
-
     public TopOrder(DirectedGraph<V, E> graph, V startVertex) throws BadGraphException {
-        this.graph = graph;
-        this.startVertex = startVertex;
-        analyse(false);
+        this(graph, new IntGraph<V, E>(graph), startVertex, false);
     }
 
     public TopOrder(DirectedGraph<V, E> graph, V startVertex, boolean isAcyclic) throws BadGraphException {
+        this(graph, new IntGraph<V, E>(graph), startVertex, isAcyclic);
+    }
+
+    /**
+     * @param graph       the graph
+     * @param intGraph    an int-indexed snapshot of {@code graph}
+     * @param startVertex the entry node
+     * @param isAcyclic   if true, throw an exception if the graph contains a cycle
+     * @throws BadGraphException if the graph is not reducible, or not acyclic as expected
+     */
+    public TopOrder(DirectedGraph<V, E> graph, IntGraph<V, E> intGraph, V startVertex, boolean isAcyclic)
+            throws BadGraphException {
         this.graph = graph;
+        this.intGraph = intGraph;
         this.startVertex = startVertex;
         analyse(isAcyclic);
     }
 
+    /* Detect back edges using DFS search, i.e. edges to a node on the DFS stack.
+     * This works for reducible graphs only. Like jgrapht's DepthFirstIterator, nodes
+     * not reachable from the start vertex are traversed afterwards.
+     */
+    private int[] detectBackEdges() {
+        int n = intGraph.nodeCount();
+        int[] succOffset = intGraph.getSuccessorOffsets();
+        int[] succEdges = intGraph.getSuccessorEdges();
+        int[] edgeTarget = intGraph.getEdgeTargets();
+
+        /* 0: white, 1: on stack, 2: finished */
+        byte[] color = new byte[n];
+        int[] order = new int[n];
+        int count = 0;
+        int[] stack = new int[n];
+        int[] next = new int[n];
+        isBackEdge = new boolean[intGraph.edgeCount()];
+
+        int start = intGraph.getNodeId(startVertex);
+        for (int root = -1; root < n; root++) {
+            int r = root < 0 ? start : root;
+            if (color[r] != 0) continue;
+            int sp = 0;
+            color[r] = 1;
+            order[count++] = r;
+            stack[sp] = r;
+            next[sp] = succOffset[r];
+            sp++;
+            while (sp > 0) {
+                int v = stack[sp - 1];
+                if (next[sp - 1] == succOffset[v + 1]) {
+                    color[v] = 2;
+                    sp--;
+                    continue;
+                }
+                int e = succEdges[next[sp - 1]++];
+                int w = edgeTarget[e];
+                if (color[w] == 1) {
+                    isBackEdge[e] = true;
+                    backEdges.add(intGraph.getEdge(e));
+                } else if (color[w] == 0) {
+                    color[w] = 1;
+                    order[count++] = w;
+                    stack[sp] = w;
+                    next[sp] = succOffset[w];
+                    sp++;
+                }
+            }
+        }
+        return order;
+    }
+
     private void analyse(boolean isAcyclic) throws BadGraphException {
         backEdges = new ArrayList<E>();
-        dfsOrder = new ArrayList<V>();
-        BackEdgeDetector iter = new BackEdgeDetector(graph, startVertex);
-        while (iter.hasNext()) iter.next();
+        int[] order = detectBackEdges();
+        dfsOrder = new ArrayList<V>(order.length);
+        for (int v : order) dfsOrder.add(intGraph.getNode(v));
         if (isAcyclic && !backEdges.isEmpty()) {
             E e1 = backEdges.get(0);
             List<E> cycle = BellmanFordShortestPath.findPathBetween(graph, graph.getEdgeTarget(e1), graph.getEdgeSource(e1));
             throw new BadGraphException("Expected acyclic graph, but found cycle: " + cycle);
         }
-        this.dominators = new Dominators<V, E>(this.graph, dfsOrder);
+        this.dominators = new Dominators<V, E>(this.graph, intGraph, order);
         checkReducible();
     }
 
+    /**
+     * @return the int-indexed snapshot of the graph used by this analysis
+     */
+    public IntGraph<V, E> getIntGraph() {
+        return intGraph;
+    }
+
+    /**
+     * @param edge the id of an edge in {@link #getIntGraph()}
+     * @return true if the edge is a back-edge
+     */
+    public boolean isBackEdge(int edge) {
+        return isBackEdge[edge];
+    }
+
     /**
      * An edge B->A is a back-edge if A dominates B w.r.t. <code>Entry</code>.
      *
@@ -123,20 +174,46 @@ public class TopOrder<V, E> {
     public List<V> getTopologicalTraversal() {
         if (topTraversal != null) return topTraversal;
         topTraversal = new LinkedList<V>();
-        Set<E> edgeSet = new HashSet<E>(graph.edgeSet());
-        for (E backEdge : this.getBackEdges()) {
-            edgeSet.remove(backEdge);
-        }
-        DirectedSubgraph<V, E> subgraph =
-                new DirectedSubgraph<V, E>(graph, graph.vertexSet(), edgeSet);
-        TopologicalOrderIterator<V, E> iter =
-                new TopologicalOrderIterator<V, E>((DirectedGraph<V, E>) subgraph);
-        while (iter.hasNext()) {
-            topTraversal.add(iter.next());
+        for (int v : getTopologicalOrder()) {
+            topTraversal.add(intGraph.getNode(v));
         }
         return topTraversal;
     }
 
+    /**
+     * Compute a topological order of the back-edge free graph (Kahn's algorithm). As with
+     * jgrapht's TopologicalOrderIterator, nodes without predecessors are processed in FIFO order.
+     *
+     * @return node ids of {@link #getIntGraph()} in topological order
+     */
+    public int[] getTopologicalOrder() {
+        int n = intGraph.nodeCount();
+        int[] predOffset = intGraph.getPredecessorOffsets();
+        int[] predEdges = intGraph.getPredecessorEdges();
+        int[] succOffset = intGraph.getSuccessorOffsets();
+        int[] succEdges = intGraph.getSuccessorEdges();
+        int[] edgeTarget = intGraph.getEdgeTargets();
+
+        int[] inDegree = new int[n];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        for (int v = 0; v < n; v++) {
+            for (int k = predOffset[v]; k < predOffset[v + 1]; k++) {
+                if (!isBackEdge[predEdges[k]]) inDegree[v]++;
+            }
+            if (inDegree[v] == 0) queue[tail++] = v;
+        }
+        while (head < tail) {
+            int v = queue[head++];
+            for (int k = succOffset[v]; k < succOffset[v + 1]; k++) {
+                int e = succEdges[k];
+                if (isBackEdge[e]) continue;
+                if (--inDegree[edgeTarget[e]] == 0) queue[tail++] = edgeTarget[e];
+            }
+        }
+        return tail == n ? queue : Arrays.copyOf(queue, tail);
+    }
+
     /**
      * Get a DFS traversal of the graph
      *
@@ -206,15 +283,8 @@ public class TopOrder<V, E> {
      */
     public static <V, E> Set<V> findDeadNodes(DirectedGraph<V, E> graph, V entry) {
         /* CAVEAT: Do not use ConnectivityInspector; it considers graphs as undirected */
-        BellmanFordShortestPath<V, E> bfsp = new BellmanFordShortestPath<V, E>(graph, entry);
-        Set<V> deads = new HashSet<V>();
-        for (V node : graph.vertexSet()) {
-            if (node == entry) continue;
-            if (bfsp.getPathEdgeList(node) == null) {
-                deads.add(node);
-            }
-        }
-        return deads;
+        IntGraph<V, E> g = new IntGraph<V, E>(graph);
+        return unmarkedNodes(g, g.dfsPreOrder(g.getNodeId(entry)));
     }
 
     /**
@@ -226,17 +296,18 @@ public class TopOrder<V, E> {
      */
     public static <V, E> Set<V> findStuckNodes(DirectedGraph<V, E> graph, V exit) {
         /* CAVEAT: Do not use ConnectivityInspector; it considers graphs as undirected */
-        BellmanFordShortestPath<V, E> bfspRev = new BellmanFordShortestPath<V, E>(
-                new EdgeReversedGraph<V, E>(graph),
-                exit);
-        Set<V> stucks = new HashSet<V>();
-        for (V node : graph.vertexSet()) {
-            if (node == exit) continue;
-            if (bfspRev.getPathEdgeList(node) == null) {
-                stucks.add(node);
-            }
+        IntGraph<V, E> g = new IntGraph<V, E>(new EdgeReversedGraph<V, E>(graph));
+        return unmarkedNodes(g, g.dfsPreOrder(g.getNodeId(exit)));
+    }
+
+    private static <V, E> Set<V> unmarkedNodes(IntGraph<V, E> g, int[] marked) {
+        boolean[] reached = new boolean[g.nodeCount()];
+        for (int v : marked) reached[v] = true;
+        Set<V> nodes = new HashSet<V>();
+        for (int v = 0; v < reached.length; v++) {
+            if (!reached[v]) nodes.add(g.getNode(v));
         }
-        return stucks;
+        return nodes;
     }
 
     /**
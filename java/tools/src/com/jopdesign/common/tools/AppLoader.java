@@ -25,13 +25,28 @@ import com.jopdesign.common.ClassInfo;
 import com.jopdesign.common.logger.LogConfig;
 import org.apache.log4j.Logger;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
+ * Loads the transitive hull of a set of classes.
+ * <p>
+ * If more than one thread is used, class files are parsed in the background while the loader
+ * is still discovering references. Classes are always added to AppInfo in the order in which
+ * they are discovered, i.e. the result does not depend on the number of threads.
+ * An optional {@link ClassReferenceIndex} caches the referenced classes of each class file.
+ * </p>
+ *
  * @author Stefan Hepp (stefan@stefant.org)
  */
 public class AppLoader {
@@ -39,22 +54,43 @@ public class AppLoader {
     private final List<ClassInfo> queue;
     private final Set<String> visited;
     private final List<ClassInfo> newClasses;
+    private final Set<String> newClassNames;
     private boolean followNatives;
+    private int threads;
+    private ClassReferenceIndex index;
 
     private static final Logger logger = Logger.getLogger(LogConfig.LOG_LOADING + ".AppLoader");
 
     public AppLoader() {
-        queue = new LinkedList<ClassInfo>();
-        visited = new HashSet<String>();
-        newClasses = new LinkedList<ClassInfo>();
-        followNatives = true;
+        this(true);
     }
 
     public AppLoader(boolean followNatives) {
         queue = new LinkedList<ClassInfo>();
         visited = new HashSet<String>();
         newClasses = new LinkedList<ClassInfo>();
+        newClassNames = new HashSet<String>();
         this.followNatives = followNatives;
+        this.threads = 1;
+    }
+
+    /**
+     * @param threads the number of threads used to parse class files, or 0 to use one thread per processor.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @param indexFile the file to cache the class references in, or null to disable the index.
+     */
+    public void setIndexFile(File indexFile) {
+        if (indexFile == null) {
+            index = null;
+        } else {
+            index = new ClassReferenceIndex(indexFile);
+            index.load();
+        }
     }
 
     public boolean doProcessNatives() {
@@ -69,6 +105,7 @@ public class AppLoader {
         queue.clear();
         visited.clear();
         newClasses.clear();
+        newClassNames.clear();
     }
 
     /**
@@ -110,20 +147,56 @@ public class AppLoader {
             logger.info("Starting transitive hull loader");
         }
 
-        while (!queue.isEmpty()) {
-            ClassInfo next = queue.remove(0);
+        AppInfo appInfo = AppInfo.getSingleton();
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, new LoaderThreadFactory()) : null;
+
+        try {
+            // We process the queue level by level: first find all references of the current
+            // level, start parsing the new classes, then load them in the same order as a
+            // sequential loader would.
+            while (!queue.isEmpty()) {
+                List<ClassInfo> level = new ArrayList<ClassInfo>(queue);
+                queue.clear();
 
-            if (logger.isDebugEnabled()) {
-                logger.debug("Processing class: "+next.getClassName());
-            }
+                List<Set<String>> references = new ArrayList<Set<String>>(level.size());
+                Set<String> unknown = new LinkedHashSet<String>();
+                for (ClassInfo next : level) {
+                    Set<String> names = findReferencedClasses(next);
+                    references.add(names);
+                    for (String name : names) {
+                        if (!appInfo.hasClassInfo(name)) unknown.add(name);
+                    }
+                }
+                if (executor != null) {
+                    appInfo.prefetchClasses(unknown, executor);
+                    if (index != null) {
+                        appInfo.prefetchClasses(predictReferences(unknown), executor);
+                    }
+                }
 
-            int found = 0;
-            for (String name : ConstantPoolReferenceFinder.findReferencedClasses(next)) {
-                found += processClassName(name);
-            }
+                for (int i = 0; i < level.size(); i++) {
+                    ClassInfo next = level.get(i);
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Processing class: "+next.getClassName());
+                    }
 
-            if (logger.isDebugEnabled()) {
-                logger.debug("Found "+found+" new classes in " +next.getClassName());
+                    int found = 0;
+                    for (String name : references.get(i)) {
+                        found += processClassName(name);
+                    }
+
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Found "+found+" new classes in " +next.getClassName());
+                    }
+                }
+            }
+        } finally {
+            appInfo.clearPrefetchedClasses();
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            if (index != null) {
+                index.store();
             }
         }
 
@@ -132,6 +205,48 @@ public class AppLoader {
         }
     }
 
+    /**
+     * Get the referenced classes in lexical order. The index is only used for classes loaded by
+     * this loader, since other classes may have been modified since they have been loaded.
+     */
+    private Set<String> findReferencedClasses(ClassInfo classInfo) {
+        String className = classInfo.getClassName();
+        String digest = null;
+        if (index != null && newClassNames.contains(className)) {
+            digest = AppInfo.getSingleton().getClassFileDigest(className);
+        }
+        if (digest != null) {
+            Set<String> names = index.getReferences(className, digest);
+            if (names != null) return names;
+        }
+        Set<String> names = new TreeSet<String>(ConstantPoolReferenceFinder.findReferencedClasses(classInfo));
+        if (digest != null) {
+            index.putReferences(className, digest, names);
+        }
+        return names;
+    }
+
+    /**
+     * Use the index to guess which classes will be loaded after the given classes, so that they
+     * can be parsed ahead of time. Wrong guesses only cost some parsing time.
+     */
+    private Collection<String> predictReferences(Collection<String> classNames) {
+        AppInfo appInfo = AppInfo.getSingleton();
+        Set<String> predicted = new LinkedHashSet<String>();
+        LinkedList<String> todo = new LinkedList<String>(classNames);
+        Set<String> seen = new HashSet<String>(classNames);
+        while (!todo.isEmpty()) {
+            String name = todo.removeFirst();
+            for (String ref : index.getLastReferences(name)) {
+                if (seen.add(ref) && !appInfo.hasClassInfo(ref)) {
+                    predicted.add(ref);
+                    todo.add(ref);
+                }
+            }
+        }
+        return predicted;
+    }
+
     private int processClassName(String className) {
         AppInfo appInfo = AppInfo.getSingleton();
         int cnt = 0;
@@ -143,6 +258,7 @@ public class AppLoader {
             cls = appInfo.loadClass(className);
             if ( cls != null ) {
                 newClasses.add(cls);
+                newClassNames.add(className);
                 cnt++;
             }
         }
@@ -170,4 +286,15 @@ public class AppLoader {
         visited.add(classInfo.getClassName());
     }    
 
+    private static class LoaderThreadFactory implements ThreadFactory {
+        private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = factory.newThread(r);
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
 }
@@ -0,0 +1,150 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ *   see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jopdesign.common.tools;
+
+import com.jopdesign.common.logger.LogConfig;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An on-disk index of the classes referenced by a class file, keyed by the SHA-1 digest of the class file.
+ * It is used by the {@link AppLoader} to skip scanning unchanged classes and to predict which classes
+ * will be needed next.
+ *
+ * File format is one line per class:
+ * <fqclassname> <digest> <referenced-fqclassname> ...
+ */
+public class ClassReferenceIndex {
+
+    private static class Entry {
+        private final String digest;
+        private final Set<String> references;
+
+        private Entry(String digest, Set<String> references) {
+            this.digest = digest;
+            this.references = references;
+        }
+    }
+
+    private static final Logger logger = Logger.getLogger(LogConfig.LOG_LOADING + ".ClassReferenceIndex");
+
+    private final File storage;
+    private final Map<String, Entry> entries;
+    private boolean modified;
+
+    public ClassReferenceIndex(File storage) {
+        this.storage = storage;
+        this.entries = new HashMap<String, Entry>();
+        this.modified = false;
+    }
+
+    /**
+     * @param className the fully qualified class name
+     * @param digest the digest of the class file of the class
+     * @return the referenced classes, or null if the index has no entry for this version of the class file
+     */
+    public Set<String> getReferences(String className, String digest) {
+        Entry e = entries.get(className);
+        if (e == null || !e.digest.equals(digest)) return null;
+        return e.references;
+    }
+
+    /**
+     * Get the references of a class, regardless of the version of the class file.
+     *
+     * @param className the fully qualified class name
+     * @return the referenced classes of the last indexed version of the class, or an empty set.
+     */
+    public Set<String> getLastReferences(String className) {
+        Entry e = entries.get(className);
+        if (e == null) return Collections.emptySet();
+        return e.references;
+    }
+
+    public void putReferences(String className, String digest, Collection<String> references) {
+        Entry e = entries.get(className);
+        if (e != null && e.digest.equals(digest)) return;
+        entries.put(className, new Entry(digest, Collections.unmodifiableSet(new TreeSet<String>(references))));
+        modified = true;
+    }
+
+    public void load() {
+        if (!storage.exists()) return;
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(storage));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] tokens = line.trim().split(" ");
+                    if (tokens.length < 2) continue;
+                    Set<String> refs = new TreeSet<String>();
+                    for (int i = 2; i < tokens.length; i++) {
+                        refs.add(tokens[i]);
+                    }
+                    entries.put(tokens[0], new Entry(tokens[1], Collections.unmodifiableSet(refs)));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Error reading class index file "+storage+", ignoring it: "+e.getMessage());
+            entries.clear();
+        }
+        modified = false;
+    }
+
+    public void store() {
+        if (!modified) return;
+        List<String> names = new ArrayList<String>(entries.keySet());
+        Collections.sort(names);
+        try {
+            PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(storage, false)));
+            for (String name : names) {
+                Entry e = entries.get(name);
+                writer.print(name);
+                writer.print(' ');
+                writer.print(e.digest);
+                for (String ref : e.references) {
+                    writer.print(' ');
+                    writer.print(ref);
+                }
+                writer.println();
+            }
+            writer.close();
+            modified = false;
+        } catch (IOException e) {
+            logger.error("Error writing class index file "+storage+": "+e.getMessage(), e);
+        }
+    }
+}
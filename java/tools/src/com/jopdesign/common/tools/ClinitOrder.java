@@ -100,7 +100,7 @@ public class ClinitOrder implements ClassVisitor {
         ClassInfo classInfo = method.getClassInfo();
         ConstantPoolGen cpoolgen = method.getConstantPoolGen();
 
-        InstructionList il = method.getCode().getInstructionList();
+        InstructionList il = method.getCode().getInstructionList(false, false);
         InstructionFinder f = new InstructionFinder(il);
 
         // TODO can we encounter an empty instruction list?
@@ -344,6 +344,7 @@ public class ConstantPoolRebuilder implements ClassVisitor {
             for (InstructionHandle ih : il.getInstructionHandles()) {
                 ih.getInstruction().accept(iv);
             }
+            methodInfo.getCode().notifyModified();
 
             updateAttributes(methodInfo, methodGen.getCodeAttributes());
         }
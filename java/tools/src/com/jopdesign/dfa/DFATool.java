@@ -396,7 +396,7 @@ public class DFATool extends EmptyTool<AppEventHandler> {
 
         analysis.initialize(main, context);
 
-        InstructionHandle entry = prologue.getCode().getInstructionList().getStart();
+        InstructionHandle entry = prologue.getCode().getInstructionList(false, false).getStart();
         interpreter.interpret(context, entry, new HashMap(), true);
 
         /* cache results if requested */
@@ -415,7 +415,7 @@ public class DFATool extends EmptyTool<AppEventHandler> {
         context.setMethodInfo(start);
 
         analysis.initialize(start, context);
-        InstructionHandle entry = start.getCode().getInstructionList().getStart();
+        InstructionHandle entry = start.getCode().getInstructionList(false, false).getStart();
         interpreter.interpret(context, entry, new HashMap<InstructionHandle, ContextMap<K, V>>(), true);
 
         return analysis.getResult();
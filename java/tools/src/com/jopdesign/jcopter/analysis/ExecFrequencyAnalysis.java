@@ -22,9 +22,9 @@ package com.jopdesign.jcopter.analysis;
 
 import com.jopdesign.common.AppInfo;
 import com.jopdesign.common.MethodInfo;
+import com.jopdesign.common.code.AnalysisResultCache;
 import com.jopdesign.common.code.CallGraph;
 import com.jopdesign.common.code.CallGraph.ContextEdge;
-import com.jopdesign.common.code.ControlFlowGraph;
 import com.jopdesign.common.code.ControlFlowGraph.BasicBlockNode;
 import com.jopdesign.common.code.ControlFlowGraph.CFGEdge;
 import com.jopdesign.common.code.ControlFlowGraph.CFGNode;
@@ -177,11 +177,12 @@ public class ExecFrequencyAnalysis extends ExecFrequencyProvider {
     public long getExecFrequency(ExecutionContext context, InstructionHandle ih) {
         MethodInfo method = context.getMethodInfo();
 
-        // By loading the CFG, loopbounds are attached to the blocks if the WCA tool is loaded
-        ControlFlowGraph cfg = method.getCode().getControlFlowGraph(false);
+        // By loading the CFG, loopbounds are attached to the blocks if the WCA tool is loaded.
+        // We use the shared CFG, so that the loops are only computed once per modification of the method.
+        AnalysisResultCache cache = method.getAppInfo().getAnalysisResultCache();
 
-        LoopColoring<CFGNode,CFGEdge> lc = cfg.getLoopColoring();
-        BasicBlockNode node = cfg.getHandleNode(ih, true);
+        LoopColoring<CFGNode,CFGEdge> lc = cache.getLoopColoring(method);
+        BasicBlockNode node = cache.getHandleNode(method, ih);
         if (node == null) {
             // Since the CFG does not represent the complete code, there might be some instructions without block
             // (exception handlers, ..)
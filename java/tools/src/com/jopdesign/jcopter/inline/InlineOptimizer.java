@@ -178,6 +178,7 @@ public class InlineOptimizer implements CodeOptimizer {
 
             // Not really needed, but makes debugging easier
             il.setPositions();
+            code.notifyModified();
 
             // finally, we need to update the analyses
             for (CallGraph cg : analyses.getCallGraphs()) {
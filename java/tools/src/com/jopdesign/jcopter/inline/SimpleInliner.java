@@ -564,7 +564,7 @@ public class SimpleInliner extends AbstractOptimizer {
         // delta = new prologue + inlined code + epilogue - old prologue - invokesite
         int delta = 0;
 
-        InstructionHandle[] il = invokee.getCode().getInstructionList().getInstructionHandles();
+        InstructionHandle[] il = invokee.getCode().getInstructionList(false, false).getInstructionHandles();
         InstructionHandle ih = il[inlineData.getInlineStart()];
         while (ih != null) {
             Instruction instr = ih.getInstruction();
@@ -644,7 +644,7 @@ public class SimpleInliner extends AbstractOptimizer {
 
         // Replace the invoke
         MethodCode invokeeCode = invokee.getCode();
-        InstructionList il = invokeeCode.getInstructionList();
+        InstructionList il = invokeeCode.getInstructionList(false, false);
         InstructionHandle start = invokeeCode.getInstructionHandle(inlineData.getInlineStart());
 
         int cnt = il.getLength() - inlineData.getInlineStart();
@@ -667,6 +667,7 @@ public class SimpleInliner extends AbstractOptimizer {
 
         // insert epilogue
         invokerCode.getInstructionList().insert(end, inlineData.getEpilogue());
+        invokerCode.notifyModified();
 
         // If we inlined another invokesite, find the new invokesite and return it
         if (inlineData.getInvokeSite() != null) {
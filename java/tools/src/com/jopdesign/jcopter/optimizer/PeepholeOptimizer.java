@@ -58,6 +58,8 @@ public class PeepholeOptimizer extends AbstractOptimizer {
 
         // BCEL Example optimization
         optimizeBoolExpressions(il);
+
+        method.getCode().notifyModified();
     }
 
     @Override
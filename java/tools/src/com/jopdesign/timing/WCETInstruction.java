@@ -2025,6 +2025,88 @@ public class WCETInstruction {
 		
 		return exec_time;
 	}
+
+	/**
+	 * Get the static memory access pattern of an instruction for CMP timing.
+	 * The pattern can be passed to {@link #calcExecTime(int, int[])}.
+	 *
+	 * @param opcode the (JOP) opcode of the instruction
+	 * @return the microcode pattern, or null if the instruction does not access memory or if
+	 *         its pattern depends on the method cache (invoke, return) or is not modelled.
+	 */
+	public static int[] getMemoryAccessPattern(int opcode) {
+		if (!CMP_WCET) return null;
+		switch (opcode) {
+		case org.apache.bcel.Constants.LDC: return ldc.microcode;
+		case org.apache.bcel.Constants.LDC_W: return ldc_w.microcode;
+		case org.apache.bcel.Constants.LDC2_W: return ldc2_w.microcode;
+		case org.apache.bcel.Constants.IALOAD:
+		case org.apache.bcel.Constants.FALOAD:
+		case org.apache.bcel.Constants.AALOAD:
+		case org.apache.bcel.Constants.BALOAD:
+		case org.apache.bcel.Constants.CALOAD:
+		case org.apache.bcel.Constants.SALOAD: return xaload.microcode;
+		case org.apache.bcel.Constants.IASTORE:
+		case org.apache.bcel.Constants.FASTORE:
+		case org.apache.bcel.Constants.BASTORE:
+		case org.apache.bcel.Constants.CASTORE:
+		case org.apache.bcel.Constants.SASTORE: return xastore.microcode;
+		case org.apache.bcel.Constants.GETSTATIC:
+		case GETSTATIC_REF: return getstaticx.microcode;
+		case org.apache.bcel.Constants.PUTSTATIC: return putstatic.microcode;
+		case org.apache.bcel.Constants.GETFIELD: return getfield.microcode;
+		case org.apache.bcel.Constants.PUTFIELD: return putfield.microcode;
+		case org.apache.bcel.Constants.ARRAYLENGTH: return arraylength.microcode;
+		case JOPSYS_RD:
+		case JOPSYS_RDMEM: return jopsys_rdx.microcode;
+		case JOPSYS_WR:
+		case JOPSYS_WRMEM: return jopsys_wrx.microcode;
+		default: return null;
+		}
+	}
+
+	/**
+	 * Check if the execution time of an instruction depends on the position in the
+	 * arbitration period, i.e. if {@link #getCycles(int, boolean, int)} returns a worst-case
+	 * value for the CMP configuration.
+	 *
+	 * @param opcode the (JOP) opcode of the instruction
+	 * @return true if the instruction accesses main memory through the arbiter
+	 */
+	public static boolean isArbitrated(int opcode) {
+		if (getMemoryAccessPattern(opcode) != null) return true;
+		switch (opcode) {
+		case org.apache.bcel.Constants.LALOAD:
+		case org.apache.bcel.Constants.DALOAD:
+		case org.apache.bcel.Constants.LASTORE:
+		case org.apache.bcel.Constants.DASTORE:
+		case org.apache.bcel.Constants.IRETURN:
+		case org.apache.bcel.Constants.LRETURN:
+		case org.apache.bcel.Constants.FRETURN:
+		case org.apache.bcel.Constants.DRETURN:
+		case org.apache.bcel.Constants.ARETURN:
+		case org.apache.bcel.Constants.RETURN:
+		case org.apache.bcel.Constants.INVOKEVIRTUAL:
+		case org.apache.bcel.Constants.INVOKESPECIAL:
+		case org.apache.bcel.Constants.INVOKESTATIC:
+		case org.apache.bcel.Constants.INVOKEINTERFACE:
+		case JOPSYS_INVAL:
+		case JOPSYS_INT2EXT:
+		case JOPSYS_EXT2INT:
+		case GETFIELD_REF:
+		case GETSTATIC_LONG:
+		case PUTSTATIC_LONG:
+		case GETFIELD_LONG:
+		case PUTFIELD_LONG:
+		case JOPSYS_GETFIELD:
+		case JOPSYS_PUTFIELD:
+		case JOPSYS_GETSTATIC:
+		case JOPSYS_PUTSTATIC:
+			return true;
+		default:
+			return false;
+		}
+	}
 	
 	/* Useful for cache analysis */
 	private static final int _HIDDEN_LOAD_CYCLES[][] = 
@@ -50,10 +50,68 @@ public class JOPCmpTimingTable extends JOPTimingTable {
 	}
 
 
-	/* TODO: improve WCET by taking basic blocks into account */
-	// @Override
-	// public long getCycles(List<Instruction> opcodes) {
-	// }
+	/**
+	 * Compute the WCET of an instruction sequence, tracking the possible positions in the
+	 * TDMA arbitration period.
+	 * <p>
+	 * For every position the sequence may start at, we keep the maximum execution time needed to
+	 * reach each position in the arbitration period. Instructions without memory access only shift
+	 * the position, memory instructions with a static access pattern are simulated starting from each
+	 * possible position. Consecutive memory accesses therefore only wait for the slot as long as
+	 * they actually have to, instead of each being charged the worst-case alignment.
+	 * Instructions whose access pattern is not known (invoke, return, ..) are charged their
+	 * worst-case time and we lose all knowledge about the position.
+	 * </p>
+	 */
+	// the arbitration model is only available in WCETInstruction yet, see the FIXME above
+	@SuppressWarnings("deprecation")
+	@Override
+	public long getLocalCycles(int[] opcodes) {
+		int period = WCETInstruction.getArbiterPeriod();
+		// maxCycles[p] is the max. execution time up to now if we are at position p, or -1 if unreachable
+		long[] maxCycles = new long[period];
+		long[] next = new long[period];
+		// we may start at any position of the arbitration period
+		Arrays.fill(maxCycles, 0);
+
+		for(int opcode : opcodes) {
+			int[] pattern = JopInstr.isInJava(opcode) ? null : WCETInstruction.getMemoryAccessPattern(opcode);
+
+			if(pattern != null) {
+				Arrays.fill(next, -1);
+				for(int pos = 0; pos < period; pos++) {
+					if(maxCycles[pos] < 0) continue;
+					int exec = WCETInstruction.calcExecTime(pos, pattern);
+					int nextPos = (pos + exec) % period;
+					next[nextPos] = Math.max(next[nextPos], maxCycles[pos] + exec);
+				}
+			} else if(JopInstr.isInJava(opcode) || WCETInstruction.isArbitrated(opcode)) {
+				long max = max(maxCycles) + getLocalCycles(opcode);
+				Arrays.fill(next, max);
+			} else {
+				int exec = (int) getLocalCycles(opcode);
+				for(int pos = 0; pos < period; pos++) {
+					next[(pos + exec) % period] = maxCycles[pos];
+				}
+				for(int pos = 0; pos < period; pos++) {
+					if(next[pos] >= 0) next[pos] += exec;
+				}
+			}
+
+			long[] tmp = maxCycles;
+			maxCycles = next;
+			next = tmp;
+		}
+		return max(maxCycles);
+	}
+
+	private static long max(long[] values) {
+		long max = 0;
+		for(long v : values) {
+			max = Math.max(max, v);
+		}
+		return max;
+	}
 
 	public static void main(String argv[]) {
 		String head = "JOP CMP Timing Table on " + new Date();
@@ -48,6 +48,22 @@ public abstract class JOPTimingTable extends TimingTable<JOPInstructionInfo> {
 	public long getLocalCycles(int opcode) {
 		return getCycles(opcode, false, 0);
 	}
+
+	/**
+	 * Get the execution time of a sequence of instructions (e.g. a basic block), excluding
+	 * method cache effects. Timing models where the execution time of an instruction depends on
+	 * its predecessors may return less than the sum of the local cycles of the single instructions.
+	 *
+	 * @param opcodes the (JOP) opcodes of the instructions, in execution order
+	 * @return the execution time of the instruction sequence
+	 */
+	public long getLocalCycles(int[] opcodes) {
+		long cycles = 0;
+		for(int opcode : opcodes) {
+			cycles += getLocalCycles(opcode);
+		}
+		return cycles;
+	}
 	public abstract long getCycles(int opcode, boolean isHit, int words);
 
 	protected JOPTimingTable(MicropathTable mpt) {
@@ -0,0 +1,1631 @@
+/*
+  This file is part of JOP, the Java Optimized Processor
+    see <http://www.jopdesign.com/>
+
+  This program is free software: you can redistribute it and/or modify
+  it under the terms of the GNU General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.jopdesign.tools;
+
+import com.jopdesign.timing.jop.SingleCoreTiming;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StreamTokenizer;
+
+/**
+ * Cycle accurate simulation of JOP on the microcode level.
+ * <p>
+ * Instead of interpreting the bytecodes, JopMicroSim executes the
+ * microcode generated by Jopa (mem_rom.dat, mem_ram.dat, and
+ * mem_jtbl.dat) and updates the registers of the VHDL implementation
+ * clock by clock: fetch, decode, stack (with the on-chip stack cache),
+ * bcfetch (with the jump table and the bytecode cache), the method
+ * cache (mcache), the memory management unit (mem_sc), the SimpCon
+ * SRAM interface (sc_sram32), and the system device (sc_sys).
+ * All other IO devices are delegated to the IOSimMin instance.
+ * <p>
+ * The configuration is the one of jopcyc (jpc_width=12, block_bits=4,
+ * no object cache, no scratchpad memory) at 100 MHz. The microcode
+ * has to be assembled for simulation:
+ * <pre>
+ *   make gen_mem -e ASM_SRC=jvm JVM_TYPE=SIMULATION
+ * </pre>
+ * With -Dvalidate=true the execution time of each bytecode (from one
+ * jump table dispatch to the next) is checked against the microcode
+ * timing table of jvmgen.asm.
+ *
+ */
+public class JopMicroSim extends JopSim {
+
+	/** address bits of the bytecode cache */
+	static final int JPC_WIDTH = 12;
+	/** 2^BLOCK_BITS method cache blocks */
+	static final int BLOCK_BITS = 4;
+	static final int BLOCKS = 1<<BLOCK_BITS;
+	/** block size in words */
+	static final int BLOCK_SHIFT = JPC_WIDTH-2-BLOCK_BITS;
+	static final int TAG_MASK = (1<<18)-1;
+	static final int METHOD_SIZE_BITS = 10;
+	static final int SC_ADDR_SIZE = 23;
+	static final int CLK_FREQ = 100000000;
+	static final int DIV_VAL = CLK_FREQ/1000000-1;
+	static final int CPU_CNT = 1;
+	/** interrupts of sc_sys: timer plus two IO interrupts */
+	static final int NUM_INT = 3;
+
+	static final int PC_MASK = Jopa.ROM_LEN-1;
+	static final int RAM_MASK = Jopa.RAM_LEN-1;
+	static final int JPC_MASK = (1<<(JPC_WIDTH+1))-1;
+	static final int JBC_MASK = (1<<JPC_WIDTH)-1;
+	static final int BC_ADDR_MASK = (1<<(JPC_WIDTH-2))-1;
+	static final int BC_LEN_MASK = (1<<METHOD_SIZE_BITS)-1;
+	static final int SC_MASK = (1<<SC_ADDR_SIZE)-1;
+
+	static final int NXT_BIT = 0x2<<Instruction.INSTLEN;
+	static final int OPD_BIT = 0x1<<Instruction.INSTLEN;
+	static final int INSTR_MASK = (1<<Instruction.INSTLEN)-1;
+
+	// microcode instructions that are decoded directly
+	static final int I_ADD = 0x004;
+	static final int I_SUB = 0x005;
+	static final int I_STVP = 0x018;
+	static final int I_STJPC = 0x019;
+	static final int I_STAR = 0x01a;
+	static final int I_STSP = 0x01b;
+	static final int I_DUP = 0x0f8;
+	static final int I_NOP = 0x100;
+	static final int I_WAIT = 0x101;
+	static final int I_JBR = 0x102;
+
+	// mem_sc states
+	static final int IDL = 0, RD1 = 1, WR1 = 2, PS1 = 3, GS1 = 4,
+		BC_CC = 5, BC_R1 = 6, BC_W = 7, BC_RN = 8, BC_WR = 9, BC_WL = 10,
+		IALD0 = 11, IALD1 = 12, IALD2 = 13, IALD23 = 14, IALD3 = 15, IALD4 = 16,
+		IASRD = 17, IALRB = 18, IAST0 = 19, IASWB = 20, IASRB = 21, IASST = 22,
+		GF0 = 23, GF1 = 24, GF2 = 25, GF3 = 26, GF4 = 27,
+		PF0 = 28, PF1 = 29, PF2 = 30, PF3 = 31, PF4 = 32,
+		CP0 = 33, CP1 = 34, CP2 = 35, CP3 = 36, CP4 = 37, CPSTOP = 38,
+		LAST = 39, NPEXC = 40, ABEXC = 41, IAEXC = 42, EXCW = 43;
+
+	// mcache states
+	static final int MC_IDLE = 0, MC_S1 = 1, MC_S2 = 2;
+
+	// sc_sram32 states
+	static final int M_IDL = 0, M_RD1 = 1, M_RD2 = 2, M_WR1 = 3, M_WR2 = 4;
+
+	// exception types of sc_sys
+	static final int EXC_SPOV = 1;
+	static final int EXC_NP = 2;
+	static final int EXC_AB = 3;
+
+	//
+	//	Jopa output
+	//
+	int[] rom;
+	int[] jtbl;
+	int intAddress;
+	int excAddress;
+	int[] stackRam;
+
+	/** SRAM read wait states (ram_cnt-1), a write takes one more */
+	int ramWs;
+
+	//
+	//	fetch
+	//
+	int upc, brdly, jpdly, ir, romQ;
+	boolean pcwait;
+
+	//
+	//	decode (registered outputs)
+	//
+	boolean br, jmp;
+	boolean selSub, selAmux, enaA, selBmux, selMmux, enaB;
+	boolean enaVp, enaJpc, enaAr;
+	int selLog, selShf, selLmux, selRmux;
+	boolean mulWr, wrDly;
+	// mem_in
+	boolean miRd, miWr, miAddrWr, miBcRd, miStidx, miIaload, miIastore;
+	boolean miGetfield, miPutfield, miPutref, miGetstatic, miPutstatic;
+	boolean miRdc, miRdf, miWrf, miCopy;
+
+	//
+	//	stack
+	//
+	int a, b;
+	int usp, spp, spm, vp0, vp1, vp2, vp3, ar, vpadd;
+	int opddly, immval;
+	boolean spOv;
+	int stkRdAddr, stkWrAddrDly;
+	boolean stkWrEnaDly;
+
+	//
+	//	bcfetch
+	//
+	int jpc, jpcBr, jinstr, tp, jmpAddr, jopd;
+	boolean intPend, excPend;
+	int[] jbc = new int[1<<(JPC_WIDTH-2)];
+	int jbcRdAddr;
+
+	//
+	//	mcache
+	//
+	int mcState;
+	boolean mcRdy, mcInCache;
+	int mcBlockAddr, mcNxt;
+	int[] mcTag = new int[BLOCKS];
+	boolean[] mcClrVal = new boolean[BLOCKS];
+
+	//
+	//	mem_sc
+	//
+	int msState;
+	int addrReg, index, value;
+	boolean wasAStore, wasAStidx, wasAHwo;
+	int bcLen, bcAddr;
+	int baseReg, posReg, offsetReg;
+	boolean translateBit, cpStopbit;
+	boolean putrefReg;
+	int destLevelReg;
+	boolean bcWrEna, incAddrReg, decLen, stateRd, stateWr, stateBsy;
+	boolean nullPointer, boundsError;
+
+	//
+	//	jopcpu: SimpCon mux, extension register, multiplier
+	//
+	int nextMuxMem, dlyMuxMem;
+	boolean isPipelined;
+	int exr;
+	int mulP, mulA, mulB;
+
+	//
+	//	sc_sram32
+	//
+	int memState, waitState, memCnt;
+	int ramAddr, memRdData;
+	boolean rdDataEna;
+
+	//
+	//	scio: select register and sc_sys
+	//
+	int ioSelReg, ioRdData;
+	int sysRdData;
+	int clockCnt, preScale, usCnt, timerCnt;
+	boolean timerDly, lockRequest, lockRequestDly;
+	boolean intEna, sysExcPend, irqDly, excDly, clearall, dlyBlock;
+	int excType, swreq, intMask, intFlags, intnr, dlyTimeout;
+
+	//
+	//	bytecode statistics
+	//
+	long statStart;
+	int lastOpcode;
+	long lastDispatch;
+	boolean lastHit;
+	int lastWords;
+	int mcHitCnt, mcMissCnt;
+	long[] bcCycles = new long[256];
+	int[] bcMin = new int[256];
+	int[] bcMax = new int[256];
+	int[] bcViolations = new int[256];
+	long[] bcBound = new long[256];
+	SingleCoreTiming timing;
+
+	/**
+	 * Create a microcode level simulation.
+	 * @param binaryFile the .jop file
+	 * @param ioSim simulation of the IO devices other than the system device
+	 * @param maxInstructions number of bytecodes to simulate, 0 for no limit
+	 * @param microcodeDir directory with the output of Jopa
+	 * @param ramWs read wait states of the SRAM
+	 * @throws IOException if the output of Jopa cannot be read
+	 */
+	public JopMicroSim(String binaryFile, IOSimMin ioSim, int maxInstructions,
+			File microcodeDir, int ramWs) throws IOException {
+
+		super(binaryFile, ioSim, maxInstructions);
+		this.ramWs = ramWs;
+		rom = readDat(new File(microcodeDir, "mem_rom.dat"), Jopa.ROM_LEN);
+		stackRam = readDat(new File(microcodeDir, "mem_ram.dat"), Jopa.RAM_LEN);
+		int[] tbl = readDat(new File(microcodeDir, "mem_jtbl.dat"), 256+2);
+		jtbl = new int[256];
+		System.arraycopy(tbl, 0, jtbl, 0, 256);
+		intAddress = tbl[256];
+		excAddress = tbl[256+1];
+	}
+
+	/**
+	 * Read a memory initialization file as generated by Jopa.
+	 */
+	static int[] readDat(File file, int len) throws IOException {
+
+		int[] data = new int[len];
+		StreamTokenizer in = new StreamTokenizer(new FileReader(file));
+		int i = 0;
+		while (in.nextToken()!=StreamTokenizer.TT_EOF && i<len) {
+			if (in.ttype==StreamTokenizer.TT_NUMBER) {
+				data[i++] = (int) (long) in.nval;
+			}
+		}
+		if (i!=len) {
+			throw new IOException(file+": expected "+len+" values, found "+i);
+		}
+		return data;
+	}
+
+	/**
+	 * Check the bytecode execution times against the timing table of the
+	 * microcode. The table is configured with the wait states of the
+	 * simulated SRAM.
+	 * @param asmFile the preprocessed microcode (jvmgen.asm)
+	 */
+	public void loadTimingTable(File asmFile) throws IOException {
+
+		timing = SingleCoreTiming.getTimingTable(asmFile);
+		timing.configureWaitStates(ramWs, ramWs+1);
+	}
+
+	/**
+	 * Reset of the processor. The main memory is loaded with the .jop file
+	 * as in the ModelSim simulation.
+	 */
+	void start() {
+
+		if (io.cpuId==0) {
+			heap = empty_heap;
+			for (int i=0; i<heap; ++i) mem[i] = mem_load[i];
+		}
+
+		// during reset pc_mux is 1 and the ROM address is registered
+		upc = 0;
+		romQ = rom[1];
+		ir = rom[1] & INSTR_MASK;
+		pcwait = false;
+		brdly = jpdly = 0;
+
+		br = jmp = false;
+		selSub = selAmux = enaA = selBmux = selMmux = enaB = false;
+		enaVp = enaJpc = enaAr = false;
+		selLog = selShf = selLmux = selRmux = 0;
+		mulWr = wrDly = false;
+		miRd = miWr = miAddrWr = miBcRd = miStidx = miIaload = miIastore = false;
+		miGetfield = miPutfield = miPutref = miGetstatic = miPutstatic = false;
+		miRdc = miRdf = miWrf = miCopy = false;
+
+		a = b = 0;
+		usp = 128;
+		spp = 129;
+		spm = 127;
+		vp0 = vp1 = vp2 = vp3 = ar = vpadd = 0;
+		opddly = immval = 0;
+		spOv = false;
+		stkRdAddr = stkWrAddrDly = 0;
+		stkWrEnaDly = false;
+
+		jpc = jpcBr = jinstr = tp = jmpAddr = jopd = 0;
+		intPend = excPend = false;
+		jbcRdAddr = 0;
+
+		mcState = MC_IDLE;
+		mcRdy = true;
+		mcInCache = false;
+		mcBlockAddr = mcNxt = 0;
+		for (int i=0; i<BLOCKS; ++i) {
+			mcTag[i] = 0;
+			mcClrVal[i] = false;
+		}
+
+		msState = IDL;
+		addrReg = index = value = 0;
+		wasAStore = wasAStidx = wasAHwo = false;
+		bcLen = bcAddr = 0;
+		baseReg = posReg = offsetReg = 0;
+		translateBit = cpStopbit = false;
+		putrefReg = false;
+		destLevelReg = 0;
+		bcWrEna = incAddrReg = decLen = stateRd = stateWr = stateBsy = false;
+		nullPointer = boundsError = false;
+
+		nextMuxMem = dlyMuxMem = 0;
+		isPipelined = false;
+		exr = 0;
+		mulP = mulA = mulB = 0;
+
+		memState = M_IDL;
+		waitState = 0xf;
+		memCnt = 0;
+		ramAddr = memRdData = 0;
+		rdDataEna = false;
+
+		ioSelReg = ioRdData = sysRdData = 0;
+		clockCnt = usCnt = timerCnt = 0;
+		preScale = DIV_VAL;
+		timerDly = lockRequest = lockRequestDly = false;
+		intEna = sysExcPend = irqDly = excDly = clearall = dlyBlock = false;
+		excType = swreq = intMask = intFlags = intnr = dlyTimeout = 0;
+
+		clkCnt = 0;
+		lastDispatch = 0;
+		resetStat();
+	}
+
+	/**
+	 * Reset all counters. Invoked on reset and by a write to IO_PERFCNT
+	 * before main() is invoked.
+	 */
+	void resetStat() {
+
+		super.resetStat();
+		statStart = clkCnt;
+		// the bytecode in execution is not counted
+		lastOpcode = -1;
+		mcHitCnt = mcMissCnt = 0;
+		for (int i=0; i<256; ++i) {
+			bcCycles[i] = 0;
+			bcMin[i] = Integer.MAX_VALUE;
+			bcMax[i] = 0;
+			bcViolations[i] = 0;
+			bcBound[i] = -1;
+		}
+	}
+
+	/**
+	 * Simulate until the next bytecode is dispatched.
+	 */
+	void interpret() {
+
+		if (maxInstr!=0 && instrCnt>=maxInstr) {
+			exit = true;
+			return;
+		}
+		while (!exit && !clock()) {
+			;
+		}
+	}
+
+	/**
+	 * Simulate one clock cycle. All combinational signals are evaluated
+	 * from the current register values first. The registers are updated
+	 * afterwards, in an order where no unit reads a register of another
+	 * unit after that register has already got its next value.
+	 * @return true if a bytecode is dispatched in this cycle
+	 */
+	boolean clock() {
+
+		//
+		//	stack: write of the stack RAM at the falling edge, the read
+		//	address is registered, the output is not
+		//
+		int mmux = selMmux ? b : a;
+		if (stkWrEnaDly) {
+			stackRam[stkWrAddrDly] = mmux;
+		}
+		int ramDout = stackRam[stkRdAddr];
+		boolean zf = a==0;
+		boolean nf = a<0;
+		boolean eq = a==b;
+		long sum = selSub ? (long) b - (long) a : (long) b + (long) a;
+		boolean lt = sum<0;
+
+		//
+		//	SimpCon input from the selected slave
+		//
+		int muxMem = isPipelined ? dlyMuxMem : nextMuxMem;
+		int scRdyCnt, scRdData;
+		if (muxMem==3) {
+			if (ioSelReg==0) {
+				scRdyCnt = ((lockRequest && !lockRequestDly) || dlyBlock) ? 3 : 0;
+				scRdData = sysRdData;
+			} else {
+				scRdyCnt = 0;
+				scRdData = ioRdData;
+			}
+		} else if (muxMem==2) {
+			// no scratchpad memory
+			scRdyCnt = 0;
+			scRdData = 0;
+		} else {
+			scRdyCnt = memCnt;
+			scRdData = memRdData;
+		}
+		boolean bsy = wrDly || scRdyCnt==3 ||
+			(msState!=IALRB && msState!=LAST && msState!=GF4 && stateBsy);
+
+		//
+		//	sc_sys interrupt and exception requests
+		//
+		int pending = intFlags & intMask;
+		int prioint = 0;
+		for (int i=NUM_INT-1; i>=0; --i) {
+			if ((pending & (1<<i))!=0) {
+				prioint = i;
+				break;
+			}
+		}
+		boolean irqGate = pending!=0 && intEna;
+		boolean irqIn = irqGate && !irqDly;
+		boolean excIn = sysExcPend && !excDly;
+		boolean timerEqu = usCnt==timerCnt;
+		boolean timerInt = timerEqu && !timerDly;
+
+		//
+		//	bcfetch and jump table
+		//
+		int jbcQ = (jbc[jbcRdAddr>>>2] >>> ((jbcRdAddr & 3)*8)) & 0xff;
+		boolean jmpBc = ir==I_JBR && branch(tp, zf, nf, eq, lt);
+		boolean intReq = intPend && intEna;
+		int jpaddr = excPend ? excAddress : (intReq ? intAddress : jtbl[jbcQ]);
+		int bcopd = jopd;
+
+		//
+		//	fetch
+		//
+		boolean jfetch = (romQ & NXT_BIT)!=0;
+		boolean jopdfetch = (romQ & OPD_BIT)!=0;
+		int pcMux;
+		if (jfetch) {
+			pcMux = jpaddr;
+		} else if (br) {
+			pcMux = brdly;
+		} else if (jmp) {
+			pcMux = jpdly;
+		} else if (pcwait && bsy) {
+			pcMux = upc;
+		} else {
+			pcMux = (upc+1) & PC_MASK;
+		}
+		boolean intTaken = intReq && jfetch;
+		boolean excTaken = excPend && jfetch;
+
+		//
+		//	decode: stack addresses and write enable
+		//
+		int grp = ir>>>6;
+		boolean isPop = grp==0 || grp==1 || grp==6 || grp==7;
+		boolean isPush = grp==2 || grp==3;
+		boolean wrEna = isPush || (ir>>>5)==0x01 || (ir>>>3)==0x02;
+		int dir = ir & 0x1f;
+		int selRda = 6;
+		if ((ir>>>3)==0x1d) selRda = ir & 7;	// ld, ldn, ldmi
+		if ((ir>>>5)==0x05) selRda = 7;			// ldm
+		if ((ir>>>5)==0x06) {					// ldi
+			selRda = 7;
+			dir |= 0x20;
+		}
+		int selWra = 6;
+		if ((ir>>>3)==0x02) selWra = ir & 7;	// st, stn, stmi
+		if ((ir>>>5)==0x01) selWra = 7;			// stm
+		int smux = usp;
+		if (isPop) smux = spm;
+		if (isPush) smux = spp;
+		if (ir==I_STSP) smux = a & RAM_MASK;
+
+		//
+		//	stack: execute stage
+		//
+		int log;
+		switch (selLog) {
+			case 0: log = b; break;
+			case 1: log = a & b; break;
+			case 2: log = a | b; break;
+			default: log = a ^ b; break;
+		}
+		int lmux;
+		switch (selLmux) {
+			case 0: lmux = log; break;
+			case 1: lmux = shift(b, a & 0x1f, selShf); break;
+			case 2: lmux = ramDout; break;
+			case 3: lmux = immval; break;
+			case 4: lmux = exr; break;
+			default:
+				lmux = selRmux==0 ? usp : (selRmux==1 ? vp0 : jpc);
+				break;
+		}
+		int imux;
+		switch (ir & 3) {
+			case 0: imux = opddly & 0xff; break;
+			case 1: imux = (byte) opddly; break;
+			case 2: imux = opddly & 0xffff; break;
+			default: imux = (short) opddly; break;
+		}
+		int amux = selAmux ? lmux : (int) sum;
+		int rdaddr = stackAddr(selRda, dir, usp);
+		int wraddr = stackAddr(selWra, dir, spp);
+
+		//
+		//	mem_sc: SimpCon address, read, and write
+		//
+		int bcstart = mcBlockAddr<<BLOCK_SHIFT;
+		boolean mcRdyOut = mcRdy;
+		boolean mcInCacheOut = mcInCache;
+		int scAddr;
+		if (miRd || miRdc || miRdf) {
+			scAddr = translate(a & SC_MASK);
+		} else if (miIaload) {
+			scAddr = translate(b & SC_MASK);
+		} else if (translateBit) {
+			scAddr = (addrReg+offsetReg) & SC_MASK;
+		} else {
+			scAddr = addrReg;
+		}
+		boolean scRd = miRd || miRdc || miRdf || miIaload || stateRd;
+		boolean scWr = miWr || miWrf || stateWr;
+		int scWrData = (miWr || miWrf) ? a : value;
+		int slave = scAddr>>>(SC_ADDR_SIZE-2);
+		boolean ioRd = scRd && slave==3;
+		boolean ioWr = scWr && slave==3;
+
+		//
+		//	statistics on the bytecode level
+		//
+		if (msState==BC_CC && mcRdyOut) {
+			lastHit = mcInCacheOut;
+			lastWords = bcLen;
+			if (mcInCacheOut) {
+				++mcHitCnt;
+			} else {
+				++mcMissCnt;
+			}
+		}
+		if (jfetch) {
+			int opcode = excPend ? SYS_EXC : (intReq ? SYS_INT : jbcQ);
+			if (lastOpcode>=0) {
+				record(lastOpcode, (int) (clkCnt-lastDispatch), lastHit, lastWords);
+			}
+			lastOpcode = opcode;
+			lastDispatch = clkCnt;
+			lastHit = false;
+			lastWords = -1;
+			++instrCnt;
+			++bcStat[opcode];
+			if (JopSim.log) {
+				System.out.println(clkCnt+" jpc="+((jpc-1) & JPC_MASK)+" "+
+					JopInstr.name(opcode)+" A="+a+" B="+b+" sp="+usp);
+			}
+		}
+		++clkCnt;
+
+		//
+		//	sc_sram32
+		//
+		clockSram(scRd && slave<2, scWr && slave<2, scAddr, scWrData);
+
+		//
+		//	scio
+		//
+		int ioSel = (scAddr>>>4) & 3;
+		if (ioRd || ioWr) {
+			ioSelReg = ioSel;
+		}
+		if (ioSel!=0) {
+			int ioAddr = scAddr | ~SC_MASK;
+			if (ioRd) {
+				ioRdData = io.read(ioAddr);
+			}
+			if (ioWr) {
+				io.write(ioAddr, scWrData);
+			}
+		}
+		clockSys(ioRd && ioSel==0, ioWr && ioSel==0, scAddr & 0xf, scWrData,
+			intTaken, excTaken, prioint, irqGate, timerEqu, timerInt);
+
+		//
+		//	jopcpu: SimpCon mux select, extension register, multiplier
+		//
+		if (scRd || scWr) {
+			dlyMuxMem = nextMuxMem;
+			nextMuxMem = slave;
+			if (scRdyCnt==1) {
+				isPipelined = true;
+			}
+		}
+		if (scRdyCnt==0) {
+			isPipelined = false;
+		}
+		switch (ir & 0xf) {
+			case 0: exr = scRdData; break;
+			case 1: exr = mulP; break;
+			default: exr = bcstart<<2; break;
+		}
+		if (mulWr) {
+			mulP = 0;
+			mulA = a;
+			mulB = b;
+		} else {
+			if ((mulB & 1)!=0) mulP += mulA;
+			if ((mulB & 2)!=0) mulP += mulA<<1;
+			mulA <<= 2;
+			mulB >>>= 2;
+		}
+
+		//
+		//	mcache, reads mem_sc registers
+		//
+		clockMcache();
+
+		//
+		//	bcfetch, the jbc is written from mem_sc registers
+		//
+		if (irqIn) {
+			intPend = true;
+		} else if (intTaken) {
+			intPend = false;
+		}
+		if (excIn) {
+			excPend = true;
+		} else if (excTaken) {
+			excPend = false;
+		}
+		if (bcWrEna) {
+			jbc[bcAddr] = Integer.reverseBytes(scRdData);
+		}
+		int jbcMux;
+		if (jmpBc) {
+			jbcMux = jmpAddr;
+		} else if (jfetch || jopdfetch) {
+			jbcMux = (jpc+1) & JPC_MASK;
+		} else {
+			jbcMux = jpc;
+		}
+		jbcRdAddr = jbcMux & JBC_MASK;
+		switch (jinstr) {
+			case 0xa5: tp = 15; break;	// if_acmpeq
+			case 0xa6: tp = 0; break;	// if_acmpne
+			case 0xc6: tp = 9; break;	// ifnull
+			case 0xc7: tp = 10; break;	// ifnonnull
+			default: tp = jinstr & 0xf; break;
+		}
+		jmpAddr = (jpcBr + (((jopd & 0x1f)<<8) | jbcQ)) & JPC_MASK;
+		if (jfetch) {
+			jpcBr = jpc;
+			jinstr = jbcQ;
+		}
+		jpc = enaJpc ? a & JPC_MASK : jbcMux;
+		jopd = (jopdfetch ? (jopd & 0xff)<<8 : jopd & 0xff00) | jbcQ;
+
+		//
+		//	mem_sc
+		//
+		clockMemSc(a, b, bcopd, scRdyCnt, scRdData, bcstart, mcRdyOut, mcInCacheOut);
+
+		//
+		//	stack
+		//
+		if (usp==RAM_MASK-16) {
+			spOv = true;
+		}
+		usp = smux;
+		spp = (smux+1) & RAM_MASK;
+		spm = (smux-1) & RAM_MASK;
+		if (enaVp) {
+			vp0 = a & RAM_MASK;
+			vp1 = (a+1) & RAM_MASK;
+			vp2 = (a+2) & RAM_MASK;
+			vp3 = (a+3) & RAM_MASK;
+		}
+		if (enaAr) {
+			ar = a & RAM_MASK;
+		}
+		if (enaB) {
+			b = selBmux ? ramDout : a;
+		}
+		if (enaA) {
+			a = amux;
+		}
+		vpadd = (vp0 + (bcopd & 0x7f)) & RAM_MASK;
+		opddly = bcopd;
+		immval = imux;
+		stkRdAddr = rdaddr;
+		stkWrAddrDly = wraddr;
+		stkWrEnaDly = wrEna;
+
+		//
+		//	decode
+		//
+		clockDecode(zf, isPop, isPush);
+
+		//
+		//	fetch
+		//
+		brdly = (upc + ((ir<<26)>>26)) & PC_MASK;
+		jpdly = (upc + ((ir<<23)>>23)) & PC_MASK;
+		upc = pcMux;
+		ir = romQ & INSTR_MASK;
+		pcwait = ir==I_WAIT;
+		romQ = rom[pcMux];
+
+		return jfetch;
+	}
+
+	/**
+	 * Branch condition of bcfetch for jbr.
+	 */
+	static boolean branch(int tp, boolean zf, boolean nf, boolean eq, boolean lt) {
+
+		switch (tp) {
+			case 9: return zf;				// ifeq, ifnull
+			case 10: return !zf;			// ifne, ifnonnull
+			case 11: return nf;				// iflt
+			case 12: return !nf;			// ifge
+			case 13: return !zf && !nf;		// ifgt
+			case 14: return zf || nf;		// ifle
+			case 15: return eq;				// if_icmpeq, if_acmpeq
+			case 0: return !eq;				// if_icmpne, if_acmpne
+			case 1: return lt;				// if_icmplt
+			case 2: return !lt;				// if_icmpge
+			case 3: return !eq && !lt;		// if_icmpgt
+			case 4: return eq || lt;		// if_icmple
+			case 7: return true;			// goto
+			default: return false;
+		}
+	}
+
+	/**
+	 * The barrel shifter: ushr, shl, and shr.
+	 */
+	static int shift(int din, int off, int shtyp) {
+
+		switch (shtyp) {
+			case 1: return din << off;
+			case 2: return din >> off;
+			default: return din >>> off;
+		}
+	}
+
+	/**
+	 * Read and write address mux of the stack RAM.
+	 */
+	int stackAddr(int sel, int dir, int sp) {
+
+		switch (sel) {
+			case 0: return vp0;
+			case 1: return vp1;
+			case 2: return vp2;
+			case 3: return vp3;
+			case 4: return vpadd;
+			case 5: return ar;
+			case 6: return sp;
+			default: return dir;
+		}
+	}
+
+	/**
+	 * Address translation of mem_sc for the copy unit.
+	 */
+	int translate(int addr) {
+
+		if (addr>=baseReg && addr<posReg) {
+			return (addr+offsetReg) & SC_MASK;
+		}
+		return addr;
+	}
+
+	/**
+	 * sc_sram32: SRAM with ramWs read and ramWs+1 write wait states
+	 * and a pipeline level of 2.
+	 */
+	void clockSram(boolean rd, boolean wr, int addr, int wrData) {
+
+		if (rdDataEna) {
+			memRdData = mem[ramAddr % MAX_MEM];
+		}
+		if (rd || wr) {
+			ramAddr = addr;
+		}
+		if (rd) {
+			++rdMemCnt;
+		}
+		if (wr) {
+			mem[addr % MAX_MEM] = wrData;
+			++wrMemCnt;
+		}
+
+		int next = memState;
+		if (memState==M_RD1 || memState==M_WR1) {
+			if (waitState==2) {
+				next = memState==M_RD1 ? M_RD2 : M_WR2;
+			}
+		} else {
+			if (memState!=M_IDL) {
+				next = M_IDL;
+			}
+			if (rd) {
+				next = ramWs==0 ? M_RD2 : M_RD1;
+			} else if (wr) {
+				next = M_WR1;
+			}
+		}
+		rdDataEna = next==M_RD2;
+
+		int cnt = 3;
+		if (next==M_IDL) {
+			cnt = 0;
+		} else if (waitState<4) {
+			cnt = (waitState-1) & 3;
+		}
+		int ws = (waitState-1) & 0xf;
+		if (rd) {
+			ws = (ramWs+1) & 0xf;
+			cnt = ramWs<3 ? ramWs+1 : 3;
+		}
+		if (wr) {
+			ws = (ramWs+2) & 0xf;
+			cnt = ramWs+1<3 ? ramWs+2 : 3;
+		}
+		memState = next;
+		waitState = ws;
+		memCnt = cnt;
+	}
+
+	/**
+	 * sc_sys: clock, timer, interrupts, exceptions, and the lock.
+	 */
+	void clockSys(boolean rd, boolean wr, int addr, int wrData,
+			boolean ackIrq, boolean ackExc, int prioint,
+			boolean irqGate, boolean timerEqu, boolean timerInt) {
+
+		if (rd) {
+			switch (addr) {
+				case 0: sysRdData = clockCnt; break;
+				case 1: sysRdData = usCnt; break;
+				case 2: sysRdData = intnr; break;
+				case 4: sysRdData = excType; break;
+				case 5: sysRdData = lockRequest ? 1 : 0; break;
+				case 6: sysRdData = io.cpuId; break;
+				case 7: sysRdData = 0; break;
+				case 11: sysRdData = CPU_CNT; break;
+				default: break;
+			}
+		}
+
+		// the interrupt state of each interrupt source
+		int intreq = (timerInt ? 1 : 0) | swreq;
+		int ack = ackIrq ? 1<<prioint : 0;
+		if (clearall) {
+			intFlags = 0;
+		} else {
+			intFlags = (intFlags | intreq) & ~ack;
+		}
+
+		irqDly = irqGate;
+		excDly = sysExcPend;
+		if (ackIrq) {
+			intnr = prioint;
+		}
+		timerDly = timerEqu;
+		boolean lockDly = lockRequest;
+
+		int oldClockCnt = clockCnt;
+		++clockCnt;
+		if (preScale==0) {
+			preScale = DIV_VAL;
+			++usCnt;
+		} else {
+			--preScale;
+		}
+
+		sysExcPend = false;
+		swreq = 0;
+		clearall = false;
+		if (ackIrq || ackExc) {
+			intEna = false;
+		}
+		if (spOv) {
+			excType = (excType & ~7) | EXC_SPOV;
+			sysExcPend = true;
+		}
+		if (nullPointer) {
+			excType = (excType & ~7) | EXC_NP;
+			sysExcPend = true;
+		}
+		if (boundsError) {
+			excType = (excType & ~7) | EXC_AB;
+			sysExcPend = true;
+		}
+		if (wr) {
+			switch (addr) {
+				case 0:
+					intEna = (wrData & 1)!=0;
+					break;
+				case 1:
+					timerCnt = wrData;
+					break;
+				case 2:
+					swreq = (1<<wrData) & ((1<<NUM_INT)-1);
+					break;
+				case 4:
+					excType = wrData & 0xff;
+					sysExcPend = true;
+					break;
+				case 5:
+					lockRequest = (wrData & 1)!=0;
+					break;
+				case 8:
+					intMask = wrData & ((1<<NUM_INT)-1);
+					break;
+				case 9:
+					clearall = true;
+					break;
+				case 10:
+					dlyTimeout = wrData;
+					dlyBlock = true;
+					break;
+				case 12:
+					// as in JopSim: reset the statistics before main()
+					resetStat();
+					break;
+				default:
+					break;
+			}
+		}
+		if (dlyTimeout==oldClockCnt) {
+			dlyBlock = false;
+		}
+		lockRequestDly = lockDly;
+	}
+
+	/**
+	 * mcache: tag lookup and allocation of the method cache blocks.
+	 */
+	void clockMcache() {
+
+		int useAddr = addrReg & TAG_MASK;
+		int nrOfBlks = (bcLen>>>BLOCK_SHIFT) & (BLOCKS-1);
+		int nxt = mcNxt;
+
+		switch (mcState) {
+			case MC_IDLE:
+				mcRdy = true;
+				if (miBcRd) {
+					mcRdy = false;
+					mcState = MC_S1;
+				}
+				break;
+			case MC_S1:
+				mcInCache = false;
+				mcState = MC_S2;
+				mcBlockAddr = mcNxt;
+				for (int i=0; i<BLOCKS; ++i) {
+					if (mcTag[i]==useAddr) {
+						mcBlockAddr = i;
+						mcInCache = true;
+						mcState = MC_IDLE;
+					}
+				}
+				break;
+			case MC_S2:
+				for (int i=0; i<BLOCKS; ++i) {
+					if (mcClrVal[i]) {
+						mcTag[i] = 0;
+					}
+				}
+				mcTag[mcNxt] = useAddr;
+				mcState = MC_IDLE;
+				mcNxt = (mcNxt+nrOfBlks+1) & (BLOCKS-1);
+				break;
+		}
+		for (int i=0; i<BLOCKS; ++i) {
+			mcClrVal[(nxt+i) & (BLOCKS-1)] = i<=nrOfBlks;
+		}
+	}
+
+	/**
+	 * mem_sc: the memory management unit with the method cache load,
+	 * array and field access, and the copy unit. No object cache.
+	 */
+	void clockMemSc(int ain, int bin, int bcopd, int rdyCnt, int rdData,
+			int bcstart, boolean mcacheRdy, boolean mcacheInCache) {
+
+		int state = msState;
+
+		//
+		//	next address
+		//
+		int addrNext = addrReg;
+		boolean putrefNext = putrefReg;
+		int destLevel = destLevelReg;
+		if (incAddrReg) {
+			addrNext = (addrReg+1) & SC_MASK;
+		}
+		if (miAddrWr) {
+			addrNext = ain & SC_MASK;
+		}
+		if (miPutstatic || miGetstatic) {
+			addrNext = wasAStidx ? index : bcopd & 0xffff;
+		}
+		if (miBcRd) {
+			addrNext = (ain>>>10) & TAG_MASK;
+		}
+		if (miIaload) {
+			addrNext = bin & SC_MASK;
+		}
+		if (miGetfield) {
+			addrNext = ain & SC_MASK;
+		}
+		if (miPutfield) {
+			addrNext = bin & SC_MASK;
+			destLevel = bin>>>(SC_ADDR_SIZE+2);
+		}
+		if (miPutref) {
+			putrefNext = true;
+		}
+		if (state==IAST0) {
+			addrNext = bin & SC_MASK;
+			destLevel = bin>>>(SC_ADDR_SIZE+2);
+		}
+		if (state==IALD3 || state==IALD23 || state==GF2 || state==PF3) {
+			addrNext = (rdData+index) & SC_MASK;
+		}
+		if (state==CP0) {
+			addrNext = posReg;
+		}
+		if (state==CP3) {
+			addrNext = (posReg+offsetReg) & SC_MASK;
+		}
+
+		//
+		//	next state
+		//
+		int valueLevel = value>>>(SC_ADDR_SIZE+2);
+		int next = state;
+		switch (state) {
+			case IDL:
+				if (miRd) {
+					next = RD1;
+				} else if (miWr) {
+					next = WR1;
+				} else if (miPutstatic) {
+					next = PS1;
+				} else if (miGetstatic) {
+					next = GS1;
+				} else if (miRdc) {
+					next = RD1;
+				} else if (miRdf) {
+					next = RD1;
+				} else if (miWrf) {
+					next = WR1;
+				} else if (miBcRd) {
+					next = BC_CC;
+				} else if (miIaload) {
+					next = IALD0;
+				} else if (miGetfield) {
+					next = GF0;
+				} else if (miPutfield) {
+					next = PF0;
+				} else if (miCopy) {
+					next = CP0;
+				} else if (miIastore) {
+					next = IAST0;
+				}
+				break;
+			case RD1:
+			case WR1:
+			case BC_WL:
+			case LAST:
+				if (rdyCnt<2) next = IDL;
+				break;
+			case PS1:
+				next = (putrefReg && valueLevel!=0) ? IAEXC : LAST;
+				break;
+			case GS1:
+				next = LAST;
+				break;
+			case BC_CC:
+				if (mcacheRdy) {
+					next = mcacheInCache ? IDL : BC_R1;
+				}
+				break;
+			case BC_R1:
+				next = BC_W;
+				break;
+			case BC_W:
+				if (rdyCnt!=3) next = BC_RN;
+				break;
+			case BC_RN:
+				next = BC_WR;
+				break;
+			case BC_WR:
+				if (bcLen==0) {
+					next = BC_WL;
+				} else {
+					next = rdyCnt!=3 ? BC_RN : BC_W;
+				}
+				break;
+			case IAST0:
+				next = IALD0;
+				break;
+			case IALD0:
+				if (addrReg==0) {
+					next = NPEXC;
+				} else if ((index & (1<<(SC_ADDR_SIZE-1)))!=0) {
+					next = ABEXC;
+				} else if (putrefReg && destLevelReg<valueLevel) {
+					next = IAEXC;
+				} else {
+					next = IALD1;
+					if (rdyCnt!=3 && !wasAStore) next = IALD2;
+				}
+				break;
+			case IALD1:
+				if (rdyCnt!=3) next = IALD2;
+				break;
+			case IALD2:
+				next = IALD3;
+				break;
+			case IALD23:
+			case IALD3:
+				next = IALD4;
+				if (wasAStore) {
+					next = IASWB;
+				} else if (rdyCnt!=3) {
+					next = IASRD;
+				}
+				break;
+			case IALD4:
+				if (rdyCnt!=3) next = IASRD;
+				break;
+			case IASRD:
+				next = IALRB;
+				break;
+			case IALRB:
+				if (index>=(rdData & SC_MASK) && rdyCnt!=0) {
+					next = ABEXC;
+				} else if (rdyCnt<2) {
+					next = IDL;
+				}
+				break;
+			case IASWB:
+				if (rdyCnt<2) next = IASRB;
+				break;
+			case IASRB:
+				next = index>=(rdData & SC_MASK) ? ABEXC : IASST;
+				break;
+			case IASST:
+				next = LAST;
+				break;
+			case GF0:
+				next = addrReg==0 ? NPEXC : GF1;
+				break;
+			case GF1:
+				if (rdyCnt<2) next = GF2;
+				break;
+			case GF2:
+				next = GF3;
+				break;
+			case GF3:
+				next = GF4;
+				break;
+			case GF4:
+				if (rdyCnt<2) next = IDL;
+				break;
+			case PF0:
+				next = PF1;
+				break;
+			case PF1:
+				if (addrReg==0) {
+					next = NPEXC;
+				} else if (putrefReg && destLevelReg<valueLevel) {
+					next = IAEXC;
+				} else {
+					next = PF2;
+				}
+				break;
+			case PF2:
+				if (rdyCnt<2) next = PF3;
+				break;
+			case PF3:
+				next = PF4;
+				break;
+			case PF4:
+				next = LAST;
+				break;
+			case CP0:
+				next = cpStopbit ? CPSTOP : CP1;
+				break;
+			case CP1:
+				next = CP2;
+				break;
+			case CP2:
+				if (rdyCnt<2) next = CP3;
+				break;
+			case CP3:
+				next = CP4;
+				break;
+			case CP4:
+				next = LAST;
+				break;
+			case CPSTOP:
+				next = IDL;
+				break;
+			case NPEXC:
+			case ABEXC:
+			case IAEXC:
+				next = EXCW;
+				break;
+			case EXCW:
+				if (rdyCnt==0) next = IDL;
+				break;
+		}
+
+		//
+		//	address, index, and bytecode registers
+		//
+		if (miBcRd) {
+			bcLen = ain & BC_LEN_MASK;
+		} else if (decLen) {
+			bcLen = (bcLen-1) & BC_LEN_MASK;
+		}
+		if (miIaload || miStidx) {
+			index = ain & SC_MASK;
+		}
+		if (miStidx) {
+			wasAStidx = true;
+		}
+		if (miGetfield || state==PF0) {
+			if (!wasAStidx) {
+				index = bcopd & 0xffff;
+			}
+		}
+		if (miIastore || miPutfield || miPutstatic) {
+			value = ain;
+		}
+		if (state==IAST0) {
+			index = ain & SC_MASK;
+		}
+		int oldBase = baseReg;
+		int oldPos = posReg;
+		if (miCopy) {
+			baseReg = bin & SC_MASK;
+			posReg = ((ain & SC_MASK) + (bin & SC_MASK)) & SC_MASK;
+			cpStopbit = ain<0;
+		}
+		if (state==CP0) {
+			offsetReg = (bin - oldBase) & SC_MASK;
+		}
+		if (state==CP3) {
+			posReg = (oldPos+1) & SC_MASK;
+			value = rdData;
+		}
+		if (state==CPSTOP) {
+			posReg = oldBase;
+		}
+		translateBit = addrNext>=oldBase && addrNext<oldPos;
+		addrReg = addrNext;
+		putrefReg = putrefNext;
+		destLevelReg = destLevel;
+		if (miIaload || miGetfield) {
+			wasAStore = false;
+		} else if (miIastore || miPutfield) {
+			wasAStore = true;
+		}
+
+		//
+		//	state machine and registered outputs
+		//
+		msState = next;
+		bcWrEna = false;
+		incAddrReg = false;
+		decLen = false;
+		stateRd = false;
+		nullPointer = false;
+		boundsError = false;
+		stateWr = false;
+
+		switch (next) {
+			case IDL:
+				stateBsy = false;
+				putrefReg = false;
+				if (state==GF4 || state==LAST) {
+					wasAStidx = false;
+					wasAHwo = false;
+				}
+				break;
+			case RD1:
+			case WR1:
+			case LAST:
+				stateBsy = false;
+				break;
+			case PS1:
+				stateBsy = true;
+				stateWr = true;
+				break;
+			case GS1:
+				stateBsy = true;
+				stateRd = true;
+				break;
+			case BC_CC:
+				stateBsy = true;
+				break;
+			case BC_R1:
+				bcAddr = bcstart;
+				incAddrReg = true;
+				stateRd = true;
+				break;
+			case BC_RN:
+				incAddrReg = true;
+				decLen = true;
+				stateRd = true;
+				break;
+			case BC_WR:
+				bcWrEna = true;
+				break;
+			case IAST0:
+				stateBsy = true;
+				break;
+			case IALD0:
+				stateBsy = true;
+				incAddrReg = true;
+				if (state==IAST0) {
+					stateRd = true;
+				}
+				break;
+			case IALD2:
+			case IALD23:
+			case IASRD:
+				stateRd = true;
+				break;
+			case IASST:
+				stateWr = true;
+				break;
+			case GF0:
+				stateRd = true;
+				stateBsy = true;
+				break;
+			case GF3:
+				stateRd = true;
+				wasAHwo = rdData<0;
+				break;
+			case PF0:
+				stateBsy = true;
+				break;
+			case PF1:
+				stateRd = true;
+				break;
+			case PF4:
+				stateWr = true;
+				break;
+			case CP0:
+				stateBsy = true;
+				break;
+			case CP1:
+				stateRd = true;
+				break;
+			case CP4:
+				stateWr = true;
+				break;
+			case NPEXC:
+				nullPointer = true;
+				break;
+			case ABEXC:
+				boundsError = true;
+				break;
+			default:
+				break;
+		}
+		if (state==BC_WR) {
+			bcAddr = (bcAddr+1) & BC_ADDR_MASK;
+		}
+	}
+
+	/**
+	 * decode: the registered control signals for the stack and the
+	 * memory interface.
+	 */
+	void clockDecode(boolean zf, boolean isPop, boolean isPush) {
+
+		br = ((ir>>>6)==0x6 && zf) || ((ir>>>6)==0x7 && !zf);
+		jmp = (ir & 0x200)!=0;
+
+		miRd = miWr = miAddrWr = miBcRd = miStidx = miIaload = miIastore = false;
+		miGetfield = miPutfield = miPutref = miGetstatic = miPutstatic = false;
+		miRdc = miRdf = miWrf = miCopy = false;
+		mulWr = false;
+		wrDly = false;
+		if ((ir>>>4)==0x04) {		// a MMU or mul instruction
+			wrDly = true;
+			switch (ir & 0xf) {
+				case 0: mulWr = true; break;		// stmul
+				case 1: miAddrWr = true; break;		// stmwa
+				case 2: miRd = true; break;			// stmra
+				case 3: miWr = true; break;			// stmwd
+				case 4: miIaload = true; break;		// stald
+				case 5: miIastore = true; break;	// stast
+				case 6: miGetfield = true; break;	// stgf
+				case 7: miPutfield = true; break;	// stpf
+				case 15:							// stpfr
+					miPutfield = true;
+					miPutref = true;
+					break;
+				case 8: miCopy = true; break;		// stcp
+				case 9: miBcRd = true; break;		// stbcrd
+				case 10: miStidx = true; break;		// stidx
+				case 11: miPutstatic = true; break;	// stps
+				case 12: miRdc = true; break;		// stmrac
+				case 13: miRdf = true; break;		// stmraf
+				case 14: miWrf = true; break;		// stmwdf
+			}
+		}
+		if ((ir>>>4)==0x11) {		// a MMU instruction, no SP change
+			wrDly = true;
+			if ((ir & 0xf)==0) {
+				miGetstatic = true;			// stgs
+			}
+		}
+
+		selLog = (ir>>>2)==0 ? ir & 3 : 0;
+		selShf = ir & 3;
+		selSub = true;
+		selAmux = true;
+		enaA = true;
+		enaVp = ir==I_STVP;
+		enaJpc = ir==I_STJPC;
+		enaAr = ir==I_STAR;
+		if (ir==I_ADD) {
+			selSub = false;
+			selAmux = false;
+		} else if (ir==I_SUB) {
+			selAmux = false;
+		}
+		if (ir==I_DUP || ir==I_NOP || ir==I_WAIT || ir==I_JBR ||
+				(ir>=0x110 && ir<=0x113)) {
+			enaA = false;
+		}
+		if ((ir & 0x200)!=0) {		// jmp
+			enaA = false;
+		}
+
+		selLmux = 0;
+		if ((ir>>>2)==0x07) selLmux = 1;		// ushr, shl, shr
+		if ((ir>>>5)==0x05) selLmux = 2;		// ldm
+		if ((ir>>>5)==0x06) selLmux = 2;		// ldi
+		if ((ir>>>3)==0x1d) selLmux = 2;		// ld, ldn, ldmi
+		if ((ir>>>2)==0x3d) selLmux = 3;		// ld_opd_x
+		if ((ir>>>3)==0x1c) selLmux = 4;		// ld from mmu/mul
+		if ((ir>>>2)==0x3c) selLmux = 5;		// ldsp, ldvp, ldjpc
+
+		selBmux = isPop;
+		selMmux = !isPop;
+		enaB = isPush || isPop;
+		selRmux = ir & 3;
+	}
+
+	/**
+	 * Record the execution time of a bytecode and check it against
+	 * the timing table.
+	 */
+	void record(int opcode, int cycles, boolean hit, int words) {
+
+		bcCycles[opcode] += cycles;
+		if (cycles<bcMin[opcode]) bcMin[opcode] = cycles;
+		if (cycles>bcMax[opcode]) bcMax[opcode] = cycles;
+
+		if (timing!=null && timing.hasTimingInfo(opcode)) {
+			long bound;
+			try {
+				bound = timing.getCycles(opcode, hit, words);
+			} catch (AssertionError e) {
+				return;
+			}
+			if (bound>bcBound[opcode]) bcBound[opcode] = bound;
+			if (cycles>bound) {
+				++bcViolations[opcode];
+				if (JopSim.log) {
+					System.out.println(JopInstr.name(opcode)+": "+cycles+
+						" cycles, timing table: "+bound+" (hit="+hit+", words="+words+")");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Print execution statistics.
+	 */
+	void stat() {
+
+		long cycles = clkCnt-statStart;
+		System.out.println();
+		System.out.println("CPU "+io.cpuId+":");
+		System.out.println(instrCnt+" Instructions executed");
+		System.out.println(cycles+" clock cycles");
+		System.out.println("CPI: "+((float) cycles/instrCnt));
+		System.out.println("method cache: "+mcHitCnt+" hits, "+mcMissCnt+" misses");
+		System.out.println("memory word: "+rdMemCnt+" load "+wrMemCnt+" store");
+		System.out.println();
+		if (timing!=null) {
+			System.out.println("\tcount\tmin\tmax\tavg\ttable\tviolations\tbytecode");
+		} else {
+			System.out.println("\tcount\tmin\tmax\tavg\tbytecode");
+		}
+		int violations = 0;
+		for (int i=0; i<256; ++i) {
+			if (bcStat[i]==0 || bcMax[i]==0) continue;
+			// the last dispatched bytecode has not been recorded
+			long cnt = bcStat[i] - (i==lastOpcode ? 1 : 0);
+			if (cnt==0) continue;
+			String avg = String.valueOf((float) bcCycles[i]/cnt);
+			if (timing!=null) {
+				String bound = bcBound[i]<0 ? "-" : String.valueOf(bcBound[i]);
+				System.out.println("\t"+cnt+"\t"+bcMin[i]+"\t"+bcMax[i]+"\t"+avg+"\t"+
+					bound+"\t"+bcViolations[i]+"\t\t"+JopInstr.name(i));
+			} else {
+				System.out.println("\t"+cnt+"\t"+bcMin[i]+"\t"+bcMax[i]+"\t"+avg+"\t"+
+					JopInstr.name(i));
+			}
+			violations += bcViolations[i];
+		}
+		if (timing!=null) {
+			System.out.println();
+			System.out.println(violations+" executions exceed the microcode timing table");
+		}
+	}
+
+	/** simple runner: 1 cpu, no cache simulation */
+	public void runSim() {
+
+		start();
+		while (!exit) {
+			interpret();
+		}
+		if (stopped) {
+			System.out.println();
+			System.out.println("JopMicroSim stopped");
+		}
+		System.out.println();
+		stat();
+	}
+
+	public static void main(String args[]) {
+
+		log = System.getProperty("log", "false").equals("true");
+
+		int maxInstr = 0;
+		if (args.length==2) {
+			maxInstr = Integer.parseInt(args[1]);
+		} else if (args.length!=1) {
+			System.out.println("usage: java JopMicroSim [-Dmicrocode=dir] [-Dramws=n] [-Dvalidate=true] file.jop [max instr]");
+			System.exit(-1);
+		}
+
+		IOSimMin io;
+		String ioDevice = System.getProperty("ioclass");
+		if (ioDevice!=null) {
+			try {
+				io = (IOSimMin) Class.forName("com.jopdesign.tools."+ioDevice).newInstance();
+			} catch (Exception e) {
+				e.printStackTrace();
+				io = new IOSimMin();
+			}
+		} else {
+			io = new IOSimMin();
+		}
+		io.setCpuId(0);
+
+		File dir = new File(System.getProperty("microcode", "asm/generated"));
+		int ramWs = Integer.parseInt(System.getProperty("ramws", "1"));
+		JopMicroSim sim = null;
+		try {
+			sim = new JopMicroSim(args[0], io, maxInstr, dir, ramWs);
+			if (System.getProperty("validate", "false").equals("true")) {
+				sim.loadTimingTable(new File(dir, "jvmgen.asm"));
+			}
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			System.exit(-1);
+		}
+		js = new JopSim[] { sim };
+		sim.runSim();
+	}
+}
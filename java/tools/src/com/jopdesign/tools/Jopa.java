@@ -347,6 +347,9 @@ public class Jopa {
 
 	private int[] ramData = new int[RAM_LEN];
 
+	/** jump table: microcode address of each bytecode, followed by sys_int and sys_exc */
+	private int[] jtblData = new int[256+2];
+
 /**
 *	second pass.
 *	generate code and write rom.mif and ram.mif.
@@ -429,6 +432,9 @@ public class Jopa {
 			int noim_address = 0;
 			int int_address = 0;
 			int exc_address = 0;
+			for (int i=0; i<256; ++i) {
+				jtblData[i] = -1;
+			}
 
 			while (in.nextToken() != StreamTokenizer.TT_EOF) {
 				in.pushBack();
@@ -444,6 +450,7 @@ public class Jopa {
 					} else if (JopInstr.name(l.jinstr).equals("sys_noim")) {
 						noim_address = pc;
 					} else {
+						jtblData[l.jinstr] = pc;
 						jtbl.write("\t\twhen \""+bin(l.jinstr, 8) +
 							"\" => addr <= \""+bin(pc, ADDRBITS)+"\";" +
 							"\t--\t"+hex(pc,4)+"\t"+JopInstr.name(l.jinstr)+"\n");
@@ -631,6 +638,17 @@ public class Jopa {
 			}
 			rom_mem.close();
 
+			for (int i=0; i<256; ++i) {
+				if (jtblData[i]==-1) jtblData[i] = noim_address;
+			}
+			jtblData[256] = int_address;
+			jtblData[256+1] = exc_address;
+			PrintStream jtbl_mem = new PrintStream(new FileOutputStream(dstDir + "mem_jtbl.dat"));
+			for (int i=0; i<jtblData.length; ++i) {
+				jtbl_mem.println(jtblData[i]+" ");
+			}
+			jtbl_mem.close();
+
 
 
 //
@@ -0,0 +1,207 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jopdesign.wcet;
+
+import com.jopdesign.common.AppSetup;
+import com.jopdesign.common.MethodInfo;
+import com.jopdesign.common.config.Config;
+import com.jopdesign.dfa.DFATool;
+import com.jopdesign.wcet.analysis.AnalysisContextLocal;
+import com.jopdesign.wcet.analysis.GlobalAnalysis;
+import com.jopdesign.wcet.analysis.LocalAnalysis;
+import com.jopdesign.wcet.analysis.RecursiveAnalysis.RecursiveStrategy;
+import com.jopdesign.wcet.analysis.RecursiveWcetAnalysis;
+import com.jopdesign.wcet.analysis.WcetCost;
+import com.jopdesign.wcet.ipet.IPETConfig;
+import com.jopdesign.wcet.ipet.IPETConfig.StaticCacheApproximation;
+import com.jopdesign.wcet.scheduling.CyclicScheduleBuilder;
+import com.jopdesign.wcet.scheduling.FrameSchedule;
+import com.jopdesign.wcet.scheduling.PeriodicTask;
+import com.jopdesign.wcet.scheduling.ScheduleConfig;
+import com.jopdesign.wcet.scheduling.ScheduleConfig.HandlerSpec;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Offline synthesis of a cyclic executive schedule for a level 0 mission.
+ * <p>
+ * The WCET of {@code handleAsyncEvent()} of each periodic event handler is
+ * computed with the IPET analysis, then a minor/major frame schedule is
+ * synthesized with {@link CyclicScheduleBuilder}. The result is written as a
+ * class with a static {@code getSchedule(PeriodicEventHandler[])}, which the
+ * mission's {@code getSchedule()} can return.
+ * </p>
+ * Example:
+ * <pre>
+ * java com.jopdesign.wcet.CyclicScheduleSynthesis -cp ... --sched-clock 60 \
+ *   --sched-handlers test.cyclic.EventHandler:10000,test.cyclic.Filter:20000:2 \
+ *   --sched-class test.cyclic.CyclicMissionSchedule test.cyclic.CyclicSafelet
+ * </pre>
+ */
+public class CyclicScheduleSynthesis {
+
+    private static final Logger tlLogger = Logger.getLogger(WCETTool.LOG_WCET+".CyclicScheduleSynthesis");
+
+    public static void main(String[] args) {
+
+        Properties defaultProps = new Properties();
+        defaultProps.put("outdir", "java/target/wcet/${projectname}");
+
+        AppSetup setup = new AppSetup(defaultProps, false);
+        setup.setVersionInfo("1.0");
+        setup.setUsageInfo("CyclicScheduleSynthesis", "Cyclic executive schedule synthesis from WCET results");
+
+        WCETTool wcetTool = new WCETTool();
+        DFATool dfaTool = new DFATool();
+
+        setup.registerTool("dfa", dfaTool, true, false);
+        setup.registerTool("wcet", wcetTool);
+        setup.getConfig().addOptions(ScheduleConfig.scheduleOptions);
+
+        setup.addSourceLineOptions(false);
+        setup.initAndLoad(args, true, false, false);
+
+        if (setup.useTool("dfa")) {
+            wcetTool.setDfaTool(dfaTool);
+        }
+
+        ExecHelper exec = new ExecHelper(setup.getConfig(), tlLogger);
+        exec.dumpConfig();
+        exec.checkLibs();
+
+        CyclicScheduleSynthesis inst = new CyclicScheduleSynthesis(wcetTool, exec);
+        if (!inst.run()) exec.bail("Schedule synthesis failed");
+        else             exec.info("Schedule synthesis finished");
+    }
+
+    private final WCETTool project;
+    private final Config config;
+    private final ExecHelper exec;
+
+    public CyclicScheduleSynthesis(WCETTool wcetTool, ExecHelper exec) {
+        this.project = wcetTool;
+        this.config = wcetTool.getConfig();
+        this.exec = exec;
+    }
+
+    private boolean run() {
+        List<HandlerSpec> specs;
+        long clock;
+        try {
+            specs = ScheduleConfig.parseHandlers(config.getOption(ScheduleConfig.SCHED_HANDLERS));
+            clock = config.getOption(ScheduleConfig.SCHED_CLOCK);
+            // the WCET callgraph is rooted at the target method
+            config.setOption(ProjectConfig.TARGET_METHOD, specs.get(0).getMethodName());
+            project.setTopLevelLogger(exec.getExecLogger());
+            exec.info("Loading project");
+            project.initialize(project.getProjectConfig().doLoadLinkInfo(), true);
+        } catch (Exception e) {
+            exec.logException("Loading project", e);
+            return false;
+        }
+
+        List<PeriodicTask> tasks = new ArrayList<PeriodicTask>();
+        try {
+            for (int i = 0; i < specs.size(); i++) {
+                HandlerSpec spec = specs.get(i);
+                long wcet = computeWCET(spec);
+                PeriodicTask task = new PeriodicTask(spec.className, i, spec.period, spec.period, wcet, spec.slices);
+                exec.info("WCET " + task);
+                tasks.add(task);
+            }
+        } catch (Exception e) {
+            exec.logException("WCET analysis", e);
+            return false;
+        }
+
+        CyclicScheduleBuilder builder = new CyclicScheduleBuilder(tasks, clock);
+        builder.setFrameOverhead(config.getOption(ScheduleConfig.SCHED_FRAME_OVERHEAD));
+        FrameSchedule schedule;
+        if (config.hasOption(ScheduleConfig.SCHED_FRAME)) {
+            long f = config.getOption(ScheduleConfig.SCHED_FRAME);
+            if (builder.getHyperperiod() % f != 0 || !builder.checkFrame(f)) {
+                exec.info("Frame length " + f + " us violates the frame constraints");
+                return false;
+            }
+            schedule = builder.assign(f);
+        } else {
+            schedule = builder.synthesize();
+        }
+        if (schedule == null) {
+            exec.info("No feasible cyclic schedule found, candidate frames: " + builder.getFrameCandidates());
+            return false;
+        }
+        schedule.dump(System.out);
+
+        try {
+            writeSchedule(schedule);
+        } catch (Exception e) {
+            exec.logException("Writing schedule", e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the WCET of one invocation of the handler in cycles
+     */
+    private long computeWCET(HandlerSpec spec) throws Exception {
+        config.setOption(ProjectConfig.TARGET_METHOD, spec.getMethodName());
+        project.rebuildCallGraph();
+        MethodInfo target = project.getTargetMethod();
+
+        IPETConfig ipetConfig = new IPETConfig(config);
+        StaticCacheApproximation preciseApprox = IPETConfig.getPreciseCacheApprox(config);
+        if (!project.getWCETProcessorModel().hasMethodCache()) {
+            preciseApprox = StaticCacheApproximation.ALWAYS_MISS;
+        }
+        RecursiveStrategy<AnalysisContextLocal, WcetCost> recStrategy;
+        if (preciseApprox == StaticCacheApproximation.ALL_FIT_REGIONS) {
+            recStrategy = new GlobalAnalysis.GlobalIPETStrategy(ipetConfig);
+        } else {
+            recStrategy = new LocalAnalysis(project, ipetConfig);
+        }
+        RecursiveWcetAnalysis<AnalysisContextLocal> an =
+                new RecursiveWcetAnalysis<AnalysisContextLocal>(project, ipetConfig, recStrategy);
+        WcetCost cost = an.computeCost(target, new AnalysisContextLocal(preciseApprox));
+        return cost.getCost();
+    }
+
+    private void writeSchedule(FrameSchedule schedule)
+            throws IOException, Config.BadConfigurationException {
+        String className = config.getOption(ScheduleConfig.SCHED_CLASS);
+        File dir = new File(config.getOption(ScheduleConfig.SCHED_OUTDIR));
+        Config.checkDir(dir, true);
+        File file = new File(dir, className.substring(className.lastIndexOf('.') + 1) + ".java");
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            schedule.writeJava(out, className);
+        } finally {
+            out.close();
+        }
+        exec.info("Schedule written to " + file);
+    }
+}
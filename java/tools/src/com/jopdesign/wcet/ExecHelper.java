@@ -86,7 +86,7 @@ public class ExecHelper {
         } catch(UnsatisfiedLinkError ule) {
             bail("Failed to load the lp_solve Java library: "+ule);
         }
-        if(config.getOption(ProjectConfig.USE_UPPAAL)) {
+        if(config.getOption(ProjectConfig.USE_UPPAAL) && !config.getOption(UppAalConfig.UPPAAL_BUILTIN_CHECKER)) {
             String vbinary = config.getOption(UppAalConfig.UPPAAL_VERIFYTA_BINARY);
             try {
                 String version = WcetSearch.getVerifytaVersion(vbinary);
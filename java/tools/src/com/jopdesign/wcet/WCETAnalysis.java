@@ -27,6 +27,7 @@
 
 package com.jopdesign.wcet;
 
+import com.jopdesign.common.AppDaemon;
 import com.jopdesign.common.AppSetup;
 import com.jopdesign.common.MethodInfo;
 import com.jopdesign.common.code.CallString;
@@ -50,7 +51,9 @@ import com.jopdesign.wcet.uppaal.model.XmlSerializationException;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.Properties;
+import java.util.Set;
 
 import static com.jopdesign.wcet.ExecHelper.timeDiff;
 
@@ -82,6 +85,7 @@ public class WCETAnalysis {
         setup.registerTool("wcet", wcetTool);
 
         setup.addSourceLineOptions(false);
+        setup.addDaemonOptions();
 	setup.initAndLoad(args, true, false, false);
 
         if (setup.useTool("dfa")) {
@@ -94,6 +98,11 @@ public class WCETAnalysis {
 
         WCETAnalysis inst = new WCETAnalysis(wcetTool, exec);
 
+        if (setup.useDaemon()) {
+            if(! inst.runDaemon(setup)) exec.bail("WCET daemon failed");
+            return;
+        }
+
         if(! inst.run()) exec.bail("Worst Case Analysis failed");
         else             exec.info("Worst Case Analysis finished");        	
     }
@@ -107,6 +116,7 @@ public class WCETAnalysis {
     private WcetCost minCacheCost;
     private IPETConfig ipetConfig;
 	private boolean reportGenerated;
+    private boolean initialized;
 
     public WCETAnalysis(WCETTool wcetTool, ExecHelper e) {
         this.project = wcetTool;
@@ -149,6 +159,53 @@ public class WCETAnalysis {
         }
     }
     
+    /**
+     * Load the project once and serve WCET requests for arbitrary target methods until the daemon is
+     * shut down. DFA results and the AppInfo callgraph are kept until a classfile is modified.
+     */
+    private boolean runDaemon(AppSetup setup) {
+        project.setTopLevelLogger(exec.getExecLogger());
+
+        AppDaemon daemon = new AppDaemon(setup);
+        daemon.addReloadListener(new AppDaemon.ReloadListener() {
+            public void onReload(Set<String> modified) {
+                initialized = false;
+            }
+        });
+        // a request only changes the target for this request
+        final String defaultTarget = config.getOption(ProjectConfig.TARGET_METHOD);
+        daemon.registerCommand("wcet", new AppDaemon.Command() {
+            public String getDescription() {
+                return "compute the WCET of a method (default: configured target method): wcet [<method>]";
+            }
+            public void run(String[] args, PrintStream out) throws Exception {
+                config.setOption(ProjectConfig.TARGET_METHOD, args.length > 0 ? args[0] : defaultTarget);
+                if (args.length > 0) {
+                    // check now, else we fail with an AssertionError somewhere in the analysis
+                    project.getProjectConfig().getTargetMethodInfo();
+                }
+                if (!initialized) {
+                    exec.info("Loading project");
+                    project.initialize(project.getProjectConfig().doLoadLinkInfo(), true);
+                    initialized = true;
+                } else {
+                    project.rebuildCallGraph();
+                }
+                if (!runWCETAnalysis()) {
+                    throw new Exception("Worst Case Analysis failed");
+                }
+            }
+        });
+
+        try {
+            daemon.run();
+        } catch (IOException e) {
+            exec.logException("Running daemon", e);
+            return false;
+        }
+        return true;
+    }
+
     private boolean runWCETAnalysis() {
         /* Run */
         ipetConfig = new IPETConfig(config);
@@ -250,7 +307,9 @@ public class WCETAnalysis {
 
         if(project.getProjectConfig().useUppaal()) {
             UppaalAnalysis an = new UppaalAnalysis(exec.getExecLogger(),project,project.getOutDir("uppaal"));
-            config.checkPresent(UppAalConfig.UPPAAL_VERIFYTA_BINARY);
+            if (!config.getOption(UppAalConfig.UPPAAL_BUILTIN_CHECKER)) {
+                config.checkPresent(UppAalConfig.UPPAAL_VERIFYTA_BINARY);
+            }
 
             /* Run uppaal analysis */
             long start = System.nanoTime();
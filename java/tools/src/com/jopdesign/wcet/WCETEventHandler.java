@@ -43,6 +43,7 @@ import org.apache.bcel.generic.InstructionHandle;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -66,7 +67,9 @@ public class WCETEventHandler extends EmptyAppEventHandler {
     private WCETTool project;
     private SourceAnnotationReader annotationReader;
 
-    private Set<BasicBlock> printedLoopBoundInfoMessage = new HashSet<BasicBlock>();
+    // CFGs of different methods may be created concurrently, see AnalysisResultCache
+    private Set<BasicBlock> printedLoopBoundInfoMessage =
+            Collections.synchronizedSet(new HashSet<BasicBlock>());
 
     private boolean ignoreMissingLoopBounds = false;
 
@@ -92,7 +95,7 @@ public class WCETEventHandler extends EmptyAppEventHandler {
         }
     }
 
-    public SourceAnnotations getAnnotations(ClassInfo cli) throws BadAnnotationException, IOException {
+    public synchronized SourceAnnotations getAnnotations(ClassInfo cli) throws BadAnnotationException, IOException {
         SourceAnnotations annots = (SourceAnnotations) cli.getCustomValue(annotationKey);
         if(annots == null) {
             annots = annotationReader.readAnnotations(cli);
@@ -224,10 +227,9 @@ public class WCETEventHandler extends EmptyAppEventHandler {
         	dfaUpperBound = -1;
         }
         if(dfaUpperBound < 0) {
-        	if(! printedLoopBoundInfoMessage.contains(headOfLoopBlock)) {
+        	if(printedLoopBoundInfoMessage.add(headOfLoopBlock)) {
         		logger.info("No DFA bound for " + methodInfo+"/"+headOfLoopBlock+
         				". Using manual bound: "+annotatedBound);
-        		printedLoopBoundInfoMessage.add(headOfLoopBlock);
         	}
         	return annotatedBound;
         } 
@@ -258,10 +260,9 @@ public class WCETEventHandler extends EmptyAppEventHandler {
         	}
         }
 
-    	if(! printedLoopBoundInfoMessage.contains(headOfLoopBlock)) {
+    	if(printedLoopBoundInfoMessage.add(headOfLoopBlock)) {
     		logger.info("DFA bound for " + methodInfo+"/"+headOfLoopBlock+
     				": "+loopBound+". Manual bound info: "+annotatedBound);
-    		printedLoopBoundInfoMessage.add(headOfLoopBlock);
     	}
         return loopBound;
     }
@@ -26,6 +26,7 @@ import com.jopdesign.common.code.ControlFlowGraph.BasicBlockNode;
 import com.jopdesign.common.code.ControlFlowGraph.CFGNode;
 import com.jopdesign.common.code.SuperGraph;
 import com.jopdesign.common.code.SuperGraphNode;
+import com.jopdesign.common.graphutils.Pair;
 import com.jopdesign.wcet.WCETProcessorModel;
 import com.jopdesign.wcet.WCETTool;
 import com.jopdesign.wcet.analysis.RecursiveAnalysis.RecursiveStrategy;
@@ -45,6 +46,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -80,33 +82,43 @@ public class GlobalAnalysis {
         }
 
         String key = m.getFQMethodName() + "_global_" + cacheMode;
-        SuperGraph sg = new SuperGraph(project,
-                project.getFlowGraph(m),
-                project.getProjectConfig().callstringLength(),
-                ctx.getCallString());
 
         /* Dump supergraph in debug mode */
         if (project.getProjectConfig().isDebugMode()) {
+            SuperGraph fullGraph = new SuperGraph(project,
+                    project.getFlowGraph(m),
+                    project.getProjectConfig().callstringLength(),
+                    ctx.getCallString());
             try {
                 FileWriter fw = new FileWriter(project.getProjectConfig().getOutFile("graphs", key + ".dot"));
-                sg.exportDOT(fw);
+                fullGraph.exportDOT(fw);
                 fw.close();
             } catch (IOException ex) {
                 ex.printStackTrace();
             }
         }
 
-        /* create an IPET problem for all reachable methods */
-        IPETSolver ipetSolver = buildIpetProblem(project, key, sg, ipetConfig);
-
-        /* compute cost */
-        setExecutionCost(sg, cacheMode, ipetSolver);
-
-        /* Add constraints for cache */
-        Set<ExecutionEdge> missEdges = new HashSet<ExecutionEdge>();
-        if (cacheMode == StaticCacheApproximation.GLOBAL_ALL_FIT) {
-            missEdges = addMissOnceCost(sg, ipetSolver);
+        /* The supergraph is expanded while the IPET problem is built. Neither ALWAYS_MISS nor
+         * GLOBAL_ALL_FIT depend on the cache state at the invoke site, so without dataflow analysis
+         * results the cost of a method does not depend on its context, and all contexts are shared. */
+        SuperGraph.ContextSharingPolicy sharing = null;
+        if (!project.doDataflowAnalysis()) {
+            sharing = new SuperGraph.ContextSharingPolicy() {
+                public boolean isContextInsensitive(ControlFlowGraph cfg) {
+                    return true;
+                }
+            };
         }
+        SuperGraph sg = new SuperGraph(project,
+                project.getFlowGraph(m),
+                project.getProjectConfig().callstringLength(),
+                ctx.getCallString(),
+                sharing,
+                true);
+
+        /* create an IPET problem for all reachable methods, with cost and cache constraints */
+        IPETSolver ipetSolver = new IPETSolver(key, ipetConfig);
+        Set<ExecutionEdge> missEdges = buildIpetProblemOnDemand(sg, cacheMode, ipetSolver);
 
         /* Return variables */
         Map<ExecutionEdge, Long> flowMap = new HashMap<ExecutionEdge, Long>();
@@ -194,89 +206,113 @@ public class GlobalAnalysis {
 
 
     /**
-     * Compute the execution time of each edge in in the supergraph
+     * Build the IPET problem for a demand-driven supergraph in a single pass. Each node is expanded,
+     * contributes its flow constraints, edge costs and call sites, and is evicted afterwards. Only
+     * the constraints linking a method's entry and exit flow to its invoke edges are emitted
+     * at the end, when all callers are known.
      *
-     * @param sg       the supergraph, whose vertices are considered
-     * @param ipetInst the IPET instance
-     * @return the cost map
+     * @param sg       a demand-driven supergraph
+     * @param approx   the cache approximation (ALWAYS_MISS or GLOBAL_ALL_FIT)
+     * @param ipetInst the IPET instance to add constraints and costs to
+     * @return the execution edges modelling cache misses
      */
-    private Map<ExecutionEdge, WcetCost> setExecutionCost(SuperGraph sg, StaticCacheApproximation approx, IPETSolver ipetInst) {
+    private Set<ExecutionEdge> buildIpetProblemOnDemand(SuperGraph sg, StaticCacheApproximation approx, IPETSolver ipetInst) {
 
-        HashMap<ExecutionEdge, WcetCost> edgeCost = new HashMap<ExecutionEdge, WcetCost>();
         boolean alwaysMiss = (approx == StaticCacheApproximation.ALWAYS_MISS);
 
-        IPETBuilder<SuperGraph.CallContext> ipetBuilder = new IPETBuilder<SuperGraph.CallContext>(project, new SuperGraph.CallContext(CallString.EMPTY));
+        IPETBuilder<SuperGraph.CallContext> ipetBuilder =
+                new IPETBuilder<SuperGraph.CallContext>(project, sg.getRootNode().getContext());
+
+        Map<SuperGraphNode, List<ExecutionEdge>> invokeEdges = new LinkedHashMap<SuperGraphNode, List<ExecutionEdge>>();
+        Map<MethodInfo, LinearConstraint<ExecutionEdge>> missOnce = new LinkedHashMap<MethodInfo, LinearConstraint<ExecutionEdge>>();
+        Set<ExecutionEdge> missEdges = new HashSet<ExecutionEdge>();
 
-        for (SuperGraphNode n : sg.getGraph().vertexSet()) {
+        while (sg.hasUnexpandedNodes()) {
+            SuperGraphNode n = sg.expandNext();
+            ControlFlowGraph cfg = n.getCfg();
             ipetBuilder.changeContext(n.getContext());
 
+            if (n.equals(sg.getRootNode())) {
+                /* Root node : inflow(entry) = outflow(exit) = 1 */
+                ipetInst.addConstraints(IPETUtils.structuralFlowConstraintsRoot(cfg.getGraph(), ipetBuilder));
+            }
+            /* Flow constraints */
+            ipetInst.addConstraints(IPETUtils.loopBoundConstraints(cfg, ipetBuilder));
+            ipetInst.addConstraints(IPETUtils.infeasibleEdgeConstraints(cfg, ipetBuilder));
+
+            /* Execution cost: for each CFG instance, consider CFG nodes
+             * Currently there is no need to attribute cost to callsites */
             // FIXME: There is a discrepancy but also overlap between analysis contexts and execution contexts
             AnalysisContextLocal aCtx = new AnalysisContextLocal(approx, n.getCallString());
             GlobalVisitor visitor = new GlobalVisitor(project, aCtx, alwaysMiss);
-
-            /* For each CFG instance, consider CFG nodes
-                          * Currently there is no need to attribute cost to callsites */
-            for (CFGNode cfgNode : n.getCfg().getGraph().vertexSet()) {
+            for (CFGNode cfgNode : cfg.getGraph().vertexSet()) {
                 WcetCost cost = visitor.computeCost(cfgNode);
-                for (ControlFlowGraph.CFGEdge edge : n.getCfg().getGraph().outgoingEdgesOf(cfgNode)) {
-                    ExecutionEdge e = ipetBuilder.newEdge(edge);
-                    edgeCost.put(e, cost);
-                    ipetInst.addEdgeCost(e, cost.getCost());
+                for (ControlFlowGraph.CFGEdge edge : cfg.getGraph().outgoingEdgesOf(cfgNode)) {
+                    ipetInst.addEdgeCost(ipetBuilder.newEdge(edge), cost.getCost());
                 }
             }
-        }
-        return edgeCost;
-    }
 
-    /* add cost for missing each method once (ALL FIT) */
+            /* Call sites: invoke/return pairs, and cache cost for missing each method once (ALL FIT) */
+            for (Pair<SuperGraph.SuperInvokeEdge, SuperGraph.SuperReturnEdge> site : sg.getInvokeSites(n)) {
+                SuperGraph.SuperInvokeEdge call = site.first();
+                SuperGraph.SuperReturnEdge ret = site.second();
+                SuperGraphNode invoked = sg.getTargetNode(call);
 
-    private Set<ExecutionEdge> addMissOnceCost(SuperGraph sg, IPETSolver ipetSolver) {
-        /* collect access sites */
+                ipetBuilder.changeContext(call.getCallContext());
+                ipetInst.addConstraints(IPETUtils.invokeReturnConstraints(call, ret, ipetBuilder));
 
-        Map<MethodInfo, List<SuperGraph.SuperGraphEdge>> accessEdges = getMethodSwitchEdges(sg);
-        MethodCache cache = project.getWCETProcessorModel().getMethodCache();
+                List<ExecutionEdge> edges = invokeEdges.get(invoked);
+                if (edges == null) {
+                    edges = new ArrayList<ExecutionEdge>();
+                    invokeEdges.put(invoked, edges);
+                }
+                edges.add(ipetBuilder.newEdge(call));
 
-        Set<ExecutionEdge> missEdges = new HashSet<ExecutionEdge>();
-        /* For each  MethodInfo, create a binary decision variable */
-        for (Entry<MethodInfo, List<SuperGraph.SuperGraphEdge>> entry : accessEdges.entrySet()) {
-            LinearConstraint<ExecutionEdge> lv = new LinearConstraint<ExecutionEdge>(ConstraintType.LessEqual);
-            /* sum(miss_edges) <= 1 */
-            for (SuperGraph.SuperGraphEdge e : entry.getValue()) {
-                /* add hit and miss edges */
-                IPETBuilder<SuperGraph.CallContext> c = new IPETBuilder<SuperGraph.CallContext>(project, e.getCallContext());
-                IPETBuilder.ExecutionEdge parentEdge = c.newEdge(e);
-                IPETBuilder.ExecutionEdge hitEdge = c.newEdge(MethodCacheAnalysis.splitEdge(e, true));
-                IPETBuilder.ExecutionEdge missEdge = c.newEdge(MethodCacheAnalysis.splitEdge(e, false));
-                ipetSolver.addConstraint(IPETUtils.lowLevelEdgeSplit(parentEdge, hitEdge, missEdge));
-                missEdges.add(missEdge);
-                ipetSolver.addEdgeCost(missEdge, cache.missOnceCost(entry.getKey(), ipetConfig.doAssumeMissOnceOnInvoke()));
-                lv.addLHS(missEdge, 1);
+                if (approx == StaticCacheApproximation.GLOBAL_ALL_FIT) {
+                    addMissOnceCost(call, invoked.getCfg().getMethodInfo(), ipetBuilder, ipetInst, missOnce, missEdges);
+                    addMissOnceCost(ret, cfg.getMethodInfo(), ipetBuilder, ipetInst, missOnce, missEdges);
+                }
             }
+            sg.evict(n);
+        }
+
+        /* Inner nodes: inputEdges = outputEdges = flow(invoke edges which have the node as target) */
+        for (Entry<SuperGraphNode, List<ExecutionEdge>> entry : invokeEdges.entrySet()) {
+            SuperGraphNode n = entry.getKey();
+            if (n.equals(sg.getRootNode())) continue;
+            ipetBuilder.changeContext(n.getContext());
+            ipetInst.addConstraints(IPETUtils.structuralFlowConstraints(n.getCfg().getGraph(),
+                    entry.getValue(), entry.getValue(), ipetBuilder));
+        }
+
+        /* sum(miss_edges) <= 1, for each method */
+        for (LinearConstraint<ExecutionEdge> lv : missOnce.values()) {
             lv.addRHS(1);
-            ipetSolver.addConstraint(lv);
+            ipetInst.addConstraint(lv);
         }
         return missEdges;
     }
 
+    /* split a supergraph edge switching to the given method into hit and miss edge */
 
-    /**
-     * For each method, get all supergraph edges which switch the context to that method
-     *
-     * @param superGraph
-     * @return
-     */
-    private Map<MethodInfo, List<SuperGraph.SuperGraphEdge>> getMethodSwitchEdges(SuperGraph superGraph) {
-
-        Map<MethodInfo, List<SuperGraph.SuperGraphEdge>> iMap =
-                new HashMap<MethodInfo, List<SuperGraph.SuperGraphEdge>>();
-        for (SuperGraph.SuperGraphEdge edge : superGraph.getSuperEdges()) {
-            MethodInfo targetMethod = superGraph.getTargetNode(edge).getCfg().getMethodInfo();
-            List<SuperGraph.SuperGraphEdge> edges = iMap.get(targetMethod);
-            if (edges == null) edges = new ArrayList<SuperGraph.SuperGraphEdge>();
-            edges.add(edge);
-            iMap.put(targetMethod, edges);
+    private void addMissOnceCost(SuperGraph.SuperGraphEdge e, MethodInfo target,
+                                 IPETBuilder<SuperGraph.CallContext> ipetBuilder, IPETSolver ipetSolver,
+                                 Map<MethodInfo, LinearConstraint<ExecutionEdge>> missOnce,
+                                 Set<ExecutionEdge> missEdges) {
+        MethodCache cache = project.getWCETProcessorModel().getMethodCache();
+        LinearConstraint<ExecutionEdge> lv = missOnce.get(target);
+        if (lv == null) {
+            lv = new LinearConstraint<ExecutionEdge>(ConstraintType.LessEqual);
+            missOnce.put(target, lv);
         }
-        return iMap;
+        ipetBuilder.changeContext(e.getCallContext());
+        ExecutionEdge parentEdge = ipetBuilder.newEdge(e);
+        ExecutionEdge hitEdge = ipetBuilder.newEdge(MethodCacheAnalysis.splitEdge(e, true));
+        ExecutionEdge missEdge = ipetBuilder.newEdge(MethodCacheAnalysis.splitEdge(e, false));
+        ipetSolver.addConstraint(IPETUtils.lowLevelEdgeSplit(parentEdge, hitEdge, missEdge));
+        missEdges.add(missEdge);
+        ipetSolver.addEdgeCost(missEdge, cache.missOnceCost(target, ipetConfig.doAssumeMissOnceOnInvoke()));
+        lv.addLHS(missEdge, 1);
     }
 
 
@@ -30,6 +30,8 @@ import com.jopdesign.wcet.uppaal.Translator;
 import com.jopdesign.wcet.uppaal.UppAalConfig;
 import com.jopdesign.wcet.uppaal.UppAalConfig.UppaalCacheApproximation;
 import com.jopdesign.wcet.uppaal.WcetSearch;
+import com.jopdesign.wcet.uppaal.checker.ModelCheckerException;
+import com.jopdesign.wcet.uppaal.checker.WcetModelChecker;
 import com.jopdesign.wcet.uppaal.model.DuplicateKeyException;
 import com.jopdesign.wcet.uppaal.model.XmlSerializationException;
 import org.apache.log4j.Logger;
@@ -86,7 +88,22 @@ public class UppaalAnalysis {
         translator.writeOutput();
         logger.info("model and query can be found in " + uppaalConfig.outDir);
         logger.info("model file: " + translator.getModelFile());
-        if (uppaalConfig.hasVerifier()) {
+        if (uppaalConfig.useBuiltinChecker) {
+            logger.info("Starting verification using the built-in model checker");
+            long start = System.nanoTime();
+            long wcet;
+            try {
+                WcetModelChecker checker = new WcetModelChecker(translator.getSystem().getNTASystem());
+                checker.setThreads(uppaalConfig.checkerThreads);
+                wcet = checker.computeMaxElapsedTime("M0", "E");
+            } catch (ModelCheckerException e) {
+                throw new IOException("Built-in model checker failed: " + e.getMessage(), e);
+            }
+            long end = System.nanoTime();
+            searchtime += ((double) (end - start)) / 1E9;
+            solvertimemax = Math.max(solvertimemax, ((double) (end - start)) / 1E9);
+            return WcetCost.totalCost(wcet);
+        } else if (uppaalConfig.hasVerifier()) {
             logger.info("Starting verification");
             WcetSearch search = new WcetSearch(project.getConfig(), translator.getModelFile());
             long start = System.nanoTime();
@@ -37,6 +37,8 @@ import org.apache.bcel.generic.Instruction;
 import org.apache.bcel.generic.InstructionHandle;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 public class JOPWcetModel implements WCETProcessorModel {
 
@@ -103,10 +105,30 @@ public class JOPWcetModel implements WCETProcessorModel {
     }
 
     public long basicBlockWCET(ExecutionContext context, BasicBlock bb) {
-        int wcet = 0;
-        for(InstructionHandle ih : bb.getInstructions()) {
-            wcet += getExecutionTime(context, ih);
+        // Let the timing table compute the cost of the whole instruction sequence, so that CMP timing
+        // does not need to assume the worst arbiter position for every single memory access
+        MethodInfo mctx = context.getMethodInfo();
+        List<InstructionHandle> instructions = bb.getInstructions();
+        int[] opcodes = new int[instructions.size()];
+        int count = 0;
+        long wcet = 0;
+        for(InstructionHandle ih : instructions) {
+            Instruction i = ih.getInstruction();
+            if(isUnboundedBytecode(i)) {
+                // we do not know anything about the instructions before and after, so compute separately
+                wcet += timing.getLocalCycles(Arrays.copyOf(opcodes, count));
+                count = 0;
+                wcet += getExecutionTime(context, ih);
+                continue;
+            }
+            int jopcode = processorModel.getNativeOpCode(mctx, i);
+            if(timing.getLocalCycles(jopcode) < 0) {
+                // let getExecutionTime() report the error
+                getExecutionTime(context, ih);
+            }
+            opcodes[count++] = jopcode;
         }
+        wcet += timing.getLocalCycles(Arrays.copyOf(opcodes, count));
         return wcet;
     }
 
@@ -0,0 +1,209 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jopdesign.wcet.scheduling;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Synthesis of a frame based cyclic schedule for a set of periodic tasks.
+ * <p>
+ * The major frame is the hyperperiod of the task set. Candidate minor frame
+ * lengths are the divisors of the hyperperiod satisfying the classic frame
+ * constraints (Baker and Shaw):
+ * </p>
+ * <ul>
+ * <li>every single invocation fits into one frame</li>
+ * <li>{@code 2f - gcd(f, T_i) <= D_i}, so that there is a full frame between
+ *     the release and the deadline of every job</li>
+ * </ul>
+ * <p>
+ * Candidates are tried from the longest frame to the shortest. For each
+ * candidate the jobs of the major frame are placed frame by frame in earliest
+ * deadline first order. A job is only placed into frames which start at or
+ * after its release and end at or before its deadline. Slices of a split
+ * task are placed in order, possibly in different frames.
+ * </p>
+ */
+public class CyclicScheduleBuilder {
+
+    /**
+     * Upper bound for the number of minor frames in a major frame.
+     */
+    public static final int MAX_FRAMES = 10000;
+
+    private static final Logger logger = Logger.getLogger(CyclicScheduleBuilder.class);
+
+    private final List<PeriodicTask> tasks;
+    private final long cyclesPerUs;
+    private long frameOverhead = 0;
+
+    /**
+     * @param tasks       the tasks, periods in microseconds and WCETs in cycles
+     * @param cyclesPerUs the processor clock in MHz
+     */
+    public CyclicScheduleBuilder(List<PeriodicTask> tasks, long cyclesPerUs) {
+        this.tasks = tasks;
+        this.cyclesPerUs = cyclesPerUs;
+    }
+
+    /**
+     * @param cycles worst case cost of the frame dispatch, subtracted from each frame
+     */
+    public void setFrameOverhead(long cycles) {
+        this.frameOverhead = cycles;
+    }
+
+    public long getHyperperiod() {
+        long h = 1;
+        for (PeriodicTask t : tasks) {
+            h = lcm(h, t.getPeriod());
+        }
+        return h;
+    }
+
+    /**
+     * @return all frame lengths satisfying the frame constraints, longest first
+     */
+    public List<Long> getFrameCandidates() {
+        long h = getHyperperiod();
+        List<Long> divisors = new ArrayList<Long>();
+        for (long d = 1; d * d <= h; d++) {
+            if (h % d == 0) {
+                divisors.add(d);
+                if (d != h / d) divisors.add(h / d);
+            }
+        }
+        Collections.sort(divisors, Collections.reverseOrder());
+
+        List<Long> candidates = new ArrayList<Long>();
+        for (long f : divisors) {
+            if (h / f > MAX_FRAMES) continue;
+            if (checkFrame(f)) candidates.add(f);
+        }
+        return candidates;
+    }
+
+    /**
+     * @param f minor frame length in microseconds
+     * @return true if f satisfies the frame constraints
+     */
+    public boolean checkFrame(long f) {
+        long capacity = f * cyclesPerUs - frameOverhead;
+        for (PeriodicTask t : tasks) {
+            if (t.getWcet() > capacity) return false;
+            if (2 * f - gcd(f, t.getPeriod()) > t.getDeadline()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Find a schedule with the longest feasible minor frame.
+     *
+     * @return the schedule, or null if no schedule was found
+     */
+    public FrameSchedule synthesize() {
+        for (long f : getFrameCandidates()) {
+            FrameSchedule s = assign(f);
+            if (s != null) return s;
+            logger.debug("No feasible assignment for frame length " + f);
+        }
+        return null;
+    }
+
+    /**
+     * Place all jobs of the major frame into frames of length f.
+     *
+     * @param f the minor frame length in microseconds
+     * @return the schedule, or null if some job misses its deadline
+     */
+    public FrameSchedule assign(long f) {
+        long h = getHyperperiod();
+        if (h % f != 0) {
+            throw new IllegalArgumentException("Frame length " + f + " does not divide the hyperperiod " + h);
+        }
+        int frameCount = (int) (h / f);
+        long capacity = f * cyclesPerUs - frameOverhead;
+
+        List<Job> jobs = new ArrayList<Job>();
+        for (PeriodicTask t : tasks) {
+            for (long r = 0; r < h; r += t.getPeriod()) {
+                jobs.add(new Job(t, r, r + t.getDeadline()));
+            }
+        }
+        Collections.sort(jobs, new Comparator<Job>() {
+            public int compare(Job a, Job b) {
+                if (a.deadline != b.deadline) return a.deadline < b.deadline ? -1 : 1;
+                return a.task.getIndex() - b.task.getIndex();
+            }
+        });
+
+        FrameSchedule schedule = new FrameSchedule(tasks, f, cyclesPerUs, capacity, frameCount);
+        for (int k = 0; k < frameCount; k++) {
+            long start = k * f;
+            long end = start + f;
+            long free = capacity;
+            for (Job j : jobs) {
+                if (j.remaining == 0 || j.release > start || j.deadline < end) continue;
+                while (j.remaining > 0 && j.task.getWcet() <= free) {
+                    schedule.addInvocation(k, j.task);
+                    free -= j.task.getWcet();
+                    j.remaining--;
+                }
+            }
+            // a job whose last frame this was has to be complete now
+            for (Job j : jobs) {
+                if (j.remaining > 0 && j.deadline < end + f) {
+                    return null;
+                }
+            }
+        }
+        return schedule;
+    }
+
+    private static class Job {
+        final PeriodicTask task;
+        final long release;
+        final long deadline;
+        int remaining;
+
+        Job(PeriodicTask task, long release, long deadline) {
+            this.task = task;
+            this.release = release;
+            this.deadline = deadline;
+            this.remaining = task.getSlices();
+        }
+    }
+
+    static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    static long lcm(long a, long b) {
+        return a / gcd(a, b) * b;
+    }
+}
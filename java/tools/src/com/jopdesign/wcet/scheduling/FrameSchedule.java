@@ -0,0 +1,186 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jopdesign.wcet.scheduling;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of the cyclic schedule synthesis: a major frame (the
+ * hyperperiod) divided into minor frames of equal length, with the
+ * handler invocations of each frame in execution order.
+ */
+public class FrameSchedule {
+
+    private final List<PeriodicTask> tasks;
+    private final long frameLength;
+    private final long cyclesPerUs;
+    private final long frameCapacity;
+    private final List<List<PeriodicTask>> frames;
+    private final long[] used;
+
+    /**
+     * @param tasks         the scheduled tasks
+     * @param frameLength   minor frame length in microseconds
+     * @param cyclesPerUs   processor cycles per microsecond
+     * @param frameCapacity cycles available for handlers in one frame
+     * @param frameCount    number of minor frames in the major frame
+     */
+    public FrameSchedule(List<PeriodicTask> tasks, long frameLength, long cyclesPerUs,
+                         long frameCapacity, int frameCount) {
+        this.tasks = tasks;
+        this.frameLength = frameLength;
+        this.cyclesPerUs = cyclesPerUs;
+        this.frameCapacity = frameCapacity;
+        this.frames = new ArrayList<List<PeriodicTask>>(frameCount);
+        for (int i = 0; i < frameCount; i++) {
+            frames.add(new ArrayList<PeriodicTask>());
+        }
+        this.used = new long[frameCount];
+    }
+
+    void addInvocation(int frame, PeriodicTask task) {
+        frames.get(frame).add(task);
+        used[frame] += task.getWcet();
+    }
+
+    /**
+     * @return the minor frame length in microseconds
+     */
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * @return the major frame length in microseconds
+     */
+    public long getMajorFrameLength() {
+        return frameLength * frames.size();
+    }
+
+    public int getFrameCount() {
+        return frames.size();
+    }
+
+    public List<PeriodicTask> getFrame(int i) {
+        return frames.get(i);
+    }
+
+    /**
+     * @return the cycles of frame i not used by handlers in the worst case
+     */
+    public long getSlack(int i) {
+        return frameCapacity - used[i];
+    }
+
+    public long getMinimumSlack() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < used.length; i++) {
+            min = Math.min(min, getSlack(i));
+        }
+        return min;
+    }
+
+    /**
+     * @return the fraction of the major frame used by handlers in the worst case
+     */
+    public double getUtilization() {
+        long sum = 0;
+        for (long u : used) sum += u;
+        return (double) sum / (frameLength * cyclesPerUs * frames.size());
+    }
+
+    public void dump(PrintStream out) {
+        out.println("Minor frame: " + frameLength + " us, major frame: " + getMajorFrameLength()
+                    + " us, " + frames.size() + " frames");
+        for (int i = 0; i < frames.size(); i++) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("  %4d  slack %10d  ", i, getSlack(i)));
+            for (PeriodicTask t : frames.get(i)) {
+                sb.append(' ').append(t.getName());
+            }
+            out.println(sb.toString());
+        }
+        out.println(String.format("Utilization: %.3f, minimal slack: %d cycles",
+                    getUtilization(), getMinimumSlack()));
+    }
+
+    /**
+     * Write a class with a static {@code getSchedule(PeriodicEventHandler[])} method,
+     * which the mission's getSchedule() can delegate to.
+     *
+     * @param out       where to write the source to
+     * @param className the fully qualified name of the generated class
+     */
+    public void writeJava(PrintWriter out, String className) {
+        String pkg = null;
+        String simpleName = className;
+        int dot = className.lastIndexOf('.');
+        if (dot > 0) {
+            pkg = className.substring(0, dot);
+            simpleName = className.substring(dot + 1);
+        }
+        if (pkg != null) {
+            out.println("package " + pkg + ";");
+            out.println();
+        }
+        out.println("import javax.realtime.RelativeTime;");
+        out.println("import javax.safetycritical.CyclicSchedule;");
+        out.println("import javax.safetycritical.Frame;");
+        out.println("import javax.safetycritical.PeriodicEventHandler;");
+        out.println();
+        out.println("/**");
+        out.println(" * Cyclic schedule generated by CyclicScheduleSynthesis, do not edit.");
+        out.println(" * <p>");
+        out.println(" * Minor frame " + frameLength + " us, major frame " + getMajorFrameLength() + " us,");
+        out.println(" * minimal slack " + getMinimumSlack() + " cycles at " + cyclesPerUs + " MHz.");
+        out.println(" * </p>");
+        out.println(" * <ul>");
+        for (PeriodicTask t : tasks) {
+            out.println(" * <li>handlers[" + t.getIndex() + "]: " + t + "</li>");
+        }
+        out.println(" * </ul>");
+        out.println(" */");
+        out.println("public class " + simpleName + " {");
+        out.println();
+        out.println("    public static CyclicSchedule getSchedule(PeriodicEventHandler[] handlers) {");
+        out.println();
+        out.println("        Frame[] frames = new Frame[" + frames.size() + "];");
+        long ms = frameLength / 1000;
+        long ns = (frameLength % 1000) * 1000;
+        for (int i = 0; i < frames.size(); i++) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("        frames[").append(i).append("] = new Frame(new RelativeTime(")
+              .append(ms).append(", ").append(ns).append("),\n");
+            sb.append("                new PeriodicEventHandler[] {");
+            boolean first = true;
+            for (PeriodicTask t : frames.get(i)) {
+                sb.append(first ? " " : ", ").append("handlers[").append(t.getIndex()).append("]");
+                first = false;
+            }
+            sb.append(first ? "});" : " });");
+            out.println(sb.toString());
+        }
+        out.println();
+        out.println("        return new CyclicSchedule(frames);");
+        out.println("    }");
+        out.println("}");
+    }
+}
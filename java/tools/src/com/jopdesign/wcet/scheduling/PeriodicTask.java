@@ -0,0 +1,94 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jopdesign.wcet.scheduling;
+
+/**
+ * A periodic event handler as seen by the cyclic schedule synthesis.
+ * <p>
+ * A handler with more than one slice implements its work as a state machine,
+ * and has to be invoked {@code slices} times per period to complete one job.
+ * The WCET is the bound for a single invocation. Slices of one job may be
+ * placed into different frames, which is how a long handler is split.
+ * </p>
+ */
+public class PeriodicTask {
+
+    private final String name;
+    private final int index;
+    private final long period;
+    private final long deadline;
+    private final long wcet;
+    private final int slices;
+
+    /**
+     * @param name     name of the handler (used for reports only)
+     * @param index    index of the handler in the array passed to getSchedule()
+     * @param period   period in microseconds
+     * @param deadline relative deadline in microseconds, at most the period
+     * @param wcet     WCET of one invocation in cycles
+     * @param slices   number of invocations per job
+     */
+    public PeriodicTask(String name, int index, long period, long deadline, long wcet, int slices) {
+        if (period <= 0 || deadline <= 0 || deadline > period) {
+            throw new IllegalArgumentException("Bad period/deadline for "+name+": "+period+"/"+deadline);
+        }
+        if (slices < 1) {
+            throw new IllegalArgumentException("Bad number of slices for "+name+": "+slices);
+        }
+        this.name = name;
+        this.index = index;
+        this.period = period;
+        this.deadline = deadline;
+        this.wcet = wcet;
+        this.slices = slices;
+    }
+
+    public PeriodicTask(String name, int index, long period, long wcet) {
+        this(name, index, period, period, wcet, 1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public long getPeriod() {
+        return period;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public long getWcet() {
+        return wcet;
+    }
+
+    public int getSlices() {
+        return slices;
+    }
+
+    @Override
+    public String toString() {
+        return name + "[" + index + "] T=" + period + "us D=" + deadline + "us C=" + wcet
+               + (slices > 1 ? ("x" + slices) : "");
+    }
+}
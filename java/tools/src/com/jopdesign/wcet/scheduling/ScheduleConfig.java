@@ -0,0 +1,101 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jopdesign.wcet.scheduling;
+
+import com.jopdesign.common.config.Config;
+import com.jopdesign.common.config.IntegerOption;
+import com.jopdesign.common.config.Option;
+import com.jopdesign.common.config.StringOption;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options of the cyclic schedule synthesis.
+ */
+public class ScheduleConfig {
+
+    public static final StringOption SCHED_HANDLERS =
+            new StringOption("sched-handlers",
+                    "comma separated list of class:period_us[:slices] of the periodic event handlers, "+
+                    "in the order they are registered in Mission.initialize()", false);
+
+    public static final IntegerOption SCHED_CLOCK =
+            new IntegerOption("sched-clock", "processor clock frequency in MHz", false);
+
+    public static final IntegerOption SCHED_FRAME =
+            new IntegerOption("sched-frame", "minor frame length in us (default: longest feasible)", true);
+
+    public static final IntegerOption SCHED_FRAME_OVERHEAD =
+            new IntegerOption("sched-frame-overhead", "cycles reserved per frame for the dispatcher", 0);
+
+    public static final StringOption SCHED_CLASS =
+            new StringOption("sched-class", "fully qualified name of the generated schedule class",
+                    "GeneratedSchedule");
+
+    public static final StringOption SCHED_OUTDIR =
+            new StringOption("sched-outdir", "output directory for the generated source", "${outdir}");
+
+    public static final Option<?>[] scheduleOptions = {
+            SCHED_HANDLERS, SCHED_CLOCK, SCHED_FRAME, SCHED_FRAME_OVERHEAD,
+            SCHED_CLASS, SCHED_OUTDIR
+    };
+
+    /**
+     * A handler entry of {@link #SCHED_HANDLERS}.
+     */
+    public static class HandlerSpec {
+        public final String className;
+        public final long period;
+        public final int slices;
+
+        public HandlerSpec(String className, long period, int slices) {
+            this.className = className;
+            this.period = period;
+            this.slices = slices;
+        }
+
+        public String getMethodName() {
+            return className + ".handleAsyncEvent";
+        }
+    }
+
+    public static List<HandlerSpec> parseHandlers(String value) throws Config.BadConfigurationException {
+        List<HandlerSpec> specs = new ArrayList<HandlerSpec>();
+        for (String entry : value.split(",")) {
+            entry = entry.trim();
+            if (entry.length() == 0) continue;
+            String[] parts = entry.split(":");
+            if (parts.length < 2 || parts.length > 3) {
+                throw new Config.BadConfigurationException("Bad handler entry '"+entry+
+                        "', expected class:period_us[:slices]");
+            }
+            try {
+                long period = Long.parseLong(parts[1]);
+                int slices = parts.length == 3 ? Integer.parseInt(parts[2]) : 1;
+                specs.add(new HandlerSpec(parts[0], period, slices));
+            } catch (NumberFormatException e) {
+                throw new Config.BadConfigurationException("Bad number in handler entry '"+entry+"'", e);
+            }
+        }
+        if (specs.isEmpty()) {
+            throw new Config.BadConfigurationException("No handlers given in "+SCHED_HANDLERS.getKey());
+        }
+        return specs;
+    }
+}
@@ -61,6 +61,9 @@ public class Translator {
 		sys.buildSystem();
 		return sys;
 	}
+	public SystemBuilder getSystem() {
+		return sys;
+	}
 	public void writeOutput() throws 
 		XmlSerializationException, FileNotFoundException {
 		String xml = XmlBuilder.domToString(sys.toXML());
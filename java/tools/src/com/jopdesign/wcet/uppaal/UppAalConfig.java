@@ -92,11 +92,27 @@ public class UppAalConfig {
 	
 	public static final IntegerOption UPPAAL_COMPLEXITY_TRESHOLD =
 		new IntegerOption("uppaal-treshold","limit UPPAAL to methods below the given expanded cyclomatic complexity",true);
+
+	public static final IntegerOption UPPAAL_PARALLEL_PROBES =
+		new IntegerOption("uppaal-parallel-probes",
+				          "number of verifier processes probing WCET bounds concurrently (1: sequential binary search)",
+				          1).setMinMax(1, 256);
+	public static final BooleanOption UPPAAL_BUILTIN_CHECKER =
+		new BooleanOption("uppaal-builtin-checker",
+				          "compute the WCET of the generated model with the built-in model checker instead of verifyta",
+				          false);
+
+	public static final IntegerOption UPPAAL_CHECKER_THREADS =
+		new IntegerOption("uppaal-checker-threads",
+				          "number of threads used by the built-in model checker",
+				          1).setMinMax(1, 256);
+
 	public static final Option<?>[] uppaalOptions = {
 		UPPAAL_CACHE_APPROX, UPPAAL_COMPLEXITY_TRESHOLD,
 		UPPAAL_VERIFYTA_BINARY, UPPAAL_EMPTY_INITIAL_CACHE,
 		UPPAAL_TIGHT_BOUNDS, UPPAAL_COLLAPSE_LEAVES, UPPAAL_CONVEX_HULL,
 		UPPAAL_SUPERGRAPH_TEMPLATE, UPPAAL_PROGRESS_MEASURE,
+		UPPAAL_PARALLEL_PROBES, UPPAAL_BUILTIN_CHECKER, UPPAAL_CHECKER_THREADS,
 	};
 
 	public boolean isDynamicCacheSim() {
@@ -117,6 +133,8 @@ public class UppAalConfig {
 	public boolean assumeTightBounds;
 	public boolean superGraphTemplate;
 	public boolean useProgressMeasure;
+	public boolean useBuiltinChecker;
+	public int checkerThreads;
 	public UppaalCacheApproximation cacheApprox;
 	public UppaalCacheApproximation getCacheApproximation() {
 		return this.cacheApprox;
@@ -134,6 +152,8 @@ public class UppAalConfig {
 		this.assumeTightBounds = c.getOption(UPPAAL_TIGHT_BOUNDS);
 		this.superGraphTemplate = c.getOption(UPPAAL_SUPERGRAPH_TEMPLATE);
 		this.useProgressMeasure = c.getOption(UPPAAL_PROGRESS_MEASURE);
+		this.useBuiltinChecker = c.getOption(UPPAAL_BUILTIN_CHECKER);
+		this.checkerThreads = c.getOption(UPPAAL_CHECKER_THREADS).intValue();
 		if(c.hasOption(UPPAAL_VERIFYTA_BINARY)) {
 			this.verifyBinary = c.getOption(UPPAAL_VERIFYTA_BINARY);
 		}
@@ -31,11 +31,21 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Binary search for WCET using UppAal
+ * Binary search for WCET using UppAal. If {@link UppAalConfig#UPPAAL_PARALLEL_PROBES} is
+ * greater than one, a k-ary search with one verifier process per probed bound is used instead.
  * @author Benedikt Huber <benedikt.huber@gmail.com>
  *
  */
@@ -45,7 +55,7 @@ public class WcetSearch {
 	private Logger logger = Logger.getLogger(WCETTool.LOG_WCET_UPPAAL+".WcetSearch");
 	private double maxSolverTime = 0.0;
 	private Config config;
-	public double getMaxSolverTime() {
+	public synchronized double getMaxSolverTime() {
 		return maxSolverTime;
 	}
 	public WcetSearch(Config c, File modelFile) {
@@ -54,20 +64,12 @@ public class WcetSearch {
 	}
 	public long searchWCET(Long upperBound) throws IOException {
 		long ub = (upperBound == null) ? -1 : upperBound;
-		queryFile = File.createTempFile("query", ".q");
-		List<String> cmdlist = new ArrayList<String>();
-		cmdlist.add(config.getOption(UppAalConfig.UPPAAL_VERIFYTA_BINARY));
-		cmdlist.add("-q");
-		cmdlist.add("-S");
-		cmdlist.add("2");
-		cmdlist.add("-o");		
-		cmdlist.add("2");
-		if(config.getOption(UppAalConfig.UPPAAL_CONVEX_HULL)) {
-			cmdlist.add("-A");
+		int probes = config.getOption(UppAalConfig.UPPAAL_PARALLEL_PROBES).intValue();
+		if(probes > 1) {
+			return searchWCETParallel(ub, probes);
 		}
-		cmdlist.add(modelFile.getPath());
-		cmdlist.add(queryFile.getPath());
-		String[] cmd = cmdlist.toArray(new String[cmdlist.size()]);
+		queryFile = File.createTempFile("query", ".q");
+		String[] cmd = getCommand(queryFile);
 		long safe, unsafe;
 		if(ub >= 1) {
 			unsafe = safe = ub;
@@ -101,6 +103,139 @@ public class WcetSearch {
 		}
 		return safe;
 	}
+	/**
+	 * k-ary search for the WCET, running up to {@code probes} verifier processes at once.
+	 * <p>
+	 * Each round probes bounds evenly spaced in the open interval (unsafe,safe). As the property
+	 * is monotone in the bound, a safe answer for {@code m} makes all pending probes above {@code m}
+	 * useless, and an unsafe answer for {@code m} all pending probes below {@code m}. Those
+	 * verifier processes are killed, and the next round starts as soon as all probes of the current
+	 * round have finished or have been cancelled.
+	 * </p>
+	 */
+	private long searchWCETParallel(long ub, int probes) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(probes);
+		try {
+			/* interval[0] is an unsafe bound, interval[1] a safe one */
+			long[] interval;
+			if(ub >= 1) {
+				interval = new long[] { 0, ub };
+			} else {
+				interval = new long[] { 1, Long.MAX_VALUE };
+				long next = 100;
+				while(interval[1] == Long.MAX_VALUE) {
+					long[] bounds = new long[probes];
+					for(int i = 0; i < probes; i++) {
+						bounds[i] = next;
+						next *= 2;
+					}
+					probeBounds(executor, bounds, interval);
+					next = interval[0] * 2;
+				}
+			}
+			while(interval[0] + 1 < interval[1]) {
+				long span = interval[1] - interval[0];
+				int n = (int) Math.min(probes, span - 1);
+				long[] bounds = new long[n];
+				for(int i = 0; i < n; i++) {
+					bounds[i] = interval[0] + (span * (i+1)) / (n+1);
+				}
+				probeBounds(executor, bounds, interval);
+			}
+			return interval[1];
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void probeBounds(ExecutorService executor, long[] bounds, long[] interval) throws IOException {
+		CompletionService<Boolean> probeResults = new ExecutorCompletionService<Boolean>(executor);
+		Map<Future<Boolean>, Probe> pending = new HashMap<Future<Boolean>, Probe>();
+		for(long bound : bounds) {
+			Probe probe = new Probe(bound);
+			pending.put(probeResults.submit(probe), probe);
+		}
+		try {
+			while(! pending.isEmpty()) {
+				Future<Boolean> done = probeResults.take();
+				Probe probe = pending.remove(done);
+				Boolean isSafe;
+				try {
+					isSafe = done.get();
+				} catch (ExecutionException e) {
+					if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+					throw new IOException("Verifier probe failed", e.getCause());
+				}
+				if(isSafe == null) continue; /* cancelled */
+				if(isSafe) {
+					interval[1] = Math.min(interval[1], probe.bound);
+				} else {
+					interval[0] = Math.max(interval[0], probe.bound);
+				}
+				for(Probe other : pending.values()) {
+					if(other.bound <= interval[0] || other.bound >= interval[1]) other.cancel();
+				}
+				System.err.println(MessageFormat.format("WCET bounds (unsafe/safe): {0}/{1}",
+						interval[0], interval[1] == Long.MAX_VALUE ? "?" : interval[1]));
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while waiting for verifier to finish", e);
+		} finally {
+			for(Probe other : pending.values()) other.cancel();
+		}
+	}
+
+	/** Checks one bound, using its own query file and verifier process */
+	private class Probe implements Callable<Boolean> {
+		private final long bound;
+		private Process verifier = null;
+		private boolean cancelled = false;
+
+		public Probe(long bound) {
+			this.bound = bound;
+		}
+		/** @return whether the bound is safe, or null if the probe has been cancelled */
+		public Boolean call() throws IOException {
+			File probeQuery = File.createTempFile("query", ".q");
+			try {
+				writeQueryFile(probeQuery, bound);
+				return runVerifier(getCommand(probeQuery), this);
+			} finally {
+				probeQuery.delete();
+			}
+		}
+		private synchronized boolean attach(Process p) {
+			if(cancelled) {
+				p.destroy();
+				return false;
+			}
+			verifier = p;
+			return true;
+		}
+		private synchronized boolean isCancelled() {
+			return cancelled;
+		}
+		private synchronized void cancel() {
+			cancelled = true;
+			if(verifier != null) verifier.destroy();
+		}
+	}
+
+	private String[] getCommand(File query) {
+		List<String> cmdlist = new ArrayList<String>();
+		cmdlist.add(config.getOption(UppAalConfig.UPPAAL_VERIFYTA_BINARY));
+		cmdlist.add("-q");
+		cmdlist.add("-S");
+		cmdlist.add("2");
+		cmdlist.add("-o");
+		cmdlist.add("2");
+		if(config.getOption(UppAalConfig.UPPAAL_CONVEX_HULL)) {
+			cmdlist.add("-A");
+		}
+		cmdlist.add(modelFile.getPath());
+		cmdlist.add(query.getPath());
+		return cmdlist.toArray(new String[cmdlist.size()]);
+	}
 	private static class StreamReaderThread extends Thread {
 		private List<String> data = null;
 		private BufferedReader reader;
@@ -108,6 +243,7 @@ public class WcetSearch {
 		private LinkedList<String> dataList = null;
 		private boolean doEcho = false;
 		private int doStatusEcho;
+		private IOException error = null;
 
 		public StreamReaderThread(InputStream inputStream) {
 			this.reader = new BufferedReader(new InputStreamReader(inputStream));
@@ -133,9 +269,13 @@ public class WcetSearch {
 					process(l);
 				}
 			} catch (IOException e) {
-				e.printStackTrace();
+				/* the stream is closed when a cancelled verifier is killed */
+				error = e;
 			}
 		}
+		public IOException getError() {
+			return error;
+		}
 		public List<String> getData() {
 			if(dataList != null) {
 				data = new ArrayList<String>(dataList);
@@ -161,8 +301,13 @@ public class WcetSearch {
 	}
 	private boolean checkBound(String[] cmd, long m) throws IOException {
 		writeQueryFile(queryFile, m);
+		return runVerifier(cmd, null);
+	}
+	/** @return whether the bound is safe, or null if the given probe has been cancelled */
+	private Boolean runVerifier(String[] cmd, Probe probe) throws IOException {
 		long start = System.nanoTime();
 		Process verifier = Runtime.getRuntime().exec(cmd);
+		if(probe != null && ! probe.attach(verifier)) return null;
 		StreamReaderThread outLines = new StreamReaderThread(verifier.getInputStream(),3);
 		//outLines.setEcho(true);
 		outLines.setStatusEcho(true);
@@ -170,17 +315,26 @@ public class WcetSearch {
 		StreamReaderThread errLines = new StreamReaderThread(verifier.getErrorStream());
 		errLines.run();
 		try {
-			if(verifier.waitFor() != 0) {
+			int exitCode = verifier.waitFor();
+			if(probe != null && probe.isCancelled()) {
+				return null;
+			} else if(exitCode != 0) {
 				logger.error("verifyta: "+errLines.getMessage());
-				throw new IOException("Uppaal verifier terminated with exit code: "+verifier.exitValue());
+				throw new IOException("Uppaal verifier terminated with exit code: "+exitCode);
+			} else if(outLines.getError() != null) {
+				throw outLines.getError();
 			} else {
 				long stop  = System.nanoTime();
-				maxSolverTime = Math.max(maxSolverTime,((double)(stop-start)) / 1.0E9);				
+				recordSolverTime(((double)(stop-start)) / 1.0E9);
 			}
 		} catch (InterruptedException e) {
+			verifier.destroy();
 			throw new IOException("Interrupted while waiting for verifier to finish", e);
 		}
-		return checkIfSafe(outLines.getData());	
+		return checkIfSafe(outLines.getData());
+	}
+	private synchronized void recordSolverTime(double time) {
+		maxSolverTime = Math.max(maxSolverTime, time);
 	}
 	private String getQuery(long bound) {
 		return "A[] (M0.E imply t<="+bound+")";
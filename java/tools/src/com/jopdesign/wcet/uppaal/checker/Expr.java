@@ -0,0 +1,283 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jopdesign.wcet.uppaal.checker;
+
+/**
+ * Expressions of the UPPAAL declaration and label language, resolved to state vector
+ * slots and function frame slots. Booleans are represented as 0 and 1.
+ */
+abstract class Expr {
+
+	/** Evaluation environment: the unpacked state vector and the frame of the current function */
+	static final class Env {
+		int[] state;
+		int[] frame;
+		int retval;
+		Env(int[] state) {
+			this.state = state;
+			this.frame = null;
+		}
+	}
+
+	/** Runtime errors of the model, like out of range assignments */
+	static class EvaluationError extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		EvaluationError(String msg) {
+			super(msg);
+		}
+	}
+
+	interface LValue {
+		int load(Env env);
+		void store(Env env, int value);
+	}
+
+	abstract int eval(Env env);
+
+	boolean isConstant() {
+		return false;
+	}
+
+	static boolean isTrue(int v) {
+		return v != 0;
+	}
+
+	static final class Const extends Expr {
+		private final int value;
+		Const(int value) { this.value = value; }
+		int eval(Env env) { return value; }
+		boolean isConstant() { return true; }
+	}
+
+	/** A scalar variable in the state vector */
+	static final class StateVar extends Expr implements LValue {
+		private final String name;
+		private final int slot;
+		private final int lo, hi;
+		StateVar(String name, int slot, int lo, int hi) {
+			this.name = name;
+			this.slot = slot;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		int eval(Env env) { return env.state[slot]; }
+		public int load(Env env) { return env.state[slot]; }
+		public void store(Env env, int value) {
+			if(value < lo || value > hi) {
+				throw new EvaluationError("Assignment of "+value+" to "+name+" is out of range ["+lo+","+hi+"]");
+			}
+			env.state[slot] = value;
+		}
+	}
+
+	/** An element of an array in the state vector */
+	static final class StateArrayElem extends Expr implements LValue {
+		private final String name;
+		private final int base, length;
+		private final int lo, hi;
+		private final Expr index;
+		StateArrayElem(String name, int base, int length, int lo, int hi, Expr index) {
+			this.name = name;
+			this.base = base;
+			this.length = length;
+			this.lo = lo;
+			this.hi = hi;
+			this.index = index;
+		}
+		private int slot(Env env) {
+			int i = index.eval(env);
+			if(i < 0 || i >= length) {
+				throw new EvaluationError("Array index "+i+" out of bounds for "+name+"["+length+"]");
+			}
+			return base + i;
+		}
+		int eval(Env env) { return env.state[slot(env)]; }
+		public int load(Env env) { return env.state[slot(env)]; }
+		public void store(Env env, int value) {
+			if(value < lo || value > hi) {
+				throw new EvaluationError("Assignment of "+value+" to "+name+" is out of range ["+lo+","+hi+"]");
+			}
+			env.state[slot(env)] = value;
+		}
+	}
+
+	/** An element of a constant array */
+	static final class ConstArrayElem extends Expr {
+		private final String name;
+		private final int[] values;
+		private final Expr index;
+		ConstArrayElem(String name, int[] values, Expr index) {
+			this.name = name;
+			this.values = values;
+			this.index = index;
+		}
+		int eval(Env env) {
+			int i = index.eval(env);
+			if(i < 0 || i >= values.length) {
+				throw new EvaluationError("Array index "+i+" out of bounds for "+name+"["+values.length+"]");
+			}
+			return values[i];
+		}
+	}
+
+	/** A parameter or local variable of a function */
+	static final class FrameVar extends Expr implements LValue {
+		private final int slot;
+		FrameVar(int slot) { this.slot = slot; }
+		int eval(Env env) { return env.frame[slot]; }
+		public int load(Env env) { return env.frame[slot]; }
+		public void store(Env env, int value) { env.frame[slot] = value; }
+	}
+
+	static final class Assign extends Expr {
+		private final LValue target;
+		private final String op;
+		private final Expr value;
+		Assign(LValue target, String op, Expr value) {
+			this.target = target;
+			this.op = op;
+			this.value = value;
+		}
+		int eval(Env env) {
+			int v = value.eval(env);
+			if(op.equals("+=")) v = target.load(env) + v;
+			else if(op.equals("-=")) v = target.load(env) - v;
+			else if(op.equals("*=")) v = target.load(env) * v;
+			else if(op.equals("/=")) v = Binary.divide(target.load(env), v);
+			target.store(env, v);
+			return v;
+		}
+	}
+
+	static final class IncDec extends Expr {
+		private final LValue target;
+		private final int delta;
+		private final boolean prefix;
+		IncDec(LValue target, int delta, boolean prefix) {
+			this.target = target;
+			this.delta = delta;
+			this.prefix = prefix;
+		}
+		int eval(Env env) {
+			int old = target.load(env);
+			target.store(env, old + delta);
+			return prefix ? old + delta : old;
+		}
+	}
+
+	static final class Binary extends Expr {
+		static final int ADD = 0, SUB = 1, MUL = 2, DIV = 3, MOD = 4,
+		                 LT = 5, LE = 6, GT = 7, GE = 8, EQ = 9, NE = 10, AND = 11, OR = 12;
+		private final int op;
+		private final Expr left, right;
+		Binary(int op, Expr left, Expr right) {
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+		static int divide(int a, int b) {
+			if(b == 0) throw new EvaluationError("Division by zero");
+			return a / b;
+		}
+		int eval(Env env) {
+			switch(op) {
+			case AND: return (isTrue(left.eval(env)) && isTrue(right.eval(env))) ? 1 : 0;
+			case OR:  return (isTrue(left.eval(env)) || isTrue(right.eval(env))) ? 1 : 0;
+			}
+			int a = left.eval(env);
+			int b = right.eval(env);
+			switch(op) {
+			case ADD: return a + b;
+			case SUB: return a - b;
+			case MUL: return a * b;
+			case DIV: return divide(a, b);
+			case MOD:
+				if(b == 0) throw new EvaluationError("Division by zero");
+				return a % b;
+			case LT: return a < b ? 1 : 0;
+			case LE: return a <= b ? 1 : 0;
+			case GT: return a > b ? 1 : 0;
+			case GE: return a >= b ? 1 : 0;
+			case EQ: return a == b ? 1 : 0;
+			case NE: return a != b ? 1 : 0;
+			default: throw new AssertionError("Unknown operator: "+op);
+			}
+		}
+		boolean isConstant() {
+			return left.isConstant() && right.isConstant();
+		}
+	}
+
+	static final class Not extends Expr {
+		private final Expr e;
+		Not(Expr e) { this.e = e; }
+		int eval(Env env) { return isTrue(e.eval(env)) ? 0 : 1; }
+		boolean isConstant() { return e.isConstant(); }
+	}
+
+	static final class Neg extends Expr {
+		private final Expr e;
+		Neg(Expr e) { this.e = e; }
+		int eval(Env env) { return - e.eval(env); }
+		boolean isConstant() { return e.isConstant(); }
+	}
+
+	static final class Cond extends Expr {
+		private final Expr c, a, b;
+		Cond(Expr c, Expr a, Expr b) {
+			this.c = c;
+			this.a = a;
+			this.b = b;
+		}
+		int eval(Env env) { return isTrue(c.eval(env)) ? a.eval(env) : b.eval(env); }
+		boolean isConstant() { return c.isConstant() && a.isConstant() && b.isConstant(); }
+	}
+
+	static final class Call extends Expr {
+		private final Function function;
+		private final Expr[] args;
+		Call(Function function, Expr[] args) {
+			this.function = function;
+			this.args = args;
+		}
+		int eval(Env env) {
+			int[] frame = new int[function.frameSize];
+			for(int i = 0; i < args.length; i++) frame[i] = args[i].eval(env);
+			int[] saved = env.frame;
+			env.frame = frame;
+			try {
+				function.body.exec(env);
+			} finally {
+				env.frame = saved;
+			}
+			return env.retval;
+		}
+	}
+
+	/** A user defined function; parameters occupy the first slots of the frame */
+	static final class Function {
+		final String name;
+		final int numParams;
+		int frameSize;
+		Stmt body;
+		Function(String name, int numParams) {
+			this.name = name;
+			this.numParams = numParams;
+		}
+	}
+}
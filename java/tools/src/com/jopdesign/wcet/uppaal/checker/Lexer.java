@@ -0,0 +1,145 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jopdesign.wcet.uppaal.checker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tokenizer for the C-like declaration and label language of UPPAAL.
+ */
+class Lexer {
+	enum TokenType { IDENT, NUMBER, OP, EOF };
+
+	static class Token {
+		final TokenType type;
+		final String text;
+		Token(TokenType type, String text) {
+			this.type = type;
+			this.text = text;
+		}
+		boolean is(String s) {
+			return type != TokenType.NUMBER && text.equals(s);
+		}
+		@Override
+		public String toString() {
+			return type == TokenType.EOF ? "<end of input>" : "'" + text + "'";
+		}
+	}
+
+	/* longest operators first */
+	private static final String[] OPERATORS = {
+		":=", "==", "!=", "<=", ">=", "&&", "||", "++", "--", "+=", "-=", "*=", "/=",
+		"<", ">", "=", "+", "-", "*", "/", "%", "!", "(", ")", "[", "]", "{", "}",
+		",", ";", "?", ":", "."
+	};
+
+	private final List<Token> tokens;
+	private int pos;
+
+	Lexer(String source) throws ModelCheckerException {
+		this.tokens = tokenize(source);
+		this.pos = 0;
+	}
+
+	Token peek() {
+		return tokens.get(pos);
+	}
+
+	Token peek(int ahead) {
+		return tokens.get(Math.min(pos + ahead, tokens.size() - 1));
+	}
+
+	Token next() {
+		Token t = tokens.get(pos);
+		if(t.type != TokenType.EOF) pos++;
+		return t;
+	}
+
+	boolean atEnd() {
+		return peek().type == TokenType.EOF;
+	}
+
+	/** consume the given token if it is next in the input */
+	boolean accept(String s) {
+		if(peek().is(s)) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	void expect(String s) throws ModelCheckerException {
+		if(! accept(s)) throw error("expected '" + s + "'");
+	}
+
+	String expectIdent() throws ModelCheckerException {
+		if(peek().type != TokenType.IDENT) throw error("expected identifier");
+		return next().text;
+	}
+
+	ModelCheckerException error(String msg) {
+		return new ModelCheckerException("Syntax error: " + msg + " at " + peek() + " in: " + sourceContext());
+	}
+
+	private String sourceContext() {
+		StringBuilder sb = new StringBuilder();
+		for(int i = Math.max(0, pos - 8); i < Math.min(tokens.size() - 1, pos + 4); i++) {
+			sb.append(tokens.get(i).text).append(' ');
+		}
+		return sb.toString().trim();
+	}
+
+	private static List<Token> tokenize(String s) throws ModelCheckerException {
+		List<Token> tokens = new ArrayList<Token>();
+		int i = 0;
+		int n = s.length();
+		outer:
+		while(i < n) {
+			char c = s.charAt(i);
+			if(Character.isWhitespace(c)) {
+				i++;
+			} else if(s.startsWith("/*", i)) {
+				int end = s.indexOf("*/", i + 2);
+				if(end < 0) throw new ModelCheckerException("Syntax error: unterminated comment");
+				i = end + 2;
+			} else if(s.startsWith("//", i)) {
+				while(i < n && s.charAt(i) != '\n') i++;
+			} else if(Character.isLetter(c) || c == '_') {
+				int start = i;
+				while(i < n && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '_')) i++;
+				tokens.add(new Token(TokenType.IDENT, s.substring(start, i)));
+			} else if(Character.isDigit(c)) {
+				int start = i;
+				while(i < n && Character.isDigit(s.charAt(i))) i++;
+				tokens.add(new Token(TokenType.NUMBER, s.substring(start, i)));
+			} else {
+				for(String op : OPERATORS) {
+					if(s.startsWith(op, i)) {
+						tokens.add(new Token(TokenType.OP, op));
+						i += op.length();
+						continue outer;
+					}
+				}
+				throw new ModelCheckerException("Syntax error: unexpected character '" + c + "'");
+			}
+		}
+		tokens.add(new Token(TokenType.EOF, ""));
+		return tokens;
+	}
+}
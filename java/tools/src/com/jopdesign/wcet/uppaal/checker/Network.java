@@ -0,0 +1,356 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jopdesign.wcet.uppaal.checker;
+
+import com.jopdesign.common.misc.MiscUtils;
+import com.jopdesign.wcet.uppaal.checker.Expr.Env;
+import com.jopdesign.wcet.uppaal.checker.Parser.Invariant;
+import com.jopdesign.wcet.uppaal.checker.Parser.Scope;
+import com.jopdesign.wcet.uppaal.checker.Parser.Updates;
+import com.jopdesign.wcet.uppaal.model.Location;
+import com.jopdesign.wcet.uppaal.model.NTASystem;
+import com.jopdesign.wcet.uppaal.model.Template;
+import com.jopdesign.wcet.uppaal.model.Transition;
+import com.jopdesign.wcet.uppaal.model.TransitionAttributes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <p>A network of timed automata, compiled for explicit state exploration.</p>
+ *
+ * <p>The supported class of models has at most one clock {@code x} which is reset or
+ * constrained, and this clock only appears in upper bound invariants ({@code x <= c})
+ * and resets ({@code x := 0}). Other clocks are observers, they measure the elapsed time.
+ * As there are no lower bounds on {@code x}, the clock never disables a transition, and
+ * the maximal elapsed time can be computed from the discrete state space:
+ * A state holds the locations, the variables and the maximal value {@code X} the
+ * clock may have when entering the state. When leaving a state which allows delays,
+ * {@code X} becomes the invariant bound {@code K} of the state. A transition resetting
+ * {@code x} adds the current maximal clock value to the elapsed time, otherwise
+ * {@code X} is limited by the invariant of the target state.</p>
+ *
+ * <p>The state vector consists of the variables, one location index per process and the
+ * index of {@code X} in {@link #xValues}.</p>
+ */
+class Network {
+	static final int INFINITY = Integer.MAX_VALUE;
+
+	interface SuccessorHandler {
+		/**
+		 * @param state the successor state (owned by the handler)
+		 * @param time the time elapsed when taking the transition; {@link Network#INFINITY} if unbounded
+		 */
+		void successor(int[] state, int time);
+	}
+
+	static class Edge {
+		int target;
+		Expr[] guards;
+		int channel = -1;
+		boolean send;
+		Expr[] updates;
+		boolean reset;
+	}
+
+	static class Process {
+		final String name;
+		String[] locationNames;
+		boolean[] committed, urgent;
+		int[] bound;
+		Expr[] dataInvariant;
+		Edge[][] edges;
+		int initial;
+		Process(String name) {
+			this.name = name;
+		}
+		int locationIndex(String loc) {
+			for(int i = 0; i < locationNames.length; i++) {
+				if(locationNames[i].equals(loc)) return i;
+			}
+			return -1;
+		}
+	}
+
+	private final List<int[]> variables = new ArrayList<int[]>();
+	private final List<String> clocks = new ArrayList<String>();
+	private final List<String> channels = new ArrayList<String>();
+	private Process[] processes;
+	private int numVars;
+	private int[] xValues;
+	private int xZero;
+
+	private Network() {
+	}
+
+	int addVariable(int lo, int hi, int init) {
+		variables.add(new int[] { lo, hi, init });
+		return variables.size() - 1;
+	}
+
+	int addClock(String name) {
+		clocks.add(name);
+		return clocks.size() - 1;
+	}
+
+	int addChannel(String name) {
+		channels.add(name);
+		return channels.size() - 1;
+	}
+
+	Process[] getProcesses() {
+		return processes;
+	}
+
+	int getProcessIndex(String name) {
+		for(int i = 0; i < processes.length; i++) {
+			if(processes[i].name.equals(name)) return i;
+		}
+		return -1;
+	}
+
+	int getLocationSlot(int process) {
+		return numVars + process;
+	}
+
+	int getStateSize() {
+		return numVars + processes.length + 1;
+	}
+
+	/** @return lower and upper bounds of all slots of the state vector */
+	int[][] getSlotRanges() {
+		int n = getStateSize();
+		int[][] ranges = new int[n][];
+		for(int i = 0; i < numVars; i++) {
+			ranges[i] = new int[] { variables.get(i)[0], variables.get(i)[1] };
+		}
+		for(int p = 0; p < processes.length; p++) {
+			ranges[numVars + p] = new int[] { 0, processes[p].locationNames.length - 1 };
+		}
+		ranges[n - 1] = new int[] { 0, xValues.length - 1 };
+		return ranges;
+	}
+
+	int[] initialState() {
+		int[] s = new int[getStateSize()];
+		for(int i = 0; i < numVars; i++) s[i] = variables.get(i)[2];
+		for(int p = 0; p < processes.length; p++) s[numVars + p] = processes[p].initial;
+		s[s.length - 1] = xZero;
+		return s;
+	}
+
+	/**
+	 * @return the maximal value of the clock while in the given state,
+	 *         or {@link #INFINITY} if time may pass unboundedly
+	 */
+	int maxClockValue(int[] s) {
+		boolean delay = true;
+		int bound = INFINITY;
+		for(int p = 0; p < processes.length; p++) {
+			Process proc = processes[p];
+			int loc = s[numVars + p];
+			if(proc.committed[loc] || proc.urgent[loc]) delay = false;
+			bound = Math.min(bound, proc.bound[loc]);
+		}
+		return delay ? bound : xValues[s[s.length - 1]];
+	}
+
+	void successors(int[] s, SuccessorHandler handler) {
+		boolean committed = false;
+		for(int p = 0; p < processes.length; p++) {
+			if(processes[p].committed[s[numVars + p]]) committed = true;
+		}
+		int maxClock = maxClockValue(s);
+		Env env = new Env(s);
+		for(int p = 0; p < processes.length; p++) {
+			Process proc = processes[p];
+			int loc = s[numVars + p];
+			boolean pCommitted = proc.committed[loc];
+			for(Edge e : proc.edges[loc]) {
+				if(e.channel < 0) {
+					if(committed && ! pCommitted) continue;
+					if(! isEnabled(e, env)) continue;
+					int[] t = s.clone();
+					fire(t, p, e);
+					finish(t, e.reset, maxClock, handler);
+				} else if(e.send) {
+					if(! isEnabled(e, env)) continue;
+					for(int q = 0; q < processes.length; q++) {
+						if(q == p) continue;
+						int qloc = s[numVars + q];
+						if(committed && ! pCommitted && ! processes[q].committed[qloc]) continue;
+						for(Edge f : processes[q].edges[qloc]) {
+							if(f.channel != e.channel || f.send) continue;
+							if(! isEnabled(f, env)) continue;
+							int[] t = s.clone();
+							/* the updates of the sender are executed first */
+							fire(t, p, e);
+							fire(t, q, f);
+							finish(t, e.reset || f.reset, maxClock, handler);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean isEnabled(Edge e, Env env) {
+		for(Expr g : e.guards) {
+			if(! Expr.isTrue(g.eval(env))) return false;
+		}
+		return true;
+	}
+
+	private void fire(int[] t, int p, Edge e) {
+		Env env = new Env(t);
+		for(Expr u : e.updates) u.eval(env);
+		t[numVars + p] = e.target;
+	}
+
+	private void finish(int[] t, boolean reset, int maxClock, SuccessorHandler handler) {
+		Env env = new Env(t);
+		int bound = INFINITY;
+		for(int p = 0; p < processes.length; p++) {
+			Process proc = processes[p];
+			int loc = t[numVars + p];
+			if(proc.dataInvariant[loc] != null && ! Expr.isTrue(proc.dataInvariant[loc].eval(env))) return;
+			bound = Math.min(bound, proc.bound[loc]);
+		}
+		if(reset) {
+			t[t.length - 1] = xZero;
+			handler.successor(t, maxClock);
+		} else {
+			t[t.length - 1] = Arrays.binarySearch(xValues, Math.min(maxClock, bound));
+			handler.successor(t, 0);
+		}
+	}
+
+	/* Compilation
+	 * -----------
+	 */
+	static Network compile(NTASystem system) throws ModelCheckerException {
+		Network net = new Network();
+		Scope global = new Scope(null);
+		new Parser(MiscUtils.joinStrings(system.getDeclarations(), "\n"), global, net).parseDeclarations();
+		Map<String, String> processTemplates = new LinkedHashMap<String, String>();
+		List<String> processNames = new ArrayList<String>();
+		new Parser(system.getSystem(), global, net).parseSystem(processTemplates, processNames);
+		if(processNames.isEmpty()) throw new ModelCheckerException("No system declaration");
+
+		Set<Integer> usedClocks = new HashSet<Integer>();
+		Set<Integer> bounds = new TreeSet<Integer>();
+		bounds.add(0);
+		bounds.add(INFINITY);
+		net.processes = new Process[processNames.size()];
+		for(int i = 0; i < processNames.size(); i++) {
+			String name = processNames.get(i);
+			String templateName = processTemplates.containsKey(name) ? processTemplates.get(name) : name;
+			Template template = system.getTemplates().get(templateName);
+			if(template == null) throw new ModelCheckerException("Unknown template: "+templateName);
+			if(! template.getParameters().isEmpty()) {
+				throw new ModelCheckerException("Not supported by the built-in model checker: template parameters");
+			}
+			net.processes[i] = compileProcess(net, name, template, new Scope(global), usedClocks, bounds);
+		}
+		if(usedClocks.size() > 1) {
+			throw new ModelCheckerException("Not supported by the built-in model checker: more than one clock is reset or constrained");
+		}
+		net.numVars = net.variables.size();
+		net.xValues = new int[bounds.size()];
+		int k = 0;
+		for(int b : bounds) net.xValues[k++] = b;
+		net.xZero = Arrays.binarySearch(net.xValues, 0);
+		return net;
+	}
+
+	private static Process compileProcess(Network net, String name, Template template, Scope scope,
+			                              Set<Integer> usedClocks, Set<Integer> bounds) throws ModelCheckerException {
+		new Parser(MiscUtils.joinStrings(template.getDeclarations(), "\n"), scope, net).parseDeclarations();
+		Process proc = new Process(name);
+		List<Location> locs = new ArrayList<Location>(template.getLocations());
+		Collections.sort(locs);
+		int n = locs.size();
+		Map<Location, Integer> index = new HashMap<Location, Integer>();
+		proc.locationNames = new String[n];
+		proc.committed = new boolean[n];
+		proc.urgent = new boolean[n];
+		proc.bound = new int[n];
+		proc.dataInvariant = new Expr[n];
+		for(int i = 0; i < n; i++) {
+			Location l = locs.get(i);
+			index.put(l, i);
+			proc.locationNames[i] = l.getName();
+			proc.committed[i] = l.isCommitted();
+			proc.urgent[i] = l.isUrgent();
+			proc.bound[i] = INFINITY;
+			if(l.hasInvariant()) {
+				Invariant inv = new Parser(l.getInvariant(), scope, net).parseInvariant();
+				if(inv.clock >= 0) {
+					if(inv.bound < 0) throw new ModelCheckerException("Negative clock bound in invariant of "+l.getName());
+					usedClocks.add(inv.clock);
+					proc.bound[i] = inv.bound;
+					bounds.add(inv.bound);
+				}
+				proc.dataInvariant[i] = inv.data;
+			}
+		}
+		if(template.getInitial() == null) throw new ModelCheckerException("No initial location in "+template.getId());
+		proc.initial = index.get(template.getInitial());
+		List<List<Edge>> edges = new ArrayList<List<Edge>>();
+		for(int i = 0; i < n; i++) edges.add(new ArrayList<Edge>());
+		for(Transition t : template.getTransitions()) {
+			TransitionAttributes attrs = t.getAttrs();
+			if(! attrs.getSelects().isEmpty()) {
+				throw new ModelCheckerException("Not supported by the built-in model checker: select");
+			}
+			Edge e = new Edge();
+			e.target = index.get(t.getTarget());
+			List<Expr> guards = new ArrayList<Expr>();
+			for(String g : attrs.getGuards()) {
+				guards.add(new Parser(g, scope, net).parseGuard());
+			}
+			e.guards = guards.toArray(new Expr[guards.size()]);
+			Updates updates = new Updates();
+			for(String u : attrs.getUpdates()) {
+				new Parser(u, scope, net).parseUpdates(updates);
+			}
+			e.updates = updates.exprs.toArray(new Expr[updates.exprs.size()]);
+			e.reset = ! updates.resets.isEmpty();
+			usedClocks.addAll(updates.resets);
+			if(attrs.getSync().trim().length() > 0) {
+				boolean[] isSend = new boolean[1];
+				e.channel = new Parser(attrs.getSync(), scope, net).parseSync(isSend);
+				e.send = isSend[0];
+			}
+			edges.get(index.get(t.getSource())).add(e);
+		}
+		proc.edges = new Edge[n][];
+		for(int i = 0; i < n; i++) {
+			proc.edges[i] = edges.get(i).toArray(new Edge[edges.get(i).size()]);
+		}
+		return proc;
+	}
+}
@@ -0,0 +1,605 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jopdesign.wcet.uppaal.checker;
+
+import com.jopdesign.wcet.uppaal.checker.Expr.Function;
+import com.jopdesign.wcet.uppaal.checker.Lexer.TokenType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recursive descent parser for the subset of the UPPAAL language used by the WCET translator:
+ * bounded integers, booleans, (constant) arrays, clocks, binary channels and functions.
+ * Names are resolved while parsing, so declarations have to precede their use.
+ */
+class Parser {
+
+	/** symbol table, chained to the enclosing scope */
+	static class Scope {
+		enum Kind { CONST, CONST_ARRAY, VAR, ARRAY, FRAME, CLOCK, CHANNEL, FUNCTION };
+
+		static class Symbol {
+			final Kind kind;
+			final String name;
+			int value;     /* constant value, slot, array base, clock or channel index */
+			int length;    /* array length */
+			int lo, hi;    /* variable range */
+			int[] values;  /* constant array */
+			Function function;
+			Symbol(Kind kind, String name) {
+				this.kind = kind;
+				this.name = name;
+			}
+		}
+
+		private final Scope parent;
+		private final Map<String, Symbol> symbols = new HashMap<String, Symbol>();
+
+		Scope(Scope parent) {
+			this.parent = parent;
+		}
+
+		Symbol lookup(String name) {
+			Symbol s = symbols.get(name);
+			if(s == null && parent != null) return parent.lookup(name);
+			return s;
+		}
+
+		Symbol define(Kind kind, String name) throws ModelCheckerException {
+			if(symbols.containsKey(name)) throw new ModelCheckerException("Duplicate declaration of "+name);
+			Symbol s = new Symbol(kind, name);
+			symbols.put(name, s);
+			return s;
+		}
+	}
+
+	/** clock constraints and data conditions of a location invariant */
+	static class Invariant {
+		int clock = -1;
+		int bound = Integer.MAX_VALUE;
+		Expr data = null;
+	}
+
+	/** the assignments of a transition; clock resets are kept separately */
+	static class Updates {
+		List<Integer> resets = new ArrayList<Integer>();
+		List<Expr> exprs = new ArrayList<Expr>();
+	}
+
+	private static final int INT_MIN = -32768, INT_MAX = 32767;
+
+	private final Lexer lx;
+	private final Network net;
+	private Scope scope;
+	/* frame size of the function being parsed, or -1 */
+	private int frameSize = -1;
+	private int clockRefs = 0;
+
+	Parser(String source, Scope scope, Network net) throws ModelCheckerException {
+		this.lx = new Lexer(source);
+		this.scope = scope;
+		this.net = net;
+	}
+
+	/* Declarations
+	 * ------------
+	 */
+	void parseDeclarations() throws ModelCheckerException {
+		while(! lx.atEnd()) {
+			if(lx.accept(";")) continue;
+			if(lx.peek().is("typedef") || lx.peek().is("struct") || lx.peek().is("scalar")
+			   || lx.peek().is("urgent") || lx.peek().is("broadcast") || lx.peek().is("meta")) {
+				throw unsupported("declaration '"+lx.peek().text+"'");
+			}
+			if(lx.accept("clock")) {
+				do {
+					String name = lx.expectIdent();
+					scope.define(Scope.Kind.CLOCK, name).value = net.addClock(name);
+				} while(lx.accept(","));
+				lx.expect(";");
+			} else if(lx.accept("chan")) {
+				do {
+					String name = lx.expectIdent();
+					if(lx.peek().is("[")) throw unsupported("channel arrays");
+					scope.define(Scope.Kind.CHANNEL, name).value = net.addChannel(name);
+				} while(lx.accept(","));
+				lx.expect(";");
+			} else {
+				boolean isConst = lx.accept("const");
+				int[] range = parseType();
+				String name = lx.expectIdent();
+				if(lx.peek().is("(")) {
+					if(isConst) throw lx.error("const function");
+					parseFunction(name);
+				} else {
+					if(range == null) throw lx.error("void variable");
+					parseVariable(isConst, range, name);
+					while(lx.accept(",")) {
+						parseVariable(isConst, range, lx.expectIdent());
+					}
+					lx.expect(";");
+				}
+			}
+		}
+	}
+
+	/** @return the range of the type, or null for void */
+	private int[] parseType() throws ModelCheckerException {
+		if(lx.accept("void")) return null;
+		if(lx.accept("bool")) return new int[] { 0, 1 };
+		if(lx.accept("int")) {
+			if(lx.accept("[")) {
+				int lo = parseConstant();
+				lx.expect(",");
+				int hi = parseConstant();
+				lx.expect("]");
+				return new int[] { lo, hi };
+			}
+			return new int[] { INT_MIN, INT_MAX };
+		}
+		throw lx.error("expected type");
+	}
+
+	private void parseVariable(boolean isConst, int[] range, String name) throws ModelCheckerException {
+		int length = -1;
+		if(lx.accept("[")) {
+			length = parseConstant();
+			lx.expect("]");
+			if(lx.peek().is("[")) throw unsupported("multi-dimensional arrays");
+		}
+		int[] init = null;
+		if(lx.accept("=") || lx.accept(":=")) {
+			if(length >= 0) {
+				lx.expect("{");
+				List<Integer> elems = new ArrayList<Integer>();
+				do {
+					elems.add(parseConstant());
+				} while(lx.accept(","));
+				lx.expect("}");
+				if(elems.size() != length) {
+					throw new ModelCheckerException("Initializer of "+name+" has "+elems.size()+" instead of "+length+" elements");
+				}
+				init = new int[length];
+				for(int i = 0; i < length; i++) init[i] = elems.get(i);
+			} else {
+				init = new int[] { parseConstant() };
+			}
+		} else if(isConst) {
+			throw lx.error("constant "+name+" without initializer");
+		} else {
+			init = new int[Math.max(length, 1)];
+		}
+		for(int v : init) {
+			if(v < range[0] || v > range[1]) {
+				throw new ModelCheckerException("Initial value "+v+" of "+name+" out of range");
+			}
+		}
+		Scope.Symbol s;
+		if(isConst) {
+			s = scope.define(length >= 0 ? Scope.Kind.CONST_ARRAY : Scope.Kind.CONST, name);
+			if(length >= 0) s.values = init;
+			else s.value = init[0];
+		} else {
+			s = scope.define(length >= 0 ? Scope.Kind.ARRAY : Scope.Kind.VAR, name);
+			s.value = net.addVariable(range[0], range[1], init[0]);
+			for(int i = 1; i < init.length; i++) net.addVariable(range[0], range[1], init[i]);
+			s.length = length;
+		}
+		s.lo = range[0];
+		s.hi = range[1];
+	}
+
+	private void parseFunction(String name) throws ModelCheckerException {
+		Scope outer = this.scope;
+		this.scope = new Scope(outer);
+		this.frameSize = 0;
+		lx.expect("(");
+		List<String> params = new ArrayList<String>();
+		if(! lx.peek().is(")")) {
+			do {
+				lx.accept("const");
+				parseType();
+				if(lx.peek().is("&")) throw unsupported("reference parameters");
+				String p = lx.expectIdent();
+				scope.define(Scope.Kind.FRAME, p).value = frameSize++;
+				params.add(p);
+			} while(lx.accept(","));
+		}
+		lx.expect(")");
+		Function f = new Function(name, params.size());
+		outer.define(Scope.Kind.FUNCTION, name).function = f;
+		f.body = parseBlock();
+		f.frameSize = frameSize;
+		this.frameSize = -1;
+		this.scope = outer;
+	}
+
+	/* Statements
+	 * ----------
+	 */
+	private Stmt parseBlock() throws ModelCheckerException {
+		lx.expect("{");
+		Scope outer = this.scope;
+		this.scope = new Scope(outer);
+		List<Stmt> body = new ArrayList<Stmt>();
+		while(! lx.accept("}")) {
+			if(lx.atEnd()) throw lx.error("unterminated block");
+			body.addAll(parseStatement());
+		}
+		this.scope = outer;
+		return new Stmt.Block(body.toArray(new Stmt[body.size()]));
+	}
+
+	private List<Stmt> parseStatement() throws ModelCheckerException {
+		List<Stmt> stmts = new ArrayList<Stmt>();
+		if(lx.peek().is("{")) {
+			stmts.add(parseBlock());
+		} else if(lx.accept(";")) {
+			/* empty */
+		} else if(lx.accept("if")) {
+			lx.expect("(");
+			Expr cond = parseExpression();
+			lx.expect(")");
+			Stmt then = asStmt(parseStatement());
+			Stmt otherwise = lx.accept("else") ? asStmt(parseStatement()) : null;
+			stmts.add(new Stmt.If(cond, then, otherwise));
+		} else if(lx.accept("for")) {
+			lx.expect("(");
+			if(lx.peek().type == TokenType.IDENT && lx.peek(1).is(":")) throw unsupported("range iteration");
+			Expr init = lx.peek().is(";") ? null : parseExpression();
+			lx.expect(";");
+			Expr cond = lx.peek().is(";") ? null : parseExpression();
+			lx.expect(";");
+			Expr step = lx.peek().is(")") ? null : parseExpression();
+			lx.expect(")");
+			stmts.add(new Stmt.Loop(init, cond, step, asStmt(parseStatement())));
+		} else if(lx.accept("while")) {
+			lx.expect("(");
+			Expr cond = parseExpression();
+			lx.expect(")");
+			stmts.add(new Stmt.Loop(null, cond, null, asStmt(parseStatement())));
+		} else if(lx.accept("return")) {
+			Expr value = lx.peek().is(";") ? null : parseExpression();
+			lx.expect(";");
+			stmts.add(new Stmt.Return(value));
+		} else if(lx.peek().is("int") || lx.peek().is("bool") || lx.peek().is("const")) {
+			lx.accept("const");
+			parseType();
+			do {
+				String name = lx.expectIdent();
+				if(lx.peek().is("[")) throw unsupported("local arrays");
+				Expr init = null;
+				if(lx.accept("=") || lx.accept(":=")) init = parseAssignment();
+				int slot = frameSize++;
+				scope.define(Scope.Kind.FRAME, name).value = slot;
+				stmts.add(new Stmt.LocalInit(slot, init));
+			} while(lx.accept(","));
+			lx.expect(";");
+		} else {
+			stmts.add(new Stmt.ExprStmt(parseExpression()));
+			lx.expect(";");
+		}
+		return stmts;
+	}
+
+	private static Stmt asStmt(List<Stmt> stmts) {
+		if(stmts.size() == 1) return stmts.get(0);
+		return new Stmt.Block(stmts.toArray(new Stmt[stmts.size()]));
+	}
+
+	/* Labels
+	 * ------
+	 */
+	/** parse a guard; guards must not refer to clocks */
+	Expr parseGuard() throws ModelCheckerException {
+		int refs = clockRefs;
+		Expr e = parseExpression();
+		expectEnd();
+		if(clockRefs != refs) throw unsupported("clock constraints in guards");
+		return e;
+	}
+
+	/** parse an invariant, i.e., a conjunction of upper bounds on clocks and data conditions */
+	Invariant parseInvariant() throws ModelCheckerException {
+		Invariant inv = new Invariant();
+		do {
+			Scope.Symbol s = lx.peek().type == TokenType.IDENT ? scope.lookup(lx.peek().text) : null;
+			if(s != null && s.kind == Scope.Kind.CLOCK) {
+				lx.next();
+				if(! lx.accept("<=") && ! lx.accept("<")) throw unsupported("clock invariants other than upper bounds");
+				int bound = parseConstant();
+				if(inv.clock >= 0 && inv.clock != s.value) throw unsupported("invariants on more than one clock");
+				inv.clock = s.value;
+				inv.bound = Math.min(inv.bound, bound);
+			} else {
+				int refs = clockRefs;
+				Expr e = parseEquality();
+				if(clockRefs != refs) throw unsupported("clock constraint in invariant");
+				inv.data = (inv.data == null) ? e : new Expr.Binary(Expr.Binary.AND, inv.data, e);
+			}
+		} while(lx.accept("&&") || lx.accept("and"));
+		expectEnd();
+		return inv;
+	}
+
+	/** parse a comma separated list of assignments */
+	Updates parseUpdates(Updates updates) throws ModelCheckerException {
+		do {
+			Scope.Symbol s = lx.peek().type == TokenType.IDENT ? scope.lookup(lx.peek().text) : null;
+			if(s != null && s.kind == Scope.Kind.CLOCK) {
+				lx.next();
+				if(! lx.accept(":=") && ! lx.accept("=")) throw lx.error("expected clock reset");
+				if(parseConstant() != 0) throw unsupported("clock assignments other than resets");
+				updates.resets.add(s.value);
+			} else {
+				int refs = clockRefs;
+				updates.exprs.add(parseAssignment());
+				if(clockRefs != refs) throw unsupported("clocks in expressions");
+			}
+		} while(lx.accept(","));
+		expectEnd();
+		return updates;
+	}
+
+	/** parse a synchronization label {@code c!} or {@code c?} and return the channel index, negated for receive */
+	int parseSync(boolean[] isSend) throws ModelCheckerException {
+		String name = lx.expectIdent();
+		Scope.Symbol s = scope.lookup(name);
+		if(s == null || s.kind != Scope.Kind.CHANNEL) throw new ModelCheckerException("Not a channel: "+name);
+		if(lx.accept("!")) isSend[0] = true;
+		else if(lx.accept("?")) isSend[0] = false;
+		else throw lx.error("expected '!' or '?'");
+		expectEnd();
+		return s.value;
+	}
+
+	/** parse the system definition: process assignments, system line and optional progress measures */
+	void parseSystem(Map<String, String> processTemplates, List<String> processes) throws ModelCheckerException {
+		while(! lx.atEnd()) {
+			if(lx.accept(";")) continue;
+			if(lx.accept("system")) {
+				do {
+					processes.add(lx.expectIdent());
+				} while(lx.accept(","));
+				if(lx.peek().is("<")) throw unsupported("process priorities");
+				lx.expect(";");
+			} else if(lx.accept("progress")) {
+				/* progress measures only speed up UPPAAL, skip them */
+				lx.expect("{");
+				while(! lx.accept("}")) {
+					if(lx.atEnd()) throw lx.error("unterminated progress block");
+					lx.next();
+				}
+			} else {
+				String name = lx.expectIdent();
+				if(! lx.accept("=") && ! lx.accept(":=")) throw lx.error("expected process assignment");
+				String template = lx.expectIdent();
+				lx.expect("(");
+				if(! lx.accept(")")) throw unsupported("template arguments");
+				lx.expect(";");
+				processTemplates.put(name, template);
+			}
+		}
+	}
+
+	void expectEnd() throws ModelCheckerException {
+		if(! lx.atEnd()) throw lx.error("unexpected input");
+	}
+
+	private ModelCheckerException unsupported(String what) {
+		return new ModelCheckerException("Not supported by the built-in model checker: "+what);
+	}
+
+	/* Expressions
+	 * -----------
+	 */
+	private int parseConstant() throws ModelCheckerException {
+		Expr e = parseCond();
+		if(! e.isConstant()) throw lx.error("expected constant expression");
+		return e.eval(null);
+	}
+
+	Expr parseExpression() throws ModelCheckerException {
+		Expr e = parseAssignment();
+		if(lx.peek().is(",") && frameSize >= 0) {
+			/* comma operator in function bodies */
+			List<Expr> seq = new ArrayList<Expr>();
+			seq.add(e);
+			while(lx.accept(",")) seq.add(parseAssignment());
+			final Expr[] es = seq.toArray(new Expr[seq.size()]);
+			return new Expr() {
+				int eval(Env env) {
+					int v = 0;
+					for(Expr x : es) v = x.eval(env);
+					return v;
+				}
+			};
+		}
+		return e;
+	}
+
+	private Expr parseAssignment() throws ModelCheckerException {
+		Expr lhs = parseCond();
+		String op = lx.peek().text;
+		if(lx.peek().type == TokenType.OP &&
+		   (op.equals(":=") || op.equals("=") || op.equals("+=") || op.equals("-=") || op.equals("*=") || op.equals("/="))) {
+			lx.next();
+			if(! (lhs instanceof Expr.LValue)) throw lx.error("assignment to non-variable");
+			Expr rhs = parseAssignment();
+			if(op.equals(":=")) op = "=";
+			return new Expr.Assign((Expr.LValue) lhs, op, rhs);
+		}
+		return lhs;
+	}
+
+	private Expr parseCond() throws ModelCheckerException {
+		Expr c = parseOr();
+		if(lx.accept("?")) {
+			Expr a = parseAssignment();
+			lx.expect(":");
+			Expr b = parseAssignment();
+			return fold(new Expr.Cond(c, a, b));
+		}
+		return c;
+	}
+
+	private Expr parseOr() throws ModelCheckerException {
+		Expr e = parseAnd();
+		while(lx.accept("||") || lx.accept("or")) {
+			e = fold(new Expr.Binary(Expr.Binary.OR, e, parseAnd()));
+		}
+		return e;
+	}
+
+	private Expr parseAnd() throws ModelCheckerException {
+		Expr e = parseEquality();
+		while(lx.accept("&&") || lx.accept("and")) {
+			e = fold(new Expr.Binary(Expr.Binary.AND, e, parseEquality()));
+		}
+		return e;
+	}
+
+	private Expr parseEquality() throws ModelCheckerException {
+		Expr e = parseRelational();
+		while(true) {
+			if(lx.accept("==")) e = fold(new Expr.Binary(Expr.Binary.EQ, e, parseRelational()));
+			else if(lx.accept("!=")) e = fold(new Expr.Binary(Expr.Binary.NE, e, parseRelational()));
+			else return e;
+		}
+	}
+
+	private Expr parseRelational() throws ModelCheckerException {
+		Expr e = parseAdditive();
+		while(true) {
+			if(lx.accept("<")) e = fold(new Expr.Binary(Expr.Binary.LT, e, parseAdditive()));
+			else if(lx.accept("<=")) e = fold(new Expr.Binary(Expr.Binary.LE, e, parseAdditive()));
+			else if(lx.accept(">")) e = fold(new Expr.Binary(Expr.Binary.GT, e, parseAdditive()));
+			else if(lx.accept(">=")) e = fold(new Expr.Binary(Expr.Binary.GE, e, parseAdditive()));
+			else return e;
+		}
+	}
+
+	private Expr parseAdditive() throws ModelCheckerException {
+		Expr e = parseMultiplicative();
+		while(true) {
+			if(lx.accept("+")) e = fold(new Expr.Binary(Expr.Binary.ADD, e, parseMultiplicative()));
+			else if(lx.accept("-")) e = fold(new Expr.Binary(Expr.Binary.SUB, e, parseMultiplicative()));
+			else return e;
+		}
+	}
+
+	private Expr parseMultiplicative() throws ModelCheckerException {
+		Expr e = parseUnary();
+		while(true) {
+			if(lx.accept("*")) e = fold(new Expr.Binary(Expr.Binary.MUL, e, parseUnary()));
+			else if(lx.accept("/")) e = fold(new Expr.Binary(Expr.Binary.DIV, e, parseUnary()));
+			else if(lx.accept("%")) e = fold(new Expr.Binary(Expr.Binary.MOD, e, parseUnary()));
+			else return e;
+		}
+	}
+
+	private Expr parseUnary() throws ModelCheckerException {
+		if(lx.accept("!") || lx.accept("not")) return fold(new Expr.Not(parseUnary()));
+		if(lx.accept("-")) return fold(new Expr.Neg(parseUnary()));
+		if(lx.accept("+")) return parseUnary();
+		if(lx.peek().is("++") || lx.peek().is("--")) {
+			int delta = lx.next().is("++") ? 1 : -1;
+			Expr e = parseUnary();
+			if(! (e instanceof Expr.LValue)) throw lx.error("increment of non-variable");
+			return new Expr.IncDec((Expr.LValue) e, delta, true);
+		}
+		Expr e = parsePrimary();
+		while(lx.peek().is("++") || lx.peek().is("--")) {
+			int delta = lx.next().is("++") ? 1 : -1;
+			if(! (e instanceof Expr.LValue)) throw lx.error("increment of non-variable");
+			e = new Expr.IncDec((Expr.LValue) e, delta, false);
+		}
+		return e;
+	}
+
+	private Expr parsePrimary() throws ModelCheckerException {
+		if(lx.peek().type == TokenType.NUMBER) {
+			try {
+				return new Expr.Const(Integer.parseInt(lx.next().text));
+			} catch(NumberFormatException e) {
+				throw new ModelCheckerException("Integer constant out of range", e);
+			}
+		}
+		if(lx.accept("true")) return new Expr.Const(1);
+		if(lx.accept("false")) return new Expr.Const(0);
+		if(lx.accept("(")) {
+			Expr e = parseAssignment();
+			lx.expect(")");
+			return e;
+		}
+		String name = lx.expectIdent();
+		Scope.Symbol s = scope.lookup(name);
+		if(s == null) throw new ModelCheckerException("Undeclared identifier: "+name);
+		switch(s.kind) {
+		case CONST: return new Expr.Const(s.value);
+		case VAR: return new Expr.StateVar(name, s.value, s.lo, s.hi);
+		case FRAME: return new Expr.FrameVar(s.value);
+		case ARRAY: return new Expr.StateArrayElem(name, s.value, s.length, s.lo, s.hi, parseIndex());
+		case CONST_ARRAY: {
+			Expr index = parseIndex();
+			if(index.isConstant()) {
+				int i = index.eval(null);
+				if(i < 0 || i >= s.values.length) throw new ModelCheckerException("Array index out of bounds: "+name+"["+i+"]");
+				return new Expr.Const(s.values[i]);
+			}
+			return new Expr.ConstArrayElem(name, s.values, index);
+		}
+		case FUNCTION: {
+			lx.expect("(");
+			List<Expr> args = new ArrayList<Expr>();
+			if(! lx.accept(")")) {
+				do {
+					args.add(parseAssignment());
+				} while(lx.accept(","));
+				lx.expect(")");
+			}
+			if(args.size() != s.function.numParams) {
+				throw new ModelCheckerException("Wrong number of arguments for "+name);
+			}
+			return new Expr.Call(s.function, args.toArray(new Expr[args.size()]));
+		}
+		case CLOCK:
+			clockRefs++;
+			return new Expr() {
+				int eval(Env env) { throw new EvaluationError("clock in expression"); }
+			};
+		default:
+			throw new ModelCheckerException("Unexpected "+s.kind+" "+name+" in expression");
+		}
+	}
+
+	private Expr parseIndex() throws ModelCheckerException {
+		lx.expect("[");
+		Expr index = parseAssignment();
+		lx.expect("]");
+		return index;
+	}
+
+	private static Expr fold(Expr e) {
+		if(e.isConstant()) return new Expr.Const(e.eval(null));
+		return e;
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jopdesign.wcet.uppaal.checker;
+
+/**
+ * Hash set of states, assigning consecutive ids to states.
+ * Each slot of the state vector is stored with the minimal number of bits
+ * needed for its range, so a state usually fits into a few words.
+ * Adding states is synchronized; states may be read concurrently, provided
+ * the id has been obtained in a way establishing a happens-before relation.
+ */
+class StateTable {
+	private static final int CHUNK_BITS = 14;
+	private static final int CHUNK_STATES = 1 << CHUNK_BITS;
+
+	private final int[] lo, word, shift, mask;
+	private final int words;
+	private final int[][] chunks = new int[1 << 16][];
+	private int size = 0;
+	/* open addressing, id + 1 or 0 for an empty bucket */
+	private int[] buckets = new int[1 << 12];
+	private final int[] packed;
+
+	/** @param ranges lower and upper bound for each slot of the state vector */
+	StateTable(int[][] ranges) {
+		int n = ranges.length;
+		lo = new int[n];
+		word = new int[n];
+		shift = new int[n];
+		mask = new int[n];
+		int w = 0, bit = 0;
+		for(int i = 0; i < n; i++) {
+			lo[i] = ranges[i][0];
+			long span = (long) ranges[i][1] - ranges[i][0];
+			int width = (span <= 0) ? 0 : Math.min(32, 64 - Long.numberOfLeadingZeros(span));
+			if(bit + width > 32) {
+				w++;
+				bit = 0;
+			}
+			word[i] = w;
+			shift[i] = bit;
+			mask[i] = (width == 32) ? -1 : (1 << width) - 1;
+			bit += width;
+		}
+		words = w + 1;
+		packed = new int[words];
+	}
+
+	/** @return the number of words needed to store one state */
+	int getWordsPerState() {
+		return words;
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Add a state to the table
+	 * @param state the unpacked state
+	 * @return the id of a new state, or {@code ~id} if the state is already in the table
+	 */
+	synchronized int add(int[] state) {
+		pack(state, packed);
+		int h = hash(packed);
+		int m = buckets.length - 1;
+		for(int b = h & m; ; b = (b + 1) & m) {
+			int entry = buckets[b];
+			if(entry == 0) break;
+			if(equalsStored(entry - 1, packed)) return ~(entry - 1);
+		}
+		int id = size;
+		if((id >> CHUNK_BITS) >= chunks.length) throw new OutOfMemoryError("State table full");
+		int[] chunk = chunks[id >> CHUNK_BITS];
+		if(chunk == null) {
+			chunk = new int[CHUNK_STATES * words];
+			chunks[id >> CHUNK_BITS] = chunk;
+		}
+		System.arraycopy(packed, 0, chunk, (id & (CHUNK_STATES - 1)) * words, words);
+		size++;
+		if(size * 2 > buckets.length) rehash();
+		else insert(h, id);
+		return id;
+	}
+
+	/** unpack the state with the given id */
+	void get(int id, int[] state) {
+		int[] chunk = chunks[id >> CHUNK_BITS];
+		int off = (id & (CHUNK_STATES - 1)) * words;
+		for(int i = 0; i < state.length; i++) {
+			state[i] = lo[i] + ((chunk[off + word[i]] >>> shift[i]) & mask[i]);
+		}
+	}
+
+	private void pack(int[] state, int[] out) {
+		for(int w = 0; w < words; w++) out[w] = 0;
+		for(int i = 0; i < state.length; i++) {
+			out[word[i]] |= ((state[i] - lo[i]) & mask[i]) << shift[i];
+		}
+	}
+
+	private boolean equalsStored(int id, int[] p) {
+		int[] chunk = chunks[id >> CHUNK_BITS];
+		int off = (id & (CHUNK_STATES - 1)) * words;
+		for(int w = 0; w < words; w++) {
+			if(chunk[off + w] != p[w]) return false;
+		}
+		return true;
+	}
+
+	private void insert(int h, int id) {
+		int m = buckets.length - 1;
+		int b = h & m;
+		while(buckets[b] != 0) b = (b + 1) & m;
+		buckets[b] = id + 1;
+	}
+
+	private void rehash() {
+		buckets = new int[buckets.length * 2];
+		int[] p = new int[words];
+		for(int id = 0; id < size; id++) {
+			int[] chunk = chunks[id >> CHUNK_BITS];
+			System.arraycopy(chunk, (id & (CHUNK_STATES - 1)) * words, p, 0, words);
+			insert(hash(p), id);
+		}
+	}
+
+	private static int hash(int[] p) {
+		int h = 0x9747b28c;
+		for(int w : p) {
+			int k = w * 0xcc9e2d51;
+			k = Integer.rotateLeft(k, 15) * 0x1b873593;
+			h ^= k;
+			h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+		}
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		return h ^ (h >>> 16);
+	}
+}
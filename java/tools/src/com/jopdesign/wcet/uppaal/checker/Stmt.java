@@ -0,0 +1,107 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jopdesign.wcet.uppaal.checker;
+
+import com.jopdesign.wcet.uppaal.checker.Expr.Env;
+
+/**
+ * Statements of UPPAAL functions. {@link #exec(Env)} returns true if a
+ * {@code return} statement has been executed.
+ */
+abstract class Stmt {
+
+	abstract boolean exec(Env env);
+
+	static final class ExprStmt extends Stmt {
+		private final Expr e;
+		ExprStmt(Expr e) { this.e = e; }
+		boolean exec(Env env) {
+			e.eval(env);
+			return false;
+		}
+	}
+
+	static final class Block extends Stmt {
+		private final Stmt[] body;
+		Block(Stmt[] body) { this.body = body; }
+		boolean exec(Env env) {
+			for(Stmt s : body) {
+				if(s.exec(env)) return true;
+			}
+			return false;
+		}
+	}
+
+	static final class If extends Stmt {
+		private final Expr cond;
+		private final Stmt then, otherwise;
+		If(Expr cond, Stmt then, Stmt otherwise) {
+			this.cond = cond;
+			this.then = then;
+			this.otherwise = otherwise;
+		}
+		boolean exec(Env env) {
+			if(Expr.isTrue(cond.eval(env))) return then.exec(env);
+			else if(otherwise != null) return otherwise.exec(env);
+			return false;
+		}
+	}
+
+	/** for and while loops; init, cond and step are optional */
+	static final class Loop extends Stmt {
+		private final Expr init, cond, step;
+		private final Stmt body;
+		Loop(Expr init, Expr cond, Expr step, Stmt body) {
+			this.init = init;
+			this.cond = cond;
+			this.step = step;
+			this.body = body;
+		}
+		boolean exec(Env env) {
+			if(init != null) init.eval(env);
+			while(cond == null || Expr.isTrue(cond.eval(env))) {
+				if(body.exec(env)) return true;
+				if(step != null) step.eval(env);
+			}
+			return false;
+		}
+	}
+
+	static final class Return extends Stmt {
+		private final Expr value;
+		Return(Expr value) { this.value = value; }
+		boolean exec(Env env) {
+			env.retval = (value == null) ? 0 : value.eval(env);
+			return true;
+		}
+	}
+
+	/** Initialization of a local variable, executed every time the declaration is reached */
+	static final class LocalInit extends Stmt {
+		private final int slot;
+		private final Expr init;
+		LocalInit(int slot, Expr init) {
+			this.slot = slot;
+			this.init = init;
+		}
+		boolean exec(Env env) {
+			env.frame[slot] = (init == null) ? 0 : init.eval(env);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,332 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jopdesign.wcet.uppaal.checker;
+
+import com.jopdesign.wcet.WCETTool;
+import com.jopdesign.wcet.uppaal.checker.Expr.EvaluationError;
+import com.jopdesign.wcet.uppaal.model.NTASystem;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Built-in model checker for the UPPAAL models generated by the WCET translator.
+ * Instead of searching for the smallest bound {@code B} such that
+ * {@code A[] (M0.E imply t<=B)} holds, it computes the maximal elapsed time directly.</p>
+ *
+ * <p>The discrete state space (see {@link Network} for the supported class of models) is
+ * explored breadth first, optionally using several threads per level. Afterwards, the
+ * maximal elapsed time is computed as longest path in the state graph, using its strongly
+ * connected components: cycles which reset the clock after time has passed make the
+ * elapsed time unbounded, all other cycles do not contribute.</p>
+ */
+public class WcetModelChecker {
+	private static final Logger logger = Logger.getLogger(WCETTool.LOG_WCET_UPPAAL+".WcetModelChecker");
+
+	private static final long UNBOUNDED = Long.MAX_VALUE / 4;
+	private static final int TASKS_PER_THREAD = 4;
+
+	private final Network network;
+	private int threads = 1;
+	private int numStates, numTransitions;
+
+	public WcetModelChecker(NTASystem system) throws ModelCheckerException {
+		this.network = Network.compile(system);
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public int getNumberOfStates() {
+		return numStates;
+	}
+
+	public int getNumberOfTransitions() {
+		return numTransitions;
+	}
+
+	/**
+	 * Compute the maximal time which may elapse until the given process is in the given location,
+	 * i.e., the smallest {@code B} such that {@code A[] (process.location imply t<=B)} holds.
+	 *
+	 * @param process the name of the process (e.g. {@code M0})
+	 * @param location the name of the location (e.g. {@code E})
+	 * @return the maximal elapsed time
+	 * @throws ModelCheckerException if the location is unreachable, if the elapsed time is unbounded or
+	 *                               if the model has an error
+	 */
+	public long computeMaxElapsedTime(String process, String location) throws ModelCheckerException {
+		int p = network.getProcessIndex(process);
+		if(p < 0) throw new ModelCheckerException("Unknown process: "+process);
+		int loc = network.getProcesses()[p].locationIndex(location);
+		if(loc < 0) throw new ModelCheckerException("Unknown location: "+process+"."+location);
+		long start = System.nanoTime();
+		StateSpace space = explore(network.getLocationSlot(p), loc);
+		long explored = System.nanoTime();
+		long wcet = longestPath(space);
+		long stop = System.nanoTime();
+		logger.info(String.format("Explored %d states and %d transitions in %.2f s, longest path in %.2f s",
+				numStates, numTransitions, (explored - start) / 1.0E9, (stop - explored) / 1.0E9));
+		if(wcet < 0) throw new ModelCheckerException("Location "+process+"."+location+" is unreachable");
+		if(wcet >= UNBOUNDED) throw new ModelCheckerException("The elapsed time is unbounded");
+		return wcet;
+	}
+
+	/* Exploration
+	 * -----------
+	 */
+	private static class StateSpace {
+		/* successor ids and elapsed time, interleaved */
+		int[][] edges = new int[1024][];
+		/* maximal clock value in target states, -1 for other states */
+		int[] targetClock = new int[1024];
+		int size;
+
+		void set(int id, int[] succs, int clock) {
+			if(id >= edges.length) {
+				int n = Math.max(id + 1, edges.length * 2);
+				edges = Arrays.copyOf(edges, n);
+				targetClock = Arrays.copyOf(targetClock, n);
+			}
+			edges[id] = succs;
+			targetClock[id] = clock;
+			size = Math.max(size, id + 1);
+		}
+	}
+
+	/** Expand a part of the frontier */
+	private class Expansion implements Callable<Expansion> {
+		private final StateTable table;
+		private final int[] frontier;
+		private final int from, to;
+		private final int targetSlot, targetLoc;
+		int[][] succs;
+		int[] clock;
+		int[] fresh = new int[64];
+		int numFresh = 0;
+
+		Expansion(StateTable table, int[] frontier, int from, int to, int targetSlot, int targetLoc) {
+			this.table = table;
+			this.frontier = frontier;
+			this.from = from;
+			this.to = to;
+			this.targetSlot = targetSlot;
+			this.targetLoc = targetLoc;
+		}
+
+		public Expansion call() {
+			int[] state = new int[network.getStateSize()];
+			succs = new int[to - from][];
+			clock = new int[to - from];
+			final int[][] edgeBuf = { new int[16] };
+			final int[] edgeCount = { 0 };
+			Network.SuccessorHandler handler = new Network.SuccessorHandler() {
+				public void successor(int[] succ, int time) {
+					int id = table.add(succ);
+					if(id >= 0) {
+						if(numFresh == fresh.length) fresh = Arrays.copyOf(fresh, numFresh * 2);
+						fresh[numFresh++] = id;
+					} else {
+						id = ~id;
+					}
+					if(edgeCount[0] + 2 > edgeBuf[0].length) edgeBuf[0] = Arrays.copyOf(edgeBuf[0], edgeBuf[0].length * 2);
+					edgeBuf[0][edgeCount[0]++] = id;
+					edgeBuf[0][edgeCount[0]++] = time;
+				}
+			};
+			for(int i = from; i < to; i++) {
+				table.get(frontier[i], state);
+				edgeCount[0] = 0;
+				network.successors(state, handler);
+				succs[i - from] = Arrays.copyOf(edgeBuf[0], edgeCount[0]);
+				clock[i - from] = (state[targetSlot] == targetLoc) ? network.maxClockValue(state) : -1;
+			}
+			return this;
+		}
+	}
+
+	private StateSpace explore(int targetSlot, int targetLoc) throws ModelCheckerException {
+		StateTable table = new StateTable(network.getSlotRanges());
+		StateSpace space = new StateSpace();
+		int[] frontier = { table.add(network.initialState()) };
+		int frontierSize = 1;
+		ExecutorService executor = (threads > 1) ? Executors.newFixedThreadPool(threads) : null;
+		numTransitions = 0;
+		try {
+			while(frontierSize > 0) {
+				List<Expansion> parts = new ArrayList<Expansion>();
+				int numParts = (executor == null) ? 1 : Math.min(frontierSize, threads * TASKS_PER_THREAD);
+				for(int k = 0; k < numParts; k++) {
+					parts.add(new Expansion(table, frontier,
+							(int) ((long) frontierSize * k / numParts),
+							(int) ((long) frontierSize * (k + 1) / numParts),
+							targetSlot, targetLoc));
+				}
+				if(executor == null) {
+					parts.get(0).call();
+				} else {
+					for(Future<Expansion> f : executor.invokeAll(parts)) f.get();
+				}
+				int next = 0;
+				for(Expansion part : parts) next += part.numFresh;
+				int[] nextFrontier = new int[next];
+				next = 0;
+				for(Expansion part : parts) {
+					for(int i = part.from; i < part.to; i++) {
+						int[] succs = part.succs[i - part.from];
+						space.set(frontier[i], succs, part.clock[i - part.from]);
+						numTransitions += succs.length / 2;
+					}
+					System.arraycopy(part.fresh, 0, nextFrontier, next, part.numFresh);
+					next += part.numFresh;
+				}
+				frontier = nextFrontier;
+				frontierSize = next;
+			}
+		} catch (EvaluationError e) {
+			throw new ModelCheckerException("Error in model: "+e.getMessage(), e);
+		} catch (InterruptedException e) {
+			throw new ModelCheckerException("Interrupted during state space exploration", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof EvaluationError) {
+				throw new ModelCheckerException("Error in model: "+e.getCause().getMessage(), e.getCause());
+			}
+			throw new ModelCheckerException("State space exploration failed", e.getCause());
+		} finally {
+			if(executor != null) executor.shutdownNow();
+		}
+		numStates = table.size();
+		return space;
+	}
+
+	/* Longest path
+	 * ------------
+	 */
+	private static long add(long a, long b) {
+		return Math.min(UNBOUNDED, a + b);
+	}
+
+	private static long weight(int time) {
+		return (time == Network.INFINITY) ? UNBOUNDED : time;
+	}
+
+	/** @return the maximal elapsed time in a target state, or -1 if there is no target state */
+	private long longestPath(StateSpace space) {
+		int n = space.size;
+		int[][] edges = space.edges;
+		/* Tarjan's algorithm (iterative); SCCs are emitted in reverse topological order */
+		int[] index = new int[n];
+		int[] low = new int[n];
+		Arrays.fill(index, -1);
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int sp = 0;
+		int[] dfsNode = new int[n];
+		int[] dfsPos = new int[n];
+		int dsp = 0;
+		int counter = 0;
+		int[] sccNodes = new int[n];
+		int[] sccOf = new int[n];
+		int[] sccStart = new int[n + 1];
+		int numScc = 0, emitted = 0;
+
+		index[0] = low[0] = counter++;
+		stack[sp++] = 0;
+		onStack[0] = true;
+		dfsNode[dsp] = 0;
+		dfsPos[dsp++] = 0;
+		while(dsp > 0) {
+			int v = dfsNode[dsp - 1];
+			int pos = dfsPos[dsp - 1];
+			if(pos < edges[v].length) {
+				dfsPos[dsp - 1] += 2;
+				int w = edges[v][pos];
+				if(index[w] < 0) {
+					index[w] = low[w] = counter++;
+					stack[sp++] = w;
+					onStack[w] = true;
+					dfsNode[dsp] = w;
+					dfsPos[dsp++] = 0;
+				} else if(onStack[w]) {
+					low[v] = Math.min(low[v], index[w]);
+				}
+			} else {
+				dsp--;
+				if(dsp > 0) {
+					int u = dfsNode[dsp - 1];
+					low[u] = Math.min(low[u], low[v]);
+				}
+				if(low[v] == index[v]) {
+					sccStart[numScc] = emitted;
+					int w;
+					do {
+						w = stack[--sp];
+						onStack[w] = false;
+						sccOf[w] = numScc;
+						sccNodes[emitted++] = w;
+					} while(w != v);
+					numScc++;
+				}
+			}
+		}
+		sccStart[numScc] = emitted;
+
+		/* longest path on the condensation, in topological order */
+		long[] dist = new long[n];
+		Arrays.fill(dist, -1);
+		dist[0] = 0;
+		long result = -1;
+		for(int scc = numScc - 1; scc >= 0; scc--) {
+			long d = -1;
+			boolean cyclic = sccStart[scc + 1] - sccStart[scc] > 1;
+			for(int i = sccStart[scc]; i < sccStart[scc + 1]; i++) {
+				d = Math.max(d, dist[sccNodes[i]]);
+			}
+			for(int i = sccStart[scc]; i < sccStart[scc + 1]; i++) {
+				int[] es = edges[sccNodes[i]];
+				for(int k = 0; k < es.length; k += 2) {
+					if(sccOf[es[k]] == scc && (cyclic || es[k] == sccNodes[i]) && es[k + 1] > 0) {
+						d = UNBOUNDED;
+					}
+				}
+			}
+			for(int i = sccStart[scc]; i < sccStart[scc + 1]; i++) {
+				int v = sccNodes[i];
+				dist[v] = d;
+				if(space.targetClock[v] >= 0) {
+					result = Math.max(result, add(d, weight(space.targetClock[v])));
+				}
+				int[] es = edges[v];
+				for(int k = 0; k < es.length; k += 2) {
+					if(sccOf[es[k]] != scc) {
+						dist[es[k]] = Math.max(dist[es[k]], add(d, weight(es[k + 1])));
+					}
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -100,6 +100,9 @@ public class Location implements Comparable<Location> {
 		return this.successors;
 	}
 	
+	public String getInvariant() {
+		return this.invariant;
+	}
 	public void setInvariant(String inv) {
 		this.invariant = inv;
 	}
@@ -61,6 +61,12 @@ public class NTASystem {
 	public String getName() {
 		return name;
 	}
+	public String getSystem() {
+		return system;
+	}
+	public Map<String,Template> getTemplates() {
+		return templates;
+	}
 	public void setSystem(String sys) {
 		this.system = sys;
 	}
@@ -63,6 +63,9 @@ public class Template {
 	public Collection<String> getDeclarations() {
 		return declarations;
 	}
+	public List<String> getParameters() {
+		return parameters;
+	}
 	public Template appendDeclaration(String decl) {
 		this.declarations.add(decl);
 		return this;
@@ -49,6 +49,18 @@ public class TransitionAttributes {
 		updates.add(src);
 		return this;
 	}
+	public String getSync() {
+		return sync;
+	}
+	public List<String> getGuards() {
+		return guard;
+	}
+	public List<String> getUpdates() {
+		return updates;
+	}
+	public List<String> getSelects() {
+		return select;
+	}
 	public void addSelect(String s) {
 		this.select.add(s);
 	}
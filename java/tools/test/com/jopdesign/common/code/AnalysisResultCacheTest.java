@@ -0,0 +1,149 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ *   see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jopdesign.common.code;
+
+import com.jopdesign.common.AppInfo;
+import com.jopdesign.common.ClassInfo;
+import com.jopdesign.common.EmptyAppEventHandler;
+import com.jopdesign.common.KeyManager;
+import com.jopdesign.common.MethodInfo;
+import com.jopdesign.common.TestFramework;
+import com.jopdesign.common.code.ControlFlowGraph.BasicBlockNode;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.NOP;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class AnalysisResultCacheTest {
+
+    public static void check(boolean test) {
+        System.out.println(test ? "OK" : "FAIL");
+    }
+
+    public static int loop(int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += i;
+        }
+        return sum;
+    }
+
+    public static int straight(int a) {
+        return a + 1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        TestFramework test = new TestFramework();
+        test.setupAppSetup();
+        AppInfo appInfo = test.setupAppInfo(AnalysisResultCacheTest.class.getName(), false);
+        ClassInfo testClass = appInfo.getClassInfo(AnalysisResultCacheTest.class.getName());
+
+        final MethodInfo loop = testClass.getMethodInfo("loop(I)I");
+        final MethodInfo straight = testClass.getMethodInfo("straight(I)I");
+        final AnalysisResultCache cache = appInfo.getAnalysisResultCache();
+
+        // results are computed once and shared
+        ControlFlowGraph cfg = cache.getFlowGraph(loop);
+        check(cfg == cache.getFlowGraph(loop));
+        check(cache.getLoopColoring(loop).getHeadOfLoops().size() == 1);
+        check(cache.getLoopColoring(straight).getHeadOfLoops().isEmpty());
+        check(cache.getDominators(loop) == cfg.getTopOrder().getDominators());
+
+        InstructionHandle first = loop.getCode().getInstructionList(false, false).getStart();
+        BasicBlockNode node = cache.getHandleNode(loop, first);
+        check(node != null && node.getControlFlowGraph() == cfg);
+
+        // reading the code keeps the results, modifying one method only drops the results of this method
+        ControlFlowGraph other = cache.getFlowGraph(straight);
+        int version = loop.getCode().getVersion();
+        loop.getCode().getInstructionList(false, false);
+        loop.getCode().getInstructionList();
+        check(loop.getCode().getVersion() == version);
+        check(cache.getFlowGraph(loop) == cfg);
+        loop.getCode().getInstructionList().insert(new NOP());
+        loop.getCode().notifyModified();
+        check(loop.getCode().getVersion() != version);
+        check(!cache.hasResult(loop, AnalysisResultCache.FLOW_GRAPH));
+        check(cache.getFlowGraph(loop) != cfg);
+        check(cache.getFlowGraph(straight) == other);
+
+        // concurrent readers get the same graph
+        cfg = cache.getFlowGraph(loop);
+        cache.invalidate(loop);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Callable<ControlFlowGraph>> tasks = new ArrayList<Callable<ControlFlowGraph>>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(new Callable<ControlFlowGraph>() {
+                public ControlFlowGraph call() {
+                    cache.getLoopColoring(loop);
+                    return cache.getFlowGraph(loop);
+                }
+            });
+        }
+        ControlFlowGraph shared = null;
+        boolean same = true;
+        for (Future<ControlFlowGraph> f : executor.invokeAll(tasks)) {
+            if (shared == null) shared = f.get();
+            same &= shared == f.get();
+        }
+        check(same && shared != cfg);
+
+        // graphs of two methods of the same class are created in parallel, the event handlers
+        // store their results in the class
+        final KeyManager.CustomKey loopKey = appInfo.getKeyManager().registerStructKey("test.loop");
+        final KeyManager.CustomKey straightKey = appInfo.getKeyManager().registerStructKey("test.straight");
+        appInfo.registerEventHandler(new EmptyAppEventHandler() {
+            @Override
+            public void onRegisterEventHandler(AppInfo appInfo) {
+            }
+
+            @Override
+            public void onCreateControlFlowGraph(ControlFlowGraph cfg) {
+                MethodInfo method = cfg.getMethodInfo();
+                KeyManager.CustomKey key = method.getShortName().equals("loop") ? loopKey : straightKey;
+                method.getClassInfo().setCustomValue(key, cfg);
+            }
+        });
+        boolean stored = true;
+        for (int round = 0; round < 20; round++) {
+            cache.invalidate(loop);
+            cache.invalidate(straight);
+            testClass.removeCustomValue(loopKey);
+            testClass.removeCustomValue(straightKey);
+            List<Callable<ControlFlowGraph>> pair = new ArrayList<Callable<ControlFlowGraph>>();
+            for (final MethodInfo method : new MethodInfo[] { loop, straight }) {
+                pair.add(new Callable<ControlFlowGraph>() {
+                    public ControlFlowGraph call() {
+                        return cache.getFlowGraph(method);
+                    }
+                });
+            }
+            List<Future<ControlFlowGraph>> graphs = executor.invokeAll(pair);
+            stored &= testClass.getCustomValue(loopKey) == graphs.get(0).get();
+            stored &= testClass.getCustomValue(straightKey) == graphs.get(1).get();
+        }
+        executor.shutdown();
+        check(stored);
+    }
+}
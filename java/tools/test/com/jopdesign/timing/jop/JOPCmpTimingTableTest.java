@@ -0,0 +1,56 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jopdesign.timing.jop;
+
+import org.apache.bcel.Constants;
+
+import java.io.File;
+
+/**
+ * Checks the basic block timing with TDMA arbitration.
+ * Needs the preprocessed microcode, e.g. from {@code make gen_mem},
+ * the file can be given as first argument.
+ */
+public class JOPCmpTimingTableTest {
+
+    public static void check(boolean test) {
+        System.out.println(test ? "OK" : "FAIL");
+    }
+
+    public static void main(String[] args) throws Exception {
+        File asm = args.length > 0 ? new File(args[0]) : MicrocodeAnalysis.DEFAULT_ASM_FILE;
+        // 3 cores, 10 cycles per slot
+        JOPCmpTimingTable tt = JOPCmpTimingTable.getCmpTimingTable(asm, 1, 2, 3, 10);
+
+        long single = tt.getLocalCycles(Constants.GETFIELD);
+        check(tt.getLocalCycles(new int[] { Constants.GETFIELD }) == single);
+
+        // the second access knows where the first one left the arbiter
+        long twice = tt.getLocalCycles(new int[] { Constants.GETFIELD, Constants.GETFIELD });
+        check(twice > single);
+        check(twice < 2 * single);
+
+        long mixed = tt.getLocalCycles(new int[] { Constants.IALOAD, Constants.PUTFIELD });
+        check(mixed < tt.getLocalCycles(Constants.IALOAD) + tt.getLocalCycles(Constants.PUTFIELD));
+
+        // an invoke forgets the position
+        int[] invoke = { Constants.GETFIELD, Constants.INVOKESTATIC, Constants.GETFIELD };
+        check(tt.getLocalCycles(invoke) == single + tt.getLocalCycles(Constants.INVOKESTATIC) + single);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jopdesign.wcet.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the frame constraints and the job assignment of the cyclic
+ * schedule synthesis.
+ */
+public class CyclicScheduleBuilderTest {
+
+    public static void check(boolean test) {
+        System.out.println(test ? "OK" : "FAIL");
+    }
+
+    public static void main(String[] args) {
+        // 1 cycle per us keeps the numbers readable
+        List<PeriodicTask> tasks = new ArrayList<PeriodicTask>();
+        tasks.add(new PeriodicTask("A", 0, 4000, 1000));
+        tasks.add(new PeriodicTask("B", 1, 5000, 1500));
+        tasks.add(new PeriodicTask("C", 2, 20000, 2000));
+        CyclicScheduleBuilder builder = new CyclicScheduleBuilder(tasks, 1);
+
+        check(builder.getHyperperiod() == 20000);
+        check(CyclicScheduleBuilder.gcd(4000, 5000) == 1000);
+        check(CyclicScheduleBuilder.lcm(4000, 5000) == 20000);
+
+        // 2f - gcd(f,T) <= D: 4000 violates the constraint for B
+        check(!builder.checkFrame(4000));
+        check(builder.checkFrame(2000));
+        // C does not fit into a 1000 us frame
+        check(!builder.checkFrame(1000));
+
+        FrameSchedule s = builder.synthesize();
+        check(s != null);
+        check(s.getFrameLength() == 2000);
+        check(s.getFrameCount() == 10);
+        check(s.getMinimumSlack() >= 0);
+
+        // every job runs exactly once per period
+        int[] runs = new int[3];
+        for (int i = 0; i < s.getFrameCount(); i++) {
+            for (PeriodicTask t : s.getFrame(i)) runs[t.getIndex()]++;
+        }
+        check(runs[0] == 5 && runs[1] == 4 && runs[2] == 1);
+
+        // a split handler is invoked once per slice
+        tasks.set(2, new PeriodicTask("C", 2, 20000, 20000, 1000, 2));
+        builder = new CyclicScheduleBuilder(tasks, 1);
+        s = builder.synthesize();
+        check(s != null);
+        int slices = 0;
+        for (int i = 0; i < s.getFrameCount(); i++) {
+            for (PeriodicTask t : s.getFrame(i)) if (t.getIndex() == 2) slices++;
+        }
+        check(slices == 2);
+
+        // overload: no schedule
+        tasks.clear();
+        tasks.add(new PeriodicTask("X", 0, 1000, 800));
+        tasks.add(new PeriodicTask("Y", 1, 2000, 800));
+        builder = new CyclicScheduleBuilder(tasks, 1);
+        check(builder.synthesize() == null);
+    }
+}
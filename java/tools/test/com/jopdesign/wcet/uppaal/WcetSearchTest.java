@@ -0,0 +1,78 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jopdesign.wcet.uppaal;
+
+import com.jopdesign.common.config.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Runs the sequential and the parallel WCET search against a stub verifier,
+ * which reports every bound >= WCET as safe. Safe answers for large bounds are
+ * slow, so the parallel search only terminates quickly if it kills useless probes.
+ */
+public class WcetSearchTest {
+
+    private static final long WCET = 12345;
+
+    public static void check(boolean test) {
+        System.out.println(test ? "OK" : "FAIL");
+    }
+
+    private static File createStubVerifier() throws IOException {
+        File stub = File.createTempFile("verifyta", ".sh");
+        stub.deleteOnExit();
+        FileWriter fw = new FileWriter(stub);
+        fw.write("#!/bin/sh\n");
+        fw.write("for q; do :; done\n");
+        fw.write("b=`sed -e 's/.*t<=\\([0-9]*\\).*/\\1/' \"$q\"`\n");
+        fw.write("if [ $b -ge " + (WCET * 8) + " ]; then sleep 30; fi\n");
+        fw.write("if [ $b -ge " + WCET + " ]; then echo ' -- Property is satisfied.'; " +
+                 "else echo ' -- Property is NOT satisfied.'; fi\n");
+        fw.close();
+        stub.setExecutable(true);
+        return stub;
+    }
+
+    private static long search(File stub, int probes, Long upperBound) throws IOException {
+        Config config = new Config();
+        config.addOptions(UppAalConfig.uppaalOptions);
+        config.setProperty(UppAalConfig.UPPAAL_VERIFYTA_BINARY.getKey(), stub.getPath());
+        config.setProperty(UppAalConfig.UPPAAL_PARALLEL_PROBES.getKey(), String.valueOf(probes));
+        return new WcetSearch(config, new File("model.xml")).searchWCET(upperBound);
+    }
+
+    public static void main(String[] args) throws IOException {
+        File stub = createStubVerifier();
+
+        check(search(stub, 1, null) == WCET);
+        check(search(stub, 1, 20000L) == WCET);
+        check(search(stub, 2, null) == WCET);
+        check(search(stub, 3, 20000L) == WCET);
+
+        // the probes for 12800*k, k>=8 are killed once 25600 turns out to be safe
+        long start = System.currentTimeMillis();
+        check(search(stub, 8, null) == WCET);
+        check(System.currentTimeMillis() - start < 30000);
+
+        check(search(stub, 5, WCET * 4) == WCET);
+    }
+}
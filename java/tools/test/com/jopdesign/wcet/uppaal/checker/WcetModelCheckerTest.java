@@ -0,0 +1,171 @@
+/*
+ * This file is part of JOP, the Java Optimized Processor
+ * see <http://www.jopdesign.com/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.jopdesign.wcet.uppaal.checker;
+
+import com.jopdesign.wcet.uppaal.model.Location;
+import com.jopdesign.wcet.uppaal.model.NTASystem;
+import com.jopdesign.wcet.uppaal.model.Template;
+import com.jopdesign.wcet.uppaal.model.Transition;
+import com.jopdesign.wcet.uppaal.model.TransitionAttributes;
+
+import java.util.Vector;
+
+/**
+ * Checks the maximal elapsed time computed by the built-in model checker
+ * for small networks in the style of the WCET translator.
+ */
+public class WcetModelCheckerTest {
+
+    public static void check(boolean test) {
+        System.out.println(test ? "OK" : "FAIL");
+    }
+
+    private static Location location(Template t, String name, int wait) {
+        Location l = new Location(name);
+        if (wait >= 0) l.setInvariant("t_local <= " + wait);
+        t.addLocation(l);
+        return l;
+    }
+
+    private static TransitionAttributes edge(Template t, Location src, Location target) {
+        Transition tr = new Transition(src, target);
+        t.addTransition(tr);
+        return tr.getAttrs();
+    }
+
+    /* a loop executed at most three times, each iteration calls method 1 or method 2,
+     * which are simulated in a 2-block FIFO cache */
+    private static NTASystem cacheLoop() throws Exception {
+        NTASystem sys = new NTASystem("cache");
+        sys.appendDeclaration("clock t;");
+        sys.appendDeclaration("const int num_methods = 3;");
+        sys.appendDeclaration("int[0,num_methods] cache[2] = { 0, num_methods };");
+        sys.appendDeclaration("bool lastHit;");
+        sys.appendDeclaration(
+                "void access_cache(int mid) {\n" +
+                "  int i = 0;\n" +
+                "  lastHit = false;\n" +
+                "  for(i = 0; i < 2; i++) {\n" +
+                "      if(cache[i] == mid) {\n" +
+                "        lastHit = true;\n" +
+                "        return;\n" +
+                "      }\n" +
+                "  }\n" +
+                "  for(i = 1; i > 0; i--) {\n" +
+                "     cache[i]=cache[i-1];\n" +
+                "  }\n" +
+                "  cache[0] = mid;\n" +
+                "}\n");
+        Template t = new Template("Process", new Vector<String>());
+        t.appendDeclaration("clock t_local;");
+        t.appendDeclaration("const int LOOP_BOUND_0 = 3;");
+        t.appendDeclaration("int[0,3] loop_cnt_0;");
+        Location init = new Location("I");
+        init.setCommited();
+        t.setInitialLocation(init);
+        Location end = new Location("E");
+        end.setCommited();
+        t.addLocation(end);
+        Location head = new Location("HOL");
+        head.setCommited();
+        t.addLocation(head);
+        Location call = new Location("CALL");
+        call.setCommited();
+        t.addLocation(call);
+        Location miss = location(t, "MISS", 100);
+        Location body = location(t, "BODY", 5);
+        edge(t, init, head).appendUpdate("loop_cnt_0 := 0");
+        for (int m = 1; m <= 2; m++) {
+            edge(t, head, call).appendGuard("loop_cnt_0 < LOOP_BOUND_0")
+                    .appendUpdate("loop_cnt_0 := loop_cnt_0 + 1")
+                    .appendUpdate("access_cache(" + m + ")");
+        }
+        edge(t, call, miss).appendGuard("! lastHit").appendUpdate("t_local := 0");
+        edge(t, call, body).appendGuard("lastHit").appendUpdate("t_local := 0");
+        edge(t, miss, body).appendUpdate("t_local := 0");
+        edge(t, body, head);
+        edge(t, head, end).appendGuard("loop_cnt_0 >= 1");
+        sys.addTemplate(t);
+        sys.setSystem("M0 = Process() ;\nsystem M0;\n");
+        return sys;
+    }
+
+    /* a root process invoking a second process via channel synchronization */
+    private static NTASystem invoke(boolean boundedCallee) throws Exception {
+        NTASystem sys = new NTASystem("invoke");
+        sys.appendDeclaration("clock t;");
+        sys.appendDeclaration("clock t_local_0; ");
+        sys.appendDeclaration("chan invoke_1;");
+        Template root = new Template("root", new Vector<String>());
+        Location rI = new Location("I");
+        rI.setCommited();
+        root.setInitialLocation(rI);
+        Location rN = new Location("N");
+        rN.setInvariant("t_local_0 <= 4");
+        root.addLocation(rN);
+        Location rW = new Location("INVOKE_WAIT");
+        root.addLocation(rW);
+        Location rE = new Location("E");
+        rE.setCommited();
+        root.addLocation(rE);
+        edge(root, rI, rN).appendUpdate("t_local_0 := 0");
+        edge(root, rN, rW).setSync("invoke_1!");
+        edge(root, rW, rE).setSync("invoke_1?");
+        Template callee = new Template("callee", new Vector<String>());
+        Location cI = new Location("I");
+        callee.setInitialLocation(cI);
+        Location cN = new Location("N");
+        if (boundedCallee) cN.setInvariant("t_local_0 <= 6");
+        callee.addLocation(cN);
+        edge(callee, cI, cN).setSync("invoke_1?").appendUpdate("t_local_0 := 0");
+        edge(callee, cN, cI).setSync("invoke_1!");
+        sys.addTemplate(root);
+        sys.addTemplate(callee);
+        sys.setSystem("M0 = root() ;\nM1 = callee() ;\nsystem M0, M1;\n");
+        return sys;
+    }
+
+    private static boolean fails(NTASystem sys) {
+        try {
+            new WcetModelChecker(sys).computeMaxElapsedTime("M0", "E");
+            return false;
+        } catch (ModelCheckerException e) {
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // misses for the first two iterations, a hit for the third one
+        WcetModelChecker mc = new WcetModelChecker(cacheLoop());
+        check(mc.computeMaxElapsedTime("M0", "E") == 105 + 105 + 5);
+        mc.setThreads(4);
+        check(mc.computeMaxElapsedTime("M0", "E") == 215);
+        check(mc.getNumberOfStates() > 0);
+
+        check(new WcetModelChecker(invoke(true)).computeMaxElapsedTime("M0", "E") == 4 + 6);
+        // the callee may take arbitrarily long
+        check(fails(invoke(false)));
+
+        // out of range assignment
+        NTASystem bad = cacheLoop();
+        bad.appendDeclaration("int[0,1] x;");
+        bad.getTemplates().get("Process").getInitial().getSuccessors().get(0).getAttrs().appendUpdate("x := 2");
+        check(fails(bad));
+    }
+}